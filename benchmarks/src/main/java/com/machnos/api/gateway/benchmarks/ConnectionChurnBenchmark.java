@@ -0,0 +1,127 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.configuration.Configuration;
+import com.machnos.api.gateway.server.configuration.HttpInterface;
+import com.machnos.api.gateway.server.http.Server;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures the number of connections per second the gateway accepts, when every request is sent on a
+ * new connection that is closed by the gateway after the response.
+ *
+ * The <code>default</code> listener accepts connections with the default settings, where every I/O thread accepts
+ * from the single accept queue whenever it is ready. The <code>balanced</code> listener has a larger accept queue and
+ * spreads the accepted connections across the I/O threads with balancing tokens. Requests are answered by the gateway
+ * itself with a <code>404 Not Found</code> response, so the benchmark is dominated by connection setup and teardown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConnectionChurnBenchmark {
+
+    private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The accept settings of the listener.
+     */
+    @Param({"default", "balanced"})
+    public String listener;
+
+    private Server server;
+    private InetSocketAddress address;
+
+    @Setup
+    public void setup() throws IOException {
+        final var httpInterface = new HttpInterface();
+        httpInterface.listenPort = findFreePort();
+        httpInterface.tlsProtocols = null;
+        if ("balanced".equals(this.listener)) {
+            httpInterface.acceptBacklog = 4096;
+            httpInterface.acceptBalancingTokens = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            httpInterface.acceptBalancingConnections = 4;
+        }
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), httpInterface.listenPort);
+        this.server = new Server(httpInterface, new Configuration());
+        this.server.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.stop();
+    }
+
+    /**
+     * The buffer of a client thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+    }
+
+    /**
+     * Opens a connection, sends a request and reads the response until the gateway closes the connection.
+     *
+     * @param client The state of the client thread.
+     * @return The number of response bytes read.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long connectionPerRequest(Client client) throws IOException {
+        try (final var channel = SocketChannel.open(this.address)) {
+            final var buffer = client.buffer;
+            buffer.clear();
+            buffer.put(REQUEST).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            var total = 0L;
+            buffer.clear();
+            for (var read = channel.read(buffer); read != -1; read = channel.read(buffer)) {
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Gives a tcp port that is free on the loopback interface.
+     *
+     * @return A free port.
+     */
+    private static int findFreePort() throws IOException {
+        try (final var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.domain.api.functions.ExpressionFunction;
+import com.machnos.api.gateway.server.domain.api.functions.Functions;
+import com.machnos.api.gateway.server.domain.api.functions.MathFunction;
+import com.machnos.api.gateway.server.domain.api.functions.Pipeline;
+import com.machnos.api.gateway.server.domain.api.functions.Result;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that calculates the price of an order line, <code>price * quantity * (one - discount)</code>, in a
+ * pipeline.
+ *
+ * The <code>mathChain</code> benchmark calculates the price with three steps of the <code>MathFunction</code>, each
+ * with its own <code>Result</code> and target variable. The <code>expression</code> benchmark calculates it in a
+ * single step of the <code>ExpressionFunction</code>, which interprets the syntax tree of the expression. Both
+ * pipelines start with new <code>Variables</code> for each operation, as they do for each request. The difference
+ * shows what the interpreted expression saves over the chain: the <code>Result</code>, target variable and variable
+ * lookups of each step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExpressionFunctionBenchmark {
+
+    private Pipeline mathChain;
+    private Pipeline expression;
+    private NumberVariable price;
+    private NumberVariable quantity;
+    private NumberVariable discount;
+    private NumberVariable one;
+
+    @Setup
+    public void setup() {
+        this.mathChain = new Pipeline()
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "price",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_MULTIPLY,
+                        MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "quantity",
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "subtotal"))
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_SUBTRACT,
+                        MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "discount",
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "factor"))
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "subtotal",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_MULTIPLY,
+                        MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "factor",
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "total"));
+        this.expression = new Pipeline()
+                .add(Functions.getFunction("Expression"), Map.of(
+                        ExpressionFunction.INPUT_KEY_EXPRESSION, "price * quantity * (one - discount)",
+                        ExpressionFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "total"));
+        this.price = new NumberVariable().setName("price").setValue(new BigDecimal("19.99"));
+        this.quantity = new NumberVariable().setName("quantity").setScale(0).setValue(new BigDecimal(3));
+        this.discount = new NumberVariable().setName("discount").setValue(new BigDecimal("0.15"));
+        this.one = new NumberVariable().setName("one").setValue(BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public Result mathChain() {
+        return execute(this.mathChain);
+    }
+
+    @Benchmark
+    public Result expression() {
+        return execute(this.expression);
+    }
+
+    /**
+     * Executes a pipeline with new <code>Variables</code> that hold the input variables.
+     *
+     * @param pipeline The <code>Pipeline</code> to execute.
+     * @return The <code>Result</code> of the execution.
+     */
+    private Result execute(Pipeline pipeline) {
+        return pipeline.execute(pipeline.createVariables().add(this.price).add(this.quantity).add(this.discount).add(this.one));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.configuration.Api;
+import com.machnos.api.gateway.server.configuration.ApiFunction;
+import com.machnos.api.gateway.server.configuration.Configuration;
+import com.machnos.api.gateway.server.configuration.HttpInterface;
+import com.machnos.api.gateway.server.configuration.Upstream;
+import com.machnos.api.gateway.server.domain.api.functions.MathFunction;
+import com.machnos.api.gateway.server.http.Server;
+import io.undertow.Undertow;
+import io.undertow.util.Headers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that sends small requests through the full request path of the gateway, on a connection that is kept
+ * alive.
+ *
+ * The <code>proxy</code> route forwards the requests to the upstream of the interface. The <code>api</code> route
+ * matches the requests to an api with a path parameter before they are forwarded. The <code>pipeline</code> route
+ * executes the function pipeline of the api on the worker threads, which rejects the requests because the variable
+ * it calculates with is not present, so it measures the pipeline without the upstream. The metrics of the interface
+ * are recorded on every route. The client reuses a single buffer, so the allocations reported by the gc profiler
+ * (<code>gc.alloc.rate.norm</code>) are those of the gateway and the upstream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GatewayRequestBenchmark {
+
+    private static final byte[] RESPONSE_BODY = "{\"orderId\":42,\"status\":\"shipped\"}".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The route the requests take through the gateway.
+     */
+    @Param({"proxy", "api", "pipeline"})
+    public String route;
+
+    private Undertow upstreamServer;
+    private Server server;
+    private SocketChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024);
+    private byte[] request;
+
+    @Setup
+    public void setup() throws IOException {
+        final var upstreamPort = findFreePort();
+        this.upstreamServer = Undertow.builder()
+                .addHttpListener(upstreamPort, "127.0.0.1", exchange -> {
+                    exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, RESPONSE_BODY.length);
+                    exchange.getResponseSender().send(ByteBuffer.wrap(RESPONSE_BODY));
+                })
+                .build();
+        this.upstreamServer.start();
+
+        final var upstream = new Upstream();
+        upstream.name = "benchmark";
+        upstream.hosts.add("http://127.0.0.1:" + upstreamPort);
+        final var configuration = new Configuration();
+        configuration.upstreams.add(upstream);
+        final var httpInterface = new HttpInterface();
+        httpInterface.listenPort = findFreePort();
+        httpInterface.tlsProtocols = null;
+        if ("proxy".equals(this.route)) {
+            httpInterface.upstream = upstream.name;
+        } else {
+            final var api = new Api();
+            api.name = "orders";
+            api.path = "/orders/{orderId}";
+            api.upstream = upstream.name;
+            if ("pipeline".equals(this.route)) {
+                final var apiFunction = new ApiFunction();
+                apiFunction.function = "Math";
+                apiFunction.configuration.put(MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "total");
+                apiFunction.configuration.put(MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE);
+                api.functions.add(apiFunction);
+            }
+            configuration.apis.add(api);
+        }
+        this.server = new Server(httpInterface, configuration);
+        this.server.start();
+
+        this.request = "GET /orders/42 HTTP/1.1\r\nHost: 127.0.0.1\r\nAccept: application/json\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        this.channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), httpInterface.listenPort));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.channel.close();
+        this.server.stop();
+        this.upstreamServer.stop();
+    }
+
+    /**
+     * Sends a request through the gateway and reads the response.
+     *
+     * @return The number of response body bytes read.
+     */
+    @Benchmark
+    public long request() throws IOException {
+        this.buffer.clear();
+        this.buffer.put(this.request).flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        return readResponse();
+    }
+
+    /**
+     * Reads a response with a content length from the connection with the gateway.
+     *
+     * @return The number of body bytes read.
+     */
+    private long readResponse() throws IOException {
+        this.buffer.clear();
+        var headerEnd = -1;
+        while (headerEnd == -1) {
+            if (this.channel.read(this.buffer) == -1) {
+                throw new IOException("Connection closed by the gateway.");
+            }
+            headerEnd = indexOfHeaderEnd(this.buffer);
+        }
+        final var contentLength = parseContentLength(this.buffer, headerEnd);
+        var remaining = contentLength - (this.buffer.position() - headerEnd);
+        while (remaining > 0) {
+            this.buffer.clear();
+            final var read = this.channel.read(this.buffer);
+            if (read == -1) {
+                throw new IOException("Connection closed by the gateway.");
+            }
+            remaining -= read;
+        }
+        return contentLength;
+    }
+
+    /**
+     * Gives the index directly after the empty line that ends the response headers.
+     *
+     * @param buffer The buffer that holds the start of the response.
+     * @return The index after the headers, or -1 when the headers are not received completely.
+     */
+    private static int indexOfHeaderEnd(ByteBuffer buffer) {
+        for (var i = 3; i < buffer.position(); i++) {
+            if (buffer.get(i - 3) == '\r' && buffer.get(i - 2) == '\n' && buffer.get(i - 1) == '\r' && buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the value of the content length header without allocating.
+     *
+     * @param buffer The buffer that holds the response headers.
+     * @param headerEnd The index after the headers.
+     * @return The content length, or 0 when the header is not present.
+     */
+    private static long parseContentLength(ByteBuffer buffer, int headerEnd) {
+        final var name = "content-length:";
+        outer:
+        for (var i = 0; i < headerEnd - name.length(); i++) {
+            for (var j = 0; j < name.length(); j++) {
+                if (Character.toLowerCase(buffer.get(i + j)) != name.charAt(j)) {
+                    continue outer;
+                }
+            }
+            var value = 0L;
+            for (var k = i + name.length(); k < headerEnd; k++) {
+                final var c = buffer.get(k);
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                } else if (c == '\r') {
+                    break;
+                }
+            }
+            return value;
+        }
+        return 0;
+    }
+
+    /**
+     * Gives a tcp port that is free on the loopback interface.
+     *
+     * @return A free port.
+     */
+    private static int findFreePort() throws IOException {
+        try (final var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
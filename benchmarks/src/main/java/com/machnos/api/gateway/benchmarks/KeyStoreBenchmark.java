@@ -0,0 +1,92 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.domain.keystore.FileSystemKeyStoreWrapper;
+import com.machnos.api.gateway.server.domain.keystore.KeyStoreWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures getting the <code>KeyStore</code> of a <code>FileSystemKeyStoreWrapper</code>.
+ *
+ * The wrapper checks the modification time of the keystore file on each call, so the keystore is reloaded when it is
+ * changed on the filesystem. The <code>unchanged</code> benchmark measures that check alone. The <code>changed</code>
+ * benchmark touches the file before each call, so the keystore is loaded from the filesystem every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeyStoreBenchmark {
+
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+
+    /**
+     * The type of the keystore.
+     */
+    @Param({"JKS", "PKCS12"})
+    public KeyStoreWrapper.KeyStoreType keyStoreType;
+
+    private File directory;
+    private File keyStoreFile;
+    private FileSystemKeyStoreWrapper keyStoreWrapper;
+    private long modified;
+
+    @Setup
+    public void setup() throws IOException, GeneralSecurityException {
+        this.directory = Files.createTempDirectory("machnos-benchmark").toFile();
+        this.keyStoreFile = new File(this.directory, "keystore");
+        final var keyStore = KeyStore.getInstance(this.keyStoreType.name());
+        keyStore.load(null, PASSWORD);
+        try (var outputStream = new FileOutputStream(this.keyStoreFile)) {
+            keyStore.store(outputStream, PASSWORD);
+        }
+        this.keyStoreWrapper = new FileSystemKeyStoreWrapper(this.keyStoreFile, this.keyStoreType, PASSWORD);
+        // A whole number of seconds, so the modification times survive filesystems with a coarse resolution.
+        this.modified = this.keyStoreFile.lastModified() / 1000 * 1000;
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.keyStoreFile.delete();
+        this.directory.delete();
+    }
+
+    @Benchmark
+    public KeyStore unchanged() {
+        return this.keyStoreWrapper.getKeyStore();
+    }
+
+    @Benchmark
+    public KeyStore changed() {
+        // Alternate the modification time, so the wrapper sees a change on every call.
+        this.modified += (this.modified / 1000) % 2 == 0 ? 1000 : -1000;
+        this.keyStoreFile.setLastModified(this.modified);
+        return this.keyStoreWrapper.getKeyStore();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.domain.api.functions.CompiledFunction;
+import com.machnos.api.gateway.server.domain.api.functions.MathFunction;
+import com.machnos.api.gateway.server.domain.api.functions.Result;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.StringVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures a single step of a function pipeline with the <code>MathFunction</code>.
+ *
+ * The <code>execute</code> benchmarks execute the function the way a pipeline does, with the names of the variables
+ * in the configuration of the step and the variables of a request as input. The target variable is present after the
+ * first invocation, so it is reused. The <code>executeMissingVariable</code> benchmark measures the validation of the
+ * input, which fails because the source variable is not present. The <code>compiled</code> benchmark executes the
+ * function compiled with its configuration, on variables that are held in the slots it resolved, as a pipeline does.
+ * The <code>static</code> benchmarks call the helper methods that execute the function on two variables directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MathFunctionBenchmark {
+
+    private final MathFunction function = new MathFunction();
+    private Variables variables;
+    private NumberVariable left;
+    private NumberVariable right;
+    private Map<String, String> addConfiguration;
+    private Map<String, String> divideConfiguration;
+    private Map<String, String> missingConfiguration;
+    private CompiledFunction compiledAdd;
+    private Variables slottedVariables;
+
+    @Setup
+    public void setup() {
+        this.left = new NumberVariable().setName("left").setValue(new BigDecimal(1234));
+        this.right = new NumberVariable().setName("right").setValue(new BigDecimal(3));
+        this.variables = new Variables()
+                .add(new StringVariable().setName("request.method").setValue("GET"))
+                .add(new StringVariable().setName("request.path").setValue("/orders/42"))
+                .add(new StringVariable().setName("path.orderId").setValue("42"))
+                .add(this.left)
+                .add(this.right);
+        this.addConfiguration = Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "left",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD,
+                MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "right",
+                MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "sum");
+        this.divideConfiguration = Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "left",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_DIVIDE,
+                MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "right",
+                MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "quotient");
+        this.missingConfiguration = Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "missing",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD,
+                MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "right");
+        this.variables.addAll(this.function.execute(this.variables, this.addConfiguration).getOutputVariables());
+        this.variables.addAll(this.function.execute(this.variables, this.divideConfiguration).getOutputVariables());
+
+        final var slots = new VariableSlots();
+        this.compiledAdd = this.function.compile(this.addConfiguration, slots);
+        this.slottedVariables = new Variables(slots).addAll(this.variables);
+    }
+
+    @Benchmark
+    public Result executeAdd() {
+        return this.function.execute(this.variables, this.addConfiguration);
+    }
+
+    @Benchmark
+    public Result executeDivide() {
+        return this.function.execute(this.variables, this.divideConfiguration);
+    }
+
+    @Benchmark
+    public Result compiledAdd() {
+        return this.compiledAdd.execute(this.slottedVariables);
+    }
+
+    @Benchmark
+    public Result executeMissingVariable() {
+        return this.function.execute(this.variables, this.missingConfiguration);
+    }
+
+    @Benchmark
+    public Result staticAdd() {
+        return MathFunction.add(this.left, this.right, "sum");
+    }
+
+    @Benchmark
+    public Result staticDivide() {
+        return MathFunction.divide(this.left, this.right, "quotient");
+    }
+
+    @Benchmark
+    public Result staticMaximum() {
+        return MathFunction.maximum(this.left, this.right, "maximum");
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures the arithmetic of <code>NumberVariable</code>s.
+ *
+ * The arithmetic updates the value of the target in place, so each operation first resets the target to the same
+ * value. The allocations reported by the gc profiler (<code>gc.alloc.rate.norm</code>) are those of the values that
+ * are calculated and rescaled. The operands are small integers, which is the common case for counters and limits in a
+ * pipeline, and the <code>divideRounded</code> benchmark divides into a fraction that has to be rounded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NumberVariableBenchmark {
+
+    private NumberVariable value;
+    private NumberVariable target;
+    private NumberVariable operand;
+    private NumberVariable three;
+
+    @Setup
+    public void setup() {
+        this.value = new NumberVariable().setName("value").setValue(new BigDecimal(1234));
+        this.target = new NumberVariable().setName("target");
+        this.operand = new NumberVariable().setName("operand").setValue(new BigDecimal(-56));
+        this.three = new NumberVariable().setName("three").setValue(new BigDecimal(3));
+    }
+
+    @Benchmark
+    public NumberVariable add() {
+        return this.target.assign(this.value).add(this.operand);
+    }
+
+    @Benchmark
+    public NumberVariable subtract() {
+        return this.target.assign(this.value).subtract(this.operand);
+    }
+
+    @Benchmark
+    public NumberVariable multiply() {
+        return this.target.assign(this.value).multiply(this.operand);
+    }
+
+    @Benchmark
+    public NumberVariable divide() {
+        return this.target.assign(this.value).divide(this.operand);
+    }
+
+    @Benchmark
+    public NumberVariable divideRounded() {
+        return this.target.assign(this.value).divide(this.three);
+    }
+
+    @Benchmark
+    public NumberVariable absolute() {
+        return this.target.assign(this.value).subtract(this.operand).absolute();
+    }
+
+    @Benchmark
+    public NumberVariable maximum() {
+        return this.target.assign(this.value).maximum(this.operand);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.configuration.Configuration;
+import com.machnos.api.gateway.server.configuration.HttpInterface;
+import com.machnos.api.gateway.server.configuration.Upstream;
+import com.machnos.api.gateway.server.http.Server;
+import io.undertow.Undertow;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.util.Headers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that relays request and response bodies of increasing size through the gateway.
+ *
+ * The client writes and reads the bodies with a single reused buffer, so the allocations reported by the gc profiler
+ * (<code>gc.alloc.rate.norm</code>) are those of the gateway and the upstream. When bodies are streamed these stay
+ * flat as the payload size grows; a gateway that buffers whole bodies allocates at least the payload size per
+ * operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms256m", "-Xmx256m"})
+public class ProxyStreamingBenchmark {
+
+    private static final byte[] CHUNK = new byte[64 * 1024];
+
+    /**
+     * The buffer the upstream reads the request bodies into, one for each worker thread.
+     */
+    private static final ThreadLocal<byte[]> UPSTREAM_CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK.length]);
+
+    /**
+     * The size of the request and response bodies in bytes.
+     */
+    @Param({"1048576", "16777216", "134217728"})
+    public long payloadSize;
+
+    private Undertow upstreamServer;
+    private Server server;
+    private int port;
+    private SocketChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK.length);
+    private byte[] uploadRequestHead;
+    private byte[] downloadRequestHead;
+
+    @Setup
+    public void setup() throws IOException {
+        final var upstreamPort = findFreePort();
+        this.upstreamServer = Undertow.builder()
+                .addHttpListener(upstreamPort, "127.0.0.1", new BlockingHandler(exchange -> {
+                    final var chunk = UPSTREAM_CHUNK.get();
+                    try (final var inputStream = exchange.getInputStream()) {
+                        while (inputStream.read(chunk) != -1) {
+                            // Discard the request body.
+                        }
+                    }
+                    final var length = "/download".equals(exchange.getRequestPath()) ? this.payloadSize : 0;
+                    exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, length);
+                    try (final var outputStream = exchange.getOutputStream()) {
+                        for (var remaining = length; remaining > 0; remaining -= CHUNK.length) {
+                            outputStream.write(CHUNK, 0, (int) Math.min(CHUNK.length, remaining));
+                        }
+                    }
+                }))
+                .build();
+        this.upstreamServer.start();
+
+        final var upstream = new Upstream();
+        upstream.name = "benchmark";
+        upstream.hosts.add("http://127.0.0.1:" + upstreamPort);
+        final var configuration = new Configuration();
+        configuration.upstreams.add(upstream);
+        final var httpInterface = new HttpInterface();
+        httpInterface.listenPort = findFreePort();
+        httpInterface.tlsProtocols = null;
+        httpInterface.upstream = upstream.name;
+        this.port = httpInterface.listenPort;
+        this.server = new Server(httpInterface, configuration);
+        this.server.start();
+
+        this.uploadRequestHead = ("POST /upload HTTP/1.1\r\nHost: 127.0.0.1\r\nContent-Length: " + this.payloadSize + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.downloadRequestHead = "GET /download HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        this.channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.channel.close();
+        this.server.stop();
+        this.upstreamServer.stop();
+    }
+
+    /**
+     * Uploads a request body of {@link #payloadSize} bytes through the gateway.
+     *
+     * @return The number of response body bytes read.
+     */
+    @Benchmark
+    public long upload() throws IOException {
+        write(this.uploadRequestHead, this.uploadRequestHead.length);
+        for (var remaining = this.payloadSize; remaining > 0; remaining -= CHUNK.length) {
+            write(CHUNK, (int) Math.min(CHUNK.length, remaining));
+        }
+        return readResponse();
+    }
+
+    /**
+     * Downloads a response body of {@link #payloadSize} bytes through the gateway.
+     *
+     * @return The number of response body bytes read.
+     */
+    @Benchmark
+    public long download() throws IOException {
+        write(this.downloadRequestHead, this.downloadRequestHead.length);
+        return readResponse();
+    }
+
+    /**
+     * Writes bytes to the connection with the gateway.
+     *
+     * @param bytes The bytes to write.
+     * @param length The number of bytes to write.
+     */
+    private void write(byte[] bytes, int length) throws IOException {
+        this.buffer.clear();
+        this.buffer.put(bytes, 0, length).flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+    }
+
+    /**
+     * Reads a response with a content length from the connection with the gateway.
+     *
+     * @return The number of body bytes read.
+     */
+    private long readResponse() throws IOException {
+        this.buffer.clear();
+        var headerEnd = -1;
+        while (headerEnd == -1) {
+            if (this.channel.read(this.buffer) == -1) {
+                throw new IOException("Connection closed by the gateway.");
+            }
+            headerEnd = indexOfHeaderEnd(this.buffer);
+        }
+        final var contentLength = parseContentLength(this.buffer, headerEnd);
+        var remaining = contentLength - (this.buffer.position() - headerEnd);
+        while (remaining > 0) {
+            this.buffer.clear();
+            final var read = this.channel.read(this.buffer);
+            if (read == -1) {
+                throw new IOException("Connection closed by the gateway.");
+            }
+            remaining -= read;
+        }
+        return contentLength;
+    }
+
+    /**
+     * Gives the index directly after the empty line that ends the response headers.
+     *
+     * @param buffer The buffer that holds the start of the response.
+     * @return The index after the headers, or -1 when the headers are not received completely.
+     */
+    private static int indexOfHeaderEnd(ByteBuffer buffer) {
+        for (var i = 3; i < buffer.position(); i++) {
+            if (buffer.get(i - 3) == '\r' && buffer.get(i - 2) == '\n' && buffer.get(i - 1) == '\r' && buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the value of the content length header without allocating.
+     *
+     * @param buffer The buffer that holds the response headers.
+     * @param headerEnd The index after the headers.
+     * @return The content length, or 0 when the header is not present.
+     */
+    private static long parseContentLength(ByteBuffer buffer, int headerEnd) {
+        final var name = "content-length:";
+        outer:
+        for (var i = 0; i < headerEnd - name.length(); i++) {
+            for (var j = 0; j < name.length(); j++) {
+                if (Character.toLowerCase(buffer.get(i + j)) != name.charAt(j)) {
+                    continue outer;
+                }
+            }
+            var value = 0L;
+            for (var k = i + name.length(); k < headerEnd; k++) {
+                final var c = buffer.get(k);
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                } else if (c == '\r') {
+                    break;
+                }
+            }
+            return value;
+        }
+        return 0;
+    }
+
+    /**
+     * Gives a tcp port that is free on the loopback interface.
+     *
+     * @return A free port.
+     */
+    private static int findFreePort() throws IOException {
+        try (final var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.http.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures the cost of a rate limit check under contention.
+ *
+ * The <code>hotKey</code> benchmarks let all threads acquire permits for the same key, which is the worst case for the
+ * compare-and-set on the state of the key. The <code>spreadKeys</code> benchmarks let each thread walk through one
+ * million keys, which is the common case of many consumers, and measures the cost of the lookup in a large map. The
+ * rate is high enough that all permits are granted, so every operation updates the state of its key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int KEY_COUNT = 1_000_000;
+
+    private RateLimiter rateLimiter;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        this.rateLimiter = new RateLimiter(1_000_000_000d, 1_000_000);
+        this.keys = new String[KEY_COUNT];
+        for (var i = 0; i < KEY_COUNT; i++) {
+            this.keys[i] = "consumer-" + i;
+            this.rateLimiter.tryAcquire(this.keys[i]);
+        }
+    }
+
+    /**
+     * The position of a thread in the keys.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position;
+
+        @Setup
+        public void setup() {
+            this.position = ThreadLocalRandom.current().nextInt(KEY_COUNT);
+        }
+
+        private int next() {
+            if (++this.position == KEY_COUNT) {
+                this.position = 0;
+            }
+            return this.position;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long hotKey1Thread() {
+        return this.rateLimiter.tryAcquire(this.keys[0]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long hotKey4Threads() {
+        return this.rateLimiter.tryAcquire(this.keys[0]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long hotKeyMaxThreads() {
+        return this.rateLimiter.tryAcquire(this.keys[0]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long spreadKeys1Thread(Cursor cursor) {
+        return this.rateLimiter.tryAcquire(this.keys[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long spreadKeys4Threads(Cursor cursor) {
+        return this.rateLimiter.tryAcquire(this.keys[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long spreadKeysMaxThreads(Cursor cursor) {
+        return this.rateLimiter.tryAcquire(this.keys[cursor.next()]);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.functions.Result;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures the creation of the <code>Result</code> of a <code>Function</code>.
+ *
+ * Every step of a pipeline creates a <code>Result</code>, which is empty for a step that only validates its input, has
+ * an output variable when the step succeeds and has an exception when it fails. The failure includes the creation of
+ * the <code>MachnosException</code>, with its stack trace, as a function does when it rejects its input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ResultBenchmark {
+
+    private NumberVariable variable;
+
+    @Setup
+    public void setup() {
+        this.variable = new NumberVariable().setName("variable").setValue(BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public boolean empty() {
+        return new Result().hasExceptions();
+    }
+
+    @Benchmark
+    public Result withOutputVariable() {
+        return new Result().addOutputVariable(this.variable);
+    }
+
+    @Benchmark
+    public boolean withException() {
+        return new Result().addException(new MachnosException(MachnosException.MISSING_VARIABLE, "variable")).hasExceptions();
+    }
+}
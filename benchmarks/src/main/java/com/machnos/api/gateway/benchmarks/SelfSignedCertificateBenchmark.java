@@ -0,0 +1,172 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.configuration.KeyAlgorithm;
+import com.machnos.api.gateway.server.http.tls.SelfSignedCertificateGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that compares the key algorithms of the self signed certificate.
+ *
+ * <code>generate</code> measures the time the certificate adds to the startup of a server with an empty keystore.
+ * <code>handshake</code> measures the number of full TLS 1.3 handshakes per second a single thread can complete with the
+ * certificate. The handshakes are performed between two in memory <code>SSLEngine</code>s, and the client does not
+ * offer a session for resumption, so each handshake requires a signature with the private key of the server.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SelfSignedCertificateBenchmark {
+
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+
+    /**
+     * The key algorithm of the certificate.
+     */
+    @Param({"EC_P256", "EC_P384", "ED25519", "RSA_2048", "RSA_4096"})
+    public KeyAlgorithm keyAlgorithm;
+
+    private SSLContext serverContext;
+    private SSLContext clientContext;
+    private final ByteBuffer clientToServer = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer serverToClient = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer applicationData = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer empty = ByteBuffer.allocate(0);
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException {
+        final var entry = SelfSignedCertificateGenerator.generate(this.keyAlgorithm, "localhost", List.of("localhost"), Duration.ofDays(1));
+        final var keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", entry.getPrivateKey(), PASSWORD, entry.getCertificateChain());
+        final var keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        this.serverContext = SSLContext.getInstance("TLS");
+        this.serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        this.clientContext = SSLContext.getInstance("TLS");
+        this.clientContext.init(null, new TrustManager[] {new TrustAllManager()}, null);
+    }
+
+    /**
+     * Generates a key pair and a self signed certificate.
+     *
+     * @return The generated entry.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public KeyStore.PrivateKeyEntry generate() {
+        return SelfSignedCertificateGenerator.generate(this.keyAlgorithm, "localhost", List.of("localhost"), Duration.ofDays(1));
+    }
+
+    /**
+     * Performs a full TLS 1.3 handshake.
+     *
+     * @return The server side <code>SSLEngine</code>.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public SSLEngine handshake() throws SSLException {
+        final var serverEngine = this.serverContext.createSSLEngine();
+        serverEngine.setUseClientMode(false);
+        // An engine without peer host and port never resumes a session.
+        final var clientEngine = this.clientContext.createSSLEngine();
+        clientEngine.setUseClientMode(true);
+        clientEngine.setEnabledProtocols(new String[] {"TLSv1.3"});
+        this.clientToServer.clear();
+        this.serverToClient.clear();
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+        while (!isFinished(clientEngine) || !isFinished(serverEngine)) {
+            transfer(clientEngine, serverEngine, this.clientToServer);
+            transfer(serverEngine, clientEngine, this.serverToClient);
+        }
+        return serverEngine;
+    }
+
+    private static boolean isFinished(SSLEngine engine) {
+        final var status = engine.getHandshakeStatus();
+        return status == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING || status == SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    /**
+     * Transfers the pending handshake records of one <code>SSLEngine</code> to the other.
+     */
+    private void transfer(SSLEngine from, SSLEngine to, ByteBuffer network) throws SSLException {
+        if (from.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+            from.wrap(this.empty, network);
+            runDelegatedTasks(from);
+        }
+        network.flip();
+        while (network.hasRemaining()) {
+            final var result = to.unwrap(network, this.applicationData);
+            this.applicationData.clear();
+            runDelegatedTasks(to);
+            if (result.getStatus() != SSLEngineResult.Status.OK || result.bytesConsumed() == 0) {
+                break;
+            }
+        }
+        network.compact();
+    }
+
+    private static void runDelegatedTasks(SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Trust manager that trusts all certificates, the benchmark is about the cost of the handshake, not the validation
+     * of the certificate.
+     */
+    private static final class TrustAllManager implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.benchmarks;
+
+import com.machnos.api.gateway.server.domain.api.variables.BooleanVariable;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.StringVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that measures looking up and adding <code>Variable</code>s in a <code>Variables</code> container of
+ * increasing size.
+ *
+ * The <code>lookup</code> benchmarks look up a <code>NumberVariable</code> that is present, a name that is not present
+ * and a name that is present with another type, which is what the functions of a pipeline do for each of their
+ * inputs. The <code>lookupSlot</code> benchmark looks up the present variable by the slot it was resolved to in
+ * advance. The <code>addAll</code> benchmark merges the output of a function into the variables of a pipeline. The
+ * <code>slots</code> container holds the variables in the slots of the pipeline, the <code>names</code> container holds
+ * them by name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VariablesBenchmark {
+
+    /**
+     * The number of <code>Variable</code>s in the container.
+     */
+    @Param({"4", "16", "64"})
+    public int size;
+
+    /**
+     * How the container holds the <code>Variable</code>s.
+     */
+    @Param({"names", "slots"})
+    public String container;
+
+    private Variables variables;
+    private Variables output;
+    private String presentName;
+    private int presentSlot;
+
+    @Setup
+    public void setup() {
+        final var slots = new VariableSlots();
+        if ("slots".equals(this.container)) {
+            for (var i = 0; i < this.size; i++) {
+                slots.add("variable" + i);
+            }
+            slots.add("result");
+        }
+        this.variables = new Variables(slots);
+        for (var i = 0; i < this.size; i++) {
+            if (i % 4 == 0) {
+                this.variables.add(new StringVariable().setName("variable" + i).setValue("value" + i));
+            } else if (i % 4 == 1) {
+                this.variables.add(new BooleanVariable().setName("variable" + i).setValue(i % 2 == 0));
+            } else {
+                this.variables.add(new NumberVariable().setName("variable" + i).setValue(new BigDecimal(i)));
+            }
+        }
+        // The last variable, which is a number variable for each size.
+        this.presentName = "variable" + (this.size - 1);
+        this.presentSlot = slots.indexOf(this.presentName);
+        this.output = new Variables()
+                .add(new NumberVariable().setName("variable2").setValue(BigDecimal.TEN))
+                .add(new NumberVariable().setName("result").setValue(BigDecimal.ONE));
+    }
+
+    @Benchmark
+    public NumberVariable lookupPresent() {
+        return this.variables.getNumberVariable(this.presentName);
+    }
+
+    @Benchmark
+    public NumberVariable lookupSlot() {
+        return this.variables.getNumberVariable(this.presentSlot);
+    }
+
+    @Benchmark
+    public NumberVariable lookupMissing() {
+        return this.variables.getNumberVariable("missing");
+    }
+
+    @Benchmark
+    public StringVariable lookupOtherType() {
+        return this.variables.getStringVariable(this.presentName);
+    }
+
+    @Benchmark
+    public Variables addAll() {
+        return this.variables.addAll(this.output);
+    }
+}
@@ -44,7 +44,9 @@ public class Launcher {
                 logger.error("Unable to load configuration", e);
             }
         }
-        final var server = new Server(configuration.management);
+        final var server = new Server(configuration.management, configuration);
+        // Drain the requests in flight when the process is terminated, for example during a rolling deploy.
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "machnos-shutdown"));
         server.start();
     }
 
@@ -0,0 +1,64 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing the access log settings of an {@link HttpInterface}. Each completed request is written as a line
+ * with the configured {@link #fields}, separated by spaces. Fields without a value are written as <code>-</code>, and
+ * text fields that may contain spaces are quoted.
+ *
+ * The requests are handed to a background writer through a fixed size buffer. When the writer cannot keep up and the
+ * buffer is full, the lines of new requests are dropped instead of slowing down the requests.
+ */
+public class AccessLog {
+
+    /**
+     * The file the access log is written to. When the file grows beyond {@link #maxFileSize} it is renamed with the
+     * suffix <code>.1</code>, and older files are shifted to the next suffix.
+     */
+    public String file = "logs/access.log";
+
+    /**
+     * The fields that are written for each request, in order.
+     */
+    public List<AccessLogField> fields = new ArrayList<>(List.of(AccessLogField.TIME, AccessLogField.CLIENT_ADDRESS, AccessLogField.METHOD, AccessLogField.PATH, AccessLogField.PROTOCOL, AccessLogField.STATUS, AccessLogField.BYTES_SENT, AccessLogField.DURATION, AccessLogField.API, AccessLogField.USER_AGENT));
+
+    /**
+     * The number of requests that can wait for the writer, rounded up to a power of two.
+     */
+    public int bufferSize = 64 * 1024;
+
+    /**
+     * The maximum number of milliseconds the lines of completed requests are held before they are written to the
+     * file.
+     */
+    public long flushInterval = 1_000;
+
+    /**
+     * The size in bytes after which the file is rolled over.
+     */
+    public long maxFileSize = 100 * 1024 * 1024;
+
+    /**
+     * The number of rolled over files that are kept.
+     */
+    public int maxFiles = 10;
+}
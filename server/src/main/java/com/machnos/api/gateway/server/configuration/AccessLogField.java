@@ -0,0 +1,89 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * The fields that can be written to the access log of an {@link HttpInterface}, see {@link AccessLog#fields}.
+ */
+public enum AccessLogField {
+
+    /**
+     * The time the request was completed, in ISO-8601 format in UTC with millisecond precision.
+     */
+    TIME,
+
+    /**
+     * The ip address of the client.
+     */
+    CLIENT_ADDRESS,
+
+    /**
+     * The http method of the request.
+     */
+    METHOD,
+
+    /**
+     * The path of the request.
+     */
+    PATH,
+
+    /**
+     * The query string of the request, without the leading <code>?</code>.
+     */
+    QUERY,
+
+    /**
+     * The protocol of the request, for example <code>HTTP/1.1</code>.
+     */
+    PROTOCOL,
+
+    /**
+     * The status code of the response.
+     */
+    STATUS,
+
+    /**
+     * The number of bytes of the response, including the headers.
+     */
+    BYTES_SENT,
+
+    /**
+     * The number of microseconds between the start of the request and the completion of the response.
+     */
+    DURATION,
+
+    /**
+     * The name of the api the request was routed to.
+     */
+    API,
+
+    /**
+     * The value of the <code>Host</code> header of the request.
+     */
+    HOST,
+
+    /**
+     * The value of the <code>User-Agent</code> header of the request.
+     */
+    USER_AGENT,
+
+    /**
+     * The value of the <code>Referer</code> header of the request.
+     */
+    REFERER
+}
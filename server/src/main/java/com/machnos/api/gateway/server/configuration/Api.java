@@ -0,0 +1,76 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing the definition of an api. Each request is matched to an api by host, method and path.
+ */
+public class Api {
+
+    /**
+     * The unique name of the api.
+     */
+    public String name;
+
+    /**
+     * The hosts this api is served on, or an empty list when the api is served on all hosts.
+     */
+    public List<String> hosts = new ArrayList<>();
+
+    /**
+     * The http methods this api is served on, or an empty list when the api is served on all methods.
+     */
+    public List<String> methods = new ArrayList<>();
+
+    /**
+     * The path of the api. A path segment can be a path parameter, for example <code>/orders/{orderId}</code>. When
+     * the last segment of the path is a <code>*</code> all paths starting with the preceding segments are matched.
+     */
+    public String path = "/";
+
+    /**
+     * The functions that are executed, in order, for each request before it is forwarded to the {@link #upstream}.
+     */
+    public List<ApiFunction> functions = new ArrayList<>();
+
+    /**
+     * The response cache settings of this api, or <code>null</code> when the responses of this api should not be
+     * cached.
+     */
+    public ApiCache cache;
+
+    /**
+     * The rate limit settings of this api, or <code>null</code> when the requests to this api should not be rate
+     * limited.
+     */
+    public ApiRateLimit rateLimit;
+
+    /**
+     * The response compression settings of this api, or <code>null</code> when the responses of this api should not
+     * be compressed.
+     */
+    public ApiCompression compression;
+
+    /**
+     * The name of the {@link Upstream} the traffic of this api is forwarded to.
+     */
+    public String upstream;
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing the response cache settings of an {@link Api}. Responses are only cached when the upstream
+ * allows it with the <code>Cache-Control</code> and <code>Expires</code> headers, or when the {@link #defaultTtl} is
+ * set.
+ */
+public class ApiCache {
+
+    /**
+     * The number of seconds a response without explicit freshness information is considered fresh, or 0 when such
+     * responses should not be cached.
+     */
+    public int defaultTtl = 0;
+
+    /**
+     * The maximum size in bytes of a response body that is stored in the cache. Larger responses are forwarded to the
+     * client without being cached.
+     */
+    public int maxEntrySize = 1024 * 1024;
+
+    /**
+     * Whether concurrent identical requests for a response that is not in the cache, or that must be revalidated,
+     * should share a single request to the upstream. The requests that wait are served from the cached response once
+     * it is stored, or are forwarded to the upstream themselves when the response could not be stored.
+     */
+    public boolean coalesce = false;
+
+    /**
+     * The names of the request headers, next to the method and url, that must be equal for requests to be coalesced,
+     * for example <code>Accept-Encoding</code>.
+     */
+    public List<String> coalesceHeaders = new ArrayList<>();
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing the response compression settings of an {@link Api}. A response is compressed when the client
+ * accepts one of the {@link #encodings}, the upstream did not compress it already, its content type matches one of the
+ * {@link #contentTypes} and its body is not known to be smaller than the {@link #minimumSize}.
+ */
+public class ApiCompression {
+
+    /**
+     * The encodings the responses can be compressed with, in order of preference. Supported are <code>gzip</code> and
+     * <code>deflate</code>.
+     */
+    public List<String> encodings = new ArrayList<>(List.of("gzip", "deflate"));
+
+    /**
+     * The compression level, from 1 for the fastest compression to 9 for the best compression.
+     */
+    public int level = 6;
+
+    /**
+     * The minimum size in bytes of a response body that is compressed. Responses without a <code>Content-Length</code>
+     * header are always compressed.
+     */
+    public int minimumSize = 1024;
+
+    /**
+     * The content types of the responses that are compressed. A content type that ends with <code>/*</code>, for
+     * example <code>text/*</code>, matches all subtypes of the type.
+     */
+    public List<String> contentTypes = new ArrayList<>(List.of("text/*", "application/json", "application/problem+json", "application/javascript", "application/xml", "image/svg+xml"));
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class representing a step in the pipeline of an api. Each step executes a function with its own configuration.
+ */
+public class ApiFunction {
+
+    /**
+     * The id or name of the function to execute, for example <code>Math</code>.
+     */
+    public String function;
+
+    /**
+     * The configuration settings that are passed to the function.
+     */
+    public Map<String, String> configuration = new HashMap<>();
+}
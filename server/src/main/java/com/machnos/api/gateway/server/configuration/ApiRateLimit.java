@@ -0,0 +1,52 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * Class representing the rate limit settings of an {@link Api}. Requests are counted per consumer, and a consumer that
+ * exceeds the rate receives a <code>429 Too Many Requests</code> response.
+ *
+ * The consumer of a request is identified by the value of the {@link #keyVariable}, the value of the
+ * {@link #keyHeader}, or the ip address of the client, in that order. Requests without a value for the configured
+ * variable or header are counted by ip address of the client.
+ */
+public class ApiRateLimit {
+
+    /**
+     * The sustained number of requests per second a consumer is allowed to execute.
+     */
+    public double rate = 10;
+
+    /**
+     * The number of requests a consumer is allowed to execute at once after being idle.
+     */
+    public int burst = 10;
+
+    /**
+     * The name of the request header that identifies the consumer, for example <code>X-Api-Key</code>, or
+     * <code>null</code> when the consumer is not identified by a header.
+     */
+    public String keyHeader;
+
+    /**
+     * The name of the <code>StringVariable</code> of the function pipeline that identifies the consumer, or
+     * <code>null</code> when the consumer is not identified by a variable. When set, the rate limit is applied after
+     * the function pipeline is executed.
+     */
+    public String keyVariable;
+}
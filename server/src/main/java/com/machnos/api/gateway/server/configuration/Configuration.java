@@ -22,6 +22,8 @@ import org.yaml.snakeyaml.constructor.Constructor;
 
 import java.io.*;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Data object that holds all configuration that is (de)serialized as yaml file. This class will reflect the
@@ -50,6 +52,27 @@ public final class Configuration {
      */
     public HttpInterface management = new HttpInterface();
 
+    /**
+     * The upstreams the Api Gateway can forward traffic to.
+     */
+    public List<Upstream> upstreams = new ArrayList<>();
+
+    /**
+     * The apis that are served by the Api Gateway.
+     */
+    public List<Api> apis = new ArrayList<>();
+
+    /**
+     * Gives the <code>Upstream</code> with the given name.
+     *
+     * @param name The name of the <code>Upstream</code>.
+     * @return The <code>Upstream</code> with the given name, or <code>null</code> when no such <code>Upstream</code>
+     * is configured.
+     */
+    public Upstream getUpstream(String name) {
+        return this.upstreams.stream().filter(p -> p.name != null && p.name.equals(name)).findFirst().orElse(null);
+    }
+
     /**
      * Loads the <code>Configuration</code> object from file.
      *
@@ -0,0 +1,42 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * The modes in which the function pipelines of the apis on an {@link HttpInterface} can be executed.
+ */
+public enum ExecutionMode {
+
+    /**
+     * The pipeline is executed on the I/O thread that received the request. This mode has the least overhead, but
+     * should only be used when none of the functions block.
+     */
+    IO_THREAD,
+
+    /**
+     * The pipeline is executed on the worker thread pool of the interface. The number of requests that can block at
+     * the same time is limited by the size of the pool.
+     */
+    WORKER,
+
+    /**
+     * The pipeline is executed on a new virtual thread for each request, so blocking functions do not hold on to a
+     * platform thread. When the JVM does not support virtual threads the {@link #WORKER} mode is used.
+     */
+    VIRTUAL_THREAD
+}
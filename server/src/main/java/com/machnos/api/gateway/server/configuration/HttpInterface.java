@@ -48,6 +48,135 @@ public class HttpInterface {
     public String keystoreType = "JKS";
     public String serverEntryPassword;
 
+    /**
+     * The minimum number of milliseconds between two checks of the keystore for changed key material. Changed key
+     * material is used for new handshakes without restarting the listeners. A value of 0 disables the checks.
+     */
+    public long keystoreReloadInterval = 30_000;
+
+    /**
+     * The key algorithm of the self signed certificate that is generated when the keystore holds no key material.
+     */
+    public KeyAlgorithm selfSignedKeyAlgorithm = KeyAlgorithm.EC_P256;
+
+    /**
+     * The maximum number of TLS sessions that are cached for resumption, or 0 when there is no limit.
+     */
+    public int tlsSessionCacheSize = 20_480;
+
+    /**
+     * The number of seconds a cached TLS session can be resumed, or 0 when there is no limit.
+     */
+    public int tlsSessionTimeout = 86_400;
+
+    /**
+     * Whether TLS sessions can be resumed with stateless session tickets, so clients can resume a session that is no
+     * longer in the session cache. Session tickets are supported as of Java 13.
+     */
+    public boolean tlsSessionTickets = true;
+
+    /**
+     * The number of seconds after which the key that protects the session tickets is replaced by a new key.
+     */
+    public int tlsSessionTicketKeyRotation = 3_600;
+
+    /**
+     * The name of the {@link Upstream} all traffic on this interface is forwarded to, or <code>null</code> when traffic
+     * should not be forwarded.
+     */
+    public String upstream;
+
+    /**
+     * The size in bytes of the buffers that are used to read and write the traffic on this interface. Request and
+     * response bodies are relayed between the client and the upstream in chunks of this size, so the memory used per
+     * request does not grow with the size of the body.
+     */
+    public int bufferSize = 16 * 1024;
+
+    /**
+     * Whether the buffers should be allocated outside the heap. Direct buffers can be handed to the socket without
+     * copying them first.
+     */
+    public boolean directBuffers = true;
+
+    /**
+     * The number of I/O threads that accept connections and read and write the traffic on this interface, or 0 for one
+     * thread per processor with a minimum of 2.
+     */
+    public int ioThreads = 0;
+
+    /**
+     * The number of worker threads that execute blocking tasks, such as function pipelines in the
+     * <code>WORKER</code> execution mode, or 0 for 8 threads per I/O thread.
+     */
+    public int workerThreads = 0;
+
+    /**
+     * The maximum number of connections that are waiting in the accept queue of a listener. A larger queue absorbs
+     * bursts of new connections instead of refusing them.
+     */
+    public int acceptBacklog = 1000;
+
+    /**
+     * The number of I/O threads that may accept connections at the same time, or 0 to let all I/O threads accept
+     * connections whenever they are ready. With balancing, an I/O thread hands the right to accept over to another I/O
+     * thread after it accepted {@link #acceptBalancingConnections} connections, so new connections are spread evenly
+     * across the I/O threads instead of piling up on the thread that happens to wake up first. Must be smaller than
+     * the number of I/O threads.
+     */
+    public int acceptBalancingTokens = 0;
+
+    /**
+     * The number of connections an I/O thread accepts before it hands the right to accept over to another I/O thread.
+     */
+    public int acceptBalancingConnections = 16;
+
+    /**
+     * The maximum number of bytes of response bodies the response cache of this interface stores off heap. The cache is
+     * shared by all apis on this interface that have caching enabled.
+     */
+    public long responseCacheSize = 64 * 1024 * 1024;
+
+    /**
+     * The number of milliseconds between two removals of the rate limit state of idle consumers. A consumer is idle
+     * when it has been allowed its full burst again.
+     */
+    public long rateLimitEvictionInterval = 10_000;
+
+    /**
+     * The mode in which the function pipelines of the apis on this interface are executed.
+     */
+    public ExecutionMode executionMode = ExecutionMode.WORKER;
+
+    /**
+     * The access log settings of this interface, or <code>null</code> when the requests should not be logged.
+     */
+    public AccessLog accessLog;
+
+    /**
+     * The path on which the metrics of this interface are served in the Prometheus text format, or <code>null</code>
+     * when no metrics should be recorded. The path takes precedence over the apis on this interface.
+     */
+    public String metricsPath = "/metrics";
+
+    /**
+     * The tracing settings of this interface, or <code>null</code> when no spans should be recorded. The trace context
+     * headers of the requests are forwarded to the upstreams either way.
+     */
+    public Tracing tracing;
+
+    /**
+     * The maximum number of milliseconds the requests in flight are waited for when the server is stopped. The
+     * listeners are closed before the requests are drained, so a new process can take over the port in the meantime.
+     */
+    public long drainTimeout = 30_000;
+
+    /**
+     * The maximum number of milliseconds binding the listeners is retried while the port is still in use, for example
+     * by the previous process that is draining its requests during a restart, or 0 to fail right away.
+     */
+    public long bindTimeout = 0;
+
     /**
      * Returns the keystore password as char array.
      *
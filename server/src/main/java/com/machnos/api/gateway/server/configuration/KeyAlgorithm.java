@@ -0,0 +1,54 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * The key algorithms that can be used for the self signed certificate of an {@link HttpInterface}. The algorithm
+ * determines both the time it takes to generate the key and the cost of the signature the server computes on each
+ * full TLS handshake.
+ */
+public enum KeyAlgorithm {
+
+    /**
+     * An elliptic curve key on the NIST P-256 curve. Generating the key and signing with it takes a fraction of the
+     * time of an RSA key with a comparable strength, and the key is supported by all TLS clients.
+     */
+    EC_P256,
+
+    /**
+     * An elliptic curve key on the NIST P-384 curve.
+     */
+    EC_P384,
+
+    /**
+     * An Ed25519 key. The JDK supports Ed25519 certificates in TLS as of Java 15, and not all TLS clients support
+     * them.
+     */
+    ED25519,
+
+    /**
+     * A 2048 bit RSA key.
+     */
+    RSA_2048,
+
+    /**
+     * A 4096 bit RSA key. Generating the key may take seconds and each full handshake requires an expensive
+     * signature.
+     */
+    RSA_4096
+}
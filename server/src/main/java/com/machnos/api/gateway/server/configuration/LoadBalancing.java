@@ -0,0 +1,46 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * Enum representing the strategies that select the host of an {@link Upstream} a request is forwarded to.
+ */
+public enum LoadBalancing {
+
+    /**
+     * The hosts are selected in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The hosts are selected in turn, each in proportion to its weight.
+     */
+    WEIGHTED_ROUND_ROBIN,
+
+    /**
+     * The host with the fewest requests in flight is selected.
+     */
+    LEAST_REQUEST,
+
+    /**
+     * Two random hosts are compared, and the one with the lowest product of its latency (an exponentially weighted
+     * moving average that follows peaks immediately) and its requests in flight is selected. Slow hosts receive less
+     * traffic without being starved, because the latency of an unused host decays over time.
+     */
+    P2C_EWMA
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * Class representing the tracing settings of an {@link HttpInterface}. The <code>traceparent</code> and
+ * <code>tracestate</code> headers of the W3C Trace Context recommendation are propagated to the upstreams, and the
+ * spans of the sampled requests are written to a file in the OTLP/JSON format, one export request per line.
+ *
+ * Whether a request is sampled is decided when it arrives. Requests that carry a <code>traceparent</code> header follow
+ * the sampled flag of the caller when {@link #parentBased} is set; other requests are sampled with the
+ * {@link #sampleRatio}. The sampled requests are limited to {@link #maxTracesPerSecond}. Requests that are not sampled
+ * create no spans at all.
+ */
+public class Tracing {
+
+    /**
+     * The file the spans are written to. When the file grows beyond {@link #maxFileSize} it is renamed with the suffix
+     * <code>.1</code>, and older files are shifted to the next suffix.
+     */
+    public String file = "logs/traces.jsonl";
+
+    /**
+     * The value of the <code>service.name</code> resource attribute of the spans.
+     */
+    public String serviceName = "machnos-api-gateway";
+
+    /**
+     * The fraction of the requests without a sampled parent that are sampled, between 0 and 1.
+     */
+    public double sampleRatio = 0.01;
+
+    /**
+     * Whether the sampled flag of the <code>traceparent</code> header of a request decides whether the request is
+     * sampled.
+     */
+    public boolean parentBased = true;
+
+    /**
+     * The maximum number of requests per second that are sampled, or 0 for no limit.
+     */
+    public double maxTracesPerSecond = 100;
+
+    /**
+     * The number of finished spans that can wait for the exporter. Spans are dropped when the exporter cannot keep up.
+     */
+    public int bufferSize = 8192;
+
+    /**
+     * The maximum number of spans that are written as a single export request.
+     */
+    public int batchSize = 512;
+
+    /**
+     * The maximum number of milliseconds finished spans are held before they are written to the file.
+     */
+    public long flushInterval = 1_000;
+
+    /**
+     * The size in bytes after which the file is rolled over.
+     */
+    public long maxFileSize = 100 * 1024 * 1024;
+
+    /**
+     * The number of rolled over files that are kept.
+     */
+    public int maxFiles = 10;
+}
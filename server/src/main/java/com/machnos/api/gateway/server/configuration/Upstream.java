@@ -0,0 +1,135 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Class representing an upstream. An upstream is a named group of backend hosts the Api Gateway forwards traffic to.
+ */
+public class Upstream {
+
+    /**
+     * The unique name of the upstream.
+     */
+    public String name;
+
+    /**
+     * The uri's of the hosts that serve this upstream, for example <code>http://10.0.0.1:8080</code>.
+     */
+    public List<String> hosts = new ArrayList<>();
+
+    /**
+     * The strategy that selects the host a request is forwarded to.
+     */
+    public LoadBalancing loadBalancing = LoadBalancing.ROUND_ROBIN;
+
+    /**
+     * The weights of the {@link #hosts}, mapped by host. Hosts without a weight have weight 1. The weights are used by
+     * the {@link LoadBalancing#WEIGHTED_ROUND_ROBIN} and {@link LoadBalancing#P2C_EWMA} strategies.
+     */
+    public Map<String, Integer> weights = new HashMap<>();
+
+    /**
+     * The maximum number of connections that are kept open to a single host, per I/O thread.
+     */
+    public int maxConnectionsPerThread = 20;
+
+    /**
+     * The maximum number of requests that are sent over a single connection before it is closed, or 0 when there is no
+     * limit.
+     */
+    public int maxRequestsPerConnection = 1000;
+
+    /**
+     * The number of milliseconds a connection may stay idle in the pool before it is closed, or 0 when idle
+     * connections should never be closed.
+     */
+    public long idleTimeout = 60_000;
+
+    /**
+     * The maximum number of requests, per I/O thread, that may wait for a connection when all connections are in use.
+     */
+    public int maxQueueSize = 1000;
+
+    /**
+     * The maximum number of milliseconds a request may wait for a connection.
+     */
+    public long queueTimeout = 5_000;
+
+    /**
+     * The maximum number of milliseconds a request to the upstream may take, or -1 when there is no limit.
+     */
+    public int maxRequestTime = 60_000;
+
+    /**
+     * Whether HTTP/2 connections should be opened to the hosts of this upstream. For https hosts HTTP/2 is negotiated
+     * during the TLS handshake, for http hosts the connection is upgraded to HTTP/2 (h2c). Hosts that do not support
+     * HTTP/2 are served over HTTP/1.1 connections. Hosts that are known to support h2c can be configured with the
+     * <code>h2c-prior</code> scheme to skip the upgrade.
+     */
+    public boolean http2 = false;
+
+    /**
+     * The maximum number of concurrent requests that are multiplexed over a single HTTP/2 connection.
+     */
+    public int maxConcurrentStreams = 100;
+
+    /**
+     * The circuit breaker settings of the hosts of this upstream, or <code>null</code> when the hosts should not be
+     * guarded by a circuit breaker.
+     */
+    public UpstreamCircuitBreaker circuitBreaker;
+
+    /**
+     * Gives the {@link #hosts} as <code>URI</code>s.
+     *
+     * @return The <code>URI</code>s of the hosts.
+     * @throws MachnosException with code {@link MachnosException#INVALID_UPSTREAM_HOST} when a host is not a valid
+     * http or https uri.
+     */
+    public List<URI> getHostUris() {
+        return this.hosts.stream().map(this::toUri).collect(Collectors.toList());
+    }
+
+    /**
+     * Converts a host to an <code>URI</code>.
+     *
+     * @param host The host to convert.
+     * @return The <code>URI</code> of the host.
+     */
+    private URI toUri(String host) {
+        try {
+            final var uri = new URI(host);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                throw new MachnosException(MachnosException.INVALID_UPSTREAM_HOST, this.name, host);
+            }
+            return uri;
+        } catch (URISyntaxException e) {
+            throw new MachnosException(MachnosException.INVALID_UPSTREAM_HOST, this.name, host);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.configuration;
+
+/**
+ * Class representing the circuit breaker settings of an {@link Upstream}. Each host of the upstream has its own
+ * circuit breaker. A host whose circuit is open is ejected from the load balancing, so requests are sent to the other
+ * hosts, or fail fast with a <code>503 Service Unavailable</code> response when the circuits of all hosts are open.
+ *
+ * A response with a 5xx status code, a failed connect and a request that timed out waiting for a connection count as
+ * a failure. A request that takes longer than the {@link #slowCallDuration} counts as a slow call.
+ */
+public class UpstreamCircuitBreaker {
+
+    /**
+     * The number of milliseconds of the rolling window the failure rate and slow call rate are calculated over.
+     */
+    public long window = 10_000;
+
+    /**
+     * The minimum number of requests in the rolling window before the rates are evaluated.
+     */
+    public int minimumRequests = 20;
+
+    /**
+     * The percentage of failed requests in the rolling window at which the circuit opens.
+     */
+    public int failureRateThreshold = 50;
+
+    /**
+     * The number of milliseconds after which a request counts as a slow call, or 0 when the latency is not evaluated.
+     */
+    public long slowCallDuration = 0;
+
+    /**
+     * The percentage of slow calls in the rolling window at which the circuit opens.
+     */
+    public int slowCallRateThreshold = 100;
+
+    /**
+     * The number of consecutive failures at which the circuit opens, regardless of the rolling window, or 0 when
+     * consecutive failures are not evaluated.
+     */
+    public int consecutiveFailures = 5;
+
+    /**
+     * The number of milliseconds the circuit stays open before probe requests are let through. The duration doubles
+     * each time the circuit opens again after a failed probe, up to the {@link #maxOpenDuration}.
+     */
+    public long openDuration = 5_000;
+
+    /**
+     * The maximum number of milliseconds the circuit stays open.
+     */
+    public long maxOpenDuration = 60_000;
+
+    /**
+     * The number of probe requests that must succeed while the circuit is half open before it closes.
+     */
+    public int halfOpenRequests = 3;
+}
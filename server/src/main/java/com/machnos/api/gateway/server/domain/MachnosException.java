@@ -24,9 +24,18 @@ public class MachnosException extends RuntimeException {
 
     // 100_* reserved for common errors.
     public static final int WRAPPED_EXCEPTION = 100_000;
+    public static final int UNMODIFIABLE_VARIABLE_SLOTS = 100_001;
 
     // 200_* reserved for configuration errors.
     public static final int INVALID_INTERFACE = 200_000;
+    public static final int INVALID_UPSTREAM = 200_001;
+    public static final int INVALID_UPSTREAM_HOST = 200_002;
+    public static final int DUPLICATE_ROUTE = 200_003;
+    public static final int INVALID_API_PATH = 200_004;
+    public static final int UNKNOWN_FUNCTION = 200_005;
+    public static final int INVALID_RATE_LIMIT = 200_006;
+    public static final int INVALID_COMPRESSION = 200_007;
+    public static final int INVALID_FUNCTION_CONFIGURATION = 200_008;
 
     // 301_* reserved for function errors.
     public static final int MISSING_VARIABLE = 301_000;
@@ -54,11 +63,30 @@ public class MachnosException extends RuntimeException {
         this.variables = null;
     }
 
+    /**
+     * Constructs a <code>MachnosException</code> without a stack trace when <code>writableStackTrace</code> is
+     * <code>false</code>. Suppressed exceptions are disabled either way.
+     */
+    protected MachnosException(int errorCode, boolean writableStackTrace, String... variables) {
+        super(null, null, false, writableStackTrace);
+        this.errorCode = errorCode;
+        this.variables = variables;
+    }
+
 
     public int getErrorCode() {
         return errorCode;
     }
 
+    /**
+     * Gives the arguments of the error, such as the name of a missing variable.
+     *
+     * @return A copy of the arguments, or an empty array when the error has no arguments.
+     */
+    public String[] getVariables() {
+        return this.variables == null ? new String[0] : this.variables.clone();
+    }
+
     @Override
     public String toString() {
         return getClass().getName() + ": Reason " + this.errorCode;
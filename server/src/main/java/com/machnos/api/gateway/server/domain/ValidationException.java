@@ -0,0 +1,35 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain;
+
+/**
+ * A <code>MachnosException</code> that reports input that fails validation, such as a variable that is missing
+ * when a function is executed. These failures are expected to occur for a lot of requests, so a
+ * <code>ValidationException</code> holds only its error code and arguments. It has no stack trace, because the stack
+ * trace would point to the validation code rather than to a fault, and capturing it would cost more than the
+ * validation itself.
+ *
+ * A <code>ValidationException</code> is immutable, so an instance for an error that is known in advance, such as a
+ * missing variable with a configured name, can be created once and shared by all executions.
+ */
+public final class ValidationException extends MachnosException {
+
+    public ValidationException(int errorCode, String... variables) {
+        super(errorCode, false, variables);
+    }
+}
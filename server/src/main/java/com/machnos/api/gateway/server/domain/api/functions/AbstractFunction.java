@@ -18,6 +18,7 @@
 package com.machnos.api.gateway.server.domain.api.functions;
 
 import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.ValidationException;
 import com.machnos.api.gateway.server.domain.api.variables.Variable;
 
 /**
@@ -36,7 +37,7 @@ public abstract class AbstractFunction implements Function {
     protected boolean requireVariable(String variableName, Variable<?,?> variable, Result result) {
         var hasError = false;
         if (variable == null) {
-            result.addException(new MachnosException(MachnosException.MISSING_VARIABLE, variableName));
+            result.addException(new ValidationException(MachnosException.MISSING_VARIABLE, variableName));
             hasError = true;
         }
         return hasError;
@@ -53,14 +54,52 @@ public abstract class AbstractFunction implements Function {
     protected boolean requireVariableWithValue(String variableName, Variable<?,?> variable, Result result) {
         var hasError = false;
         if (variable == null) {
-            result.addException(new MachnosException(MachnosException.MISSING_VARIABLE, variableName));
+            result.addException(new ValidationException(MachnosException.MISSING_VARIABLE, variableName));
             hasError = true;
-        }
-        if (!variable.hasValue()) {
-            result.addException(new MachnosException(MachnosException.MISSING_VALUE, variableName));
+        } else if (!variable.hasValue()) {
+            result.addException(new ValidationException(MachnosException.MISSING_VALUE, variableName));
             hasError = true;
         }
         return hasError;
     }
 
+    /**
+     * Method that checks if a variable is present. If not, a prepared <code>ValidationException</code> will be added
+     * to the <code>Result</code> instance. Compiled functions prepare the <code>ValidationException</code>s for their
+     * configured variables once, so a failed validation does not create a new one.
+     *
+     * @param variable The actual <code>Variable</code> that must be present.
+     * @param missingVariable The <code>ValidationException</code> to add when the <code>Variable</code> is missing.
+     * @param result The <code>Result</code> instance that will be used to add the <code>ValidationException</code> to.
+     * @return <code>true</code> when a <code>ValidationException</code> is added to the <code>Result</code>, <code>false</code> otherwise.
+     */
+    protected boolean requireVariable(Variable<?,?> variable, ValidationException missingVariable, Result result) {
+        if (variable == null) {
+            result.addException(missingVariable);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method that checks if a variable is present and has a value. If not, a prepared <code>ValidationException</code>
+     * will be added to the <code>Result</code> instance.
+     *
+     * @param variable The actual <code>Variable</code> that must be present and must contain a value.
+     * @param missingVariable The <code>ValidationException</code> to add when the <code>Variable</code> is missing.
+     * @param missingValue The <code>ValidationException</code> to add when the <code>Variable</code> has no value.
+     * @param result The <code>Result</code> instance that will be used to add the <code>ValidationException</code> to.
+     * @return <code>true</code> when a <code>ValidationException</code> is added to the <code>Result</code>, <code>false</code> otherwise.
+     */
+    protected boolean requireVariableWithValue(Variable<?,?> variable, ValidationException missingVariable, ValidationException missingValue, Result result) {
+        if (variable == null) {
+            result.addException(missingVariable);
+            return true;
+        } else if (!variable.hasValue()) {
+            result.addException(missingValue);
+            return true;
+        }
+        return false;
+    }
+
 }
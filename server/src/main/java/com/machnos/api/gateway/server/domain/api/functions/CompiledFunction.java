@@ -0,0 +1,37 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+
+/**
+ * A <code>Function</code> that is compiled with its configuration by {@link Function#compile}. The configuration is
+ * validated and parsed once, so executing the compiled function only does the actual work. A
+ * <code>CompiledFunction</code> is immutable and can be executed by many threads at the same time.
+ */
+@FunctionalInterface
+public interface CompiledFunction {
+
+    /**
+     * Execute the compiled <code>Function</code>.
+     *
+     * @param inputVariables The input <code>Variables</code>.
+     * @return The <code>Result</code> of the execution.
+     */
+    Result execute(Variables inputVariables);
+}
@@ -0,0 +1,443 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.ValidationException;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+
+import java.math.BigDecimal;
+
+/**
+ * An arithmetic expression over <code>NumberVariable</code>s. The expression is parsed once into an abstract syntax
+ * tree, which is interpreted for the <code>Variables</code> of each request: each node evaluates its children and
+ * calculates its own operation. No bytecode is generated for the expression.
+ *
+ * The expression supports the operators <code>+</code>, <code>-</code>, <code>*</code> and <code>/</code> with the
+ * usual precedence, unary minus, parentheses, number literals, the names of <code>NumberVariable</code>s and the
+ * functions <code>round(x, scale)</code>, <code>abs(x)</code>, <code>min(x, y)</code> and <code>max(x, y)</code>.
+ *
+ * Each operation is calculated in the same way as the <code>MathFunction</code>: the outcome takes the scale,
+ * precision and rounding mode of its left operand, so an expression gives the same outcome as the chain of
+ * <code>MathFunction</code>s it replaces. <code>round</code> changes the scale of its outcome. Literals have the
+ * default scale of a <code>NumberVariable</code>, or their own scale when it is larger. The outcome of an operation
+ * on an intermediate outcome is calculated in place, so only operations on variables and literals allocate a new
+ * <code>NumberVariable</code>. Literals are shared by all evaluations and are never changed.
+ */
+abstract class Expression {
+
+    /**
+     * The operators and functions of an expression.
+     */
+    private enum Operator {
+        ADD, SUBTRACT, MULTIPLY, DIVIDE, NEGATE, ROUND, ABSOLUTE, MINIMUM, MAXIMUM
+    }
+
+    /**
+     * The <code>NumberVariable</code> that negates a value by multiplication.
+     */
+    private static final NumberVariable MINUS_ONE = new NumberVariable().setScale(0).setValue(BigDecimal.ONE.negate()).materialize();
+
+    /**
+     * Whether the <code>NumberVariable</code> the evaluation gives is created by the evaluation, as opposed to a
+     * variable or a literal that must not be changed.
+     */
+    private final boolean owned;
+
+    private Expression(boolean owned) {
+        this.owned = owned;
+    }
+
+    /**
+     * Parses an expression into its syntax tree.
+     *
+     * @param expression The expression.
+     * @param variableSlots The <code>VariableSlots</code> to resolve the names of the variables to, or <code>null</code>
+     *                      when the variables should be accessed by their name.
+     * @return The root node of the syntax tree.
+     * @throws MachnosException with code {@link MachnosException#INVALID_FUNCTION_CONFIGURATION} when the expression
+     * is not valid.
+     */
+    static Expression parse(String expression, VariableSlots variableSlots) {
+        final var parser = new Parser(expression, variableSlots);
+        final var root = parser.parseExpression();
+        parser.skipWhitespace();
+        if (parser.position != expression.length()) {
+            throw parser.error();
+        }
+        return root;
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param variables The <code>Variables</code> that hold the variables of the expression.
+     * @return The outcome, which the caller may change when {@link #isOwned()} is <code>true</code>.
+     * @throws MachnosException with code {@link MachnosException#MISSING_VARIABLE} or
+     * {@link MachnosException#MISSING_VALUE} when a variable of the expression is not present or has no value.
+     */
+    abstract NumberVariable evaluate(Variables variables);
+
+    /**
+     * Gives whether the outcome of the evaluation is created by the evaluation.
+     *
+     * @return <code>true</code> when the outcome is created by the evaluation, <code>false</code> when it is a variable
+     * or a literal.
+     */
+    boolean isOwned() {
+        return this.owned;
+    }
+
+    /**
+     * Creates a copy of a <code>NumberVariable</code> with the same value, scale, precision and rounding mode.
+     *
+     * @param source The <code>NumberVariable</code> to copy.
+     * @return The copy.
+     */
+    static NumberVariable copy(NumberVariable source) {
+        return new NumberVariable()
+                .setScale(source.getScale())
+                .setPrecision(source.getPrecision())
+                .setRoundingMode(source.getRoundingMode())
+                .assign(source);
+    }
+
+    /**
+     * A variable of the expression. When the expression is parsed for a pipeline the
+     * <code>ValidationException</code>s are prepared, so a missing variable does not create a new one. Otherwise they
+     * are only created when the variable is missing.
+     */
+    private static final class VariableExpression extends Expression {
+
+        private final VariableSlots variableSlots;
+        private final int slot;
+        private final String name;
+        private final ValidationException missingVariable;
+        private final ValidationException missingValue;
+
+        private VariableExpression(VariableSlots variableSlots, String name) {
+            super(false);
+            this.variableSlots = variableSlots;
+            this.slot = variableSlots == null ? -1 : variableSlots.add(name);
+            this.name = name;
+            this.missingVariable = variableSlots == null ? null : new ValidationException(MachnosException.MISSING_VARIABLE, name);
+            this.missingValue = variableSlots == null ? null : new ValidationException(MachnosException.MISSING_VALUE, name);
+        }
+
+        @Override
+        NumberVariable evaluate(Variables variables) {
+            final var variable = this.variableSlots != null && variables.usesSlots(this.variableSlots) ? variables.getNumberVariable(this.slot) : variables.getNumberVariable(this.name);
+            if (variable == null) {
+                throw this.missingVariable == null ? new ValidationException(MachnosException.MISSING_VARIABLE, this.name) : this.missingVariable;
+            }
+            if (!variable.hasValue()) {
+                throw this.missingValue == null ? new ValidationException(MachnosException.MISSING_VALUE, this.name) : this.missingValue;
+            }
+            return variable;
+        }
+    }
+
+    /**
+     * A literal of the expression. The constant is materialized before it is shared, so evaluations only read it.
+     */
+    private static final class LiteralExpression extends Expression {
+
+        private final NumberVariable constant;
+
+        private LiteralExpression(NumberVariable constant) {
+            super(false);
+            this.constant = constant.materialize();
+        }
+
+        @Override
+        NumberVariable evaluate(Variables variables) {
+            return this.constant;
+        }
+    }
+
+    /**
+     * An operation with two operands.
+     */
+    private static final class BinaryExpression extends Expression {
+
+        private final Operator operator;
+        private final Expression left;
+        private final Expression right;
+
+        private BinaryExpression(Operator operator, Expression left, Expression right) {
+            super(true);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        NumberVariable evaluate(Variables variables) {
+            final var leftOutcome = this.left.evaluate(variables);
+            final var right = this.right.evaluate(variables);
+            final var outcome = this.left.isOwned() ? leftOutcome : copy(leftOutcome);
+            switch (this.operator) {
+                case ADD:
+                    return outcome.add(right);
+                case SUBTRACT:
+                    return outcome.subtract(right);
+                case MULTIPLY:
+                    return outcome.multiply(right);
+                case DIVIDE:
+                    return outcome.divide(right);
+                case MINIMUM:
+                    return outcome.minimum(right);
+                default:
+                    return outcome.maximum(right);
+            }
+        }
+    }
+
+    /**
+     * An operation with one operand.
+     */
+    private static final class UnaryExpression extends Expression {
+
+        private final Operator operator;
+        private final int scale;
+        private final Expression operand;
+
+        private UnaryExpression(Operator operator, int scale, Expression operand) {
+            super(true);
+            this.operator = operator;
+            this.scale = scale;
+            this.operand = operand;
+        }
+
+        @Override
+        NumberVariable evaluate(Variables variables) {
+            final var operandOutcome = this.operand.evaluate(variables);
+            final var outcome = this.operand.isOwned() ? operandOutcome : copy(operandOutcome);
+            switch (this.operator) {
+                case NEGATE:
+                    return outcome.multiply(MINUS_ONE);
+                case ROUND:
+                    return outcome.setScale(this.scale);
+                default:
+                    return outcome.absolute();
+            }
+        }
+    }
+
+    /**
+     * Recursive descent parser that builds the syntax tree of the expression.
+     */
+    private static final class Parser {
+
+        private final String expression;
+        private final VariableSlots variableSlots;
+        private int position;
+
+        private Parser(String expression, VariableSlots variableSlots) {
+            this.expression = expression;
+            this.variableSlots = variableSlots;
+        }
+
+        /**
+         * Parses the terms of an expression, separated by <code>+</code> or <code>-</code>.
+         */
+        private Expression parseExpression() {
+            var left = parseTerm();
+            while (true) {
+                if (accept('+')) {
+                    left = binary(Operator.ADD, left, parseTerm());
+                } else if (accept('-')) {
+                    left = binary(Operator.SUBTRACT, left, parseTerm());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        /**
+         * Parses the factors of a term, separated by <code>*</code> or <code>/</code>.
+         */
+        private Expression parseTerm() {
+            var left = parseFactor();
+            while (true) {
+                if (accept('*')) {
+                    left = binary(Operator.MULTIPLY, left, parseFactor());
+                } else if (accept('/')) {
+                    left = binary(Operator.DIVIDE, left, parseFactor());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        /**
+         * Parses a factor, which is a negated factor, a parenthesized expression, a literal, a function or a variable.
+         */
+        private Expression parseFactor() {
+            if (accept('-')) {
+                return unary(Operator.NEGATE, 0, parseFactor());
+            }
+            if (accept('(')) {
+                final var expression = parseExpression();
+                expect(')');
+                return expression;
+            }
+            skipWhitespace();
+            if (this.position < this.expression.length() && isLiteralCharacter(this.expression.charAt(this.position))) {
+                return literal(parseLiteral());
+            }
+            final var name = parseName();
+            if (!accept('(')) {
+                return new VariableExpression(this.variableSlots, name);
+            }
+            switch (name) {
+                case "round": {
+                    final var operand = parseExpression();
+                    expect(',');
+                    skipWhitespace();
+                    final var negative = accept('-');
+                    final int scale;
+                    try {
+                        scale = new BigDecimal(parseLiteral()).intValueExact();
+                    } catch (ArithmeticException e) {
+                        throw error();
+                    }
+                    expect(')');
+                    return unary(Operator.ROUND, negative ? -scale : scale, operand);
+                }
+                case "abs": {
+                    final var operand = parseExpression();
+                    expect(')');
+                    return unary(Operator.ABSOLUTE, 0, operand);
+                }
+                case "min":
+                case "max": {
+                    final var left = parseExpression();
+                    expect(',');
+                    final var right = parseExpression();
+                    expect(')');
+                    return binary("min".equals(name) ? Operator.MINIMUM : Operator.MAXIMUM, left, right);
+                }
+                default:
+                    throw error();
+            }
+        }
+
+        /**
+         * Parses a number literal.
+         */
+        private String parseLiteral() {
+            final var start = this.position;
+            while (this.position < this.expression.length() && isLiteralCharacter(this.expression.charAt(this.position))) {
+                this.position++;
+            }
+            if (start == this.position) {
+                throw error();
+            }
+            return this.expression.substring(start, this.position);
+        }
+
+        /**
+         * Parses the name of a variable or a function.
+         */
+        private String parseName() {
+            skipWhitespace();
+            final var start = this.position;
+            while (this.position < this.expression.length() && isNameCharacter(this.expression.charAt(this.position))) {
+                this.position++;
+            }
+            if (start == this.position) {
+                throw error();
+            }
+            return this.expression.substring(start, this.position);
+        }
+
+        /**
+         * Creates the node of a literal, which holds the literal as a constant.
+         */
+        private Expression literal(String literal) {
+            final BigDecimal value;
+            try {
+                value = new BigDecimal(literal);
+            } catch (NumberFormatException e) {
+                throw error();
+            }
+            final var constant = new NumberVariable();
+            constant.setScale(Math.max(constant.getScale(), value.scale())).setValue(value);
+            return new LiteralExpression(constant);
+        }
+
+        /**
+         * Creates the node of an operation with two operands.
+         */
+        private Expression binary(Operator operator, Expression left, Expression right) {
+            return new BinaryExpression(operator, left, right);
+        }
+
+        /**
+         * Creates the node of an operation with one operand.
+         */
+        private Expression unary(Operator operator, int scale, Expression operand) {
+            return new UnaryExpression(operator, scale, operand);
+        }
+
+        /**
+         * Skips whitespace and consumes a character when it is next.
+         */
+        private boolean accept(char character) {
+            skipWhitespace();
+            if (this.position < this.expression.length() && this.expression.charAt(this.position) == character) {
+                this.position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips whitespace and consumes a character that must be next.
+         */
+        private void expect(char character) {
+            if (!accept(character)) {
+                throw error();
+            }
+        }
+
+        private void skipWhitespace() {
+            while (this.position < this.expression.length() && Character.isWhitespace(this.expression.charAt(this.position))) {
+                this.position++;
+            }
+        }
+
+        private static boolean isLiteralCharacter(char character) {
+            return (character >= '0' && character <= '9') || character == '.';
+        }
+
+        private static boolean isNameCharacter(char character) {
+            return Character.isLetterOrDigit(character) || character == '_' || character == '.';
+        }
+
+        /**
+         * Creates the exception for an expression that is not valid at the current position.
+         */
+        private MachnosException error() {
+            return new MachnosException(MachnosException.INVALID_FUNCTION_CONFIGURATION, ExpressionFunction.NAME, ExpressionFunction.INPUT_KEY_EXPRESSION, this.expression, String.valueOf(this.position));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+
+import java.util.Map;
+
+/**
+ * Function that evaluates an arithmetic expression over <code>NumberVariable</code>s, for example
+ * <code>round(price * quantity * (1 - discount), 2)</code>. The expression is parsed once into a syntax tree when
+ * the function is compiled, and the tree is interpreted on each execution. A calculation that would take a chain of
+ * <code>MathFunction</code>s is evaluated in a single step, without a <code>Result</code> and a target variable for
+ * each operation. See <code>Expression</code> for the syntax and the scale, precision and rounding of the outcome.
+ */
+public class ExpressionFunction extends AbstractFunction {
+
+    /**
+     * The name of the function.
+     */
+    static final String NAME = "Expression";
+
+    /**
+     * The input key under which the expression is stored.
+     */
+    public static final String INPUT_KEY_EXPRESSION = "expression";
+
+    /**
+     * The input key under which the variable is named that will contain the outcome of the expression.
+     */
+    public static final String INPUT_KEY_TARGET_VARIABLE_NAME = "target";
+
+    @Override
+    public String getId() {
+        return MACHNOS_FUNCTION_ID_PREFIX + NAME;
+    }
+
+    @Override
+    public String getName() {
+        return MACHNOS_FUNCTION_NAME_PREFIX + NAME;
+    }
+
+    /**
+     * Evaluates an arithmetic expression.
+     *
+     * The <code>functionConfiguration</code> map should contain two items:
+     * <ol>
+     *     <li>The expression under the key {@link #INPUT_KEY_EXPRESSION}</li>
+     *     <li>The name of the variable that will contain the outcome under the key {@link #INPUT_KEY_TARGET_VARIABLE_NAME}</li>
+     * </ol>
+     * When the target variable is present it takes the value, scale, precision and rounding mode of the outcome.
+     * Otherwise it is created.
+     *
+     * @param inputVariables The input <code>Variables</code>.
+     * @param functionConfiguration The configuration settings of the <code>Function</code>.
+     * @return The <code>Result</code> of the execution.
+     */
+    @Override
+    public Result execute(Variables inputVariables, Map<String, String> functionConfiguration) {
+        try {
+            return compile(functionConfiguration, null).execute(inputVariables);
+        } catch (MachnosException e) {
+            return new Result().addException(e);
+        }
+    }
+
+    /**
+     * Compiles the function by parsing its arithmetic expression into a syntax tree, which is interpreted when the
+     * <code>CompiledFunction</code> is executed.
+     *
+     * @param functionConfiguration The configuration settings of the <code>Function</code>.
+     * @param variableSlots The <code>VariableSlots</code> to resolve the names of the <code>Variable</code>s to, or
+     *                      <code>null</code> when the <code>Variable</code>s should be accessed by their name.
+     * @return The <code>CompiledFunction</code>.
+     * @throws MachnosException with code {@link MachnosException#INVALID_FUNCTION_CONFIGURATION} when the expression
+     * or the target variable is not configured, or the expression is not valid.
+     */
+    @Override
+    public CompiledFunction compile(Map<String, String> functionConfiguration, VariableSlots variableSlots) {
+        final var expression = functionConfiguration.get(INPUT_KEY_EXPRESSION);
+        if (expression == null) {
+            throw new MachnosException(MachnosException.INVALID_FUNCTION_CONFIGURATION, NAME, INPUT_KEY_EXPRESSION);
+        }
+        final var targetName = functionConfiguration.get(INPUT_KEY_TARGET_VARIABLE_NAME);
+        if (targetName == null) {
+            throw new MachnosException(MachnosException.INVALID_FUNCTION_CONFIGURATION, NAME, INPUT_KEY_TARGET_VARIABLE_NAME);
+        }
+        final var expressionTree = Expression.parse(expression, variableSlots);
+        final var targetSlot = variableSlots == null ? -1 : variableSlots.add(targetName);
+        return inputVariables -> {
+            final var result = new Result();
+            final NumberVariable outcome;
+            try {
+                outcome = expressionTree.evaluate(inputVariables);
+            } catch (MachnosException e) {
+                return result.addException(e);
+            }
+            var target = variableSlots != null && inputVariables.usesSlots(variableSlots) ? inputVariables.getNumberVariable(targetSlot) : inputVariables.getNumberVariable(targetName);
+            if (target == null) {
+                target = expressionTree.isOwned() ? outcome.setName(targetName) : Expression.copy(outcome).setName(targetName);
+            } else {
+                target.setScale(outcome.getScale())
+                        .setPrecision(outcome.getPrecision())
+                        .setRoundingMode(outcome.getRoundingMode())
+                        .assign(outcome);
+            }
+            return result.addOutputVariable(target);
+        };
+    }
+}
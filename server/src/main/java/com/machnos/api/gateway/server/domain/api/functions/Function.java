@@ -17,6 +17,7 @@
 
 package com.machnos.api.gateway.server.domain.api.functions;
 
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
 import com.machnos.api.gateway.server.domain.api.variables.Variables;
 
 import java.util.Map;
@@ -55,11 +56,34 @@ public interface Function {
     String getName();
 
     /**
-     * Execute the <code>Function</code>.
+     * Execute the <code>Function</code>. The configuration is read on every execution, so a <code>Function</code>
+     * that is executed more than once should be compiled with {@link #compile} instead.
      *
      * @param inputVariables The input <code>Variables</code>.
      * @param functionConfiguration The configuration settings of the <code>Function</code>.
      * @return The <code>Result</code> of the execution.
      */
     Result execute(final Variables inputVariables, Map<String, String> functionConfiguration);
+
+    /**
+     * Compiles the <code>Function</code> with its configuration into a <code>CompiledFunction</code> that can be
+     * executed many times. The configuration is validated when the <code>Function</code> is compiled, so
+     * configuration errors are found when an api is deployed instead of when it is executed. The names of the
+     * <code>Variable</code>s the <code>Function</code> uses are resolved to slots, so they can be accessed by their
+     * slot in the <code>Variables</code> that hold them in these slots.
+     *
+     * The default implementation executes the <code>Function</code> with the configuration on each execution. It does
+     * not add any slots, so the <code>Function</code> accesses its <code>Variable</code>s by their name.
+     *
+     * @param functionConfiguration The configuration settings of the <code>Function</code>.
+     * @param variableSlots The <code>VariableSlots</code> to resolve the names of the <code>Variable</code>s to, or
+     *                      <code>null</code> when the <code>Variable</code>s should be accessed by their name.
+     * @return The <code>CompiledFunction</code>.
+     * @throws com.machnos.api.gateway.server.domain.MachnosException with code
+     * {@link com.machnos.api.gateway.server.domain.MachnosException#INVALID_FUNCTION_CONFIGURATION} when the
+     * configuration is not valid.
+     */
+    default CompiledFunction compile(Map<String, String> functionConfiguration, VariableSlots variableSlots) {
+        return inputVariables -> execute(inputVariables, functionConfiguration);
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of the <code>Function</code>s that are supplied with Machnos out of the box. <code>Function</code>s can be
+ * looked up by their id, their name, or their name without the Machnos prefix.
+ */
+public final class Functions {
+
+    /**
+     * The <code>Function</code>s, mapped by their ids and names. <code>Function</code>s are stateless, so a single
+     * instance is shared by all pipelines.
+     */
+    private static final Map<String, Function> FUNCTIONS = new HashMap<>();
+
+    static {
+        List.of(new MathFunction(), new ExpressionFunction()).forEach(function -> {
+            FUNCTIONS.put(function.getId(), function);
+            FUNCTIONS.put(function.getName(), function);
+            FUNCTIONS.put(function.getName().substring(Function.MACHNOS_FUNCTION_NAME_PREFIX.length()), function);
+        });
+    }
+
+    private Functions() {
+    }
+
+    /**
+     * Gives a <code>Function</code> by id or name.
+     *
+     * @param idOrName The id or name of the <code>Function</code>.
+     * @return The <code>Function</code>.
+     * @throws MachnosException with code {@link MachnosException#UNKNOWN_FUNCTION} when no such <code>Function</code>
+     * exists.
+     */
+    public static Function getFunction(String idOrName) {
+        final var function = idOrName == null ? null : FUNCTIONS.get(idOrName);
+        if (function == null) {
+            throw new MachnosException(MachnosException.UNKNOWN_FUNCTION, idOrName);
+        }
+        return function;
+    }
+}
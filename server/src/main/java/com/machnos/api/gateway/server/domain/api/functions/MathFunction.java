@@ -17,10 +17,12 @@
 
 package com.machnos.api.gateway.server.domain.api.functions;
 
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.ValidationException;
 import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
 import com.machnos.api.gateway.server.domain.api.variables.Variables;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -33,6 +35,11 @@ public class MathFunction extends AbstractFunction {
      */
     private static final String NAME = "Math";
 
+    /**
+     * The instance that executes the static helper methods.
+     */
+    private static final MathFunction HELPER = new MathFunction();
+
     /**
      * The input key under which the variable is named that is the source of the calculation.
      */
@@ -154,66 +161,41 @@ public class MathFunction extends AbstractFunction {
      */
     @Override
     public Result execute(Variables inputVariables, Map<String, String> functionConfiguration) {
-        final var result = new Result();
-        final String sourceKey = functionConfiguration.get(INPUT_KEY_SOURCE_VARIABLE_NAME);
-        final String function = functionConfiguration.get(INPUT_KEY_FUNCTION);
-        final String targetKey = functionConfiguration.getOrDefault(INPUT_KEY_TARGET_VARIABLE_NAME, sourceKey);
-        final String param1Key = functionConfiguration.getOrDefault(INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, null);
-
-        final var source = inputVariables.getNumberVariable(sourceKey);
-        final var param1 = inputVariables.getNumberVariable(param1Key);
-        var target = inputVariables.getNumberVariable(targetKey);
-
-        // Input validation
-        requireVariable(sourceKey, source, result);
-        switch (function) {
-            case FUNCTION_ADD:
-            case FUNCTION_SUBTRACT:
-            case FUNCTION_MULTIPLY:
-            case FUNCTION_DIVIDE:
-            case FUNCTION_MAXIMUM:
-            case FUNCTION_MINIMUM:
-                requireVariableWithValue(param1Key, param1, result);
-                break;
-            default:
-                break;
+        try {
+            return compile(functionConfiguration, null).execute(inputVariables);
+        } catch (MachnosException e) {
+            return new Result().addException(e);
         }
+    }
 
-        if (result.hasExceptions()) {
-            return result;
+    /**
+     * Compiles a mathematical function. The configuration is validated as described at
+     * {@link #execute(Variables, Map)}, and the function to execute is resolved once.
+     *
+     * @param functionConfiguration The configuration settings of the <code>Function</code>.
+     * @param variableSlots The <code>VariableSlots</code> to resolve the names of the <code>Variable</code>s to, or
+     *                      <code>null</code> when the <code>Variable</code>s should be accessed by their name.
+     * @return The <code>CompiledFunction</code>.
+     * @throws MachnosException with code {@link MachnosException#INVALID_FUNCTION_CONFIGURATION} when the source
+     * variable or the function is not configured, the function is unknown, or a function with two operands has no
+     * parameter configured.
+     */
+    @Override
+    public CompiledFunction compile(Map<String, String> functionConfiguration, VariableSlots variableSlots) {
+        final var sourceKey = functionConfiguration.get(INPUT_KEY_SOURCE_VARIABLE_NAME);
+        if (sourceKey == null) {
+            throw new MachnosException(MachnosException.INVALID_FUNCTION_CONFIGURATION, NAME, INPUT_KEY_SOURCE_VARIABLE_NAME);
         }
-        if (target == null) {
-            target = new NumberVariable().setName(targetKey);
+        final var operation = Operation.of(functionConfiguration.get(INPUT_KEY_FUNCTION));
+        if (operation == null) {
+            throw new MachnosException(MachnosException.INVALID_FUNCTION_CONFIGURATION, NAME, INPUT_KEY_FUNCTION);
         }
-        target.setScale(source.getScale())
-                .setPrecision(source.getPrecision())
-                .setRoundingMode(source.getRoundingMode())
-                .setValue(source.getValue());
-
-        switch (function) {
-            case FUNCTION_ADD:
-                target.add(param1);
-                break;
-            case FUNCTION_SUBTRACT:
-                target.subtract(param1);
-                break;
-            case FUNCTION_MULTIPLY:
-                target.multiply(param1);
-                break;
-            case FUNCTION_DIVIDE:
-                target.divide(param1);
-                break;
-            case FUNCTION_ABSOLUTE:
-                target.absolute();
-                break;
-            case FUNCTION_MAXIMUM:
-                target.maximum(param1);
-                break;
-            case FUNCTION_MINIMUM:
-                target.minimum(param1);
-                break;
+        final var param1Key = operation.binary ? functionConfiguration.get(INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME) : null;
+        if (operation.binary && param1Key == null) {
+            throw new MachnosException(MachnosException.INVALID_FUNCTION_CONFIGURATION, NAME, INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME);
         }
-        return result.addOutputVariable(target);
+        final var targetKey = functionConfiguration.getOrDefault(INPUT_KEY_TARGET_VARIABLE_NAME, sourceKey);
+        return new CompiledMathFunction(operation, sourceKey, param1Key, targetKey, variableSlots);
     }
 
     /**
@@ -225,7 +207,7 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the addition.
      */
     public static Result add(NumberVariable source, NumberVariable by, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_ADD, into, by);
+        return calculate(source, Operation.ADD, into, by);
     }
 
     /**
@@ -237,7 +219,7 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the subtraction.
      */
     public static Result subtract(NumberVariable source, NumberVariable by, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_SUBTRACT, into, by);
+        return calculate(source, Operation.SUBTRACT, into, by);
     }
 
     /**
@@ -249,7 +231,7 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the multiplicity.
      */
     public static Result multiply(NumberVariable source, NumberVariable by, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_MULTIPLY, into, by);
+        return calculate(source, Operation.MULTIPLY, into, by);
     }
 
     /**
@@ -261,7 +243,7 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the division.
      */
     public static Result divide(NumberVariable source, NumberVariable by, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_DIVIDE, into, by);
+        return calculate(source, Operation.DIVIDE, into, by);
     }
 
     /**
@@ -272,7 +254,7 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the absolute calculation.
      */
     public static Result absolute(NumberVariable source, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_ABSOLUTE, into, null);
+        return calculate(source, Operation.ABSOLUTE, into, null);
     }
 
     /**
@@ -283,7 +265,7 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the maximum calculation.
      */
     public static Result maximum(NumberVariable source, NumberVariable other, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_MAXIMUM, into, other);
+        return calculate(source, Operation.MAXIMUM, into, other);
     }
 
     /**
@@ -294,29 +276,233 @@ public class MathFunction extends AbstractFunction {
      * @return The <code>Result</code> of the minimum calculation.
      */
     public static Result minimum(NumberVariable source, NumberVariable other, String into) {
-        return prepareAndExecuteFunction(source, FUNCTION_MINIMUM, into, other);
+        return calculate(source, Operation.MINIMUM, into, other);
     }
 
     /**
-     * Helper method to prepare a new <code>MathFunction</code> instance and execute it immediately.
+     * Helper method to execute a mathematical function on <code>NumberVariable</code>s directly, in the same way as it
+     * would be executed with a configuration that names these <code>NumberVariable</code>s.
      *
      * @param source The source of the calculation.
-     * @param function The math function to execute.
+     * @param operation The math function to execute.
      * @param into The name of the result variable.
      * @param param1 The first parameter of the calculation.
      * @return The <code>Result</code> of the execution.
      */
-    private static Result prepareAndExecuteFunction(NumberVariable source, String function, String into, NumberVariable param1) {
-        final var variables = new Variables().add(source).add(param1);
-        final var keyMap = new HashMap<String, String>();
-        keyMap.put(INPUT_KEY_SOURCE_VARIABLE_NAME, source.getName());
-        keyMap.put(INPUT_KEY_FUNCTION, function);
-        if (into != null) {
-            keyMap.put(INPUT_KEY_TARGET_VARIABLE_NAME, into);
+    private static Result calculate(NumberVariable source, Operation operation, String into, NumberVariable param1) {
+        final var targetName = into == null ? source.getName() : into;
+        final var param1Name = param1 == null ? null : param1.getName();
+        return HELPER.calculate(operation,
+                source.getName(), select(source.getName(), source, null),
+                param1Name, select(param1Name, source, param1),
+                targetName, select(targetName, source, param1));
+    }
+
+    /**
+     * Selects the first of two <code>NumberVariable</code>s with a name.
+     *
+     * @param name The name of the <code>NumberVariable</code>.
+     * @param first The first <code>NumberVariable</code>, or <code>null</code>.
+     * @param second The second <code>NumberVariable</code>, or <code>null</code>.
+     * @return The <code>NumberVariable</code> with the given name, or <code>null</code> when neither has that name.
+     */
+    private static NumberVariable select(String name, NumberVariable first, NumberVariable second) {
+        if (name == null) {
+            return null;
+        }
+        if (first != null && name.equals(first.getName())) {
+            return first;
+        }
+        if (second != null && name.equals(second.getName())) {
+            return second;
+        }
+        return null;
+    }
+
+    /**
+     * Executes a mathematical function on the resolved <code>NumberVariable</code>s. The target is set to the value of
+     * the source, after which the function is applied to the target.
+     *
+     * @param operation The math function to execute.
+     * @param sourceName The name of the source variable.
+     * @param source The source variable, or <code>null</code> when it is not present.
+     * @param param1Name The name of the first parameter.
+     * @param param1 The first parameter, or <code>null</code> when it is not present.
+     * @param targetName The name of the target variable.
+     * @param target The target variable, or <code>null</code> when it should be created.
+     * @return The <code>Result</code> of the execution.
+     */
+    private Result calculate(Operation operation, String sourceName, NumberVariable source, String param1Name, NumberVariable param1, String targetName, NumberVariable target) {
+        final var result = new Result();
+        // Input validation
+        requireVariable(sourceName, source, result);
+        if (operation.binary) {
+            requireVariableWithValue(param1Name, param1, result);
         }
-        if (param1 != null) {
-            keyMap.put(INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, param1.getName());
+        if (result.hasExceptions()) {
+            return result;
+        }
+        return calculate(operation, source, param1, targetName, target, result);
+    }
+
+    /**
+     * Executes a mathematical function on validated <code>NumberVariable</code>s.
+     *
+     * @param operation The math function to execute.
+     * @param source The source variable.
+     * @param param1 The first parameter, or <code>null</code> when the function has a single operand.
+     * @param targetName The name of the target variable.
+     * @param target The target variable, or <code>null</code> when it should be created.
+     * @param result The <code>Result</code> to add the target to.
+     * @return The <code>Result</code> of the execution.
+     */
+    private static Result calculate(Operation operation, NumberVariable source, NumberVariable param1, String targetName, NumberVariable target, Result result) {
+        if (target == null) {
+            target = new NumberVariable().setName(targetName);
+        }
+        target.setScale(source.getScale())
+                .setPrecision(source.getPrecision())
+                .setRoundingMode(source.getRoundingMode())
+                .assign(source);
+
+        switch (operation) {
+            case ADD:
+                target.add(param1);
+                break;
+            case SUBTRACT:
+                target.subtract(param1);
+                break;
+            case MULTIPLY:
+                target.multiply(param1);
+                break;
+            case DIVIDE:
+                target.divide(param1);
+                break;
+            case ABSOLUTE:
+                target.absolute();
+                break;
+            case MAXIMUM:
+                target.maximum(param1);
+                break;
+            case MINIMUM:
+                target.minimum(param1);
+                break;
+        }
+        return result.addOutputVariable(target);
+    }
+
+    /**
+     * The math functions that can be executed.
+     */
+    private enum Operation {
+
+        ADD(FUNCTION_ADD, true),
+        SUBTRACT(FUNCTION_SUBTRACT, true),
+        MULTIPLY(FUNCTION_MULTIPLY, true),
+        DIVIDE(FUNCTION_DIVIDE, true),
+        ABSOLUTE(FUNCTION_ABSOLUTE, false),
+        MAXIMUM(FUNCTION_MAXIMUM, true),
+        MINIMUM(FUNCTION_MINIMUM, true);
+
+        /**
+         * The value of the {@link #INPUT_KEY_FUNCTION} configuration item.
+         */
+        private final String function;
+
+        /**
+         * Whether the function has a second operand, the {@link #INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME}.
+         */
+        private final boolean binary;
+
+        Operation(String function, boolean binary) {
+            this.function = function;
+            this.binary = binary;
+        }
+
+        /**
+         * Gives the <code>Operation</code> of a function.
+         *
+         * @param function The value of the {@link #INPUT_KEY_FUNCTION} configuration item.
+         * @return The <code>Operation</code>, or <code>null</code> when the function is unknown.
+         */
+        private static Operation of(String function) {
+            for (final var operation : values()) {
+                if (operation.function.equals(function)) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A mathematical function compiled with its configuration. The names of the variables are resolved to their slots,
+     * which are used when the input <code>Variables</code> hold the variables in these slots.
+     */
+    private final class CompiledMathFunction implements CompiledFunction {
+
+        private final Operation operation;
+        private final String sourceName;
+        private final String param1Name;
+        private final String targetName;
+        private final VariableSlots variableSlots;
+        private final int sourceSlot;
+        private final int param1Slot;
+        private final int targetSlot;
+        private final ValidationException missingSource;
+        private final ValidationException missingParam1;
+        private final ValidationException missingParam1Value;
+
+        private CompiledMathFunction(Operation operation, String sourceName, String param1Name, String targetName, VariableSlots variableSlots) {
+            this.operation = operation;
+            this.sourceName = sourceName;
+            this.param1Name = param1Name;
+            this.targetName = targetName;
+            this.variableSlots = variableSlots;
+            this.sourceSlot = variableSlots == null ? -1 : variableSlots.add(sourceName);
+            this.param1Slot = variableSlots == null ? -1 : variableSlots.add(param1Name);
+            this.targetSlot = variableSlots == null ? -1 : variableSlots.add(targetName);
+            // Only a function that is compiled for a pipeline is executed often enough to prepare its exceptions.
+            final var prepare = variableSlots != null;
+            this.missingSource = prepare ? new ValidationException(MachnosException.MISSING_VARIABLE, sourceName) : null;
+            this.missingParam1 = prepare && operation.binary ? new ValidationException(MachnosException.MISSING_VARIABLE, param1Name) : null;
+            this.missingParam1Value = prepare && operation.binary ? new ValidationException(MachnosException.MISSING_VALUE, param1Name) : null;
+        }
+
+        @Override
+        public Result execute(Variables inputVariables) {
+            if (this.variableSlots != null && inputVariables.usesSlots(this.variableSlots)) {
+                return execute(inputVariables.getNumberVariable(this.sourceSlot),
+                        this.operation.binary ? inputVariables.getNumberVariable(this.param1Slot) : null,
+                        inputVariables.getNumberVariable(this.targetSlot));
+            }
+            return execute(inputVariables.getNumberVariable(this.sourceName),
+                    this.operation.binary ? inputVariables.getNumberVariable(this.param1Name) : null,
+                    inputVariables.getNumberVariable(this.targetName));
+        }
+
+        /**
+         * Validates the resolved <code>NumberVariable</code>s and executes the function on them. The prepared
+         * <code>ValidationException</code>s are used when the function is compiled for a pipeline, otherwise a
+         * <code>ValidationException</code> is only created when the validation fails.
+         */
+        private Result execute(NumberVariable source, NumberVariable param1, NumberVariable target) {
+            final var result = new Result();
+            if (this.missingSource == null) {
+                requireVariable(this.sourceName, source, result);
+                if (this.operation.binary) {
+                    requireVariableWithValue(this.param1Name, param1, result);
+                }
+            } else {
+                requireVariable(source, this.missingSource, result);
+                if (this.operation.binary) {
+                    requireVariableWithValue(param1, this.missingParam1, this.missingParam1Value, result);
+                }
+            }
+            if (result.hasExceptions()) {
+                return result;
+            }
+            return calculate(this.operation, source, param1, this.targetName, target, result);
         }
-        return new MathFunction().execute(variables, keyMap);
     }
 }
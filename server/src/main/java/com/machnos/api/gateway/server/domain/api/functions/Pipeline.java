@@ -0,0 +1,179 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ordered list of <code>Function</code>s that together form the logic of an api. The output <code>Variables</code>
+ * of each <code>Function</code> are available as input for the <code>Function</code>s that follow it.
+ *
+ * The <code>Function</code>s are compiled with their configuration when they are added to the pipeline. The names of
+ * the <code>Variable</code>s they use are resolved to slots at the same time, so the <code>Variables</code> created by
+ * {@link #createVariables()} hold them in an array.
+ */
+public class Pipeline {
+
+    /**
+     * The steps of the pipeline.
+     */
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * The slots of the <code>Variable</code>s the <code>Function</code>s use.
+     */
+    private final VariableSlots variableSlots = new VariableSlots();
+
+    /**
+     * Add a <code>Function</code> to the end of the pipeline. The <code>Function</code> is compiled with its
+     * configuration, so configuration errors are found when the pipeline is built.
+     *
+     * @param function The <code>Function</code> to add.
+     * @param functionConfiguration The configuration settings of the <code>Function</code>.
+     * @return This <code>Pipeline</code> instance.
+     * @throws com.machnos.api.gateway.server.domain.MachnosException with code
+     * {@link com.machnos.api.gateway.server.domain.MachnosException#INVALID_FUNCTION_CONFIGURATION} when the
+     * configuration is not valid.
+     */
+    public Pipeline add(Function function, Map<String, String> functionConfiguration) {
+        final Map<String, String> configuration = functionConfiguration == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(functionConfiguration));
+        this.steps.add(new Step(function, function.compile(configuration, this.variableSlots)));
+        return this;
+    }
+
+    /**
+     * Gives the slots of the <code>Variable</code>s the <code>Function</code>s of the pipeline use. Slots for other
+     * <code>Variable</code>s that are known in advance, such as those of the request, can be added before the
+     * pipeline is executed.
+     *
+     * @return The <code>VariableSlots</code>.
+     */
+    public VariableSlots getVariableSlots() {
+        return this.variableSlots;
+    }
+
+    /**
+     * Creates the <code>Variables</code> to execute the pipeline with, which hold the <code>Variable</code>s that have
+     * a slot in an array.
+     *
+     * @return The new <code>Variables</code>.
+     */
+    public Variables createVariables() {
+        return new Variables(this.variableSlots);
+    }
+
+    /**
+     * Gives the number of <code>Function</code>s in the pipeline.
+     *
+     * @return The number of <code>Function</code>s.
+     */
+    public int size() {
+        return this.steps.size();
+    }
+
+    /**
+     * Execute all <code>Function</code>s of the pipeline in order. The execution stops at the first <code>Function</code>
+     * that results in a <code>MachnosException</code>.
+     *
+     * @param variables The <code>Variables</code> the pipeline starts with. The output <code>Variables</code> of each
+     *                  <code>Function</code> are added to this container.
+     * @return The <code>Result</code> holding the <code>MachnosException</code>s of the failed <code>Function</code>.
+     * The output <code>Variables</code> of the <code>Function</code>s are only added to the given
+     * <code>Variables</code>, so the <code>Result</code> has no output <code>Variables</code>.
+     */
+    public Result execute(Variables variables) {
+        return execute(variables, null);
+    }
+
+    /**
+     * Execute all <code>Function</code>s of the pipeline in order, notifying a <code>Listener</code> of the execution
+     * of each <code>Function</code>. The execution stops at the first <code>Function</code> that results in a
+     * <code>MachnosException</code>.
+     *
+     * @param variables The <code>Variables</code> the pipeline starts with. The output <code>Variables</code> of each
+     *                  <code>Function</code> are added to this container.
+     * @param listener The <code>Listener</code> to notify, or <code>null</code>.
+     * @return The <code>Result</code> holding the <code>MachnosException</code>s of the failed <code>Function</code>.
+     * The output <code>Variables</code> of the <code>Function</code>s are only added to the given
+     * <code>Variables</code>, so the <code>Result</code> has no output <code>Variables</code>.
+     */
+    public Result execute(Variables variables, Listener listener) {
+        final var result = new Result();
+        for (final var step : this.steps) {
+            if (listener != null) {
+                listener.functionStarted(step.function);
+            }
+            final var stepResult = step.compiledFunction.execute(variables);
+            if (listener != null) {
+                listener.functionCompleted(step.function, stepResult);
+            }
+            if (stepResult.hasExceptions()) {
+                stepResult.getExceptions().forEach(result::addException);
+                return result;
+            }
+            if (stepResult.hasOutputVariables()) {
+                variables.addAll(stepResult.getOutputVariables());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Listener that is notified of the execution of each <code>Function</code> of a pipeline, for example to measure
+     * the time each <code>Function</code> takes. The <code>Function</code>s are executed one at a time, on the thread
+     * that executes the pipeline.
+     */
+    public interface Listener {
+
+        /**
+         * Called before a <code>Function</code> is executed.
+         *
+         * @param function The <code>Function</code> that is executed.
+         */
+        void functionStarted(Function function);
+
+        /**
+         * Called after a <code>Function</code> is executed.
+         *
+         * @param function The <code>Function</code> that is executed.
+         * @param result The <code>Result</code> of the execution.
+         */
+        void functionCompleted(Function function, Result result);
+    }
+
+    /**
+     * A <code>Function</code> in the pipeline, compiled with its configuration.
+     */
+    private static final class Step {
+
+        private final Function function;
+        private final CompiledFunction compiledFunction;
+
+        private Step(Function function, CompiledFunction compiledFunction) {
+            this.function = function;
+            this.compiledFunction = compiledFunction;
+        }
+    }
+}
@@ -22,22 +22,28 @@ import com.machnos.api.gateway.server.domain.api.variables.Variable;
 import com.machnos.api.gateway.server.domain.api.variables.Variables;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Class representing a result of the execution of a <code>Function</code>.
+ *
+ * The output <code>Variables</code> and the list of <code>MachnosException</code>s are created when they are first
+ * needed, so a <code>Result</code> without output or without exceptions does not allocate them.
  */
 public class Result {
 
     /**
-     * The <code>Variables</code> that are the result of the execution of a <code>Function</code>.
+     * The <code>Variables</code> that are the result of the execution of a <code>Function</code>, or <code>null</code>
+     * when they are not created yet.
      */
-    private final Variables outputVariables = new Variables();
+    private Variables outputVariables;
 
     /**
-     * A list with <code>MachnosException</code>s that are the result of the execution of a <code>Function</code>.
+     * A list with <code>MachnosException</code>s that are the result of the execution of a <code>Function</code>, or
+     * <code>null</code> when no <code>MachnosException</code> is added yet.
      */
-    private final List<MachnosException> exceptions = new ArrayList<>();
+    private List<MachnosException> exceptions;
 
     /**
      * Add a <code>MachtnosException</code> to the result.
@@ -46,6 +52,9 @@ public class Result {
      * @return This <code>Result</code> instance.
      */
     public Result addException(MachnosException exception) {
+        if (this.exceptions == null) {
+            this.exceptions = new ArrayList<>(2);
+        }
         this.exceptions.add(exception);
         return this;
     }
@@ -55,7 +64,16 @@ public class Result {
      * @return <code>true</code> when there are <code>MachnosExecptions</code>s present in the <code>Result</code>, <code>false</code> otherwise.
      */
     public boolean hasExceptions() {
-        return this.exceptions.size() > 0;
+        return this.exceptions != null;
+    }
+
+    /**
+     * Gives the <code>MachnosException</code>s that are the result of the execution of a <code>Function</code>.
+     *
+     * @return The <code>MachnosException</code>s.
+     */
+    public List<MachnosException> getExceptions() {
+        return this.exceptions == null ? Collections.emptyList() : Collections.unmodifiableList(this.exceptions);
     }
 
     /**
@@ -65,16 +83,29 @@ public class Result {
      * @return This <code>Result</code> instance.
      */
     public Result addOutputVariable(Variable<?,?> variable) {
-        this.outputVariables.add(variable);
+        getOutputVariables().add(variable);
         return this;
     }
 
+    /**
+     * Boolean indicating this <code>Result</code> has output <code>Variable</code>s.
+     *
+     * @return <code>true</code> when output <code>Variable</code>s have been added or requested, <code>false</code>
+     * otherwise.
+     */
+    public boolean hasOutputVariables() {
+        return this.outputVariables != null;
+    }
+
     /**
      * Gives the output <code>Variable</code>s.
      *
      * @return The output <code>Variable</code>s.
      */
     public Variables getOutputVariables() {
+        if (this.outputVariables == null) {
+            this.outputVariables = new Variables();
+        }
         return this.outputVariables;
     }
 }
@@ -23,9 +23,34 @@ import java.math.RoundingMode;
 
 /**
  * <code>Variable</code> implementation that encapsulates a BigDecimal value.
+ *
+ * Values that fit are held as an unscaled <code>long</code> at the scale of the variable, so the arithmetic on prices
+ * and counters does not allocate. An operation is calculated on the <code>long</code>s when its exact outcome fits
+ * the precision of the variable, in which case the <code>MathContext</code> would not round it, and is then rounded to
+ * the scale with the same <code>RoundingMode</code> as a <code>BigDecimal</code>. Operations that overflow, need
+ * more digits than the precision or divide are calculated on <code>BigDecimal</code>s, so the outcome is always the
+ * same. The <code>BigDecimal</code> value is only created when it is asked for.
  */
 public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>{
 
+    /**
+     * The powers of ten that fit in a <code>long</code>.
+     */
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (var i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * The marker for a value that is not held as an unscaled <code>long</code>. It is also the outcome of the
+     * <code>long</code> arithmetic when it overflows.
+     */
+    private static final long NOT_COMPACT = Long.MIN_VALUE;
+
     /**
      * The <code>MathContext</code> that will be applied on mathematical functions.
      */
@@ -36,6 +61,12 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      */
     private int scale = 2;
 
+    /**
+     * The value unscaled at the {@link #scale}, or {@link #NOT_COMPACT} when the value is only held as a
+     * <code>BigDecimal</code> or there is no value.
+     */
+    private long compact = NOT_COMPACT;
+
     /**
      * Gives the scale that is used on the encapsulated number.
      *
@@ -52,8 +83,18 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      * @return The current instance of the <code>NumberVariable</code>.
      */
     public NumberVariable setScale(int scale) {
+        if (scale == this.scale) {
+            return this;
+        }
+        final var previousScale = this.scale;
+        final var unscaled = compactValue();
         this.scale = scale;
-        if (hasValue()) {
+        if (unscaled != NOT_COMPACT) {
+            // Scale the current value
+            if (!setRounded(unscaled, previousScale)) {
+                setValue(BigDecimal.valueOf(unscaled, previousScale));
+            }
+        } else if (hasValue()) {
             // Scale the current value
             setValue(getValue());
         }
@@ -76,7 +117,9 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      * @return The current instance of the <code>NumberVariable</code>.
      */
     public NumberVariable setPrecision(int precision) {
-        this.mathContext = new MathContext(precision, this.mathContext.getRoundingMode());
+        if (precision != this.mathContext.getPrecision()) {
+            this.mathContext = new MathContext(precision, this.mathContext.getRoundingMode());
+        }
         return this;
     }
 
@@ -96,7 +139,37 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      * @return The current instance of the <code>NumberVariable</code>.
      */
     public NumberVariable setRoundingMode(RoundingMode roundingMode) {
-        this.mathContext = new MathContext(this.mathContext.getPrecision(), roundingMode);
+        if (roundingMode != this.mathContext.getRoundingMode()) {
+            this.mathContext = new MathContext(this.mathContext.getPrecision(), roundingMode);
+        }
+        return this;
+    }
+
+    @Override
+    public BigDecimal getValue() {
+        var value = super.getValue();
+        if (value == null && this.compact != NOT_COMPACT) {
+            value = BigDecimal.valueOf(this.compact, this.scale);
+            super.setValue(value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean hasValue() {
+        return this.compact != NOT_COMPACT || super.getValue() != null;
+    }
+
+    /**
+     * Creates both the unscaled and the <code>BigDecimal</code> representation of the value, which are otherwise
+     * created when they are first needed. After that, reading the value or using this <code>NumberVariable</code> as
+     * the operand of a calculation no longer changes it, so it can be shared by threads as long as it is not changed.
+     *
+     * @return The current instance of the <code>NumberVariable</code>.
+     */
+    public NumberVariable materialize() {
+        compactValue();
+        getValue();
         return this;
     }
 
@@ -108,6 +181,7 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      */
     @Override
     public NumberVariable setValue(BigDecimal value) {
+        this.compact = NOT_COMPACT;
         if (value == null) {
             return super.setValue(null);
         } else {
@@ -115,6 +189,21 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
         }
     }
 
+    /**
+     * Sets the value to the value of another <code>NumberVariable</code> and applies the scale and rounding mode of
+     * this <code>NumberVariable</code>. This is the same as setting the <code>BigDecimal</code> value of the other
+     * <code>NumberVariable</code>, without creating it.
+     *
+     * @param source The <code>NumberVariable</code> to take the value from.
+     * @return The current instance of the <code>NumberVariable</code>.
+     */
+    public NumberVariable assign(NumberVariable source) {
+        if (setRounded(source.compactValue(), source.scale)) {
+            return this;
+        }
+        return setValue(source.getValue());
+    }
+
     /**
      * Adds the value of another <code>NumberVariable</code> to this value.
      *
@@ -126,7 +215,12 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
             return this;
         }
         if (!hasValue()) {
-            setValue(BigDecimal.ZERO);
+            setCompact(0);
+        }
+        final var sumScale = Math.max(this.scale, augend.scale);
+        final var sum = addExact(rescale(compactValue(), this.scale, sumScale, null), rescale(augend.compactValue(), augend.scale, sumScale, null));
+        if (fitsPrecision(sum) && setRounded(sum, sumScale)) {
+            return this;
         }
         return setValue(getValue().add(augend.getValue(), this.mathContext));
     }
@@ -142,7 +236,13 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
             return this;
         }
         if (!hasValue()) {
-            setValue(BigDecimal.ZERO);
+            setCompact(0);
+        }
+        final var differenceScale = Math.max(this.scale, subtrahend.scale);
+        final var negated = rescale(subtrahend.compactValue(), subtrahend.scale, differenceScale, null);
+        final var difference = addExact(rescale(compactValue(), this.scale, differenceScale, null), negated == NOT_COMPACT ? NOT_COMPACT : -negated);
+        if (fitsPrecision(difference) && setRounded(difference, differenceScale)) {
+            return this;
         }
         return setValue(getValue().subtract(subtrahend.getValue(), this.mathContext));
     }
@@ -158,13 +258,18 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
             return this;
         }
         if (!hasValue()) {
-            setValue(BigDecimal.ZERO);
+            setCompact(0);
+        }
+        final var product = multiplyExact(compactValue(), multiplicand.compactValue());
+        if (fitsPrecision(product) && setRounded(product, this.scale + multiplicand.scale)) {
+            return this;
         }
         return setValue(getValue().multiply(multiplicand.getValue(), this.mathContext));
     }
 
     /**
-     * Divides the value of another <code>NumberVariable</code> to this value.
+     * Divides the value of another <code>NumberVariable</code> to this value. A quotient is rounded to the precision
+     * before it is rounded to the scale, so divisions are always calculated on <code>BigDecimal</code>s.
      *
      * @param divisor The number to divide this value by.
      * @return The current instance of the <code>NumberVariable</code>.
@@ -186,7 +291,14 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      */
     public NumberVariable absolute() {
         if (!hasValue()) {
-            setValue(BigDecimal.ZERO);
+            setCompact(0);
+        }
+        final var unscaled = compactValue();
+        if (fitsPrecision(unscaled)) {
+            if (unscaled < 0) {
+                setCompact(-unscaled);
+            }
+            return this;
         }
         return setValue(getValue().abs(this.mathContext));
     }
@@ -198,7 +310,11 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      */
     public NumberVariable maximum(NumberVariable other) {
         if (!hasValue()) {
-            setValue(BigDecimal.ZERO);
+            setCompact(0);
+        }
+        final var comparison = compareCompact(other);
+        if (comparison != null) {
+            return comparison >= 0 || setRounded(other.compact, other.scale) ? this : setValue(other.getValue());
         }
         return setValue(getValue().max(other.getValue()));
     }
@@ -210,8 +326,201 @@ public class NumberVariable extends AbstractVariable<BigDecimal, NumberVariable>
      */
     public NumberVariable minimum(NumberVariable other) {
         if (!hasValue()) {
-            setValue(BigDecimal.ZERO);
+            setCompact(0);
+        }
+        final var comparison = compareCompact(other);
+        if (comparison != null) {
+            return comparison <= 0 || setRounded(other.compact, other.scale) ? this : setValue(other.getValue());
         }
         return setValue(getValue().min(other.getValue()));
     }
+
+    /**
+     * Gives the value unscaled at the {@link #scale}, converting the <code>BigDecimal</code> value when it fits.
+     *
+     * @return The unscaled value, or {@link #NOT_COMPACT} when there is no value or it does not fit.
+     */
+    private long compactValue() {
+        if (this.compact == NOT_COMPACT) {
+            final var value = super.getValue();
+            if (value != null && value.precision() < POWERS_OF_TEN.length) {
+                this.compact = value.unscaledValue().longValue();
+            }
+        }
+        return this.compact;
+    }
+
+    /**
+     * Sets the value unscaled at the {@link #scale}. The <code>BigDecimal</code> value is created when it is asked for.
+     *
+     * @param unscaled The unscaled value.
+     */
+    private void setCompact(long unscaled) {
+        this.compact = unscaled;
+        super.setValue(null);
+    }
+
+    /**
+     * Sets the value to an unscaled value, rounded to the {@link #scale} with the rounding mode.
+     *
+     * @param unscaled The unscaled value.
+     * @param unscaledScale The scale of the unscaled value.
+     * @return <code>true</code> when the value is set, <code>false</code> when the unscaled value is
+     * {@link #NOT_COMPACT} or the rounded value does not fit in a <code>long</code>.
+     */
+    private boolean setRounded(long unscaled, int unscaledScale) {
+        final var rounded = rescale(unscaled, unscaledScale, this.scale, this.mathContext.getRoundingMode());
+        if (rounded == NOT_COMPACT) {
+            return false;
+        }
+        setCompact(rounded);
+        return true;
+    }
+
+    /**
+     * Compares the unscaled values of this and another <code>NumberVariable</code>.
+     *
+     * @param other The <code>NumberVariable</code> to compare with.
+     * @return The comparison as by <code>BigDecimal.compareTo</code>, or <code>null</code> when one of the values is
+     * not held as an unscaled <code>long</code> or the values cannot be brought to the same scale.
+     */
+    private Integer compareCompact(NumberVariable other) {
+        final var commonScale = Math.max(this.scale, other.scale);
+        final var left = rescale(compactValue(), this.scale, commonScale, null);
+        final var right = rescale(other.compactValue(), other.scale, commonScale, null);
+        if (left == NOT_COMPACT || right == NOT_COMPACT) {
+            return null;
+        }
+        return Long.compare(left, right);
+    }
+
+    /**
+     * Checks whether an unscaled value has no more digits than the precision, so the <code>MathContext</code> would
+     * not round it.
+     *
+     * @param unscaled The unscaled value.
+     * @return <code>true</code> when the value fits the precision, <code>false</code> otherwise or when the value is
+     * {@link #NOT_COMPACT}.
+     */
+    private boolean fitsPrecision(long unscaled) {
+        if (unscaled == NOT_COMPACT) {
+            return false;
+        }
+        final var precision = this.mathContext.getPrecision();
+        return precision == 0 || precision >= POWERS_OF_TEN.length || Math.abs(unscaled) < POWERS_OF_TEN[precision];
+    }
+
+    /**
+     * Brings an unscaled value from one scale to another. A value that is brought to a lower scale is rounded with the
+     * given rounding mode, in the same way as <code>BigDecimal.setScale</code>.
+     *
+     * @param unscaled The unscaled value.
+     * @param fromScale The scale of the unscaled value.
+     * @param toScale The scale to bring the value to.
+     * @param roundingMode The rounding mode, which is only used when the value is brought to a lower scale.
+     * @return The unscaled value at the new scale, or {@link #NOT_COMPACT} when the value is {@link #NOT_COMPACT} or
+     * does not fit.
+     * @throws ArithmeticException when the rounding mode is <code>UNNECESSARY</code> and the value has to be rounded.
+     */
+    private static long rescale(long unscaled, int fromScale, int toScale, RoundingMode roundingMode) {
+        if (unscaled == NOT_COMPACT || fromScale == toScale) {
+            return unscaled;
+        }
+        if (toScale > fromScale) {
+            final var difference = (long) toScale - fromScale;
+            if (difference >= POWERS_OF_TEN.length) {
+                return unscaled == 0 ? 0 : NOT_COMPACT;
+            }
+            return multiplyExact(unscaled, POWERS_OF_TEN[(int) difference]);
+        }
+        final var difference = (long) fromScale - toScale;
+        if (difference >= POWERS_OF_TEN.length) {
+            return unscaled == 0 ? 0 : NOT_COMPACT;
+        }
+        return divideRounded(unscaled, POWERS_OF_TEN[(int) difference], roundingMode);
+    }
+
+    /**
+     * Divides an unscaled value by a power of ten and rounds the quotient with the given rounding mode.
+     *
+     * @param dividend The unscaled value.
+     * @param divisor The power of ten.
+     * @param roundingMode The rounding mode.
+     * @return The rounded quotient.
+     * @throws ArithmeticException when the rounding mode is <code>UNNECESSARY</code> and the quotient has to be rounded.
+     */
+    private static long divideRounded(long dividend, long divisor, RoundingMode roundingMode) {
+        final var quotient = dividend / divisor;
+        final var remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        final var signum = dividend < 0 ? -1 : 1;
+        final var half = Long.compare(Math.abs(remainder) * 2, divisor);
+        final boolean increment;
+        switch (roundingMode) {
+            case UP:
+                increment = true;
+                break;
+            case DOWN:
+                increment = false;
+                break;
+            case CEILING:
+                increment = signum > 0;
+                break;
+            case FLOOR:
+                increment = signum < 0;
+                break;
+            case HALF_UP:
+                increment = half >= 0;
+                break;
+            case HALF_DOWN:
+                increment = half > 0;
+                break;
+            case HALF_EVEN:
+                increment = half > 0 || (half == 0 && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return increment ? quotient + signum : quotient;
+    }
+
+    /**
+     * Adds two unscaled values.
+     *
+     * @param left The first value.
+     * @param right The second value.
+     * @return The sum, or {@link #NOT_COMPACT} when one of the values is {@link #NOT_COMPACT} or the sum overflows.
+     */
+    private static long addExact(long left, long right) {
+        if (left == NOT_COMPACT || right == NOT_COMPACT) {
+            return NOT_COMPACT;
+        }
+        final var sum = left + right;
+        if (((left ^ sum) & (right ^ sum)) < 0) {
+            return NOT_COMPACT;
+        }
+        return sum;
+    }
+
+    /**
+     * Multiplies two unscaled values.
+     *
+     * @param left The first value.
+     * @param right The second value.
+     * @return The product, or {@link #NOT_COMPACT} when one of the values is {@link #NOT_COMPACT} or the product
+     * overflows.
+     */
+    private static long multiplyExact(long left, long right) {
+        if (left == NOT_COMPACT || right == NOT_COMPACT) {
+            return NOT_COMPACT;
+        }
+        final var high = Math.multiplyHigh(left, right);
+        final var low = left * right;
+        if ((high != 0 || low < 0) && (high != -1 || low >= 0)) {
+            return NOT_COMPACT;
+        }
+        return low;
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.variables;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The slots of the <code>Variable</code>s that are known when an api is deployed. Each name is resolved to a slot
+ * once, so the <code>Variables</code> of a request can hold the <code>Variable</code>s in an array that is indexed by
+ * the slot instead of searching them by name.
+ *
+ * Slots are added while the api is deployed, before the <code>Variables</code> of the requests are created. After
+ * that the slots are only read, so they can be shared by all threads that execute requests.
+ */
+public class VariableSlots {
+
+    /**
+     * The <code>VariableSlots</code> without any slots, for <code>Variables</code> that hold all their
+     * <code>Variable</code>s by name.
+     */
+    static final VariableSlots NONE = new VariableSlots();
+
+    /**
+     * The slots, mapped by the name of their <code>Variable</code>.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Adds a slot for a <code>Variable</code> name. When the name already has a slot, that slot is returned.
+     *
+     * @param variableName The name of the <code>Variable</code>.
+     * @return The slot of the <code>Variable</code>, or -1 when the name is <code>null</code>.
+     * @throws MachnosException with code {@link MachnosException#UNMODIFIABLE_VARIABLE_SLOTS} when a slot is added to
+     * {@link #NONE}.
+     */
+    public int add(String variableName) {
+        if (variableName == null) {
+            return -1;
+        }
+        if (this == NONE) {
+            throw new MachnosException(MachnosException.UNMODIFIABLE_VARIABLE_SLOTS, variableName);
+        }
+        return this.slots.computeIfAbsent(variableName, name -> this.slots.size());
+    }
+
+    /**
+     * Gives the slot of a <code>Variable</code> name.
+     *
+     * @param variableName The name of the <code>Variable</code>.
+     * @return The slot of the <code>Variable</code>, or -1 when the name has no slot.
+     */
+    public int indexOf(String variableName) {
+        if (variableName == null) {
+            return -1;
+        }
+        final var slot = this.slots.get(variableName);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Gives the number of slots.
+     *
+     * @return The number of slots.
+     */
+    public int size() {
+        return this.slots.size();
+    }
+}
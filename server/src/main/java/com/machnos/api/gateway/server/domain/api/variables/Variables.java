@@ -17,33 +17,105 @@
 
 package com.machnos.api.gateway.server.domain.api.variables;
 
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Container class for <code>Variable</code>s.
+ * Container class for <code>Variable</code>s. The names of the <code>Variable</code>s are unique within a container.
+ *
+ * A container that is created with {@link VariableSlots} holds the <code>Variable</code>s that have a slot in an array,
+ * so they can be accessed by their slot without a lookup, and by their name with a single lookup of the slot.
+ * <code>Variable</code>s without a slot, such as those of a container without slots, are held by their name.
  */
 public class Variables {
 
     /**
-     * The set of <code>Variable</code> instances.
+     * The slots of the <code>Variable</code>s that are held in the {@link #frame}.
+     */
+    private final VariableSlots slots;
+
+    /**
+     * The <code>Variable</code>s that have a slot, indexed by their slot.
+     */
+    private final Variable<?,?>[] frame;
+
+    /**
+     * The <code>Variable</code>s without a slot, mapped by their name, or <code>null</code> when there are none.
+     */
+    private Map<String, Variable<?,?>> unslotted;
+
+    /**
+     * Constructs a new <code>Variables</code> instance that holds all <code>Variable</code>s by their name.
      */
-    private final Set<Variable<?,?>> variables = new HashSet<>();
+    public Variables() {
+        this(VariableSlots.NONE);
+    }
+
+    /**
+     * Constructs a new <code>Variables</code> instance that holds the <code>Variable</code>s in the given slots.
+     * Slots that are added after the instance is constructed are not used by this instance.
+     *
+     * @param slots The <code>VariableSlots</code> of the <code>Variable</code>s.
+     */
+    public Variables(VariableSlots slots) {
+        this.slots = slots;
+        this.frame = new Variable<?,?>[slots.size()];
+    }
 
     /**
-     * Add a <code>Variable</code> to the container.
+     * Add a <code>Variable</code> to the container, unless the container already holds a <code>Variable</code> with
+     * the same name.
      *
      * @param variable The <code>Variable</code> to add.
      * @return This <code>Variables</code> instance
      */
     public Variables add(Variable<?,?> variable) {
         if (variable != null) {
-            this.variables.add(variable);
+            final var slot = slotOf(variable.getName());
+            if (slot != -1) {
+                if (this.frame[slot] == null) {
+                    this.frame[slot] = variable;
+                }
+            } else {
+                getUnslotted().putIfAbsent(variable.getName(), variable);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Add all <code>Variable</code>s of another container to this container. <code>Variable</code>s in this container
+     * are replaced by the <code>Variable</code>s of the other container with the same name.
+     *
+     * @param other The <code>Variables</code> to add.
+     * @return This <code>Variables</code> instance
+     */
+    public Variables addAll(Variables other) {
+        if (other != null && other != this) {
+            for (final var variable : other.frame) {
+                if (variable != null) {
+                    put(variable);
+                }
+            }
+            if (other.unslotted != null) {
+                other.unslotted.values().forEach(this::put);
+            }
         }
         return this;
     }
 
+    /**
+     * Checks whether this container holds its <code>Variable</code>s in the given slots, so the slots that are
+     * resolved with the <code>VariableSlots</code> can be used to get the <code>Variable</code>s.
+     *
+     * @param slots The <code>VariableSlots</code>.
+     * @return <code>true</code> when this container holds its <code>Variable</code>s in all the given slots,
+     * <code>false</code> otherwise.
+     */
+    public boolean usesSlots(VariableSlots slots) {
+        return this.slots == slots && this.frame.length == slots.size();
+    }
+
     /**
      * Gets a <code>BooleanVariable</code> by name.
      *
@@ -58,6 +130,20 @@ public class Variables {
         return null;
     }
 
+    /**
+     * Gets a <code>BooleanVariable</code> by slot.
+     *
+     * @param slot The slot of the <code>BooleanVariable</code>.
+     * @return The <code>BooleanVariable</code> in the given slot, or <code>null</code> when no such <code>Variable</code> exists.
+     */
+    public BooleanVariable getBooleanVariable(int slot) {
+        Variable<?, ?> variable = getVariableBySlot(slot);
+        if (variable instanceof  BooleanVariable) {
+            return (BooleanVariable) variable;
+        }
+        return null;
+    }
+
     /**
      * Gets a <code>NumberVariable</code> by name.
      *
@@ -72,6 +158,20 @@ public class Variables {
         return null;
     }
 
+    /**
+     * Gets a <code>NumberVariable</code> by slot.
+     *
+     * @param slot The slot of the <code>NumberVariable</code>.
+     * @return The <code>NumberVariable</code> in the given slot, or <code>null</code> when no such <code>Variable</code> exists.
+     */
+    public NumberVariable getNumberVariable(int slot) {
+        Variable<?, ?> variable = getVariableBySlot(slot);
+        if (variable instanceof  NumberVariable) {
+            return (NumberVariable) variable;
+        }
+        return null;
+    }
+
     /**
      * Gets a <code>StringVariable</code> by name.
      *
@@ -86,6 +186,34 @@ public class Variables {
         return null;
     }
 
+    /**
+     * Gets a <code>StringVariable</code> by slot.
+     *
+     * @param slot The slot of the <code>StringVariable</code>.
+     * @return The <code>StringVariable</code> in the given slot, or <code>null</code> when no such <code>Variable</code> exists.
+     */
+    public StringVariable getStringVariable(int slot) {
+        Variable<?, ?> variable = getVariableBySlot(slot);
+        if (variable instanceof  StringVariable) {
+            return (StringVariable) variable;
+        }
+        return null;
+    }
+
+    /**
+     * Puts a <code>Variable</code> in the container, replacing the <code>Variable</code> with the same name.
+     *
+     * @param variable The <code>Variable</code> to put.
+     */
+    private void put(Variable<?, ?> variable) {
+        final var slot = slotOf(variable.getName());
+        if (slot != -1) {
+            this.frame[slot] = variable;
+        } else {
+            getUnslotted().put(variable.getName(), variable);
+        }
+    }
+
     /**
      * Gets a variable by name.
      *
@@ -96,10 +224,46 @@ public class Variables {
         if (variableName == null) {
             return null;
         }
-        Optional<Variable<?, ?>> optionalVariable = this.variables.stream().filter(p -> variableName.equals(p.getName())).findAny();
-        if (optionalVariable.isEmpty()) {
+        final var slot = slotOf(variableName);
+        if (slot != -1) {
+            return this.frame[slot];
+        }
+        return this.unslotted == null ? null : this.unslotted.get(variableName);
+    }
+
+    /**
+     * Gets a variable by slot.
+     *
+     * @param slot The slot of the <code>Variable</code>.
+     * @return The <code>Variable</code> in the given slot, or <code>null</code> when no such <code>Variable</code> exists.
+     */
+    private Variable<?, ?> getVariableBySlot(int slot) {
+        if (slot < 0 || slot >= this.frame.length) {
             return null;
         }
-        return optionalVariable.get();
+        return this.frame[slot];
+    }
+
+    /**
+     * Gives the slot of a <code>Variable</code> name in the {@link #frame}.
+     *
+     * @param variableName The name of the <code>Variable</code>.
+     * @return The slot, or -1 when the name has no slot in the frame of this container.
+     */
+    private int slotOf(String variableName) {
+        final var slot = this.slots.indexOf(variableName);
+        return slot < this.frame.length ? slot : -1;
+    }
+
+    /**
+     * Gives the <code>Variable</code>s without a slot, creating the map on first use.
+     *
+     * @return The <code>Variable</code>s without a slot.
+     */
+    private Map<String, Variable<?,?>> getUnslotted() {
+        if (this.unslotted == null) {
+            this.unslotted = new HashMap<>();
+        }
+        return this.unslotted;
     }
 }
@@ -134,4 +134,16 @@ public class FileSystemKeyStoreWrapper extends AbstractKeyStoreWrapper {
         }
         return super.getKeyStore();
     }
+
+    /**
+     * Gives the last time the entries of the keystore were loaded from or stored to the filesystem. This value changes
+     * each time the keystore is reloaded by {@link #getKeyStore()}, so it can be used to detect changes of the
+     * entries.
+     *
+     * @return The last modification time of the keystore file when the entries were loaded or stored, or -1 when the
+     * keystore is not backed by a file yet.
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>HttpHandler</code> that keeps track of the requests in flight, so the server can wait for them to complete
+ * before it closes the connections of the clients.
+ *
+ * While the server drains, the requests that still arrive on open connections are handled, but each http/1.x response
+ * that is committed gets a <code>Connection: close</code> header, so the clients open a new connection for their next
+ * request. Those new connections end up at the process that listens on the port by then.
+ */
+public class DrainHandler implements HttpHandler {
+
+    /**
+     * The number of requests that are not completed yet.
+     */
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * The handler the requests are handed to.
+     */
+    private final HttpHandler next;
+
+    /**
+     * Whether the server is draining.
+     */
+    private volatile boolean draining;
+
+    /**
+     * Constructs a new <code>DrainHandler</code> instance.
+     *
+     * @param next The handler the requests are handed to.
+     */
+    public DrainHandler(HttpHandler next) {
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        this.inFlight.incrementAndGet();
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            if (this.inFlight.decrementAndGet() == 0 && this.draining) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+            nextListener.proceed();
+        });
+        exchange.addResponseCommitListener(ex -> {
+            if (this.draining && !ex.isHttp2()) {
+                ex.setPersistent(false);
+                ex.getResponseHeaders().put(Headers.CONNECTION, Headers.CLOSE.toString());
+            }
+        });
+        this.next.handleRequest(exchange);
+    }
+
+    /**
+     * Starts draining. The responses that are committed from now on close their http/1.x connection.
+     */
+    public void drain() {
+        this.draining = true;
+    }
+
+    /**
+     * Stops draining, for example when the server is started again.
+     */
+    public void reset() {
+        this.draining = false;
+    }
+
+    /**
+     * Gives whether the server is draining.
+     *
+     * @return <code>true</code> when the server is draining, <code>false</code> otherwise.
+     */
+    public boolean isDraining() {
+        return this.draining;
+    }
+
+    /**
+     * Gives the number of requests that are not completed yet.
+     *
+     * @return The number of requests in flight.
+     */
+    public long getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Waits until all requests in flight are completed.
+     *
+     * @param timeout The maximum number of milliseconds to wait.
+     * @return <code>true</code> when no requests are in flight, <code>false</code> when the timeout elapsed first.
+     * @throws InterruptedException when the current thread is interrupted while waiting.
+     */
+    public synchronized boolean awaitIdle(long timeout) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (this.inFlight.get() > 0) {
+            final var remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -17,40 +17,66 @@
 
 package com.machnos.api.gateway.server.http;
 
+import com.machnos.api.gateway.server.configuration.Api;
+import com.machnos.api.gateway.server.configuration.Configuration;
+import com.machnos.api.gateway.server.configuration.ExecutionMode;
 import com.machnos.api.gateway.server.configuration.HttpInterface;
 import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.functions.Functions;
+import com.machnos.api.gateway.server.domain.api.functions.Pipeline;
 import com.machnos.api.gateway.server.domain.keystore.FileSystemKeyStoreWrapper;
 import com.machnos.api.gateway.server.domain.keystore.KeyStoreWrapper;
+import com.machnos.api.gateway.server.http.accesslog.AccessLogHandler;
+import com.machnos.api.gateway.server.http.accesslog.AccessLogWriter;
+import com.machnos.api.gateway.server.http.cache.CacheHandler;
+import com.machnos.api.gateway.server.http.cache.ResponseCache;
+import com.machnos.api.gateway.server.http.compression.CompressionHandler;
+import com.machnos.api.gateway.server.http.metrics.MetricsHandler;
+import com.machnos.api.gateway.server.http.metrics.PrometheusWriter;
+import com.machnos.api.gateway.server.http.pipeline.PipelineHandler;
+import com.machnos.api.gateway.server.http.pipeline.VirtualThreads;
+import com.machnos.api.gateway.server.http.proxy.CircuitBreaker;
+import com.machnos.api.gateway.server.http.proxy.UpstreamProxyClient;
+import com.machnos.api.gateway.server.http.ratelimit.RateLimitHandler;
+import com.machnos.api.gateway.server.http.ratelimit.RateLimiter;
+import com.machnos.api.gateway.server.http.routing.Route;
+import com.machnos.api.gateway.server.http.routing.RouteHandler;
+import com.machnos.api.gateway.server.http.routing.RouteTable;
+import com.machnos.api.gateway.server.http.tls.MeteredSSLContext;
+import com.machnos.api.gateway.server.http.tls.ReloadingX509KeyManager;
+import com.machnos.api.gateway.server.http.tls.SelfSignedCertificateGenerator;
+import com.machnos.api.gateway.server.http.tls.TlsStatistics;
+import com.machnos.api.gateway.server.http.tracing.Tracer;
+import com.machnos.api.gateway.server.http.tracing.TracingHandler;
 import io.undertow.Undertow;
 import io.undertow.UndertowOptions;
-import io.undertow.util.Headers;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.proxy.ProxyHandler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
-import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.*;
-import org.bouncycastle.cert.CertIOException;
-import org.bouncycastle.cert.X509ExtensionUtils;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
-import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.xnio.OptionMap;
 import org.xnio.Options;
 import org.xnio.Sequence;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
 
-import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
-import java.math.BigInteger;
+import java.io.IOException;
+import java.net.BindException;
 import java.net.InetAddress;
 import java.security.*;
-import java.security.cert.Certificate;
 import java.security.cert.*;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -63,12 +89,106 @@ public class Server {
      */
     private static final Logger logger = LogManager.getLogger();
 
-    private static final String SELF_SIGNED_CERT_ALIAS = "machnos-api-gateway-self-signed";
+    /**
+     * The number of milliseconds between two attempts to bind the listeners while the port is still in use.
+     */
+    private static final long BIND_RETRY_INTERVAL = 100;
+
+    /**
+     * The builder of the Undertow server instance. A new instance is built with a new worker each time the server is
+     * started, because the worker is shut down when the server is stopped.
+     */
+    private final Undertow.Builder builder;
+
+    /**
+     * The Undertow server instance, or <code>null</code> when the server is not running.
+     */
+    private Undertow server;
+
+    /**
+     * The worker that owns the connections of the server, or <code>null</code> when the server is not running. The
+     * worker is created by the server instead of by Undertow, so the listeners can be closed while the connections of
+     * the requests in flight stay open.
+     */
+    private XnioWorker worker;
+
+    /**
+     * The handler that keeps track of the requests in flight.
+     */
+    private final DrainHandler drainHandler;
+
+    /**
+     * The writer of the access log, or <code>null</code> when the access log is disabled.
+     */
+    private final AccessLogWriter accessLogWriter;
+
+    /**
+     * The handler that records the metrics of the requests, or <code>null</code> when no metrics are recorded.
+     */
+    private final MetricsHandler metricsHandler;
+
+    /**
+     * The tracer that records and exports the spans of the sampled requests, or <code>null</code> when tracing is
+     * disabled.
+     */
+    private final Tracer tracer;
+
+    /**
+     * The maximum number of milliseconds the requests in flight are waited for when the server is stopped.
+     */
+    private final long drainTimeout;
+
+    /**
+     * The maximum number of milliseconds binding the listeners is retried while the port is in use.
+     */
+    private final long bindTimeout;
+
+    /**
+     * The number of I/O threads of the worker.
+     */
+    private final int ioThreads;
 
     /**
-     * The Undertow server instance.
+     * The number of task threads of the worker.
      */
-    private final Undertow server;
+    private final int workerThreads;
+
+    /**
+     * The <code>UpstreamProxyClient</code>s, mapped by the name of the upstream they forward to.
+     */
+    private final Map<String, UpstreamProxyClient> proxyClients = new HashMap<>();
+
+    /**
+     * The statistics of the TLS handshakes on the https listeners.
+     */
+    private final TlsStatistics tlsStatistics = new TlsStatistics();
+
+    /**
+     * The cache of the responses of the apis that have caching enabled, or <code>null</code> when no api has caching
+     * enabled.
+     */
+    private ResponseCache responseCache;
+
+    /**
+     * The <code>RateLimiter</code>s of the apis that have a rate limit, mapped by the name of the api.
+     */
+    private final Map<String, RateLimiter> rateLimiters = new HashMap<>();
+
+    /**
+     * The number of milliseconds between two removals of the rate limit state of idle consumers.
+     */
+    private final long rateLimitEvictionInterval;
+
+    /**
+     * The executor that removes the rate limit state of idle consumers while the server is running, or
+     * <code>null</code> when no api has a rate limit or the server is not running.
+     */
+    private ScheduledExecutorService rateLimitEviction;
+
+    /**
+     * Completes when the key material of the https listeners is available.
+     */
+    private CompletableFuture<Void> certificateBootstrap = CompletableFuture.completedFuture(null);
 
     /**
      * Boolean holding the current running state of the server.
@@ -81,8 +201,21 @@ public class Server {
      * @param managementInterface The http configuration for the management interface.
      */
     public Server(HttpInterface managementInterface) {
-        var builder = Undertow.builder();
-        if (managementInterface.keystoreLocation != null && managementInterface.tlsProtocols != null && managementInterface.tlsProtocols.length > 0) {
+        this(managementInterface, new Configuration());
+    }
+
+    /**
+     * Creates a new <code>Server</code> instance.
+     *
+     * @param managementInterface The http configuration for the management interface.
+     * @param configuration The <code>Configuration</code> that holds the upstreams traffic can be forwarded to.
+     */
+    public Server(HttpInterface managementInterface, Configuration configuration) {
+        final var tlsEnabled = managementInterface.keystoreLocation != null && managementInterface.tlsProtocols != null && managementInterface.tlsProtocols.length > 0;
+        ReloadingX509KeyManager keyManager = null;
+        if (tlsEnabled) {
+            // Must be done before the JSSE classes are initialized, which may happen when the upstreams are created.
+            configureSessionTickets(managementInterface);
             if (!managementInterface.keystoreLocation.exists()) {
                 var parentFile = managementInterface.keystoreLocation.getParentFile();
                 if (!parentFile.exists()) {
@@ -94,44 +227,85 @@ public class Server {
                     KeyStoreWrapper.KeyStoreType.valueOf(managementInterface.keystoreType),
                     managementInterface.getKeystorePasswordAsCharArray()
             );
-            validateSelfSignedCert(keyStoreWrapper, managementInterface.getServerEntryPasswordAsCharArray());
+            validateSelfSignedCert(keyStoreWrapper, managementInterface);
+            keyManager = new ReloadingX509KeyManager(keyStoreWrapper, managementInterface.getServerEntryPasswordAsCharArray(), managementInterface.keystoreReloadInterval);
             try {
                 if (keyStoreWrapper.getKeyStore().size() == 0) {
-                    // Generate self signed cert and add it to the keystore.
-                    addSelfSignedCertificate(managementInterface, keyStoreWrapper);
+                    // Generate the self signed cert while the rest of the server is constructed and started.
+                    this.certificateBootstrap = addSelfSignedCertificate(managementInterface, keyStoreWrapper, keyManager);
                 }
-            } catch (KeyStoreException | NoSuchAlgorithmException | CertIOException | CertificateException | OperatorCreationException e) {
+            } catch (KeyStoreException e) {
                 throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
             }
-
+        }
+        this.rateLimitEvictionInterval = managementInterface.rateLimitEvictionInterval;
+        this.drainTimeout = managementInterface.drainTimeout;
+        this.bindTimeout = managementInterface.bindTimeout;
+        this.ioThreads = managementInterface.ioThreads > 0 ? managementInterface.ioThreads : Math.max(Runtime.getRuntime().availableProcessors(), 2);
+        this.workerThreads = managementInterface.workerThreads > 0 ? managementInterface.workerThreads : this.ioThreads * 8;
+        var builder = Undertow.builder()
+                .setBufferSize(managementInterface.bufferSize)
+                .setDirectBuffers(managementInterface.directBuffers)
+                .setSocketOption(Options.BACKLOG, managementInterface.acceptBacklog);
+        configureAcceptBalancing(builder, managementInterface);
+        var handler = createRootHandler(managementInterface, configuration);
+        if (managementInterface.tracing != null) {
+            this.tracer = new Tracer(managementInterface.tracing);
+            handler = new TracingHandler(this.tracer, handler);
+        } else {
+            this.tracer = null;
+        }
+        if (managementInterface.accessLog != null) {
+            this.accessLogWriter = new AccessLogWriter(managementInterface.accessLog);
+            handler = new AccessLogHandler(this.accessLogWriter, handler);
+            builder.setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, true);
+        } else {
+            this.accessLogWriter = null;
+        }
+        if (managementInterface.metricsPath != null) {
+            this.metricsHandler = new MetricsHandler(
+                    managementInterface.metricsPath,
+                    configuration.apis.stream().map(api -> api.name).collect(Collectors.toList()),
+                    List.of(this::collectMetrics),
+                    handler
+            );
+            handler = this.metricsHandler;
+            builder.setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, true);
+        } else {
+            this.metricsHandler = null;
+        }
+        this.drainHandler = new DrainHandler(handler);
+        final var rootHandler = this.drainHandler;
+        if (tlsEnabled) {
             try {
-                final var keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-                keyManagerFactory.init(keyStoreWrapper.getKeyStore(), managementInterface.getServerEntryPasswordAsCharArray());
-                final var keyManagers = keyManagerFactory.getKeyManagers();
                 final var sslContext = SSLContext.getInstance("TLS");
-                sslContext.init(keyManagers, null, null);
+                sslContext.init(new KeyManager[] {keyManager}, null, null);
+                final var sessionContext = sslContext.getServerSessionContext();
+                sessionContext.setSessionCacheSize(managementInterface.tlsSessionCacheSize);
+                sessionContext.setSessionTimeout(managementInterface.tlsSessionTimeout);
+                final var meteredSslContext = new MeteredSSLContext(sslContext, this.tlsStatistics);
                 builder.setServerOption(UndertowOptions.ENABLE_HTTP2, true)
                         .setSocketOption(Options.SSL_ENABLED_PROTOCOLS, Sequence.of(managementInterface.tlsProtocols));
                 managementInterface.getListenInetAddresses().forEach(c -> builder.addHttpsListener(
                         managementInterface.listenPort,
                         c.getHostAddress(),
-                        sslContext,
-                        exchange -> {
-                            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
-                            exchange.getResponseSender().send("Hello World");
-                        })
+                        meteredSslContext,
+                        rootHandler)
                 );
-            } catch (NoSuchAlgorithmException | KeyStoreException | UnrecoverableKeyException | KeyManagementException e) {
+            } catch (NoSuchAlgorithmException | KeyManagementException e) {
                 throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
             }
         } else {
-            builder.addHttpListener(managementInterface.listenPort, managementInterface.listenInterface);
+            builder.addHttpListener(managementInterface.listenPort, managementInterface.listenInterface, rootHandler);
         }
-        this.server = builder.build();
+        this.builder = builder;
     }
 
     /**
      * Starts the http server. If the server is already started, this method does nothing.
+     *
+     * When the port is still in use, for example by the previous process of the gateway that is draining its requests,
+     * binding the listeners is retried for at most the bind timeout of the <code>HttpInterface</code>.
      */
     public synchronized void start() {
         if (isRunning()) {
@@ -140,7 +314,18 @@ public class Server {
         if (logger.isInfoEnabled()) {
             logger.info("Starting http server...");
         }
-        this.server.start();
+        awaitCertificateBootstrap();
+        this.worker = createWorker();
+        this.server = this.builder.setWorker(this.worker).build();
+        this.drainHandler.reset();
+        bind();
+        if (this.accessLogWriter != null) {
+            this.accessLogWriter.start();
+        }
+        if (this.tracer != null) {
+            this.tracer.start();
+        }
+        startRateLimitEviction();
         this.running = true;
         if (logger.isInfoEnabled()) {
             logger.info("Http server started and listening on " + this.server.getListenerInfo().stream().map(l -> l.getProtcol() + ":/" + l.getAddress()).collect(Collectors.joining(", ")) + ".");
@@ -148,22 +333,172 @@ public class Server {
     }
 
     /**
-     * Stops the http server. If the server is not started, this method does nothing.
+     * Stops the http server, waiting at most the drain timeout of the <code>HttpInterface</code> for the requests in
+     * flight. If the server is not started, this method does nothing.
+     *
+     * @see #stop(long)
+     */
+    public void stop() {
+        stop(this.drainTimeout);
+    }
+
+    /**
+     * Stops the http server gracefully. If the server is not started, this method does nothing.
+     *
+     * <ol>
+     *     <li>The listeners are closed, so no new connections are accepted and another process can bind the
+     *     port.</li>
+     *     <li>The requests in flight are completed. Requests that arrive on open http/1.x connections are still
+     *     handled, but their responses close the connection.</li>
+     *     <li>When no requests are in flight anymore, or the drain timeout has elapsed, all connections are
+     *     closed.</li>
+     * </ol>
+     *
+     * @param drainTimeout The maximum number of milliseconds to wait for the requests in flight, or 0 to close the
+     * connections right away.
      */
-    public synchronized void stop() {
+    public synchronized void stop(long drainTimeout) {
         if (!isRunning()) {
             return;
         }
         if (logger.isInfoEnabled()) {
             logger.info("Stopping http server...");
         }
+        this.drainHandler.drain();
         this.server.stop();
+        this.server = null;
+        try {
+            if (!this.drainHandler.awaitIdle(drainTimeout) && logger.isWarnEnabled()) {
+                logger.warn("Closing the connections of " + this.drainHandler.getInFlight() + " requests that are still in flight after " + drainTimeout + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        shutdownWorker();
+        if (this.accessLogWriter != null) {
+            this.accessLogWriter.stop();
+        }
+        if (this.tracer != null) {
+            this.tracer.stop();
+        }
+        if (this.rateLimitEviction != null) {
+            this.rateLimitEviction.shutdownNow();
+            this.rateLimitEviction = null;
+        }
+        this.proxyClients.values().forEach(UpstreamProxyClient::clear);
         this.running = false;
         if (logger.isInfoEnabled()) {
             logger.info("Http server stopped.");
         }
     }
 
+    /**
+     * Binds the listeners, retrying while the port is in use until the bind timeout has elapsed.
+     */
+    private void bind() {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.bindTimeout);
+        while (true) {
+            try {
+                this.server.start();
+                return;
+            } catch (RuntimeException e) {
+                // Close the listeners that are bound already.
+                this.server.stop();
+                if (!isBindException(e) || System.nanoTime() - deadline >= 0) {
+                    shutdownWorker();
+                    this.server = null;
+                    throw e;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Port is in use, retrying to bind the listeners in " + BIND_RETRY_INTERVAL + " ms.");
+                }
+            }
+            try {
+                Thread.sleep(BIND_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shutdownWorker();
+                this.server = null;
+                throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
+            }
+        }
+    }
+
+    /**
+     * Determines whether an exception is caused by a port that is in use.
+     *
+     * @param exception The exception thrown when the listeners are bound.
+     * @return <code>true</code> when the exception is caused by a <code>BindException</code>, <code>false</code>
+     * otherwise.
+     */
+    private static boolean isBindException(Throwable exception) {
+        for (var cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BindException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Configures the balancing of accepted connections across the I/O threads of the listeners.
+     *
+     * @param builder The <code>Undertow.Builder</code> of the listeners.
+     * @param httpInterface The <code>HttpInterface</code> that holds the balancing settings.
+     */
+    private void configureAcceptBalancing(Undertow.Builder builder, HttpInterface httpInterface) {
+        if (httpInterface.acceptBalancingTokens <= 0) {
+            return;
+        }
+        var tokens = httpInterface.acceptBalancingTokens;
+        if (tokens >= this.ioThreads) {
+            tokens = this.ioThreads - 1;
+            if (logger.isWarnEnabled()) {
+                logger.warn("The number of accept balancing tokens must be smaller than the number of I/O threads, using " + tokens + " tokens.");
+            }
+        }
+        builder.setSocketOption(Options.BALANCING_TOKENS, tokens)
+                .setSocketOption(Options.BALANCING_CONNECTIONS, Math.max(1, httpInterface.acceptBalancingConnections));
+    }
+
+    /**
+     * Creates the worker that owns the connections of the server, with the same settings Undertow uses for the
+     * workers it creates itself.
+     *
+     * @return The <code>XnioWorker</code>.
+     */
+    private XnioWorker createWorker() {
+        try {
+            return Xnio.getInstance(Undertow.class.getClassLoader()).createWorker(OptionMap.builder()
+                    .set(Options.WORKER_IO_THREADS, this.ioThreads)
+                    .set(Options.CONNECTION_HIGH_WATER, 1_000_000)
+                    .set(Options.CONNECTION_LOW_WATER, 1_000_000)
+                    .set(Options.WORKER_TASK_CORE_THREADS, this.workerThreads)
+                    .set(Options.WORKER_TASK_MAX_THREADS, this.workerThreads)
+                    .set(Options.TCP_NODELAY, true)
+                    .set(Options.CORK, true)
+                    .getMap());
+        } catch (IOException e) {
+            throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
+        }
+    }
+
+    /**
+     * Shuts down the worker, which closes all connections of the server.
+     */
+    private void shutdownWorker() {
+        this.worker.shutdown();
+        try {
+            if (!this.worker.awaitTermination(1, TimeUnit.SECONDS)) {
+                this.worker.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.worker.shutdownNow();
+        }
+        this.worker = null;
+    }
+
     /**
      * Method that indicates if the <code>Server</code> is running or not.
      * @return <code>true</code> when the <code>Server</code> is running, <code>false</code> otherwise.
@@ -172,16 +507,370 @@ public class Server {
         return this.running;
     }
 
+    /**
+     * Gives the <code>UpstreamProxyClient</code> that forwards traffic to the upstream with the given name.
+     *
+     * @param upstreamName The name of the upstream.
+     * @return The <code>UpstreamProxyClient</code>, or <code>null</code> when no traffic is forwarded to the upstream.
+     */
+    public UpstreamProxyClient getProxyClient(String upstreamName) {
+        return this.proxyClients.get(upstreamName);
+    }
+
+    /**
+     * Gives the cache of the responses of the apis.
+     *
+     * @return The <code>ResponseCache</code>, or <code>null</code> when no api has caching enabled.
+     */
+    public ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * Gives the rate limiter of an api.
+     *
+     * @param apiName The name of the api.
+     * @return The <code>RateLimiter</code>, or <code>null</code> when the api has no rate limit.
+     */
+    public RateLimiter getRateLimiter(String apiName) {
+        return this.rateLimiters.get(apiName);
+    }
+
+    /**
+     * Gives the statistics of the TLS handshakes on the https listeners.
+     *
+     * @return The <code>TlsStatistics</code>.
+     */
+    public TlsStatistics getTlsStatistics() {
+        return this.tlsStatistics;
+    }
+
+    /**
+     * Gives the writer of the access log.
+     *
+     * @return The <code>AccessLogWriter</code>, or <code>null</code> when the access log is disabled.
+     */
+    public AccessLogWriter getAccessLogWriter() {
+        return this.accessLogWriter;
+    }
+
+    /**
+     * Gives the handler that records the metrics of the requests.
+     *
+     * @return The <code>MetricsHandler</code>, or <code>null</code> when no metrics are recorded.
+     */
+    public MetricsHandler getMetricsHandler() {
+        return this.metricsHandler;
+    }
+
+    /**
+     * Gives the tracer that records and exports the spans of the sampled requests.
+     *
+     * @return The <code>Tracer</code>, or <code>null</code> when tracing is disabled.
+     */
+    public Tracer getTracer() {
+        return this.tracer;
+    }
+
+    /**
+     * Writes the statistics of the connections, the upstreams, the response cache, the rate limiters, the TLS
+     * handshakes, the access log and the tracer. These are read when the metrics are scraped, so they cost nothing per
+     * request.
+     *
+     * @param writer The <code>PrometheusWriter</code> to write the metrics to.
+     */
+    private void collectMetrics(PrometheusWriter writer) {
+        final var worker = this.worker;
+        if (worker != null) {
+            writer.family("machnos_active_connections", PrometheusWriter.Type.GAUGE, "The number of open client connections.")
+                    .sample("machnos_active_connections", worker.getMXBean().getServerMXBeans().stream().mapToLong(server -> server.getConnectionCount()).sum());
+        }
+        writer.family("machnos_requests_in_flight", PrometheusWriter.Type.GAUGE, "The number of requests that are not completed yet.")
+                .sample("machnos_requests_in_flight", this.drainHandler.getInFlight())
+                .family("machnos_draining", PrometheusWriter.Type.GAUGE, "Whether the server is draining its requests before it stops.")
+                .sample("machnos_draining", this.drainHandler.isDraining() ? 1 : 0);
+        collectUpstreamMetrics(writer);
+        if (this.responseCache != null) {
+            writer.family("machnos_cache_hits_total", PrometheusWriter.Type.COUNTER, "The number of requests served from the response cache.")
+                    .sample("machnos_cache_hits_total", this.responseCache.getHits())
+                    .family("machnos_cache_misses_total", PrometheusWriter.Type.COUNTER, "The number of cacheable requests not found in the response cache.")
+                    .sample("machnos_cache_misses_total", this.responseCache.getMisses())
+                    .family("machnos_cache_revalidations_total", PrometheusWriter.Type.COUNTER, "The number of stale responses revalidated with the upstream.")
+                    .sample("machnos_cache_revalidations_total", this.responseCache.getRevalidations())
+                    .family("machnos_cache_coalesced_total", PrometheusWriter.Type.COUNTER, "The number of requests that waited for the upstream request of an identical request.")
+                    .sample("machnos_cache_coalesced_total", this.responseCache.getCoalesced())
+                    .family("machnos_cache_stores_total", PrometheusWriter.Type.COUNTER, "The number of responses stored in the response cache.")
+                    .sample("machnos_cache_stores_total", this.responseCache.getStores())
+                    .family("machnos_cache_evictions_total", PrometheusWriter.Type.COUNTER, "The number of responses evicted from the response cache.")
+                    .sample("machnos_cache_evictions_total", this.responseCache.getEvictions())
+                    .family("machnos_cache_used_bytes", PrometheusWriter.Type.GAUGE, "The number of bytes of response bodies in the response cache.")
+                    .sample("machnos_cache_used_bytes", this.responseCache.getUsedBytes())
+                    .family("machnos_cache_capacity_bytes", PrometheusWriter.Type.GAUGE, "The maximum number of bytes of response bodies in the response cache.")
+                    .sample("machnos_cache_capacity_bytes", this.responseCache.getCapacity());
+        }
+        if (!this.rateLimiters.isEmpty()) {
+            writer.family("machnos_rate_limit_allowed_total", PrometheusWriter.Type.COUNTER, "The number of requests within the rate limit by api.");
+            this.rateLimiters.forEach((apiName, rateLimiter) -> writer.sample("machnos_rate_limit_allowed_total", rateLimiter.getAllowed(), "api", apiName));
+            writer.family("machnos_rate_limit_rejected_total", PrometheusWriter.Type.COUNTER, "The number of requests rejected by the rate limit by api.");
+            this.rateLimiters.forEach((apiName, rateLimiter) -> writer.sample("machnos_rate_limit_rejected_total", rateLimiter.getRejected(), "api", apiName));
+            writer.family("machnos_rate_limit_consumers", PrometheusWriter.Type.GAUGE, "The number of consumers with rate limit state by api.");
+            this.rateLimiters.forEach((apiName, rateLimiter) -> writer.sample("machnos_rate_limit_consumers", rateLimiter.size(), "api", apiName));
+        }
+        writer.family("machnos_tls_handshakes_total", PrometheusWriter.Type.COUNTER, "The number of TLS handshakes by type.")
+                .sample("machnos_tls_handshakes_total", this.tlsStatistics.getFullHandshakes(), "type", "full")
+                .sample("machnos_tls_handshakes_total", this.tlsStatistics.getResumedHandshakes(), "type", "resumed")
+                .sample("machnos_tls_handshakes_total", this.tlsStatistics.getFailedHandshakes(), "type", "failed");
+        if (this.accessLogWriter != null) {
+            writer.family("machnos_access_log_written_total", PrometheusWriter.Type.COUNTER, "The number of requests written to the access log.")
+                    .sample("machnos_access_log_written_total", this.accessLogWriter.getWritten())
+                    .family("machnos_access_log_dropped_total", PrometheusWriter.Type.COUNTER, "The number of requests not logged because the access log buffer was full.")
+                    .sample("machnos_access_log_dropped_total", this.accessLogWriter.getDropped());
+        }
+        if (this.tracer != null) {
+            writer.family("machnos_traces_sampled_total", PrometheusWriter.Type.COUNTER, "The number of sampled traces.")
+                    .sample("machnos_traces_sampled_total", this.tracer.getSampled())
+                    .family("machnos_traces_rate_limited_total", PrometheusWriter.Type.COUNTER, "The number of traces not sampled because the maximum number of traces per second was exceeded.")
+                    .sample("machnos_traces_rate_limited_total", this.tracer.getRateLimited())
+                    .family("machnos_spans_exported_total", PrometheusWriter.Type.COUNTER, "The number of spans written to the span file.")
+                    .sample("machnos_spans_exported_total", this.tracer.getExporter().getExported())
+                    .family("machnos_spans_dropped_total", PrometheusWriter.Type.COUNTER, "The number of spans not exported because the span queue was full.")
+                    .sample("machnos_spans_dropped_total", this.tracer.getExporter().getDropped());
+        }
+    }
+
+    /**
+     * Writes the statistics of the connection pools and circuit breakers of the upstream hosts.
+     *
+     * @param writer The <code>PrometheusWriter</code> to write the metrics to.
+     */
+    private void collectUpstreamMetrics(PrometheusWriter writer) {
+        if (this.proxyClients.isEmpty()) {
+            return;
+        }
+        final var now = System.nanoTime();
+        final var pools = this.proxyClients.values().stream()
+                .flatMap(proxyClient -> proxyClient.getPools().stream().map(pool -> Map.entry(new String[] {"upstream", proxyClient.getName(), "host", pool.getUri().toString()}, pool)))
+                .collect(Collectors.toList());
+        writer.family("machnos_upstream_connections_open", PrometheusWriter.Type.GAUGE, "The number of open connections to an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_connections_open", e.getValue().getStatistics().getOpenConnections(), e.getKey()));
+        writer.family("machnos_upstream_connections_created_total", PrometheusWriter.Type.COUNTER, "The number of connections opened to an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_connections_created_total", e.getValue().getStatistics().getConnectionsCreated(), e.getKey()));
+        writer.family("machnos_upstream_connections_reused_total", PrometheusWriter.Type.COUNTER, "The number of requests sent over a pooled connection to an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_connections_reused_total", e.getValue().getStatistics().getConnectionsReused(), e.getKey()));
+        writer.family("machnos_upstream_connect_failures_total", PrometheusWriter.Type.COUNTER, "The number of failed connection attempts to an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_connect_failures_total", e.getValue().getStatistics().getConnectFailures(), e.getKey()));
+        writer.family("machnos_upstream_wait_timeouts_total", PrometheusWriter.Type.COUNTER, "The number of requests that timed out waiting for a connection to an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_wait_timeouts_total", e.getValue().getStatistics().getWaitTimeouts(), e.getKey()));
+        writer.family("machnos_upstream_rejections_total", PrometheusWriter.Type.COUNTER, "The number of requests rejected because the wait queue of an upstream host was full.");
+        pools.forEach(e -> writer.sample("machnos_upstream_rejections_total", e.getValue().getStatistics().getRejections(), e.getKey()));
+        writer.family("machnos_upstream_requests_in_flight", PrometheusWriter.Type.GAUGE, "The number of requests in flight to an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_requests_in_flight", e.getValue().getLoad().getInFlightRequests(), e.getKey()));
+        writer.family("machnos_upstream_latency_ewma_seconds", PrometheusWriter.Type.GAUGE, "The exponentially weighted moving average of the latency of an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_latency_ewma_seconds", e.getValue().getLoad().getLatencyEwma(now) / 1e9, e.getKey()));
+        writer.family("machnos_upstream_circuit_state", PrometheusWriter.Type.GAUGE, "The state of the circuit breaker of an upstream host: 0 closed, 1 half open, 2 open.");
+        pools.forEach(e -> writer.sample("machnos_upstream_circuit_state", circuitStateValue(e.getValue().getCircuitBreaker().getState()), e.getKey()));
+        writer.family("machnos_upstream_circuit_trips_total", PrometheusWriter.Type.COUNTER, "The number of times the circuit breaker of an upstream host opened.");
+        pools.forEach(e -> writer.sample("machnos_upstream_circuit_trips_total", e.getValue().getCircuitBreaker().getTrips(), e.getKey()));
+        writer.family("machnos_upstream_circuit_rejections_total", PrometheusWriter.Type.COUNTER, "The number of requests an open circuit breaker kept away from an upstream host.");
+        pools.forEach(e -> writer.sample("machnos_upstream_circuit_rejections_total", e.getValue().getCircuitBreaker().getRejections(), e.getKey()));
+    }
+
+    /**
+     * Gives the value of the circuit state gauge.
+     *
+     * @param state The <code>State</code> of a circuit breaker.
+     * @return 0 when the circuit is closed, 1 when it is half open and 2 when it is open.
+     */
+    private static int circuitStateValue(CircuitBreaker.State state) {
+        switch (state) {
+            case HALF_OPEN:
+                return 1;
+            case OPEN:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Configures the stateless TLS session tickets. The JDK only supports configuring session tickets with system
+     * properties, which apply to all TLS servers in the JVM. Properties that are set explicitly, for example on the
+     * command line, take precedence over the <code>HttpInterface</code> settings.
+     *
+     * @param httpInterface The <code>HttpInterface</code> that holds the session ticket settings.
+     */
+    private static void configureSessionTickets(HttpInterface httpInterface) {
+        setSystemPropertyIfAbsent("jdk.tls.server.enableSessionTicketExtension", Boolean.toString(httpInterface.tlsSessionTickets));
+        setSystemPropertyIfAbsent("jdk.tls.server.statelessKeyTimeout", Integer.toString(httpInterface.tlsSessionTicketKeyRotation));
+    }
+
+    /**
+     * Sets a system property when it is not set yet.
+     *
+     * @param key The key of the system property.
+     * @param value The value of the system property.
+     */
+    private static void setSystemPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("System property '" + key + "' is already set to '" + System.getProperty(key) + "', ignoring value '" + value + "'.");
+        }
+    }
+
+    /**
+     * Creates the handler that handles all requests on the given <code>HttpInterface</code>. Requests are matched to
+     * the configured apis first. Requests that do not match an api are forwarded to the upstream of the
+     * <code>HttpInterface</code>, if any.
+     *
+     * @param httpInterface The <code>HttpInterface</code> to create the handler for.
+     * @param configuration The <code>Configuration</code> that holds the apis and upstreams.
+     * @return The <code>HttpHandler</code> for the <code>HttpInterface</code>.
+     */
+    private HttpHandler createRootHandler(HttpInterface httpInterface, Configuration configuration) {
+        final var fallbackHandler = httpInterface.upstream == null ? ResponseCodeHandler.HANDLE_404 : createProxyHandler(httpInterface.upstream, configuration);
+        if (configuration.apis.isEmpty()) {
+            return fallbackHandler;
+        }
+        if (httpInterface.executionMode == ExecutionMode.VIRTUAL_THREAD && !VirtualThreads.isSupported() && logger.isWarnEnabled()) {
+            logger.warn("Virtual threads are not supported by this JVM, the function pipelines are executed on the worker thread pool.");
+        }
+        final var routeTable = new RouteTable();
+        configuration.apis.forEach(api -> routeTable.add(new Route(api.name, api.hosts, api.methods, api.path, createApiHandler(api, httpInterface, configuration))));
+        if (logger.isInfoEnabled()) {
+            logger.info("Compiled " + routeTable.size() + " api route(s).");
+        }
+        return new RouteHandler(routeTable, fallbackHandler);
+    }
+
+    /**
+     * Creates the handler that handles the requests to an api. The function pipeline of the api, if any, is executed
+     * before the request is served from the response cache or forwarded to the upstream of the api. The responses of
+     * the upstream are compressed before they are stored in the response cache, so the cache holds the compressed
+     * variants. The <code>Accept-Encoding</code> header is normalized to the negotiated encoding before the cache is
+     * consulted, so the cache holds one variant per encoding. The rate limit of the api is applied before the function
+     * pipeline, unless the consumer is identified by a variable of the pipeline.
+     *
+     * @param api The <code>Api</code> to create the handler for.
+     * @param httpInterface The <code>HttpInterface</code> the api is served on.
+     * @param configuration The <code>Configuration</code> that holds the upstreams.
+     * @return The <code>HttpHandler</code> for the api.
+     */
+    private HttpHandler createApiHandler(Api api, HttpInterface httpInterface, Configuration configuration) {
+        var handler = createProxyHandler(api.upstream, configuration);
+        CompressionHandler compressionHandler = null;
+        if (api.compression != null) {
+            compressionHandler = new CompressionHandler(api.compression, handler);
+            handler = compressionHandler;
+        }
+        if (api.cache != null) {
+            if (this.responseCache == null) {
+                this.responseCache = new ResponseCache(httpInterface.responseCacheSize);
+            }
+            handler = new CacheHandler(this.responseCache, api.cache, handler);
+            if (compressionHandler != null) {
+                handler = compressionHandler.normalizeAcceptEncoding(handler);
+            }
+        }
+        final var rateLimitAfterPipeline = api.rateLimit != null && api.rateLimit.keyVariable != null;
+        if (rateLimitAfterPipeline) {
+            handler = createRateLimitHandler(api, handler);
+        }
+        if (!api.functions.isEmpty()) {
+            final var pipeline = new Pipeline();
+            api.functions.forEach(apiFunction -> pipeline.add(Functions.getFunction(apiFunction.function), apiFunction.configuration));
+            if (rateLimitAfterPipeline) {
+                pipeline.getVariableSlots().add(api.rateLimit.keyVariable);
+            }
+            handler = new PipelineHandler(pipeline, httpInterface.executionMode, handler);
+        }
+        if (api.rateLimit != null && !rateLimitAfterPipeline) {
+            handler = createRateLimitHandler(api, handler);
+        }
+        return handler;
+    }
+
+    /**
+     * Creates a handler that applies the rate limit of an api.
+     *
+     * @param api The <code>Api</code> to create the handler for.
+     * @param next The handler the requests within the rate limit are handed to.
+     * @return The <code>HttpHandler</code> that applies the rate limit.
+     */
+    private HttpHandler createRateLimitHandler(Api api, HttpHandler next) {
+        final var rateLimiter = new RateLimiter(api.rateLimit.rate, api.rateLimit.burst);
+        this.rateLimiters.put(api.name, rateLimiter);
+        return new RateLimitHandler(rateLimiter, api.rateLimit, next);
+    }
+
+    /**
+     * Starts the periodic removal of the rate limit state of idle consumers, when at least one api has a rate limit.
+     */
+    private void startRateLimitEviction() {
+        if (this.rateLimiters.isEmpty() || this.rateLimitEvictionInterval <= 0) {
+            return;
+        }
+        this.rateLimitEviction = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "machnos-rate-limit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rateLimitEviction.scheduleWithFixedDelay(() -> this.rateLimiters.forEach((apiName, rateLimiter) -> {
+            final var evicted = rateLimiter.evictIdle();
+            if (evicted > 0 && logger.isTraceEnabled()) {
+                logger.trace("Removed the rate limit state of " + evicted + " idle consumer(s) of api '" + apiName + "'.");
+            }
+        }), this.rateLimitEvictionInterval, this.rateLimitEvictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a handler that forwards all requests to an upstream.
+     *
+     * @param upstreamName The name of the upstream to forward the requests to.
+     * @param configuration The <code>Configuration</code> that holds the upstreams.
+     * @return The <code>HttpHandler</code> that forwards the requests.
+     */
+    private HttpHandler createProxyHandler(String upstreamName, Configuration configuration) {
+        final var upstream = configuration.getUpstream(upstreamName);
+        if (upstream == null) {
+            throw new MachnosException(MachnosException.INVALID_UPSTREAM, upstreamName);
+        }
+        final var proxyClient = this.proxyClients.computeIfAbsent(upstreamName, k -> new UpstreamProxyClient(upstream));
+        return ProxyHandler.builder()
+                .setProxyClient(proxyClient)
+                .setMaxRequestTime(upstream.maxRequestTime)
+                .setNext(ResponseCodeHandler.HANDLE_404)
+                .build();
+    }
+
+    /**
+     * Waits until the self signed certificate is generated, so the listeners are not started before they can complete
+     * a handshake.
+     */
+    private void awaitCertificateBootstrap() {
+        if (this.certificateBootstrap.isDone()) {
+            return;
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Waiting for the self signed certificate to be generated...");
+        }
+        try {
+            this.certificateBootstrap.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof MachnosException ? (MachnosException) e.getCause() : new MachnosException(MachnosException.WRAPPED_EXCEPTION, e.getCause());
+        }
+    }
+
     /**
      * Validate the automatically created self signed certificate if it is available in the given keystore. When the
-     * certificate is expired it is removed from the keystore.
+     * certificate is expired, or not generated with the configured key algorithm, it is removed from the keystore.
      *
      * @param keyStoreWrapper The <code>KeyStoreWrapper</code> to check for the generated server certificate.
-     * @param entryPassword The password for the entry.
+     * @param httpInterface The <code>HttpInterface</code> that holds the entry password and the key algorithm.
      */
-    private void validateSelfSignedCert(KeyStoreWrapper keyStoreWrapper, char[] entryPassword) {
+    private void validateSelfSignedCert(KeyStoreWrapper keyStoreWrapper, HttpInterface httpInterface) {
         try {
-            final var entry = keyStoreWrapper.getKeyStore().getEntry(SELF_SIGNED_CERT_ALIAS, new KeyStore.PasswordProtection(entryPassword));
+            final var entry = keyStoreWrapper.getKeyStore().getEntry(SelfSignedCertificateGenerator.ALIAS, new KeyStore.PasswordProtection(httpInterface.getServerEntryPasswordAsCharArray()));
             if (entry instanceof KeyStore.PrivateKeyEntry) {
                 final var pkEntry = (KeyStore.PrivateKeyEntry) entry;
                 if (pkEntry.getCertificate() != null && pkEntry.getCertificate() instanceof X509Certificate) {
@@ -192,7 +881,14 @@ public class Server {
                         if (logger.isInfoEnabled()) {
                             logger.info("Current certificate not valid: '" + e.getMessage() + "'. Removing it from keystore so a new cert will be generated.");
                         }
-                        keyStoreWrapper.deleteEntry(SELF_SIGNED_CERT_ALIAS);
+                        keyStoreWrapper.deleteEntry(SelfSignedCertificateGenerator.ALIAS);
+                        return;
+                    }
+                    if (!SelfSignedCertificateGenerator.matches(httpInterface.selfSignedKeyAlgorithm, x509Cert)) {
+                        if (logger.isInfoEnabled()) {
+                            logger.info("Current certificate not generated with key algorithm '" + httpInterface.selfSignedKeyAlgorithm + "'. Removing it from keystore so a new cert will be generated.");
+                        }
+                        keyStoreWrapper.deleteEntry(SelfSignedCertificateGenerator.ALIAS);
                     }
                 }
             }
@@ -204,48 +900,32 @@ public class Server {
     }
 
     /**
-     * Add a self signed certificate to the keystore.
+     * Add a self signed certificate to the keystore. The key pair and certificate are generated on a separate thread,
+     * so the generation does not delay the construction of the rest of the server. The key material is loaded into
+     * the <code>ReloadingX509KeyManager</code> as soon as it is stored in the keystore.
      *
      * @param httpInterface The <code>HttpInterface</code> to create the certificate for.
      * @param keyStoreWrapper The <code>KeyStoreWrapper</code> that will hold the certificate and private key.
+     * @param keyManager The <code>ReloadingX509KeyManager</code> that serves the key material of the keystore.
+     * @return A <code>CompletableFuture</code> that completes when the key material is available for handshakes.
      */
-    private void addSelfSignedCertificate(HttpInterface httpInterface, FileSystemKeyStoreWrapper keyStoreWrapper) throws NoSuchAlgorithmException, CertIOException, CertificateException, OperatorCreationException {
-        final var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(4096);
-        final var keyPair = keyPairGenerator.generateKeyPair();
-
-        final var now = Instant.now();
-        final var notBefore = Date.from(now);
-        final var notAfter = Date.from(now.plus(Duration.ofDays(30)));
-
-        final var publicKeyInfo = SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded());
-        final var publicKeyExtensionUtils = new X509ExtensionUtils(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)));
-
-        final var contentSigner = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
-
-        final var generalNames = httpInterface.getListenInetAddresses().stream()
+    private CompletableFuture<Void> addSelfSignedCertificate(HttpInterface httpInterface, FileSystemKeyStoreWrapper keyStoreWrapper, ReloadingX509KeyManager keyManager) {
+        final var hostNames = httpInterface.getListenInetAddresses().stream()
                 .map(InetAddress::getHostName)
-                .distinct()
-                .map(f -> new GeneralName(GeneralName.dNSName, f))
-                .toArray(GeneralName[]::new);
-
-        final var certificateBuilder =
-                new JcaX509v3CertificateBuilder(new X500Name("CN=Machnos,O=Machnos,C=NL"),
-                        BigInteger.valueOf(now.toEpochMilli()),
-                        notBefore,
-                        notAfter,
-                        new X500Name("CN=" + InetAddress.getLoopbackAddress().getHostName()),
-                        keyPair.getPublic())
-                        .addExtension(Extension.subjectAlternativeName, true, new GeneralNames(generalNames))
-                        .addExtension(Extension.subjectKeyIdentifier, false, publicKeyExtensionUtils.createSubjectKeyIdentifier(publicKeyInfo))
-                        .addExtension(Extension.authorityKeyIdentifier, false, publicKeyExtensionUtils.createAuthorityKeyIdentifier(publicKeyInfo))
-                        .addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature))
-                        .addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
-                        .addExtension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(KeyPurposeId.id_kp_serverAuth));
-
-        final var cert = new JcaX509CertificateConverter()
-                .setProvider(new BouncyCastleProvider()).getCertificate(certificateBuilder.build(contentSigner));
-        keyStoreWrapper.setKeyEntry(SELF_SIGNED_CERT_ALIAS, keyPair.getPrivate(), httpInterface.getServerEntryPasswordAsCharArray(), new Certificate[] {cert});
-
+                .collect(Collectors.toList());
+        final var subjectName = InetAddress.getLoopbackAddress().getHostName();
+        return CompletableFuture.runAsync(() -> {
+            final var startTime = System.nanoTime();
+            final var entry = SelfSignedCertificateGenerator.generate(httpInterface.selfSignedKeyAlgorithm, subjectName, hostNames, Duration.ofDays(30));
+            keyStoreWrapper.setKeyEntry(SelfSignedCertificateGenerator.ALIAS, entry.getPrivateKey(), httpInterface.getServerEntryPasswordAsCharArray(), entry.getCertificateChain());
+            keyManager.reload();
+            if (logger.isInfoEnabled()) {
+                logger.info("Generated self signed certificate with key algorithm '" + httpInterface.selfSignedKeyAlgorithm + "' in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms.");
+            }
+        }, runnable -> {
+            final var thread = new Thread(runnable, "machnos-certificate-bootstrap");
+            thread.setDaemon(true);
+            thread.start();
+        });
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer of <code>AccessLogRecord</code>s with many producers and a single consumer.
+ *
+ * Each slot has a sequence number that tells whose turn it is. A producer claims the next sequence with a
+ * compare-and-set on the tail, fills the record of the slot and publishes it by advancing the sequence of the slot. The
+ * consumer reads the published records in order and hands the slot back to the producers of the next round. When the
+ * slot of the next sequence is not handed back yet the buffer is full, and the producer gives up instead of waiting.
+ */
+final class AccessLogBuffer {
+
+    private final AccessLogRecord[] records;
+
+    /**
+     * The sequence number of each slot. A slot can be claimed for sequence <code>s</code> when its sequence number is
+     * <code>s</code>, and holds the published record of sequence <code>s</code> when its sequence number is
+     * <code>s + 1</code>.
+     */
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    /**
+     * The next sequence to claim.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next sequence to consume, only accessed by the consumer.
+     */
+    private long head;
+
+    /**
+     * Constructs a new <code>AccessLogBuffer</code> instance.
+     *
+     * @param size The minimum number of records the buffer holds, which is rounded up to a power of two.
+     */
+    AccessLogBuffer(int size) {
+        final var capacity = Integer.highestOneBit(Math.max(2, Math.min(size, 1 << 30) * 2 - 1));
+        this.records = new AccessLogRecord[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (var i = 0; i < capacity; i++) {
+            this.records[i] = new AccessLogRecord();
+            this.sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Gives the number of records the buffer holds.
+     *
+     * @return The capacity of the buffer.
+     */
+    int capacity() {
+        return this.records.length;
+    }
+
+    /**
+     * Claims the next slot of the buffer.
+     *
+     * @return The sequence of the claimed slot, or -1 when the buffer is full.
+     */
+    long claim() {
+        var tail = this.tail.get();
+        while (true) {
+            final var sequence = this.sequences.getAcquire((int) tail & this.mask);
+            if (sequence == tail) {
+                if (this.tail.compareAndSet(tail, tail + 1)) {
+                    return tail;
+                }
+                tail = this.tail.get();
+            } else if (sequence < tail) {
+                return -1;
+            } else {
+                // Another producer claimed this sequence.
+                tail = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * Gives the record of a claimed slot.
+     *
+     * @param sequence The sequence returned by {@link #claim()}.
+     * @return The <code>AccessLogRecord</code> to fill.
+     */
+    AccessLogRecord get(long sequence) {
+        return this.records[(int) sequence & this.mask];
+    }
+
+    /**
+     * Publishes the record of a claimed slot to the consumer.
+     *
+     * @param sequence The sequence returned by {@link #claim()}.
+     */
+    void publish(long sequence) {
+        this.sequences.setRelease((int) sequence & this.mask, sequence + 1);
+    }
+
+    /**
+     * Gives the next published record, without removing it. Must only be called by the consumer.
+     *
+     * @return The next <code>AccessLogRecord</code>, or <code>null</code> when no record is published.
+     */
+    AccessLogRecord peek() {
+        final var index = (int) this.head & this.mask;
+        return this.sequences.getAcquire(index) == this.head + 1 ? this.records[index] : null;
+    }
+
+    /**
+     * Hands the slot of the record returned by {@link #peek()} back to the producers. Must only be called by the
+     * consumer.
+     */
+    void release() {
+        this.sequences.setRelease((int) this.head & this.mask, this.head + this.records.length);
+        this.head++;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.accesslog;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * <code>HttpHandler</code> that hands each completed request to the <code>AccessLogWriter</code>. The handler itself
+ * is the completion listener of the exchanges, so no listener is allocated per request.
+ */
+public class AccessLogHandler implements HttpHandler, ExchangeCompletionListener {
+
+    private final AccessLogWriter writer;
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>AccessLogHandler</code> instance.
+     *
+     * @param writer The <code>AccessLogWriter</code> the completed requests are handed to.
+     * @param next The handler the requests are handed to.
+     */
+    public AccessLogHandler(AccessLogWriter writer, HttpHandler next) {
+        this.writer = writer;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        exchange.addExchangeCompleteListener(this);
+        this.next.handleRequest(exchange);
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            this.writer.append(exchange);
+        } finally {
+            nextListener.proceed();
+        }
+    }
+}
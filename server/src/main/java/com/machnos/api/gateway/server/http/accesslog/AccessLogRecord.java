@@ -0,0 +1,60 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.accesslog;
+
+import io.undertow.util.HttpString;
+
+import java.net.InetAddress;
+
+/**
+ * A slot in the <code>AccessLogBuffer</code> that holds the fields of a completed request. The slots are allocated
+ * once and reused, and hold references to the values the exchange already has, so logging a request does not
+ * allocate.
+ */
+final class AccessLogRecord {
+
+    long time;
+    long duration;
+    int status;
+    long bytesSent;
+    HttpString method;
+    String path;
+    String query;
+    HttpString protocol;
+    InetAddress clientAddress;
+    String api;
+    String host;
+    String userAgent;
+    String referer;
+
+    /**
+     * Clears the references of this record, so the values of the request can be garbage collected while the slot is
+     * not in use.
+     */
+    void clear() {
+        this.method = null;
+        this.path = null;
+        this.query = null;
+        this.protocol = null;
+        this.clientAddress = null;
+        this.api = null;
+        this.host = null;
+        this.userAgent = null;
+        this.referer = null;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.accesslog;
+
+import com.machnos.api.gateway.server.configuration.AccessLog;
+import com.machnos.api.gateway.server.configuration.AccessLogField;
+import com.machnos.api.gateway.server.http.routing.RouteHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writer of the access log of an interface. The request threads hand the completed requests to the writer through a
+ * lock-free <code>AccessLogBuffer</code> of preallocated records, so logging a request neither blocks nor allocates.
+ * A background thread formats the records into a direct buffer and writes them to the file in batches, at least once
+ * per flush interval.
+ *
+ * When the background thread cannot keep up and the buffer is full, the requests are not logged and counted as
+ * dropped.
+ */
+public class AccessLogWriter {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The maximum number of characters of a text field that are written.
+     */
+    static final int MAX_FIELD_LENGTH = 1024;
+
+    /**
+     * The number of nanoseconds the background thread sleeps when there are no records to write.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final AccessLogBuffer buffer;
+    private final AccessLogField[] fields;
+    private final Path file;
+    private final long flushInterval;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    /**
+     * The buffer the records are formatted into by the background thread.
+     */
+    private final ByteBuffer output;
+
+    /**
+     * The number of bytes that are left in the output buffer before it is written, which is enough for the longest
+     * possible line.
+     */
+    private final int reserve;
+
+    private final LongAdder dropped = new LongAdder();
+    private volatile long written;
+
+    private volatile boolean running;
+    private Thread thread;
+    private FileChannel channel;
+    private long fileSize;
+    private long lastFlush;
+
+    /**
+     * The epoch second of the cached formatted time.
+     */
+    private long cachedSecond = Long.MIN_VALUE;
+
+    /**
+     * The date and time until the seconds of {@link #cachedSecond}, for example <code>2024-05-01T12:00:00</code>.
+     */
+    private final byte[] cachedTime = new byte[19];
+
+    /**
+     * Constructs a new <code>AccessLogWriter</code> instance.
+     *
+     * @param accessLog The access log settings of the interface.
+     */
+    public AccessLogWriter(AccessLog accessLog) {
+        this.buffer = new AccessLogBuffer(accessLog.bufferSize);
+        this.fields = accessLog.fields.toArray(new AccessLogField[0]);
+        this.file = Paths.get(accessLog.file);
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, accessLog.flushInterval));
+        this.maxFileSize = accessLog.maxFileSize;
+        this.maxFiles = Math.max(0, accessLog.maxFiles);
+        // Escaping can take 6 bytes per character, and each field is followed by a separator or the line end.
+        this.reserve = Math.max(1, this.fields.length) * (MAX_FIELD_LENGTH * 6 + 3);
+        this.output = ByteBuffer.allocateDirect(Math.max(256 * 1024, this.reserve * 4));
+    }
+
+    /**
+     * Starts the background thread that writes the records to the file. If the writer is already started, this
+     * method does nothing.
+     */
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        this.thread = new Thread(this::run, "machnos-access-log");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops the background thread after it has written the records that are in the buffer. If the writer is not
+     * started, this method does nothing.
+     */
+    public synchronized void stop() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+    }
+
+    /**
+     * Hands a completed request to the writer. This method is called by the request threads, and neither blocks nor
+     * allocates.
+     *
+     * @param exchange The completed <code>HttpServerExchange</code>.
+     */
+    public void append(HttpServerExchange exchange) {
+        final var sequence = this.buffer.claim();
+        if (sequence < 0) {
+            this.dropped.increment();
+            return;
+        }
+        final var record = this.buffer.get(sequence);
+        record.time = System.currentTimeMillis();
+        final var startTime = exchange.getRequestStartTime();
+        record.duration = startTime > 0 ? System.nanoTime() - startTime : -1;
+        record.status = exchange.getStatusCode();
+        record.bytesSent = exchange.getResponseBytesSent();
+        record.method = exchange.getRequestMethod();
+        record.path = exchange.getRequestPath();
+        record.query = exchange.getQueryString();
+        record.protocol = exchange.getProtocol();
+        final var sourceAddress = exchange.getSourceAddress();
+        record.clientAddress = sourceAddress == null ? null : sourceAddress.getAddress();
+        final var route = exchange.getAttachment(RouteHandler.ROUTE);
+        record.api = route == null ? null : route.getName();
+        final var requestHeaders = exchange.getRequestHeaders();
+        record.host = requestHeaders.getFirst(Headers.HOST);
+        record.userAgent = requestHeaders.getFirst(Headers.USER_AGENT);
+        record.referer = requestHeaders.getFirst(Headers.REFERER);
+        this.buffer.publish(sequence);
+    }
+
+    /**
+     * Gives the number of requests that are written to the access log.
+     *
+     * @return The number of written requests.
+     */
+    public long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * Gives the number of requests that are not logged because the buffer was full.
+     *
+     * @return The number of dropped requests.
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Gives the buffer the requests are handed to the background thread with.
+     *
+     * @return The <code>AccessLogBuffer</code>.
+     */
+    AccessLogBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * The loop of the background thread, which formats the published records and writes them to the file.
+     */
+    private void run() {
+        this.lastFlush = System.nanoTime();
+        while (true) {
+            // Read the running state before draining, so the records published before a stop are always written.
+            final var stopping = !this.running;
+            var count = 0L;
+            AccessLogRecord record;
+            while (this.output.remaining() >= this.reserve && (record = this.buffer.peek()) != null) {
+                encode(record, this.output);
+                record.clear();
+                this.buffer.release();
+                count++;
+            }
+            if (count > 0) {
+                this.written += count;
+            }
+            final var now = System.nanoTime();
+            if (this.output.remaining() < this.reserve || (this.output.position() > 0 && (stopping || now - this.lastFlush >= this.flushInterval))) {
+                flush();
+                this.lastFlush = now;
+            }
+            if (stopping && this.buffer.peek() == null) {
+                break;
+            }
+            if (count == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        closeFile();
+    }
+
+    /**
+     * Writes the formatted records to the file, rolling the file over first when it would exceed the maximum size.
+     * When the records cannot be written they are discarded, so a full disk does not stop the writer.
+     */
+    private void flush() {
+        this.output.flip();
+        try {
+            if (this.channel == null) {
+                openFile();
+            }
+            if (this.fileSize > 0 && this.fileSize + this.output.remaining() > this.maxFileSize) {
+                rollOver();
+                openFile();
+            }
+            while (this.output.hasRemaining()) {
+                this.fileSize += this.channel.write(this.output);
+            }
+        } catch (IOException e) {
+            if (logger.isErrorEnabled()) {
+                logger.error("Unable to write the access log to '" + this.file + "'.", e);
+            }
+            closeFile();
+        } finally {
+            this.output.clear();
+        }
+    }
+
+    private void openFile() throws IOException {
+        final var parent = this.file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.fileSize = this.channel.size();
+    }
+
+    private void closeFile() {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Unable to close the access log '" + this.file + "'.", e);
+            }
+        }
+        this.channel = null;
+    }
+
+    /**
+     * Renames the file with the suffix <code>.1</code>, after shifting the older files to the next suffix.
+     */
+    private void rollOver() throws IOException {
+        closeFile();
+        if (this.maxFiles == 0) {
+            Files.deleteIfExists(this.file);
+            return;
+        }
+        Files.deleteIfExists(rolledFile(this.maxFiles));
+        for (var i = this.maxFiles - 1; i >= 1; i--) {
+            final var rolled = rolledFile(i);
+            if (Files.exists(rolled)) {
+                Files.move(rolled, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(this.file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolledFile(int index) {
+        return this.file.resolveSibling(this.file.getFileName() + "." + index);
+    }
+
+    /**
+     * Formats a record as a line of the access log.
+     *
+     * @param record The <code>AccessLogRecord</code> to format.
+     * @param output The buffer to write the line to.
+     */
+    void encode(AccessLogRecord record, ByteBuffer output) {
+        for (var i = 0; i < this.fields.length; i++) {
+            if (i > 0) {
+                output.put((byte) ' ');
+            }
+            switch (this.fields[i]) {
+                case TIME:
+                    putTime(record.time, output);
+                    break;
+                case CLIENT_ADDRESS:
+                    putAddress(record.clientAddress, output);
+                    break;
+                case METHOD:
+                    putHttpString(record.method, output);
+                    break;
+                case PATH:
+                    putQuoted(record.path, output);
+                    break;
+                case QUERY:
+                    putQuoted(record.query == null || record.query.isEmpty() ? null : record.query, output);
+                    break;
+                case PROTOCOL:
+                    putHttpString(record.protocol, output);
+                    break;
+                case STATUS:
+                    putLong(record.status, output);
+                    break;
+                case BYTES_SENT:
+                    putLong(record.bytesSent, output);
+                    break;
+                case DURATION:
+                    if (record.duration < 0) {
+                        output.put((byte) '-');
+                    } else {
+                        putLong(TimeUnit.NANOSECONDS.toMicros(record.duration), output);
+                    }
+                    break;
+                case API:
+                    putQuoted(record.api, output);
+                    break;
+                case HOST:
+                    putQuoted(record.host, output);
+                    break;
+                case USER_AGENT:
+                    putQuoted(record.userAgent, output);
+                    break;
+                case REFERER:
+                    putQuoted(record.referer, output);
+                    break;
+                default:
+                    output.put((byte) '-');
+                    break;
+            }
+        }
+        output.put((byte) '\n');
+    }
+
+    /**
+     * Writes a time in ISO-8601 format in UTC with millisecond precision. The date and time until the seconds is only
+     * formatted once per second.
+     */
+    private void putTime(long time, ByteBuffer output) {
+        final var second = Math.floorDiv(time, 1000L);
+        if (second != this.cachedSecond) {
+            final var dateTime = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+            putDigits(this.cachedTime, 0, dateTime.getYear(), 4);
+            this.cachedTime[4] = '-';
+            putDigits(this.cachedTime, 5, dateTime.getMonthValue(), 2);
+            this.cachedTime[7] = '-';
+            putDigits(this.cachedTime, 8, dateTime.getDayOfMonth(), 2);
+            this.cachedTime[10] = 'T';
+            putDigits(this.cachedTime, 11, dateTime.getHour(), 2);
+            this.cachedTime[13] = ':';
+            putDigits(this.cachedTime, 14, dateTime.getMinute(), 2);
+            this.cachedTime[16] = ':';
+            putDigits(this.cachedTime, 17, dateTime.getSecond(), 2);
+            this.cachedSecond = second;
+        }
+        output.put(this.cachedTime);
+        output.put((byte) '.');
+        final var millis = (int) Math.floorMod(time, 1000L);
+        output.put((byte) ('0' + millis / 100));
+        output.put((byte) ('0' + millis / 10 % 10));
+        output.put((byte) ('0' + millis % 10));
+        output.put((byte) 'Z');
+    }
+
+    private static void putDigits(byte[] bytes, int offset, int value, int length) {
+        for (var i = offset + length - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static void putLong(long value, ByteBuffer output) {
+        if (value < 0) {
+            output.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                output.put((byte) '9');
+                value = -(value + 9_000_000_000_000_000_000L);
+            } else {
+                value = -value;
+            }
+        }
+        var divisor = 1L;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            output.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static void putAddress(InetAddress address, ByteBuffer output) {
+        if (address == null) {
+            output.put((byte) '-');
+        } else if (address instanceof Inet4Address) {
+            final var bytes = address.getAddress();
+            for (var i = 0; i < bytes.length; i++) {
+                if (i > 0) {
+                    output.put((byte) '.');
+                }
+                putLong(bytes[i] & 0xff, output);
+            }
+        } else {
+            putQuoted(address.getHostAddress(), output);
+        }
+    }
+
+    private static void putHttpString(HttpString value, ByteBuffer output) {
+        if (value == null) {
+            output.put((byte) '-');
+        } else {
+            value.appendTo(output);
+        }
+    }
+
+    /**
+     * Writes a text field between double quotes. Quotes, backslashes, control characters and non ascii characters are
+     * escaped, so a field can never break the line, and the field is truncated at {@link #MAX_FIELD_LENGTH}
+     * characters.
+     */
+    private static void putQuoted(String value, ByteBuffer output) {
+        if (value == null) {
+            output.put((byte) '-');
+            return;
+        }
+        output.put((byte) '"');
+        final var length = Math.min(value.length(), MAX_FIELD_LENGTH);
+        for (var i = 0; i < length; i++) {
+            final var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                output.put((byte) '\\');
+                output.put((byte) c);
+            } else if (c >= 0x20 && c < 0x7f) {
+                output.put((byte) c);
+            } else {
+                output.put((byte) '\\');
+                output.put((byte) 'u');
+                output.put(HEX[c >> 12 & 0xf]);
+                output.put(HEX[c >> 8 & 0xf]);
+                output.put(HEX[c >> 4 & 0xf]);
+                output.put(HEX[c & 0xf]);
+            }
+        }
+        output.put((byte) '"');
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import io.undertow.util.HeaderValues;
+
+import java.util.Locale;
+
+/**
+ * The directives of a <code>Cache-Control</code> header that are relevant for the response cache.
+ */
+final class CacheControl {
+
+    /**
+     * A <code>CacheControl</code> without any directives.
+     */
+    static final CacheControl NONE = new CacheControl();
+
+    boolean noStore;
+    boolean noCache;
+    boolean isPrivate;
+    boolean isPublic;
+    boolean mustRevalidate;
+
+    /**
+     * The value of the <code>max-age</code> directive in seconds, or -1 when not present.
+     */
+    long maxAge = -1;
+
+    /**
+     * The value of the <code>s-maxage</code> directive in seconds, or -1 when not present.
+     */
+    long sharedMaxAge = -1;
+
+    private CacheControl() {
+    }
+
+    /**
+     * Parses the values of a <code>Cache-Control</code> header. Unknown directives are ignored.
+     *
+     * @param values The values of the header, may be <code>null</code>.
+     * @return The parsed <code>CacheControl</code>.
+     */
+    static CacheControl parse(HeaderValues values) {
+        if (values == null || values.isEmpty()) {
+            return NONE;
+        }
+        final var cacheControl = new CacheControl();
+        for (final var value : values) {
+            for (final var directive : value.split(",")) {
+                final var separatorIndex = directive.indexOf('=');
+                final var name = (separatorIndex == -1 ? directive : directive.substring(0, separatorIndex)).trim().toLowerCase(Locale.ROOT);
+                final var argument = separatorIndex == -1 ? null : directive.substring(separatorIndex + 1).trim();
+                switch (name) {
+                    case "no-store":
+                        cacheControl.noStore = true;
+                        break;
+                    case "no-cache":
+                        cacheControl.noCache = true;
+                        break;
+                    case "private":
+                        cacheControl.isPrivate = true;
+                        break;
+                    case "public":
+                        cacheControl.isPublic = true;
+                        break;
+                    case "must-revalidate":
+                    case "proxy-revalidate":
+                        cacheControl.mustRevalidate = true;
+                        break;
+                    case "max-age":
+                        cacheControl.maxAge = parseSeconds(argument);
+                        break;
+                    case "s-maxage":
+                        cacheControl.sharedMaxAge = parseSeconds(argument);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return cacheControl;
+    }
+
+    /**
+     * Parses the argument of a delta seconds directive.
+     *
+     * @param argument The argument, possibly quoted.
+     * @return The number of seconds, or 0 when the argument is invalid so the response is considered stale.
+     */
+    private static long parseSeconds(String argument) {
+        if (argument == null) {
+            return 0;
+        }
+        if (argument.length() > 1 && argument.startsWith("\"") && argument.endsWith("\"")) {
+            argument = argument.substring(1, argument.length() - 1);
+        }
+        try {
+            return Math.max(0, Long.parseLong(argument));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
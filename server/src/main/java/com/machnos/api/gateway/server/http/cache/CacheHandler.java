@@ -0,0 +1,595 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import com.machnos.api.gateway.server.configuration.ApiCache;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.DateUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handler that serves requests from a <code>ResponseCache</code> and stores the responses of the next handler in it,
+ * following the caching rules for shared caches of RFC 7234.
+ *
+ * <ul>
+ *     <li>Only responses to <code>GET</code> requests are stored, <code>HEAD</code> requests are served from the stored
+ *     <code>GET</code> responses. Unsafe methods invalidate the cached responses of the resource.</li>
+ *     <li>The freshness of a response is determined by the <code>s-maxage</code> and <code>max-age</code> directives of
+ *     the <code>Cache-Control</code> header, the <code>Expires</code> header, or the default time to live of the
+ *     api, in that order. Responses with <code>no-store</code>, <code>private</code>, <code>Set-Cookie</code> or
+ *     <code>Vary: *</code> are never stored.</li>
+ *     <li>A separate response is stored for each combination of the request headers listed in the <code>Vary</code>
+ *     header.</li>
+ *     <li>A stale response with an <code>ETag</code> or <code>Last-Modified</code> header is revalidated with a
+ *     conditional request. When the upstream answers <code>304 Not Modified</code> the stored body is served.</li>
+ * </ul>
+ *
+ * A fresh response is served directly from the off heap blocks of the cache, without contacting the upstream and
+ * without copying the body onto the heap.
+ *
+ * When coalescing is enabled, identical concurrent requests for a response that is missing or must be revalidated
+ * share a single request to the upstream. The other requests are suspended without occupying a thread, and are
+ * handled again once the response is stored, so they are all served from the same blocks of the cache.
+ */
+public class CacheHandler implements HttpHandler {
+
+    /**
+     * The <code>Keep-Alive</code> header, which is hop-by-hop and should not be stored.
+     */
+    private static final HttpString KEEP_ALIVE = new HttpString("Keep-Alive");
+
+    /**
+     * The headers that apply to a single connection and are not stored.
+     */
+    private static final HttpString[] HOP_BY_HOP_HEADERS = {Headers.CONNECTION, KEEP_ALIVE, Headers.TRANSFER_ENCODING, Headers.TE, Headers.TRAILER, Headers.UPGRADE, Headers.AGE};
+
+    /**
+     * The headers of a <code>304 Not Modified</code> response that update a stored response.
+     */
+    private static final HttpString[] REVALIDATION_HEADERS = {Headers.CACHE_CONTROL, Headers.EXPIRES, Headers.DATE, Headers.ETAG, Headers.LAST_MODIFIED, Headers.VARY};
+
+    /**
+     * The key under which an exchange is marked that already waited for an identical request. Such an exchange is
+     * forwarded to the upstream when the response of the identical request could not be stored.
+     */
+    private static final AttachmentKey<Boolean> COALESCED = AttachmentKey.create(Boolean.class);
+
+    private static final HttpString[] NO_VARY_NAMES = new HttpString[0];
+    private static final String[] NO_VARY_VALUES = new String[0];
+
+    private final ResponseCache cache;
+    private final long defaultTtl;
+    private final long maxEntrySize;
+    private final boolean coalesce;
+    private final HttpString[] coalesceHeaders;
+    private final HttpHandler next;
+
+    /**
+     * The requests to the upstream that identical requests can wait for, mapped by their flight key.
+     */
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new <code>CacheHandler</code> instance.
+     *
+     * @param cache The <code>ResponseCache</code> that stores the responses.
+     * @param apiCache The cache settings of the api.
+     * @param next The handler that produces the responses that are not served from the cache.
+     */
+    public CacheHandler(ResponseCache cache, ApiCache apiCache, HttpHandler next) {
+        this.cache = cache;
+        this.defaultTtl = TimeUnit.SECONDS.toMillis(Math.max(0, apiCache.defaultTtl));
+        this.maxEntrySize = apiCache.maxEntrySize;
+        this.coalesce = apiCache.coalesce;
+        this.coalesceHeaders = apiCache.coalesceHeaders.stream().map(HttpString::new).toArray(HttpString[]::new);
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final var method = exchange.getRequestMethod();
+        final var head = Methods.HEAD.equals(method);
+        if (!head && !Methods.GET.equals(method)) {
+            if (!Methods.OPTIONS.equals(method) && !Methods.TRACE.equals(method)) {
+                this.cache.invalidate(createKey(exchange));
+            }
+            this.next.handleRequest(exchange);
+            return;
+        }
+        final var requestHeaders = exchange.getRequestHeaders();
+        final var requestCacheControl = CacheControl.parse(requestHeaders.get(Headers.CACHE_CONTROL));
+        if (requestCacheControl.noStore || requestHeaders.contains(Headers.RANGE)) {
+            this.next.handleRequest(exchange);
+            return;
+        }
+        final var key = createKey(exchange);
+        final var noCache = requestCacheControl.noCache || "no-cache".equalsIgnoreCase(requestHeaders.getFirst(Headers.PRAGMA));
+        final var entry = noCache ? null : this.cache.get(key, requestHeaders);
+        if (entry != null) {
+            final var now = System.currentTimeMillis();
+            final var metadata = entry.metadata;
+            final var maxAge = requestCacheControl.maxAge < 0 ? -1 : TimeUnit.SECONDS.toMillis(requestCacheControl.maxAge);
+            if (metadata.isFresh(now, maxAge)) {
+                this.cache.hit();
+                serve(exchange, entry, metadata, now, head);
+                return;
+            }
+            if (metadata.hasValidators()) {
+                if (awaitFlight(exchange, key, head)) {
+                    entry.release(this.cache.getStore());
+                    return;
+                }
+                revalidate(exchange, entry, metadata, key, head);
+                this.next.handleRequest(exchange);
+                return;
+            }
+            entry.release(this.cache.getStore());
+        }
+        if (!noCache && awaitFlight(exchange, key, head)) {
+            return;
+        }
+        this.cache.miss();
+        if (!head) {
+            exchange.addResponseWrapper((factory, ex) -> capture(ex, factory.create(), key, System.currentTimeMillis()));
+        }
+        this.next.handleRequest(exchange);
+    }
+
+    /**
+     * Lets a request wait for an identical request to the upstream, or makes it the request others can wait for. A
+     * <code>HEAD</code> request can wait for a <code>GET</code> request, but is never waited for, because its
+     * response is not stored.
+     *
+     * @param exchange The <code>HttpServerExchange</code> of the request.
+     * @param key The key of the requested resource.
+     * @param head <code>true</code> when the request is a <code>HEAD</code> request.
+     * @return <code>true</code> when the exchange is suspended until the identical request is completed,
+     * <code>false</code> when the request must be forwarded to the upstream.
+     */
+    private boolean awaitFlight(HttpServerExchange exchange, String key, boolean head) {
+        if (!this.coalesce || exchange.getAttachment(COALESCED) != null) {
+            return false;
+        }
+        final var flightKey = createFlightKey(exchange, key);
+        final Flight existing;
+        if (head) {
+            existing = this.flights.get(flightKey);
+            if (existing == null) {
+                return false;
+            }
+        } else {
+            final var flight = new Flight();
+            existing = this.flights.putIfAbsent(flightKey, flight);
+            if (existing == null) {
+                exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                    // Let the response be stored before the waiting exchanges look it up.
+                    nextListener.proceed();
+                    this.flights.remove(flightKey, flight);
+                    flight.land(this::resume);
+                });
+                return false;
+            }
+        }
+        exchange.putAttachment(COALESCED, Boolean.TRUE);
+        this.cache.coalesced();
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            if (!existing.addWaiter(exchange)) {
+                resume(exchange);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Handles a suspended exchange again on its I/O thread.
+     *
+     * @param exchange The suspended <code>HttpServerExchange</code>.
+     */
+    private void resume(HttpServerExchange exchange) {
+        exchange.getIoThread().execute(() -> Connectors.executeRootHandler(this, exchange));
+    }
+
+    /**
+     * Serves a fresh cached response.
+     *
+     * @param exchange The <code>HttpServerExchange</code> to serve the response on.
+     * @param entry The retained cached response.
+     * @param metadata The metadata of the cached response.
+     * @param now The current time in milliseconds since the epoch.
+     * @param head <code>true</code> when the request is a <code>HEAD</code> request.
+     */
+    private void serve(HttpServerExchange exchange, CachedResponse entry, CachedResponse.Metadata metadata, long now, boolean head) {
+        final var store = this.cache.getStore();
+        final var responseHeaders = exchange.getResponseHeaders();
+        final var age = Long.toString(TimeUnit.MILLISECONDS.toSeconds(metadata.age(now)));
+        if (metadata.entityTag != null && entityTagMatches(exchange.getRequestHeaders().get(Headers.IF_NONE_MATCH), metadata.entityTag)) {
+            entry.release(store);
+            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+            responseHeaders.put(Headers.ETAG, metadata.entityTag);
+            responseHeaders.put(Headers.AGE, age);
+            exchange.endExchange();
+            return;
+        }
+        exchange.setStatusCode(entry.statusCode);
+        copyHeaders(metadata.headers, responseHeaders);
+        responseHeaders.put(Headers.AGE, age);
+        if (head || entry.bodyLength == 0) {
+            entry.release(store);
+            exchange.endExchange();
+            return;
+        }
+        exchange.getResponseSender().send(entry.body(store), new IoCallback() {
+            @Override
+            public void onComplete(HttpServerExchange exchange, Sender sender) {
+                entry.release(store);
+                IoCallback.END_EXCHANGE.onComplete(exchange, sender);
+            }
+
+            @Override
+            public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+                entry.release(store);
+                IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+            }
+        });
+    }
+
+    /**
+     * Prepares the revalidation of a stale cached response. The request is made conditional, unless the client made it
+     * conditional itself. When the upstream confirms the cached response, the cached body is served; otherwise the
+     * new response replaces the cached response.
+     *
+     * @param exchange The <code>HttpServerExchange</code> of the request.
+     * @param entry The retained stale response.
+     * @param metadata The metadata of the stale response.
+     * @param key The key of the requested resource.
+     * @param head <code>true</code> when the request is a <code>HEAD</code> request.
+     */
+    private void revalidate(HttpServerExchange exchange, CachedResponse entry, CachedResponse.Metadata metadata, String key, boolean head) {
+        final var requestHeaders = exchange.getRequestHeaders();
+        final var clientConditional = requestHeaders.contains(Headers.IF_NONE_MATCH) || requestHeaders.contains(Headers.IF_MODIFIED_SINCE);
+        if (!clientConditional) {
+            if (metadata.entityTag != null) {
+                requestHeaders.put(Headers.IF_NONE_MATCH, metadata.entityTag);
+            }
+            if (metadata.lastModified != null) {
+                requestHeaders.put(Headers.IF_MODIFIED_SINCE, metadata.lastModified);
+            }
+        }
+        final var store = this.cache.getStore();
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            entry.release(store);
+            nextListener.proceed();
+        });
+        exchange.addResponseWrapper((factory, ex) -> {
+            final var now = System.currentTimeMillis();
+            if (ex.getStatusCode() != StatusCodes.NOT_MODIFIED) {
+                return head ? factory.create() : capture(ex, factory.create(), key, now);
+            }
+            final var revalidated = revalidatedMetadata(metadata, ex.getResponseHeaders(), now);
+            entry.metadata = revalidated;
+            this.cache.revalidated();
+            if (clientConditional) {
+                // The client has a valid copy of the response itself.
+                return factory.create();
+            }
+            final var responseHeaders = ex.getResponseHeaders();
+            responseHeaders.clear();
+            copyHeaders(revalidated.headers, responseHeaders);
+            responseHeaders.put(Headers.AGE, Long.toString(TimeUnit.MILLISECONDS.toSeconds(revalidated.age(now))));
+            ex.setStatusCode(entry.statusCode);
+            if (head || entry.bodyLength == 0) {
+                return factory.create();
+            }
+            return new StoredBodyConduit(factory.create(), entry.body(store));
+        });
+    }
+
+    /**
+     * Starts capturing the response body when the response can be stored.
+     *
+     * @param exchange The <code>HttpServerExchange</code> of the response.
+     * @param next The conduit the response is written to.
+     * @param key The key of the requested resource.
+     * @param now The time the response was received in milliseconds since the epoch.
+     * @return The conduit to write the response to.
+     */
+    private StreamSinkConduit capture(HttpServerExchange exchange, StreamSinkConduit next, String key, long now) {
+        final var responseHeaders = exchange.getResponseHeaders();
+        final var freshnessLifetime = freshnessLifetime(exchange, now);
+        if (freshnessLifetime < 0) {
+            return next;
+        }
+        final var contentLength = responseHeaders.getFirst(Headers.CONTENT_LENGTH);
+        if (contentLength != null && parseLong(contentLength, 0) > this.maxEntrySize) {
+            return next;
+        }
+        final var varyNames = varyNames(responseHeaders);
+        final var requestHeaders = exchange.getRequestHeaders();
+        final var varyValues = varyNames.length == 0 ? NO_VARY_VALUES : new String[varyNames.length];
+        for (var i = 0; i < varyNames.length; i++) {
+            varyValues[i] = CachedResponse.varyValue(requestHeaders, varyNames[i]);
+        }
+        final var storedHeaders = new HeaderMap();
+        copyHeaders(responseHeaders, storedHeaders);
+        for (final var hopByHopHeader : HOP_BY_HOP_HEADERS) {
+            storedHeaders.remove(hopByHopHeader);
+        }
+        final var metadata = new CachedResponse.Metadata(storedHeaders, now, initialAge(responseHeaders, now), freshnessLifetime,
+                responseHeaders.getFirst(Headers.ETAG), responseHeaders.getFirst(Headers.LAST_MODIFIED));
+        final var statusCode = exchange.getStatusCode();
+        final var conduit = new CaptureConduit(next, this.cache, this.maxEntrySize);
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            final var blocks = conduit.takeBlocks();
+            if (blocks != null) {
+                storedHeaders.put(Headers.CONTENT_LENGTH, conduit.getLength());
+                this.cache.put(new CachedResponse(key, varyNames, varyValues, statusCode, blocks, conduit.getBlockCount(), conduit.getLength(), metadata));
+            }
+            nextListener.proceed();
+        });
+        return conduit;
+    }
+
+    /**
+     * Determines the freshness lifetime of a response.
+     *
+     * @param exchange The <code>HttpServerExchange</code> of the response.
+     * @param now The current time in milliseconds since the epoch.
+     * @return The freshness lifetime in milliseconds, or -1 when the response cannot be stored.
+     */
+    private long freshnessLifetime(HttpServerExchange exchange, long now) {
+        if (!isCacheableStatus(exchange.getStatusCode())) {
+            return -1;
+        }
+        final var responseHeaders = exchange.getResponseHeaders();
+        final var cacheControl = CacheControl.parse(responseHeaders.get(Headers.CACHE_CONTROL));
+        if (cacheControl.noStore || cacheControl.isPrivate || responseHeaders.contains(Headers.SET_COOKIE)) {
+            return -1;
+        }
+        final var vary = responseHeaders.get(Headers.VARY);
+        if (vary != null && vary.stream().anyMatch(value -> value.contains("*"))) {
+            return -1;
+        }
+        if (exchange.getRequestHeaders().contains(Headers.AUTHORIZATION) && !cacheControl.isPublic && !cacheControl.mustRevalidate && cacheControl.sharedMaxAge < 0) {
+            return -1;
+        }
+        long lifetime;
+        if (cacheControl.sharedMaxAge >= 0) {
+            lifetime = TimeUnit.SECONDS.toMillis(cacheControl.sharedMaxAge);
+        } else if (cacheControl.maxAge >= 0) {
+            lifetime = TimeUnit.SECONDS.toMillis(cacheControl.maxAge);
+        } else if (responseHeaders.contains(Headers.EXPIRES)) {
+            final var expires = parseDate(responseHeaders.getFirst(Headers.EXPIRES));
+            final var date = parseDate(responseHeaders.getFirst(Headers.DATE));
+            lifetime = expires == -1 ? 0 : Math.max(0, expires - (date == -1 ? now : date));
+        } else if (this.defaultTtl > 0) {
+            lifetime = this.defaultTtl;
+        } else {
+            return -1;
+        }
+        if (cacheControl.noCache) {
+            lifetime = 0;
+        }
+        if (lifetime == 0 && !responseHeaders.contains(Headers.ETAG) && !responseHeaders.contains(Headers.LAST_MODIFIED)) {
+            return -1;
+        }
+        return lifetime;
+    }
+
+    /**
+     * Creates the metadata of a cached response that is confirmed by a <code>304 Not Modified</code> response.
+     *
+     * @param metadata The metadata of the stale response.
+     * @param notModifiedHeaders The headers of the <code>304 Not Modified</code> response.
+     * @param now The current time in milliseconds since the epoch.
+     * @return The updated metadata.
+     */
+    private CachedResponse.Metadata revalidatedMetadata(CachedResponse.Metadata metadata, HeaderMap notModifiedHeaders, long now) {
+        final var headers = new HeaderMap();
+        copyHeaders(metadata.headers, headers);
+        for (final var name : REVALIDATION_HEADERS) {
+            final var values = notModifiedHeaders.get(name);
+            if (values != null && !values.isEmpty()) {
+                headers.putAll(name, new ArrayList<>(values));
+            }
+        }
+        final var cacheControl = CacheControl.parse(headers.get(Headers.CACHE_CONTROL));
+        long lifetime = metadata.freshnessLifetime;
+        if (cacheControl.sharedMaxAge >= 0) {
+            lifetime = TimeUnit.SECONDS.toMillis(cacheControl.sharedMaxAge);
+        } else if (cacheControl.maxAge >= 0) {
+            lifetime = TimeUnit.SECONDS.toMillis(cacheControl.maxAge);
+        } else if (notModifiedHeaders.contains(Headers.EXPIRES)) {
+            final var expires = parseDate(headers.getFirst(Headers.EXPIRES));
+            final var date = parseDate(headers.getFirst(Headers.DATE));
+            lifetime = expires == -1 ? 0 : Math.max(0, expires - (date == -1 ? now : date));
+        }
+        if (cacheControl.noCache) {
+            lifetime = 0;
+        }
+        return new CachedResponse.Metadata(headers, now, initialAge(notModifiedHeaders, now), lifetime, headers.getFirst(Headers.ETAG), headers.getFirst(Headers.LAST_MODIFIED));
+    }
+
+    /**
+     * Creates the key of the requested resource.
+     *
+     * @param exchange The <code>HttpServerExchange</code> of the request.
+     * @return The key.
+     */
+    private static String createKey(HttpServerExchange exchange) {
+        final var queryString = exchange.getQueryString();
+        final var host = exchange.getHostName();
+        final var key = new StringBuilder((host == null ? 0 : host.length()) + exchange.getRequestURI().length() + (queryString == null ? 0 : queryString.length()) + 2);
+        key.append(host == null ? "" : host.toLowerCase(Locale.ROOT)).append(' ').append(exchange.getRequestURI());
+        if (queryString != null && !queryString.isEmpty()) {
+            key.append('?').append(queryString);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Creates the key under which identical requests are coalesced, which is the key of the resource extended with the
+     * values of the configured request headers.
+     *
+     * @param exchange The <code>HttpServerExchange</code> of the request.
+     * @param key The key of the requested resource.
+     * @return The flight key.
+     */
+    private String createFlightKey(HttpServerExchange exchange, String key) {
+        if (this.coalesceHeaders.length == 0) {
+            return key;
+        }
+        final var flightKey = new StringBuilder(key);
+        for (final var header : this.coalesceHeaders) {
+            flightKey.append('\n').append(CachedResponse.varyValue(exchange.getRequestHeaders(), header));
+        }
+        return flightKey.toString();
+    }
+
+    /**
+     * Gives the names of the request headers a response varies on.
+     *
+     * @param responseHeaders The headers of the response.
+     * @return The sorted names of the request headers.
+     */
+    private static HttpString[] varyNames(HeaderMap responseHeaders) {
+        final var vary = responseHeaders.get(Headers.VARY);
+        if (vary == null || vary.isEmpty()) {
+            return NO_VARY_NAMES;
+        }
+        return vary.stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .distinct()
+                .sorted()
+                .map(HttpString::new)
+                .toArray(HttpString[]::new);
+    }
+
+    /**
+     * Determines the age of a response when it was received.
+     *
+     * @param responseHeaders The headers of the response.
+     * @param now The time the response was received in milliseconds since the epoch.
+     * @return The age in milliseconds.
+     */
+    private static long initialAge(HeaderMap responseHeaders, long now) {
+        final var date = parseDate(responseHeaders.getFirst(Headers.DATE));
+        final var apparentAge = date == -1 ? 0 : Math.max(0, now - date);
+        final var ageValue = TimeUnit.SECONDS.toMillis(parseLong(responseHeaders.getFirst(Headers.AGE), 0));
+        return Math.max(apparentAge, ageValue);
+    }
+
+    /**
+     * Checks if a response with a status code can be stored.
+     *
+     * @param statusCode The status code.
+     * @return <code>true</code> when the response can be stored.
+     */
+    private static boolean isCacheableStatus(int statusCode) {
+        switch (statusCode) {
+            case 200:
+            case 203:
+            case 204:
+            case 300:
+            case 301:
+            case 404:
+            case 405:
+            case 410:
+            case 414:
+            case 501:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if the <code>If-None-Match</code> header of a request matches an entity tag, with the weak comparison
+     * function.
+     *
+     * @param ifNoneMatch The values of the <code>If-None-Match</code> header.
+     * @param entityTag The entity tag of the cached response.
+     * @return <code>true</code> when the entity tag matches.
+     */
+    private static boolean entityTagMatches(HeaderValues ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        final var opaqueTag = stripWeakIndicator(entityTag);
+        for (final var value : ifNoneMatch) {
+            for (final var candidate : value.split(",")) {
+                final var trimmed = candidate.trim();
+                if ("*".equals(trimmed) || stripWeakIndicator(trimmed).equals(opaqueTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakIndicator(String entityTag) {
+        return entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+    }
+
+    private static void copyHeaders(HeaderMap source, HeaderMap target) {
+        for (final var values : source) {
+            target.putAll(values.getHeaderName(), new ArrayList<>(values));
+        }
+    }
+
+    private static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        final Date date = DateUtils.parseDate(value);
+        return date == null ? -1 : date.getTime();
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HttpString;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A response that is stored in the <code>ResponseCache</code>. The status and headers are kept on the heap, the body
+ * is kept in the blocks of a <code>SlabStore</code>.
+ *
+ * The blocks of the body are reference counted. The cache holds one reference for as long as the response is in the
+ * cache, and each exchange that serves the body holds a reference until the body is written. The blocks are returned to
+ * the store when the last reference is released, so a response that is evicted while it is being served is never
+ * overwritten.
+ */
+final class CachedResponse {
+
+    /**
+     * The key of the requested resource, without the values of the <code>Vary</code> headers.
+     */
+    final String key;
+
+    /**
+     * The request headers the response varies on.
+     */
+    final HttpString[] varyNames;
+
+    /**
+     * The values of the {@link #varyNames} headers of the request that resulted in this response. A
+     * <code>null</code> value means the header was not present.
+     */
+    final String[] varyValues;
+
+    /**
+     * The status code of the response.
+     */
+    final int statusCode;
+
+    /**
+     * The numbers of the blocks that hold the body.
+     */
+    final int[] blocks;
+
+    /**
+     * The number of blocks in {@link #blocks} that are in use.
+     */
+    final int blockCount;
+
+    /**
+     * The length of the body in bytes.
+     */
+    final long bodyLength;
+
+    /**
+     * The headers and freshness of the response, replaced when the response is revalidated.
+     */
+    volatile Metadata metadata;
+
+    /**
+     * The number of references to the blocks of the body.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    // Fields maintained by the ResponseCache while holding its lock.
+    CachedResponse previous;
+    CachedResponse next;
+    CachedResponse nextVariant;
+    boolean protectedSegment;
+
+    CachedResponse(String key, HttpString[] varyNames, String[] varyValues, int statusCode, int[] blocks, int blockCount, long bodyLength, Metadata metadata) {
+        this.key = key;
+        this.varyNames = varyNames;
+        this.varyValues = varyValues;
+        this.statusCode = statusCode;
+        this.blocks = blocks;
+        this.blockCount = blockCount;
+        this.bodyLength = bodyLength;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Checks if this response was the result of a request with the same values for the headers the response varies
+     * on.
+     *
+     * @param requestHeaders The headers of the request.
+     * @return <code>true</code> when this response can be used for the request, <code>false</code> otherwise.
+     */
+    boolean matches(HeaderMap requestHeaders) {
+        for (var i = 0; i < this.varyNames.length; i++) {
+            if (!equals(this.varyValues[i], varyValue(requestHeaders, this.varyNames[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if this response was the result of a request with the same values for the headers the response varies
+     * on as another response.
+     *
+     * @param other The other response.
+     * @return <code>true</code> when both responses are variants for the same request headers.
+     */
+    boolean sameVariant(CachedResponse other) {
+        if (this.varyNames.length != other.varyNames.length) {
+            return false;
+        }
+        for (var i = 0; i < this.varyNames.length; i++) {
+            if (!this.varyNames[i].equals(other.varyNames[i]) || !equals(this.varyValues[i], other.varyValues[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives the value of a request header as it is used to match variants.
+     *
+     * @param requestHeaders The headers of the request.
+     * @param name The name of the header.
+     * @return All values of the header joined by a comma, or <code>null</code> when the header is not present.
+     */
+    static String varyValue(HeaderMap requestHeaders, HttpString name) {
+        final var values = requestHeaders.get(name);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return values.size() == 1 ? values.getFirst() : String.join(",", values);
+    }
+
+    /**
+     * Gives the number of bytes this response occupies in the store.
+     *
+     * @param blockSize The size of a block.
+     * @return The weight of this response.
+     */
+    long weight(int blockSize) {
+        return (long) this.blockCount * blockSize;
+    }
+
+    /**
+     * Gives buffers to write the body. The buffers are views on the off heap blocks, the body is not copied.
+     *
+     * @param store The <code>SlabStore</code> that holds the blocks.
+     * @return The buffers that hold the body.
+     */
+    ByteBuffer[] body(SlabStore store) {
+        final var buffers = new ByteBuffer[this.blockCount];
+        var remaining = this.bodyLength;
+        for (var i = 0; i < this.blockCount; i++) {
+            final var buffer = store.block(this.blocks[i]);
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            remaining -= buffer.limit();
+            buffers[i] = buffer;
+        }
+        return buffers;
+    }
+
+    /**
+     * Acquires a reference to the blocks of the body. Must be called while holding the lock of the cache, so the
+     * response cannot be evicted concurrently.
+     */
+    void retain() {
+        this.references.incrementAndGet();
+    }
+
+    /**
+     * Releases a reference to the blocks of the body. The blocks are returned to the store when no references are
+     * left.
+     *
+     * @param store The <code>SlabStore</code> that holds the blocks.
+     */
+    void release(SlabStore store) {
+        if (this.references.decrementAndGet() == 0) {
+            store.free(this.blocks, this.blockCount);
+        }
+    }
+
+    private static boolean equals(String value1, String value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
+
+    /**
+     * The headers and freshness information of a cached response. Instances are immutable, a revalidated response
+     * gets a new instance.
+     */
+    static final class Metadata {
+
+        /**
+         * The headers of the response, without hop-by-hop headers and without the <code>Age</code> header.
+         */
+        final HeaderMap headers;
+
+        /**
+         * The time the response was received, in milliseconds since the epoch.
+         */
+        final long responseTime;
+
+        /**
+         * The age of the response in milliseconds when it was received.
+         */
+        final long initialAge;
+
+        /**
+         * The number of milliseconds the response is fresh, counted from the time the upstream generated it.
+         */
+        final long freshnessLifetime;
+
+        /**
+         * The entity tag of the response, or <code>null</code> when not present.
+         */
+        final String entityTag;
+
+        /**
+         * The last modification date of the response, or <code>null</code> when not present.
+         */
+        final String lastModified;
+
+        Metadata(HeaderMap headers, long responseTime, long initialAge, long freshnessLifetime, String entityTag, String lastModified) {
+            this.headers = headers;
+            this.responseTime = responseTime;
+            this.initialAge = initialAge;
+            this.freshnessLifetime = freshnessLifetime;
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Gives the current age of the response.
+         *
+         * @param now The current time in milliseconds since the epoch.
+         * @return The age in milliseconds.
+         */
+        long age(long now) {
+            return this.initialAge + Math.max(0, now - this.responseTime);
+        }
+
+        /**
+         * Checks if the response can be served without revalidation.
+         *
+         * @param now The current time in milliseconds since the epoch.
+         * @param maxAge The maximum age in milliseconds the client accepts, or a negative value when the client has
+         * no preference.
+         * @return <code>true</code> when the response is fresh, <code>false</code> otherwise.
+         */
+        boolean isFresh(long now, long maxAge) {
+            final var age = age(now);
+            return age < this.freshnessLifetime && (maxAge < 0 || age <= maxAge);
+        }
+
+        /**
+         * Checks if the response can be revalidated with a conditional request.
+         *
+         * @return <code>true</code> when the response has an entity tag or a last modification date.
+         */
+        boolean hasValidators() {
+            return this.entityTag != null || this.lastModified != null;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Conduit that copies the body of a response into the blocks of a <code>ResponseCache</code> while the body is
+ * written to the client. The response is neither delayed nor buffered; when the body turns out to be too large, or the
+ * cache cannot free enough blocks, the copy is abandoned and the response continues as if it was not cached.
+ */
+final class CaptureConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+    private final ResponseCache cache;
+    private final long maxSize;
+
+    /**
+     * The numbers of the blocks that hold the captured bytes.
+     */
+    private int[] blocks = new int[8];
+
+    /**
+     * The number of blocks in {@link #blocks} that are in use.
+     */
+    private int blockCount;
+
+    /**
+     * The block that is being filled, or <code>null</code> when a new block is needed.
+     */
+    private ByteBuffer currentBlock;
+
+    /**
+     * The number of captured bytes.
+     */
+    private long length;
+
+    /**
+     * The positions of the source buffers before a gathering write, reused between writes.
+     */
+    private int[] positions = new int[0];
+
+    private boolean aborted;
+    private boolean terminated;
+
+    CaptureConduit(StreamSinkConduit next, ResponseCache cache, long maxSize) {
+        super(next);
+        this.cache = cache;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final var position = src.position();
+        final var written = this.next.write(src);
+        if (written > 0 && !this.aborted) {
+            capture(src, position, written);
+        }
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        if (this.aborted) {
+            return this.next.write(srcs, offs, len);
+        }
+        if (this.positions.length < len) {
+            this.positions = new int[len];
+        }
+        for (var i = 0; i < len; i++) {
+            this.positions[i] = srcs[offs + i].position();
+        }
+        final var written = this.next.write(srcs, offs, len);
+        for (var i = 0; i < len && !this.aborted; i++) {
+            final var src = srcs[offs + i];
+            final var count = src.position() - this.positions[i];
+            if (count > 0) {
+                capture(src, this.positions[i], count);
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offs, len);
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public void terminateWrites() throws IOException {
+        this.terminated = true;
+        this.next.terminateWrites();
+    }
+
+    @Override
+    public void truncateWrites() throws IOException {
+        abort();
+        this.next.truncateWrites();
+    }
+
+    /**
+     * Gives the numbers of the blocks that hold the captured body. The caller takes over the ownership of the blocks.
+     *
+     * @return The block numbers, or <code>null</code> when the body was not captured completely. In that case the
+     * blocks are returned to the cache.
+     */
+    int[] takeBlocks() {
+        if (!this.terminated || this.aborted) {
+            abort();
+            return null;
+        }
+        final var result = this.blocks;
+        this.blocks = null;
+        this.aborted = true;
+        return result;
+    }
+
+    /**
+     * Gives the number of blocks returned by {@link #takeBlocks()}.
+     *
+     * @return The number of blocks that hold the body.
+     */
+    int getBlockCount() {
+        return this.blockCount;
+    }
+
+    /**
+     * Gives the length of the captured body.
+     *
+     * @return The length in bytes.
+     */
+    long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Copies bytes that have been written to the next conduit into the blocks.
+     *
+     * @param src The buffer that held the bytes.
+     * @param from The position of the first byte in the buffer.
+     * @param count The number of bytes.
+     */
+    private void capture(ByteBuffer src, int from, int count) {
+        if (this.length + count > this.maxSize) {
+            abort();
+            return;
+        }
+        final var view = src.duplicate();
+        view.limit(from + count).position(from);
+        while (view.hasRemaining()) {
+            if (this.currentBlock == null || !this.currentBlock.hasRemaining()) {
+                final var block = this.cache.allocateBlock();
+                if (block == -1) {
+                    abort();
+                    return;
+                }
+                if (this.blockCount == this.blocks.length) {
+                    this.blocks = Arrays.copyOf(this.blocks, this.blocks.length * 2);
+                }
+                this.blocks[this.blockCount++] = block;
+                this.currentBlock = this.cache.block(block);
+            }
+            if (view.remaining() <= this.currentBlock.remaining()) {
+                this.currentBlock.put(view);
+            } else {
+                final var limit = view.limit();
+                view.limit(view.position() + this.currentBlock.remaining());
+                this.currentBlock.put(view);
+                view.limit(limit);
+            }
+        }
+        this.length += count;
+    }
+
+    /**
+     * Abandons the capture and returns the blocks to the cache.
+     */
+    private void abort() {
+        if (this.blocks != null && this.blockCount > 0) {
+            this.cache.free(this.blocks, this.blockCount);
+        }
+        this.blockCount = 0;
+        this.currentBlock = null;
+        this.aborted = true;
+    }
+}
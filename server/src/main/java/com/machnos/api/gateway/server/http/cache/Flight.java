@@ -0,0 +1,66 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import io.undertow.server.HttpServerExchange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A request to the upstream that identical concurrent requests wait for. The exchanges that wait for the request are
+ * resumed when its response is stored in the cache, so they are all served from the same cached response.
+ */
+class Flight {
+
+    /**
+     * The exchanges that wait for the request, or <code>null</code> when the request is landed.
+     */
+    private List<HttpServerExchange> waiters = new ArrayList<>();
+
+    /**
+     * Adds an exchange that waits for the request.
+     *
+     * @param exchange The <code>HttpServerExchange</code> to add.
+     * @return <code>true</code> when the exchange is added, <code>false</code> when the request is already landed.
+     */
+    synchronized boolean addWaiter(HttpServerExchange exchange) {
+        if (this.waiters == null) {
+            return false;
+        }
+        this.waiters.add(exchange);
+        return true;
+    }
+
+    /**
+     * Marks the request as landed and resumes all waiting exchanges.
+     *
+     * @param resume The action that resumes a waiting exchange.
+     */
+    void land(Consumer<HttpServerExchange> resume) {
+        final List<HttpServerExchange> landed;
+        synchronized (this) {
+            landed = this.waiters;
+            this.waiters = null;
+        }
+        if (landed != null) {
+            landed.forEach(resume);
+        }
+    }
+}
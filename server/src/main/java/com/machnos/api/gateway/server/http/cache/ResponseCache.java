@@ -0,0 +1,417 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import io.undertow.util.HeaderMap;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of upstream responses that is bounded by the number of bytes of the stored bodies.
+ *
+ * The bodies are stored off heap in a <code>SlabStore</code>. When the store is full, responses are evicted with a
+ * segmented LRU policy: a new response enters the probation segment and is moved to the protected segment when it is
+ * requested again. Responses are evicted from the probation segment first, so a burst of responses that are requested
+ * only once cannot flush the responses that are requested frequently. The protected segment is limited to 80% of the
+ * capacity; responses that fall out of it get another chance in the probation segment.
+ *
+ * The index and the segments are guarded by the lock of this instance. The bodies are read and written without
+ * holding the lock.
+ */
+public class ResponseCache {
+
+    /**
+     * The part of the capacity that can be used by the protected segment.
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    /**
+     * The store that holds the bodies.
+     */
+    private final SlabStore store;
+
+    /**
+     * The maximum number of bytes in the protected segment.
+     */
+    private final long protectedCapacity;
+
+    /**
+     * The cached responses mapped by their key. Variants of the same resource are chained with
+     * {@link CachedResponse#nextVariant}.
+     */
+    private final Map<String, CachedResponse> index = new HashMap<>();
+
+    // The head is the most recently used response, the tail the least recently used.
+    private CachedResponse probationHead;
+    private CachedResponse probationTail;
+    private CachedResponse protectedHead;
+    private CachedResponse protectedTail;
+
+    /**
+     * The number of bytes of the responses in the protected segment.
+     */
+    private long protectedBytes;
+
+    /**
+     * The number of responses in the cache.
+     */
+    private int size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new <code>ResponseCache</code> instance.
+     *
+     * @param capacity The maximum number of bytes of response bodies that can be stored.
+     */
+    public ResponseCache(long capacity) {
+        this(capacity, SlabStore.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a new <code>ResponseCache</code> instance.
+     *
+     * @param capacity The maximum number of bytes of response bodies that can be stored.
+     * @param blockSize The size of the blocks the bodies are stored in.
+     */
+    ResponseCache(long capacity, int blockSize) {
+        this.store = new SlabStore(capacity, blockSize);
+        this.protectedCapacity = (long) (this.store.getCapacity() * PROTECTED_RATIO);
+    }
+
+    /**
+     * Gives the number of requests that were served from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Gives the number of cacheable requests that were forwarded to the upstream because there was no response in the
+     * cache.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Gives the number of stale responses that were confirmed by the upstream with a <code>304 Not Modified</code>
+     * response, so the cached body could be served.
+     *
+     * @return The number of successful revalidations.
+     */
+    public long getRevalidations() {
+        return this.revalidations.sum();
+    }
+
+    /**
+     * Gives the number of requests that waited for an identical request to the upstream instead of sending their own.
+     *
+     * @return The number of coalesced requests.
+     */
+    public long getCoalesced() {
+        return this.coalesced.sum();
+    }
+
+    /**
+     * Gives the number of responses that were stored in the cache.
+     *
+     * @return The number of stored responses.
+     */
+    public long getStores() {
+        return this.stores.sum();
+    }
+
+    /**
+     * Gives the number of responses that were evicted to make room for other responses.
+     *
+     * @return The number of evicted responses.
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Gives the number of responses in the cache.
+     *
+     * @return The number of cached responses.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Gives the number of off heap bytes that are in use, including the bytes of responses that are being stored and
+     * of evicted responses that are still being served.
+     *
+     * @return The number of used bytes.
+     */
+    public long getUsedBytes() {
+        return this.store.getUsedBytes();
+    }
+
+    /**
+     * Gives the maximum number of off heap bytes the cache uses.
+     *
+     * @return The capacity in bytes.
+     */
+    public long getCapacity() {
+        return this.store.getCapacity();
+    }
+
+    SlabStore getStore() {
+        return this.store;
+    }
+
+    void hit() {
+        this.hits.increment();
+    }
+
+    void miss() {
+        this.misses.increment();
+    }
+
+    void revalidated() {
+        this.revalidations.increment();
+    }
+
+    void coalesced() {
+        this.coalesced.increment();
+    }
+
+    /**
+     * Gives the cached response for a request. The returned response is retained and must be released by the caller.
+     *
+     * @param key The key of the requested resource.
+     * @param requestHeaders The headers of the request, to select the variant.
+     * @return The cached response, or <code>null</code> when not present.
+     */
+    synchronized CachedResponse get(String key, HeaderMap requestHeaders) {
+        var entry = this.index.get(key);
+        while (entry != null && !entry.matches(requestHeaders)) {
+            entry = entry.nextVariant;
+        }
+        if (entry == null) {
+            return null;
+        }
+        entry.retain();
+        if (entry.protectedSegment) {
+            unlink(entry);
+            linkProtected(entry);
+        } else {
+            unlink(entry);
+            linkProtected(entry);
+            this.protectedBytes += entry.weight(this.store.getBlockSize());
+            while (this.protectedBytes > this.protectedCapacity && this.protectedTail != entry) {
+                // Demote the least recently used protected response to the probation segment.
+                final var demoted = this.protectedTail;
+                unlink(demoted);
+                this.protectedBytes -= demoted.weight(this.store.getBlockSize());
+                linkProbation(demoted);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a response in the cache. A response for the same variant of the resource is replaced. When the response
+     * varies on other headers than the responses that are already cached for the resource, those responses are
+     * removed.
+     *
+     * @param entry The response to store.
+     */
+    synchronized void put(CachedResponse entry) {
+        var existing = this.index.get(entry.key);
+        while (existing != null) {
+            final var nextVariant = existing.nextVariant;
+            if (existing.sameVariant(entry) || !sameVaryNames(existing, entry)) {
+                remove(existing);
+            }
+            existing = nextVariant;
+        }
+        entry.nextVariant = this.index.get(entry.key);
+        this.index.put(entry.key, entry);
+        linkProbation(entry);
+        this.size++;
+        this.stores.increment();
+    }
+
+    /**
+     * Removes all variants of a resource from the cache.
+     *
+     * @param key The key of the resource.
+     */
+    synchronized void invalidate(String key) {
+        var entry = this.index.get(key);
+        while (entry != null) {
+            final var nextVariant = entry.nextVariant;
+            remove(entry);
+            entry = nextVariant;
+        }
+    }
+
+    /**
+     * Allocates a block to store a body in, evicting responses when the store is full.
+     *
+     * @return The number of the block, or -1 when no block could be freed.
+     */
+    int allocateBlock() {
+        while (true) {
+            final var block = this.store.allocate();
+            if (block != -1) {
+                return block;
+            }
+            if (!evict()) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns blocks that are not part of a cached response to the store.
+     *
+     * @param blocks The numbers of the blocks.
+     * @param count The number of blocks in the array.
+     */
+    void free(int[] blocks, int count) {
+        this.store.free(blocks, count);
+    }
+
+    /**
+     * Gives a buffer to write a block.
+     *
+     * @param block The number of the block.
+     * @return The buffer of the block.
+     */
+    ByteBuffer block(int block) {
+        return this.store.block(block);
+    }
+
+    /**
+     * Evicts the least recently used response of the probation segment, or of the protected segment when the probation
+     * segment is empty.
+     *
+     * @return <code>true</code> when a response is evicted, <code>false</code> when the cache is empty.
+     */
+    private synchronized boolean evict() {
+        final var victim = this.probationTail != null ? this.probationTail : this.protectedTail;
+        if (victim == null) {
+            return false;
+        }
+        remove(victim);
+        this.evictions.increment();
+        return true;
+    }
+
+    /**
+     * Removes a response from the index and the segments, and releases the reference of the cache.
+     *
+     * @param entry The response to remove.
+     */
+    private void remove(CachedResponse entry) {
+        var first = this.index.get(entry.key);
+        if (first == entry) {
+            if (entry.nextVariant == null) {
+                this.index.remove(entry.key);
+            } else {
+                this.index.put(entry.key, entry.nextVariant);
+            }
+        } else {
+            while (first != null && first.nextVariant != entry) {
+                first = first.nextVariant;
+            }
+            if (first != null) {
+                first.nextVariant = entry.nextVariant;
+            }
+        }
+        entry.nextVariant = null;
+        if (entry.protectedSegment) {
+            this.protectedBytes -= entry.weight(this.store.getBlockSize());
+        }
+        unlink(entry);
+        this.size--;
+        entry.release(this.store);
+    }
+
+    private void linkProbation(CachedResponse entry) {
+        entry.protectedSegment = false;
+        entry.previous = null;
+        entry.next = this.probationHead;
+        if (this.probationHead != null) {
+            this.probationHead.previous = entry;
+        } else {
+            this.probationTail = entry;
+        }
+        this.probationHead = entry;
+    }
+
+    private void linkProtected(CachedResponse entry) {
+        entry.protectedSegment = true;
+        entry.previous = null;
+        entry.next = this.protectedHead;
+        if (this.protectedHead != null) {
+            this.protectedHead.previous = entry;
+        } else {
+            this.protectedTail = entry;
+        }
+        this.protectedHead = entry;
+    }
+
+    private void unlink(CachedResponse entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else if (entry.protectedSegment) {
+            this.protectedHead = entry.next;
+        } else {
+            this.probationHead = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        } else if (entry.protectedSegment) {
+            this.protectedTail = entry.previous;
+        } else {
+            this.probationTail = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    private static boolean sameVaryNames(CachedResponse entry1, CachedResponse entry2) {
+        if (entry1.varyNames.length != entry2.varyNames.length) {
+            return false;
+        }
+        for (var i = 0; i < entry1.varyNames.length; i++) {
+            if (!entry1.varyNames[i].equals(entry2.varyNames[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off heap storage for the bodies of cached responses. The storage is divided in blocks of a fixed size that are
+ * carved out of large direct buffers, the slabs. A body is stored in as many blocks as it needs, so storing and
+ * removing bodies never fragments the storage and never involves the garbage collector.
+ *
+ * Slabs are allocated lazily, up to the configured capacity, and are never released.
+ */
+final class SlabStore {
+
+    /**
+     * The default size of a block in bytes.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 4 * 1024;
+
+    /**
+     * The number of blocks in a slab.
+     */
+    private static final int BLOCKS_PER_SLAB = 256;
+
+    /**
+     * The size of a block in bytes.
+     */
+    private final int blockSize;
+
+    /**
+     * A view on each block that has been carved out of a slab, indexed by the block number. A view is never used to
+     * read or write directly, only duplicates of it are, so it can be shared by all threads.
+     */
+    private final ByteBuffer[] blocks;
+
+    /**
+     * The number of blocks that have been carved out of the slabs.
+     */
+    private int allocatedBlocks;
+
+    /**
+     * The stack of the numbers of the blocks that are free.
+     */
+    private final int[] freeBlocks;
+
+    /**
+     * The number of blocks on the {@link #freeBlocks} stack.
+     */
+    private int freeCount;
+
+    /**
+     * Constructs a new <code>SlabStore</code> instance.
+     *
+     * @param capacity The maximum number of bytes that can be stored.
+     * @param blockSize The size of a block in bytes.
+     */
+    SlabStore(long capacity, int blockSize) {
+        this.blockSize = blockSize;
+        final var maxBlocks = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, capacity / blockSize));
+        this.blocks = new ByteBuffer[maxBlocks];
+        this.freeBlocks = new int[maxBlocks];
+    }
+
+    /**
+     * Gives the size of a block.
+     *
+     * @return The size of a block in bytes.
+     */
+    int getBlockSize() {
+        return this.blockSize;
+    }
+
+    /**
+     * Gives the maximum number of bytes that can be stored.
+     *
+     * @return The capacity in bytes.
+     */
+    long getCapacity() {
+        return (long) this.blocks.length * this.blockSize;
+    }
+
+    /**
+     * Gives the number of bytes of the blocks that are in use.
+     *
+     * @return The number of used bytes.
+     */
+    synchronized long getUsedBytes() {
+        return (long) (this.allocatedBlocks - this.freeCount) * this.blockSize;
+    }
+
+    /**
+     * Allocates a block.
+     *
+     * @return The number of the block, or -1 when the store is full.
+     */
+    synchronized int allocate() {
+        if (this.freeCount > 0) {
+            return this.freeBlocks[--this.freeCount];
+        }
+        if (this.allocatedBlocks == this.blocks.length) {
+            return -1;
+        }
+        final var blocksInSlab = Math.min(BLOCKS_PER_SLAB, this.blocks.length - this.allocatedBlocks);
+        final var slab = ByteBuffer.allocateDirect(blocksInSlab * this.blockSize);
+        for (var i = 0; i < blocksInSlab; i++) {
+            slab.limit((i + 1) * this.blockSize).position(i * this.blockSize);
+            this.blocks[this.allocatedBlocks + i] = slab.slice();
+        }
+        // Hand out the first block of the new slab, the others are free.
+        for (var i = blocksInSlab - 1; i > 0; i--) {
+            this.freeBlocks[this.freeCount++] = this.allocatedBlocks + i;
+        }
+        final var block = this.allocatedBlocks;
+        this.allocatedBlocks += blocksInSlab;
+        return block;
+    }
+
+    /**
+     * Returns blocks to the store.
+     *
+     * @param blockNumbers The numbers of the blocks.
+     * @param count The number of blocks in the array that should be freed.
+     */
+    synchronized void free(int[] blockNumbers, int count) {
+        for (var i = 0; i < count; i++) {
+            this.freeBlocks[this.freeCount++] = blockNumbers[i];
+        }
+    }
+
+    /**
+     * Gives a buffer to read or write a block. The returned buffer is independent of the buffers returned by other
+     * calls, and covers the whole block.
+     *
+     * @param blockNumber The number of the block.
+     * @return The buffer of the block.
+     */
+    ByteBuffer block(int blockNumber) {
+        return this.blocks[blockNumber].duplicate();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Conduit that replaces the body of a response with the body of a cached response. It is used when the upstream
+ * confirms a stale cached response with a <code>304 Not Modified</code> response: the empty body of the upstream
+ * response is discarded, and the cached body is written when the response is terminated.
+ */
+final class StoredBodyConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+    /**
+     * The buffers that hold the cached body.
+     */
+    private final ByteBuffer[] body;
+
+    /**
+     * The index of the first buffer of the body that is not written completely.
+     */
+    private int offset;
+
+    /**
+     * Whether the writes are terminated by the upstream response.
+     */
+    private boolean terminated;
+
+    /**
+     * Whether the body is written and the writes of the next conduit are terminated.
+     */
+    private boolean bodyWritten;
+
+    StoredBodyConduit(StreamSinkConduit next, ByteBuffer[] body) {
+        super(next);
+        this.body = body;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        final var remaining = src.remaining();
+        src.position(src.limit());
+        return remaining;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) {
+        long written = 0;
+        for (var i = offs; i < offs + len; i++) {
+            written += write(srcs[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offs, len);
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public void terminateWrites() {
+        this.terminated = true;
+    }
+
+    @Override
+    public boolean isWriteShutdown() {
+        return this.terminated;
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        if (this.terminated && !this.bodyWritten) {
+            while (this.offset < this.body.length) {
+                if (this.next.write(this.body, this.offset, this.body.length - this.offset) == 0) {
+                    return false;
+                }
+                while (this.offset < this.body.length && !this.body[this.offset].hasRemaining()) {
+                    this.offset++;
+                }
+            }
+            this.bodyWritten = true;
+            this.next.terminateWrites();
+        }
+        return this.next.flush();
+    }
+}
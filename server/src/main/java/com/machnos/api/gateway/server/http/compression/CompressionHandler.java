@@ -0,0 +1,350 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.compression;
+
+import com.machnos.api.gateway.server.configuration.ApiCompression;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ConduitFactory;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <code>HttpHandler</code> that compresses the responses of the next handler with the <code>gzip</code> or
+ * <code>deflate</code> encoding, based on the <code>Accept-Encoding</code> header of the request.
+ *
+ * <ul>
+ *     <li>Responses that are already encoded, partial responses, responses with <code>Cache-Control: no-transform</code>
+ *     and responses without a body are never compressed.</li>
+ *     <li>Only responses with one of the configured content types and without a <code>Content-Length</code> smaller
+ *     than the minimum size are compressed. Those responses get a <code>Vary: Accept-Encoding</code> header, also when
+ *     the client does not accept a compressed response.</li>
+ *     <li>A strong <code>ETag</code> of a compressed response is made weak, because the compressed body is not byte for
+ *     byte equal to the body of the upstream.</li>
+ * </ul>
+ *
+ * When this handler is placed between a <code>CacheHandler</code> and the upstream, the compressed responses are
+ * stored in the cache as separate variants. The cache varies on the literal value of the <code>Accept-Encoding</code>
+ * header, so the handler returned by {@link #normalizeAcceptEncoding(HttpHandler)} should be placed in front of the
+ * <code>CacheHandler</code>. It replaces the header with the negotiated encoding, so the cache holds at most one
+ * variant per encoding and a response is compressed once for each encoding.
+ */
+public class CompressionHandler implements HttpHandler {
+
+    /**
+     * The encodings that are supported.
+     */
+    private static final List<String> SUPPORTED_ENCODINGS = List.of("gzip", "deflate");
+
+    /**
+     * The <code>Content-Range</code> header of partial responses.
+     */
+    private static final HttpString CONTENT_RANGE = new HttpString("Content-Range");
+
+    /**
+     * The name of the <code>Accept-Encoding</code> header as used in the <code>Vary</code> header.
+     */
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    /**
+     * The encoding of a response that is not compressed.
+     */
+    private static final String IDENTITY = "identity";
+
+    /**
+     * The maximum number of idle deflaters per encoding.
+     */
+    private static final int MAX_IDLE_DEFLATERS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * The encodings the responses are compressed with, in order of preference.
+     */
+    private final String[] encodings;
+
+    /**
+     * The pools of deflaters, one for each of the {@link #encodings}.
+     */
+    private final DeflaterPool[] pools;
+
+    /**
+     * The content types that are compressed, in lower case. A content type ending with <code>/</code> matches all
+     * subtypes of the type.
+     */
+    private final String[] contentTypes;
+
+    private final long minimumSize;
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>CompressionHandler</code> instance.
+     *
+     * @param apiCompression The compression settings of the api.
+     * @param next The handler that produces the responses.
+     * @throws MachnosException with code {@link MachnosException#INVALID_COMPRESSION} when the level is not between 1
+     * and 9, or when an encoding is not supported.
+     */
+    public CompressionHandler(ApiCompression apiCompression, HttpHandler next) {
+        if (apiCompression.level < 1 || apiCompression.level > 9) {
+            throw new MachnosException(MachnosException.INVALID_COMPRESSION, Integer.toString(apiCompression.level));
+        }
+        this.encodings = new String[apiCompression.encodings.size()];
+        this.pools = new DeflaterPool[this.encodings.length];
+        for (var i = 0; i < this.encodings.length; i++) {
+            final var encoding = apiCompression.encodings.get(i).toLowerCase(Locale.ROOT);
+            if (!SUPPORTED_ENCODINGS.contains(encoding)) {
+                throw new MachnosException(MachnosException.INVALID_COMPRESSION, encoding);
+            }
+            this.encodings[i] = encoding;
+            this.pools[i] = new DeflaterPool(apiCompression.level, "gzip".equals(encoding), MAX_IDLE_DEFLATERS);
+        }
+        this.contentTypes = apiCompression.contentTypes.stream()
+                .map(contentType -> contentType.trim().toLowerCase(Locale.ROOT))
+                .map(contentType -> contentType.endsWith("/*") ? contentType.substring(0, contentType.length() - 1) : contentType)
+                .toArray(String[]::new);
+        this.minimumSize = apiCompression.minimumSize;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final var encoding = negotiate(exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING));
+        final var head = Methods.HEAD.equals(exchange.getRequestMethod());
+        exchange.addResponseWrapper((factory, ex) -> wrap(factory, ex, encoding, head));
+        this.next.handleRequest(exchange);
+    }
+
+    /**
+     * Gives a handler that replaces the <code>Accept-Encoding</code> header of a request with the encoding this
+     * handler negotiates for it, or with <code>identity</code> when the client does not accept any of the encodings,
+     * before the request is handed to the next handler. Requests with different spellings of the same preference, such
+     * as <code>gzip, deflate</code> and <code>br, gzip</code>, then have the same <code>Accept-Encoding</code> header
+     * when a <code>CacheHandler</code> selects or stores a variant, and when the request is forwarded to the upstream.
+     *
+     * @param next The handler to hand the request to, usually the <code>CacheHandler</code> in front of this handler.
+     * @return The <code>HttpHandler</code> that normalizes the <code>Accept-Encoding</code> header.
+     */
+    public HttpHandler normalizeAcceptEncoding(HttpHandler next) {
+        return exchange -> {
+            final var requestHeaders = exchange.getRequestHeaders();
+            final var encoding = negotiate(requestHeaders.get(Headers.ACCEPT_ENCODING));
+            requestHeaders.put(Headers.ACCEPT_ENCODING, encoding < 0 ? IDENTITY : this.encodings[encoding]);
+            next.handleRequest(exchange);
+        };
+    }
+
+    /**
+     * Decides whether a response is compressed, and updates its headers accordingly. A <code>HEAD</code> response
+     * gets the headers of the compressed <code>GET</code> response.
+     *
+     * @param factory The factory of the next conduit.
+     * @param exchange The <code>HttpServerExchange</code> of the response.
+     * @param encoding The index of the negotiated encoding, or -1 when the client does not accept a compressed
+     * response.
+     * @param head <code>true</code> when the request is a <code>HEAD</code> request.
+     * @return The conduit the response body is written to.
+     */
+    private StreamSinkConduit wrap(ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange, int encoding, boolean head) {
+        final var responseHeaders = exchange.getResponseHeaders();
+        if (exchange.getStatusCode() == StatusCodes.NOT_MODIFIED) {
+            if (encoding >= 0) {
+                // Keep the validator equal to the one of the compressed response the client or cache holds.
+                weakenETag(responseHeaders);
+            }
+            return factory.create();
+        }
+        if (!isCompressible(exchange.getStatusCode(), responseHeaders)) {
+            return factory.create();
+        }
+        addVary(responseHeaders);
+        if (encoding < 0) {
+            return factory.create();
+        }
+        responseHeaders.put(Headers.CONTENT_ENCODING, this.encodings[encoding]);
+        responseHeaders.remove(Headers.CONTENT_LENGTH);
+        weakenETag(responseHeaders);
+        if (head) {
+            return factory.create();
+        }
+        final var conduit = new DeflatingConduit(factory.create(), this.pools[encoding], exchange.getConnection().getByteBufferPool().allocate());
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            conduit.release();
+            nextListener.proceed();
+        });
+        return conduit;
+    }
+
+    /**
+     * Determines the encoding of the response from the <code>Accept-Encoding</code> header of the request. The
+     * supported encoding with the highest quality value is chosen, and the configured order of preference decides
+     * between encodings with the same quality value.
+     *
+     * @param acceptEncoding The values of the <code>Accept-Encoding</code> header, or <code>null</code>.
+     * @return The index of the negotiated encoding, or -1 when the client does not accept any of the encodings.
+     */
+    int negotiate(Collection<String> acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return -1;
+        }
+        final var qualities = new float[this.encodings.length];
+        Arrays.fill(qualities, -1);
+        var wildcardQuality = -1f;
+        for (final var value : acceptEncoding) {
+            for (final var coding : value.split(",")) {
+                final var parametersStart = coding.indexOf(';');
+                final var name = (parametersStart < 0 ? coding : coding.substring(0, parametersStart)).trim();
+                final var quality = parametersStart < 0 ? 1f : parseQuality(coding.substring(parametersStart + 1));
+                if ("*".equals(name)) {
+                    wildcardQuality = quality;
+                    continue;
+                }
+                for (var i = 0; i < this.encodings.length; i++) {
+                    if (this.encodings[i].equalsIgnoreCase(name)) {
+                        qualities[i] = quality;
+                    }
+                }
+            }
+        }
+        var encoding = -1;
+        var bestQuality = 0f;
+        for (var i = 0; i < qualities.length; i++) {
+            final var quality = qualities[i] < 0 ? wildcardQuality : qualities[i];
+            if (quality > bestQuality) {
+                encoding = i;
+                bestQuality = quality;
+            }
+        }
+        return encoding;
+    }
+
+    /**
+     * Gives the quality value of a coding in the <code>Accept-Encoding</code> header.
+     *
+     * @param parameters The parameters of the coding.
+     * @return The quality value, or 1 when the parameters have no quality value.
+     */
+    private static float parseQuality(String parameters) {
+        for (final var parameter : parameters.split(";")) {
+            final var trimmed = parameter.trim();
+            if (trimmed.length() > 2 && (trimmed.charAt(0) == 'q' || trimmed.charAt(0) == 'Q') && trimmed.charAt(1) == '=') {
+                try {
+                    return Float.parseFloat(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Determines whether a response can be compressed, regardless of the encodings the client accepts.
+     *
+     * @param statusCode The status code of the response.
+     * @param responseHeaders The headers of the response.
+     * @return <code>true</code> when the response can be compressed, <code>false</code> otherwise.
+     */
+    private boolean isCompressible(int statusCode, HeaderMap responseHeaders) {
+        if (statusCode < StatusCodes.OK || statusCode == StatusCodes.NO_CONTENT || statusCode == StatusCodes.PARTIAL_CONTENT) {
+            return false;
+        }
+        if (responseHeaders.contains(Headers.CONTENT_ENCODING) || responseHeaders.contains(CONTENT_RANGE)) {
+            return false;
+        }
+        final var cacheControl = responseHeaders.get(Headers.CACHE_CONTROL);
+        if (cacheControl != null) {
+            for (final var value : cacheControl) {
+                if (value.toLowerCase(Locale.ROOT).contains("no-transform")) {
+                    return false;
+                }
+            }
+        }
+        final var contentLength = responseHeaders.getFirst(Headers.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) < this.minimumSize) {
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return matchesContentType(responseHeaders.getFirst(Headers.CONTENT_TYPE));
+    }
+
+    /**
+     * Determines whether a content type is one of the content types that are compressed.
+     *
+     * @param contentType The value of the <code>Content-Type</code> header, or <code>null</code>.
+     * @return <code>true</code> when the content type matches, <code>false</code> otherwise.
+     */
+    private boolean matchesContentType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        final var parametersStart = contentType.indexOf(';');
+        final var mediaType = (parametersStart < 0 ? contentType : contentType.substring(0, parametersStart)).trim().toLowerCase(Locale.ROOT);
+        for (final var candidate : this.contentTypes) {
+            if (candidate.endsWith("/") ? mediaType.startsWith(candidate) : mediaType.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds <code>Accept-Encoding</code> to the <code>Vary</code> header of a response, when it is not listed already.
+     *
+     * @param responseHeaders The headers of the response.
+     */
+    private static void addVary(HeaderMap responseHeaders) {
+        final var vary = responseHeaders.get(Headers.VARY);
+        if (vary != null) {
+            for (final var value : vary) {
+                for (final var name : value.split(",")) {
+                    final var trimmed = name.trim();
+                    if ("*".equals(trimmed) || ACCEPT_ENCODING.equalsIgnoreCase(trimmed)) {
+                        return;
+                    }
+                }
+            }
+        }
+        responseHeaders.add(Headers.VARY, ACCEPT_ENCODING);
+    }
+
+    /**
+     * Makes a strong <code>ETag</code> of a response weak.
+     *
+     * @param responseHeaders The headers of the response.
+     */
+    private static void weakenETag(HeaderMap responseHeaders) {
+        final var etag = responseHeaders.getFirst(Headers.ETAG);
+        if (etag != null && !etag.startsWith("W/")) {
+            responseHeaders.put(Headers.ETAG, "W/" + etag);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.compression;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Pool of <code>Deflater</code> instances with the same compression level and format. Each deflater holds the native
+ * state of zlib, which is expensive to allocate compared to the compression of a small response, so deflaters are
+ * reset and reused instead of created for each response. At most <code>maxIdle</code> deflaters are kept, the native
+ * state of the surplus deflaters is released right away.
+ */
+final class DeflaterPool {
+
+    /**
+     * The compression level of the deflaters.
+     */
+    private final int level;
+
+    /**
+     * Whether the deflaters produce raw deflate data for the <code>gzip</code> format, instead of the zlib format of
+     * the <code>deflate</code> encoding.
+     */
+    private final boolean gzip;
+
+    /**
+     * The maximum number of idle deflaters in the pool.
+     */
+    private final int maxIdle;
+
+    /**
+     * The idle deflaters.
+     */
+    private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of idle deflaters, which is tracked separately because the size of the queue is not a constant time
+     * operation.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Constructs a new <code>DeflaterPool</code> instance.
+     *
+     * @param level The compression level of the deflaters.
+     * @param gzip <code>true</code> when the deflaters are used for the <code>gzip</code> format.
+     * @param maxIdle The maximum number of idle deflaters in the pool.
+     */
+    DeflaterPool(int level, boolean gzip, int maxIdle) {
+        this.level = level;
+        this.gzip = gzip;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Gives whether the deflaters of this pool are used for the <code>gzip</code> format.
+     *
+     * @return <code>true</code> when the deflaters produce raw deflate data that must be wrapped in the gzip format,
+     * <code>false</code> when they produce the zlib format.
+     */
+    boolean isGzip() {
+        return this.gzip;
+    }
+
+    /**
+     * Takes an idle deflater from the pool, or creates a new deflater when the pool is empty.
+     *
+     * @return The <code>Deflater</code>.
+     */
+    Deflater acquire() {
+        final var deflater = this.idle.poll();
+        if (deflater == null) {
+            return new Deflater(this.level, this.gzip);
+        }
+        this.idleCount.decrementAndGet();
+        return deflater;
+    }
+
+    /**
+     * Resets a deflater and returns it to the pool. The deflater is ended when the pool is full.
+     *
+     * @param deflater The <code>Deflater</code> that was acquired from this pool.
+     */
+    void release(Deflater deflater) {
+        if (this.idleCount.incrementAndGet() > this.maxIdle) {
+            this.idleCount.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        this.idle.offer(deflater);
+    }
+
+    /**
+     * Gives the number of idle deflaters in the pool.
+     *
+     * @return The number of idle deflaters.
+     */
+    int getIdle() {
+        return this.idleCount.get();
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.compression;
+
+import io.undertow.connector.PooledByteBuffer;
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Conduit that compresses a response body while it is streamed to the client. The body is deflated directly from the
+ * buffers of the writer into a single pooled buffer, without copying it onto the heap, and is wrapped in the
+ * <code>gzip</code> format when the deflater pool is used for gzip.
+ *
+ * When the next conduit cannot accept the compressed data, the data is kept in the buffer and no more input is
+ * consumed until it is written, so a slow client applies backpressure to the upstream. A flush of the writer before
+ * the end of the body flushes the deflater as well, so streamed responses reach the client without delay.
+ */
+final class DeflatingConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+    /**
+     * The header of a gzip member without file name, modification time or extra fields.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     * The input that releases the reference of the deflater to the buffer of the writer.
+     */
+    private static final ByteBuffer NO_INPUT = ByteBuffer.allocate(0);
+
+    private final DeflaterPool pool;
+    private final Deflater deflater;
+    private final PooledByteBuffer pooledBuffer;
+
+    /**
+     * The buffer that holds the compressed data that is not written to the next conduit yet. The buffer is always in
+     * fill mode.
+     */
+    private final ByteBuffer output;
+
+    /**
+     * The checksum of the uncompressed body, or <code>null</code> when the body is not wrapped in the gzip format.
+     */
+    private final CRC32 crc;
+
+    /**
+     * Whether input is deflated since the last flush of the deflater.
+     */
+    private boolean pending;
+
+    /**
+     * Whether the writes are terminated by the writer.
+     */
+    private boolean terminated;
+
+    /**
+     * Whether the deflater is finished and the gzip trailer, if any, is added to the output.
+     */
+    private boolean finished;
+
+    /**
+     * Whether all output is written and the writes of the next conduit are terminated.
+     */
+    private boolean nextTerminated;
+
+    /**
+     * Whether the deflater and the buffer are returned to their pools.
+     */
+    private boolean released;
+
+    /**
+     * Constructs a new <code>DeflatingConduit</code> instance.
+     *
+     * @param next The conduit the compressed body is written to.
+     * @param pool The <code>DeflaterPool</code> the deflater is acquired from.
+     * @param pooledBuffer The pooled buffer that holds the compressed data.
+     */
+    DeflatingConduit(StreamSinkConduit next, DeflaterPool pool, PooledByteBuffer pooledBuffer) {
+        super(next);
+        this.pool = pool;
+        this.deflater = pool.acquire();
+        this.pooledBuffer = pooledBuffer;
+        this.output = pooledBuffer.getBuffer();
+        this.output.clear();
+        if (pool.isGzip()) {
+            this.crc = new CRC32();
+            this.output.put(GZIP_HEADER);
+        } else {
+            this.crc = null;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (this.released) {
+            throw new ClosedChannelException();
+        }
+        if (!writeOutput()) {
+            return 0;
+        }
+        final var start = src.position();
+        this.deflater.setInput(src);
+        while (!this.deflater.needsInput()) {
+            this.deflater.deflate(this.output);
+            if (!this.output.hasRemaining() && !writeOutput()) {
+                break;
+            }
+        }
+        // The input that is not consumed is offered again by the writer.
+        this.deflater.setInput(NO_INPUT);
+        final var consumed = src.position() - start;
+        if (consumed > 0) {
+            this.pending = true;
+            if (this.crc != null) {
+                this.crc.update(src.duplicate().position(start).limit(start + consumed));
+            }
+        }
+        return consumed;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        long written = 0;
+        for (var i = offs; i < offs + len; i++) {
+            final var remaining = srcs[i].remaining();
+            final var consumed = write(srcs[i]);
+            written += consumed;
+            if (consumed < remaining) {
+                break;
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offs, len);
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public void terminateWrites() {
+        this.terminated = true;
+    }
+
+    @Override
+    public boolean isWriteShutdown() {
+        return this.terminated;
+    }
+
+    @Override
+    public void truncateWrites() throws IOException {
+        this.terminated = true;
+        release();
+        this.next.truncateWrites();
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        if (!this.released) {
+            if (this.terminated) {
+                if (!finish() || !writeOutput()) {
+                    return false;
+                }
+                release();
+                this.nextTerminated = true;
+                this.next.terminateWrites();
+            } else if (!syncFlush() || !writeOutput()) {
+                return false;
+            }
+        } else if (this.terminated && !this.nextTerminated) {
+            // The exchange is completed before the body is finished.
+            this.nextTerminated = true;
+            this.next.terminateWrites();
+        }
+        return this.next.flush();
+    }
+
+    /**
+     * Returns the deflater and the buffer to their pools. Calling this method more than once has no effect.
+     */
+    void release() {
+        if (this.released) {
+            return;
+        }
+        this.released = true;
+        this.pool.release(this.deflater);
+        this.pooledBuffer.close();
+    }
+
+    /**
+     * Flushes the deflater when input is deflated since the last flush, so all input written so far can be
+     * decompressed by the client.
+     *
+     * @return <code>true</code> when the deflater is flushed, <code>false</code> when the output could not be written.
+     */
+    private boolean syncFlush() throws IOException {
+        if (!this.pending) {
+            return true;
+        }
+        do {
+            if (!this.output.hasRemaining() && !writeOutput()) {
+                return false;
+            }
+            this.deflater.deflate(this.output, Deflater.SYNC_FLUSH);
+        } while (!this.output.hasRemaining());
+        this.pending = false;
+        return true;
+    }
+
+    /**
+     * Finishes the deflater and adds the gzip trailer to the output.
+     *
+     * @return <code>true</code> when the body is finished, <code>false</code> when the output could not be written.
+     */
+    private boolean finish() throws IOException {
+        if (this.finished) {
+            return true;
+        }
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            if (!this.output.hasRemaining() && !writeOutput()) {
+                return false;
+            }
+            this.deflater.deflate(this.output);
+        }
+        if (this.crc != null) {
+            if (this.output.remaining() < 8 && !writeOutput()) {
+                return false;
+            }
+            putIntLittleEndian((int) this.crc.getValue());
+            putIntLittleEndian((int) this.deflater.getBytesRead());
+        }
+        this.finished = true;
+        return true;
+    }
+
+    /**
+     * Writes the compressed data in the output buffer to the next conduit.
+     *
+     * @return <code>true</code> when the output buffer is empty, <code>false</code> when the next conduit could not
+     * accept all data.
+     */
+    private boolean writeOutput() throws IOException {
+        if (this.output.position() == 0) {
+            return true;
+        }
+        this.output.flip();
+        try {
+            while (this.output.hasRemaining()) {
+                if (this.next.write(this.output) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            this.output.compact();
+        }
+    }
+
+    private void putIntLittleEndian(int value) {
+        this.output.put((byte) value);
+        this.output.put((byte) (value >> 8));
+        this.output.put((byte) (value >> 16));
+        this.output.put((byte) (value >> 24));
+    }
+}
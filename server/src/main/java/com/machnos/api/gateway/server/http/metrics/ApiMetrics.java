@@ -0,0 +1,167 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latency and traffic of the requests to a single api.
+ *
+ * Three latencies are recorded for each request. The total latency runs from the moment the request is received
+ * until the response is completely sent. The upstream latency runs from the moment the request is forwarded to an
+ * upstream host until the response headers of the host are committed, and includes waiting for a pooled connection.
+ * The gateway overhead is the total latency minus the upstream latency, which for requests that are not forwarded, for
+ * example because they are served from the response cache, is the total latency.
+ */
+public final class ApiMetrics {
+
+    private final String name;
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final LatencyHistogram upstreamLatency = new LatencyHistogram();
+    private final LatencyHistogram gatewayOverhead = new LatencyHistogram();
+
+    /**
+     * The number of responses for each status class, from <code>1xx</code> to <code>5xx</code>.
+     */
+    private final LongAdder[] responses = new LongAdder[5];
+
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+
+    /**
+     * Constructs a new <code>ApiMetrics</code> instance.
+     *
+     * @param name The name of the api.
+     */
+    public ApiMetrics(String name) {
+        this.name = name;
+        for (var i = 0; i < this.responses.length; i++) {
+            this.responses[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param totalNanos The total latency in nanoseconds, or a negative value when the start of the request is unknown.
+     * @param upstreamNanos The upstream latency in nanoseconds, or a negative value when the request was not forwarded.
+     * @param status The status code of the response.
+     * @param requestBytes The length of the request body, or a negative value when it is unknown.
+     * @param responseBytes The number of bytes of the response that are sent.
+     */
+    public void record(long totalNanos, long upstreamNanos, int status, long requestBytes, long responseBytes) {
+        if (upstreamNanos >= 0) {
+            this.upstreamLatency.record(upstreamNanos);
+        }
+        if (totalNanos >= 0) {
+            this.totalLatency.record(totalNanos);
+            this.gatewayOverhead.record(upstreamNanos >= 0 ? totalNanos - upstreamNanos : totalNanos);
+        }
+        this.responses[statusClassOf(status) - 1].increment();
+        if (requestBytes > 0) {
+            this.requestBytes.add(requestBytes);
+        }
+        if (responseBytes > 0) {
+            this.responseBytes.add(responseBytes);
+        }
+    }
+
+    /**
+     * Gives the status class of a status code, which is 5 for unknown status codes.
+     *
+     * @param status The status code.
+     * @return The status class, from 1 to 5.
+     */
+    private static int statusClassOf(int status) {
+        final var statusClass = status / 100;
+        return statusClass >= 1 && statusClass <= 5 ? statusClass : 5;
+    }
+
+    /**
+     * Gives the name of the api.
+     *
+     * @return The name of the api.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gives the histogram of the total latency of the requests.
+     *
+     * @return The total latency <code>LatencyHistogram</code>.
+     */
+    public LatencyHistogram getTotalLatency() {
+        return this.totalLatency;
+    }
+
+    /**
+     * Gives the histogram of the time the upstream hosts took to respond.
+     *
+     * @return The upstream latency <code>LatencyHistogram</code>.
+     */
+    public LatencyHistogram getUpstreamLatency() {
+        return this.upstreamLatency;
+    }
+
+    /**
+     * Gives the histogram of the time the requests spent in the gateway itself.
+     *
+     * @return The gateway overhead <code>LatencyHistogram</code>.
+     */
+    public LatencyHistogram getGatewayOverhead() {
+        return this.gatewayOverhead;
+    }
+
+    /**
+     * Gives the number of responses with a status code in a status class.
+     *
+     * @param statusClass The status class, from 1 for <code>1xx</code> to 5 for <code>5xx</code>.
+     * @return The number of responses.
+     */
+    public long getResponses(int statusClass) {
+        return this.responses[statusClass - 1].sum();
+    }
+
+    /**
+     * Gives the number of failed requests, which are the requests with a <code>5xx</code> response.
+     *
+     * @return The number of failed requests.
+     */
+    public long getErrors() {
+        return getResponses(5);
+    }
+
+    /**
+     * Gives the number of bytes of the request bodies with a known length.
+     *
+     * @return The number of request bytes.
+     */
+    public long getRequestBytes() {
+        return this.requestBytes.sum();
+    }
+
+    /**
+     * Gives the number of bytes of the responses that are sent.
+     *
+     * @return The number of response bytes.
+     */
+    public long getResponseBytes() {
+        return this.responseBytes.sum();
+    }
+}
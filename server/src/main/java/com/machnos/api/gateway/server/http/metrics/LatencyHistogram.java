@@ -0,0 +1,207 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with logarithmic buckets in the style of HdrHistogram. The latencies are recorded in microseconds,
+ * each power of two is split into {@value #SUB_BUCKETS} linear buckets, so the recorded values have a relative error of
+ * at most 12.5%. Latencies of more than 2<sup>27</sup> microseconds, a little over two minutes, are counted in the
+ * last bucket.
+ *
+ * The buckets are striped over a number of arrays, and each thread records in the stripe of its thread id. The stripes
+ * are only merged when a <code>Snapshot</code> is taken, so concurrent requests hardly ever write to the same memory.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of linear buckets each power of two is split into.
+     */
+    static final int SUB_BUCKETS = 8;
+
+    /**
+     * The number of bits of <code>SUB_BUCKETS</code>.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The highest power of two that is recorded in its own buckets.
+     */
+    static final int MAX_EXPONENT = 26;
+
+    /**
+     * The number of buckets of the histogram.
+     */
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /**
+     * The number of stripes, a power of two.
+     */
+    private static final int STRIPES = Integer.highestOneBit(Math.min(16, Math.max(1, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+    /**
+     * The stripes. The last slot of each stripe holds the sum of the recorded latencies in nanoseconds.
+     */
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    /**
+     * Constructs a new <code>LatencyHistogram</code> instance.
+     */
+    public LatencyHistogram() {
+        for (var i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds. Negative latencies are recorded as 0.
+     */
+    public void record(long nanos) {
+        final var latency = Math.max(0, nanos);
+        final var stripe = this.stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        stripe.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(latency)));
+        stripe.addAndGet(BUCKETS, latency);
+    }
+
+    /**
+     * Merges the stripes into a <code>Snapshot</code>. The snapshot is not atomic; latencies that are recorded while
+     * the snapshot is taken may be partially included.
+     *
+     * @return The <code>Snapshot</code> of this histogram.
+     */
+    public Snapshot snapshot() {
+        final var counts = new long[BUCKETS];
+        var sum = 0L;
+        for (final var stripe : this.stripes) {
+            for (var i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(BUCKETS);
+        }
+        return new Snapshot(counts, sum);
+    }
+
+    /**
+     * Gives the bucket of a latency.
+     *
+     * @param micros The latency in microseconds.
+     * @return The index of the bucket.
+     */
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        final var exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final var shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gives the lowest latency that is counted in a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The lowest latency of the bucket in microseconds.
+     */
+    static long lowestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final var shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Merged view of the stripes of a <code>LatencyHistogram</code>.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long sum;
+        private final long count;
+
+        private Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            this.sum = sum;
+            var count = 0L;
+            for (final var bucketCount : counts) {
+                count += bucketCount;
+            }
+            this.count = count;
+        }
+
+        /**
+         * Gives the number of recorded latencies.
+         *
+         * @return The number of recorded latencies.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gives the sum of the recorded latencies.
+         *
+         * @return The sum of the recorded latencies in nanoseconds.
+         */
+        public long getSum() {
+            return this.sum;
+        }
+
+        /**
+         * Gives the number of recorded latencies below a power of two microseconds. Powers of two are bucket
+         * boundaries, so the count is exact.
+         *
+         * @param exponent The exponent of the power of two, at most 26.
+         * @return The number of latencies below 2<sup>exponent</sup> microseconds.
+         */
+        public long getCountBelow(int exponent) {
+            final var end = bucketOf(1L << Math.min(Math.max(0, exponent), MAX_EXPONENT));
+            var count = 0L;
+            for (var i = 0; i < end; i++) {
+                count += this.counts[i];
+            }
+            return count;
+        }
+
+        /**
+         * Gives the latency below which a percentage of the recorded latencies fall.
+         *
+         * @param percentile The percentage, between 0 and 100.
+         * @return The highest latency of the bucket that holds the percentile in microseconds, or 0 when no
+         * latencies are recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            final var rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * this.count);
+            var count = 0L;
+            for (var i = 0; i < BUCKETS; i++) {
+                count += this.counts[i];
+                if (count > 0 && count >= rank) {
+                    return i + 1 < BUCKETS ? lowestOf(i + 1) - 1 : lowestOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
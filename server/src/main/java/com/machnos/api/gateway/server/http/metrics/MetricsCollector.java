@@ -0,0 +1,32 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+/**
+ * Source of metrics that are read when the metrics are scraped, for example the statistics of the connection pools.
+ */
+@FunctionalInterface
+public interface MetricsCollector {
+
+    /**
+     * Writes the current values of the metrics.
+     *
+     * @param writer The <code>PrometheusWriter</code> to write the metrics to.
+     */
+    void collect(PrometheusWriter writer);
+}
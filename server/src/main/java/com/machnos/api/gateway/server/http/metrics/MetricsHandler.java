@@ -0,0 +1,181 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import com.machnos.api.gateway.server.http.proxy.UpstreamProxyClient;
+import com.machnos.api.gateway.server.http.routing.RouteHandler;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>HttpHandler</code> that records the latency and traffic of each completed request in the
+ * <code>ApiMetrics</code> of the api the request is routed to, and serves the metrics on the metrics path.
+ *
+ * Recording only touches striped histograms and <code>LongAdder</code>s, and the handler itself is the completion
+ * listener of the exchanges, so the requests do not contend on shared state. The stripes are merged when the metrics
+ * are scraped, on a worker thread.
+ */
+public class MetricsHandler implements HttpHandler, ExchangeCompletionListener {
+
+    /**
+     * The value of the api label of the requests that do not match an api.
+     */
+    public static final String NO_API = "-";
+
+    private final String path;
+    private final Map<String, ApiMetrics> apiMetrics = new HashMap<>();
+    private final ApiMetrics noApiMetrics = new ApiMetrics(NO_API);
+    private final List<MetricsCollector> collectors;
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>MetricsHandler</code> instance.
+     *
+     * @param path The path on which the metrics are served.
+     * @param apiNames The names of the apis to record the metrics of.
+     * @param collectors The <code>MetricsCollector</code>s of the other metrics that are served.
+     * @param next The handler the requests are handed to.
+     */
+    public MetricsHandler(String path, Collection<String> apiNames, List<MetricsCollector> collectors, HttpHandler next) {
+        this.path = path;
+        apiNames.forEach(apiName -> this.apiMetrics.put(apiName, new ApiMetrics(apiName)));
+        this.collectors = collectors;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (this.path.equals(exchange.getRequestPath())) {
+            serve(exchange);
+            return;
+        }
+        exchange.addExchangeCompleteListener(this);
+        this.next.handleRequest(exchange);
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            final var startTime = exchange.getRequestStartTime();
+            final var upstreamTime = exchange.getAttachment(UpstreamProxyClient.UPSTREAM_TIME);
+            getApiMetrics(exchange).record(
+                    startTime > 0 ? System.nanoTime() - startTime : -1,
+                    upstreamTime == null ? -1 : upstreamTime,
+                    exchange.getStatusCode(),
+                    exchange.getRequestContentLength(),
+                    exchange.getResponseBytesSent()
+            );
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+    /**
+     * Gives the <code>ApiMetrics</code> of the api an exchange is routed to.
+     *
+     * @param exchange The <code>HttpServerExchange</code>.
+     * @return The <code>ApiMetrics</code> of the api, or the <code>ApiMetrics</code> labelled {@value #NO_API} when
+     * the exchange is not routed to an api.
+     */
+    private ApiMetrics getApiMetrics(HttpServerExchange exchange) {
+        final var route = exchange.getAttachment(RouteHandler.ROUTE);
+        if (route == null) {
+            return this.noApiMetrics;
+        }
+        final var metrics = this.apiMetrics.get(route.getName());
+        return metrics == null ? this.noApiMetrics : metrics;
+    }
+
+    /**
+     * Gives the <code>ApiMetrics</code> of an api.
+     *
+     * @param apiName The name of the api, or {@value #NO_API} for the requests that do not match an api.
+     * @return The <code>ApiMetrics</code>, or <code>null</code> when the api is unknown.
+     */
+    public ApiMetrics getApiMetrics(String apiName) {
+        return NO_API.equals(apiName) ? this.noApiMetrics : this.apiMetrics.get(apiName);
+    }
+
+    /**
+     * Serves the metrics. The metrics are written on a worker thread, because merging the histograms of many apis
+     * takes too long for an I/O thread.
+     *
+     * @param exchange The <code>HttpServerExchange</code> that requests the metrics.
+     */
+    private void serve(HttpServerExchange exchange) {
+        final var method = exchange.getRequestMethod();
+        final var head = Methods.HEAD.equals(method);
+        if (!head && !Methods.GET.equals(method)) {
+            exchange.getResponseHeaders().put(Headers.ALLOW, "GET, HEAD");
+            exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
+            exchange.endExchange();
+            return;
+        }
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(() -> serve(exchange));
+            return;
+        }
+        final var writer = new PrometheusWriter();
+        write(writer);
+        this.collectors.forEach(collector -> collector.collect(writer));
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, PrometheusWriter.CONTENT_TYPE);
+        if (head) {
+            exchange.endExchange();
+        } else {
+            exchange.getResponseSender().send(writer.toString());
+        }
+    }
+
+    /**
+     * Writes the request metrics of all apis.
+     *
+     * @param writer The <code>PrometheusWriter</code> to write the metrics to.
+     */
+    void write(PrometheusWriter writer) {
+        final var all = new ArrayList<>(this.apiMetrics.values());
+        all.add(this.noApiMetrics);
+        writer.family("machnos_requests_total", PrometheusWriter.Type.COUNTER, "The number of completed requests by api and status class.");
+        all.forEach(metrics -> {
+            for (var statusClass = 1; statusClass <= 5; statusClass++) {
+                writer.sample("machnos_requests_total", metrics.getResponses(statusClass), "api", metrics.getName(), "code", statusClass + "xx");
+            }
+        });
+        writer.family("machnos_request_errors_total", PrometheusWriter.Type.COUNTER, "The number of requests with a 5xx response by api.");
+        all.forEach(metrics -> writer.sample("machnos_request_errors_total", metrics.getErrors(), "api", metrics.getName()));
+        writer.family("machnos_request_bytes_total", PrometheusWriter.Type.COUNTER, "The number of bytes of the request bodies with a known length by api.");
+        all.forEach(metrics -> writer.sample("machnos_request_bytes_total", metrics.getRequestBytes(), "api", metrics.getName()));
+        writer.family("machnos_response_bytes_total", PrometheusWriter.Type.COUNTER, "The number of bytes of the responses that are sent by api.");
+        all.forEach(metrics -> writer.sample("machnos_response_bytes_total", metrics.getResponseBytes(), "api", metrics.getName()));
+        writer.family("machnos_request_duration_seconds", PrometheusWriter.Type.HISTOGRAM, "The time from receiving the request until the response is sent by api.");
+        all.forEach(metrics -> writer.histogram("machnos_request_duration_seconds", metrics.getTotalLatency().snapshot(), "api", metrics.getName()));
+        writer.family("machnos_upstream_duration_seconds", PrometheusWriter.Type.HISTOGRAM, "The time from forwarding the request until the upstream response headers are received by api.");
+        all.forEach(metrics -> writer.histogram("machnos_upstream_duration_seconds", metrics.getUpstreamLatency().snapshot(), "api", metrics.getName()));
+        writer.family("machnos_gateway_overhead_seconds", PrometheusWriter.Type.HISTOGRAM, "The time the request spent in the gateway, which is the total time minus the upstream time, by api.");
+        all.forEach(metrics -> writer.histogram("machnos_gateway_overhead_seconds", metrics.getGatewayOverhead().snapshot(), "api", metrics.getName()));
+    }
+}
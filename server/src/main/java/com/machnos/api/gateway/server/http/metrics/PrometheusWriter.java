@@ -0,0 +1,205 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Writer of metrics in the Prometheus text exposition format, version 0.0.4. The samples of a metric family must be
+ * written directly after the family itself.
+ */
+public final class PrometheusWriter {
+
+    /**
+     * The content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The lowest and highest power of two microseconds that is exported as bucket boundary of a histogram.
+     */
+    private static final int MIN_BUCKET_EXPONENT = 4;
+    private static final int MAX_BUCKET_EXPONENT = LatencyHistogram.MAX_EXPONENT;
+
+    /**
+     * The bucket boundaries of the histograms in seconds, formatted once.
+     */
+    private static final String[] BUCKET_BOUNDARIES = new String[MAX_BUCKET_EXPONENT - MIN_BUCKET_EXPONENT + 1];
+
+    static {
+        for (var i = 0; i < BUCKET_BOUNDARIES.length; i++) {
+            BUCKET_BOUNDARIES[i] = BigDecimal.valueOf(1L << (MIN_BUCKET_EXPONENT + i)).movePointLeft(6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    /**
+     * The types of metric families.
+     */
+    public enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private final StringBuilder builder = new StringBuilder(4096);
+
+    /**
+     * Writes the description of a metric family.
+     *
+     * @param name The name of the metric family.
+     * @param type The type of the metric family.
+     * @param help The description of the metric family.
+     * @return This <code>PrometheusWriter</code>.
+     */
+    public PrometheusWriter family(String name, Type type, String help) {
+        this.builder.append("# HELP ").append(name).append(' ');
+        for (var i = 0; i < help.length(); i++) {
+            final var c = help.charAt(i);
+            if (c == '\\') {
+                this.builder.append("\\\\");
+            } else if (c == '\n') {
+                this.builder.append("\\n");
+            } else {
+                this.builder.append(c);
+            }
+        }
+        this.builder.append('\n').append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase(Locale.ROOT)).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param name The name of the sample.
+     * @param value The value of the sample.
+     * @param labels The names and values of the labels of the sample, alternately.
+     * @return This <code>PrometheusWriter</code>.
+     */
+    public PrometheusWriter sample(String name, long value, String... labels) {
+        appendName(name, labels, null, null);
+        this.builder.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param name The name of the sample.
+     * @param value The value of the sample.
+     * @param labels The names and values of the labels of the sample, alternately.
+     * @return This <code>PrometheusWriter</code>.
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        appendName(name, labels, null, null);
+        this.builder.append(' ');
+        appendValue(value);
+        this.builder.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the samples of a latency histogram in seconds: the cumulative buckets, the sum and the count.
+     *
+     * @param name The name of the histogram family.
+     * @param snapshot The <code>Snapshot</code> of the <code>LatencyHistogram</code>.
+     * @param labels The names and values of the labels of the samples, alternately.
+     * @return This <code>PrometheusWriter</code>.
+     */
+    public PrometheusWriter histogram(String name, LatencyHistogram.Snapshot snapshot, String... labels) {
+        final var bucketName = name + "_bucket";
+        for (var i = 0; i < BUCKET_BOUNDARIES.length; i++) {
+            appendName(bucketName, labels, "le", BUCKET_BOUNDARIES[i]);
+            this.builder.append(' ').append(snapshot.getCountBelow(MIN_BUCKET_EXPONENT + i)).append('\n');
+        }
+        appendName(bucketName, labels, "le", "+Inf");
+        this.builder.append(' ').append(snapshot.getCount()).append('\n');
+        sample(name + "_sum", snapshot.getSum() / 1e9, labels);
+        sample(name + "_count", snapshot.getCount(), labels);
+        return this;
+    }
+
+    /**
+     * Appends the name and labels of a sample.
+     *
+     * @param name The name of the sample.
+     * @param labels The names and values of the labels, alternately.
+     * @param extraLabel The name of a label that is appended after the other labels, or <code>null</code>.
+     * @param extraValue The value of the extra label.
+     */
+    private void appendName(String name, String[] labels, String extraLabel, String extraValue) {
+        this.builder.append(name);
+        if (labels.length == 0 && extraLabel == null) {
+            return;
+        }
+        this.builder.append('{');
+        for (var i = 0; i + 1 < labels.length; i += 2) {
+            appendLabel(labels[i], labels[i + 1]);
+            this.builder.append(',');
+        }
+        if (extraLabel != null) {
+            appendLabel(extraLabel, extraValue);
+            this.builder.append(',');
+        }
+        this.builder.setCharAt(this.builder.length() - 1, '}');
+    }
+
+    /**
+     * Appends a label, escaping its value.
+     *
+     * @param label The name of the label.
+     * @param value The value of the label.
+     */
+    private void appendLabel(String label, String value) {
+        this.builder.append(label).append("=\"");
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                this.builder.append('\\').append(c);
+            } else if (c == '\n') {
+                this.builder.append("\\n");
+            } else {
+                this.builder.append(c);
+            }
+        }
+        this.builder.append('"');
+    }
+
+    /**
+     * Appends a floating point value.
+     *
+     * @param value The value.
+     */
+    private void appendValue(double value) {
+        if (Double.isNaN(value)) {
+            this.builder.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            this.builder.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            this.builder.append(value);
+        }
+    }
+
+    /**
+     * Gives the metrics that are written.
+     *
+     * @return The metrics in the Prometheus text exposition format.
+     */
+    @Override
+    public String toString() {
+        return this.builder.toString();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.pipeline;
+
+import com.machnos.api.gateway.server.configuration.ExecutionMode;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.ValidationException;
+import com.machnos.api.gateway.server.domain.api.functions.Pipeline;
+import com.machnos.api.gateway.server.domain.api.variables.StringVariable;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+import com.machnos.api.gateway.server.http.routing.RouteHandler;
+import com.machnos.api.gateway.server.http.tracing.FunctionSpans;
+import com.machnos.api.gateway.server.http.tracing.Tracer;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.stream.Collectors;
+
+/**
+ * <code>HttpHandler</code> that executes the <code>Pipeline</code> of an api before the request is handed to the next
+ * handler. Depending on the <code>ExecutionMode</code> the pipeline is executed on the I/O thread, on the worker
+ * thread pool, or on a virtual thread.
+ */
+public class PipelineHandler implements HttpHandler {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The key under which the <code>Variables</code> of the pipeline are attached to the exchange.
+     */
+    public static final AttachmentKey<Variables> VARIABLES = AttachmentKey.create(Variables.class);
+
+    /**
+     * The name of the variable that holds the method of the request.
+     */
+    public static final String VARIABLE_REQUEST_METHOD = "request.method";
+
+    /**
+     * The name of the variable that holds the path of the request.
+     */
+    public static final String VARIABLE_REQUEST_PATH = "request.path";
+
+    /**
+     * The prefix of the variables that hold the path parameters of the request.
+     */
+    public static final String VARIABLE_PATH_PARAMETER_PREFIX = "path.";
+
+    /**
+     * The <code>Pipeline</code> to execute.
+     */
+    private final Pipeline pipeline;
+
+    /**
+     * The <code>ExecutionMode</code> that is used to execute the pipeline.
+     */
+    private final ExecutionMode executionMode;
+
+    /**
+     * The handler the request is handed to after the pipeline is executed successfully.
+     */
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>PipelineHandler</code> instance.
+     *
+     * @param pipeline The <code>Pipeline</code> to execute.
+     * @param executionMode The <code>ExecutionMode</code> that is used to execute the pipeline. When virtual threads
+     *                      are requested but not supported by the JVM the worker thread pool is used.
+     * @param next The handler the request is handed to after the pipeline is executed successfully.
+     */
+    public PipelineHandler(Pipeline pipeline, ExecutionMode executionMode, HttpHandler next) {
+        this.pipeline = pipeline;
+        this.pipeline.getVariableSlots().add(VARIABLE_REQUEST_METHOD);
+        this.pipeline.getVariableSlots().add(VARIABLE_REQUEST_PATH);
+        this.executionMode = executionMode == ExecutionMode.VIRTUAL_THREAD && !VirtualThreads.isSupported() ? ExecutionMode.WORKER : executionMode;
+        this.next = next;
+    }
+
+    /**
+     * Gives the <code>ExecutionMode</code> that is actually used to execute the pipeline.
+     *
+     * @return The <code>ExecutionMode</code>.
+     */
+    public ExecutionMode getExecutionMode() {
+        return this.executionMode;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (this.executionMode == ExecutionMode.IO_THREAD || !exchange.isInIoThread()) {
+            executePipeline(exchange);
+        } else if (this.executionMode == ExecutionMode.VIRTUAL_THREAD) {
+            exchange.dispatch(VirtualThreads.getExecutor(), this::executePipeline);
+        } else {
+            exchange.dispatch(this::executePipeline);
+        }
+    }
+
+    /**
+     * Executes the pipeline and hands the request to the next handler when the execution succeeds. When the execution
+     * fails because the request does not pass the validation of a function, a bad request is returned. Any other
+     * failure returns an internal server error. The error codes are logged, and not sent to the client. When the
+     * request is sampled, a span is recorded for each function.
+     *
+     * @param exchange The <code>HttpServerExchange</code> to execute the pipeline for.
+     */
+    private void executePipeline(HttpServerExchange exchange) throws Exception {
+        final var variables = createVariables(exchange);
+        final var span = exchange.getAttachment(Tracer.SPAN);
+        final var result = this.pipeline.execute(variables, span == null ? null : new FunctionSpans(span));
+        if (result.hasExceptions()) {
+            final var exceptions = result.getExceptions();
+            final var validationFailure = exceptions.stream().allMatch(exception -> exception instanceof ValidationException);
+            if (validationFailure ? logger.isDebugEnabled() : logger.isWarnEnabled()) {
+                final var message = "Execution of the pipeline for '" + exchange.getRequestPath() + "' failed with error code(s) "
+                        + exceptions.stream().map(MachnosException::getErrorCode).map(String::valueOf).collect(Collectors.joining(", ")) + ".";
+                if (validationFailure) {
+                    logger.debug(message);
+                } else {
+                    logger.warn(message);
+                }
+            }
+            final var statusCode = validationFailure ? StatusCodes.BAD_REQUEST : StatusCodes.INTERNAL_SERVER_ERROR;
+            exchange.setStatusCode(statusCode);
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+            exchange.getResponseSender().send(StatusCodes.getReason(statusCode));
+            return;
+        }
+        exchange.putAttachment(VARIABLES, variables);
+        this.next.handleRequest(exchange);
+    }
+
+    /**
+     * Creates the <code>Variables</code> the pipeline starts with.
+     *
+     * @param exchange The <code>HttpServerExchange</code> to create the <code>Variables</code> for.
+     * @return The <code>Variables</code>.
+     */
+    private Variables createVariables(HttpServerExchange exchange) {
+        final var variables = this.pipeline.createVariables()
+                .add(new StringVariable().setName(VARIABLE_REQUEST_METHOD).setValue(exchange.getRequestMethod().toString()))
+                .add(new StringVariable().setName(VARIABLE_REQUEST_PATH).setValue(exchange.getRelativePath()));
+        final var route = exchange.getAttachment(RouteHandler.ROUTE);
+        if (route != null) {
+            route.getPathParameters(exchange.getRelativePath())
+                    .forEach((name, value) -> variables.add(new StringVariable().setName(VARIABLE_PATH_PARAMETER_PREFIX + name).setValue(value)));
+        }
+        return variables;
+    }
+}
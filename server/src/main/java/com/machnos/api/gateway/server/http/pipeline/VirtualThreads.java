@@ -0,0 +1,87 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.pipeline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gives access to virtual threads when the JVM supports them. The Api Gateway is compiled against Java 11, so the
+ * virtual thread executor is looked up at runtime instead of being referenced directly.
+ */
+public final class VirtualThreads {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The executor that starts a new virtual thread for each task, or <code>null</code> when virtual threads are not
+     * supported.
+     */
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether the JVM supports virtual threads.
+     *
+     * @return <code>true</code> when virtual threads are supported, <code>false</code> otherwise.
+     */
+    public static boolean isSupported() {
+        return EXECUTOR != null;
+    }
+
+    /**
+     * Gives the executor that runs each task on a new virtual thread.
+     *
+     * @return The virtual thread executor, or <code>null</code> when virtual threads are not supported.
+     */
+    public static ExecutorService getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Creates the virtual thread executor.
+     *
+     * @return The executor, or <code>null</code> when virtual threads are not supported.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            final var factoryMethod = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) factoryMethod.invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Virtual threads are not available in Java " + Runtime.version().feature() + ".");
+            }
+        } catch (Throwable e) {
+            // Virtual threads are a preview feature in Java 19 and 20 that must be enabled explicitly.
+            if (logger.isDebugEnabled()) {
+                logger.debug("Virtual threads are not enabled.", e);
+            }
+        }
+        return null;
+    }
+}
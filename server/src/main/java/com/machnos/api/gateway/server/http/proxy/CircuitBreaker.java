@@ -0,0 +1,293 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import com.machnos.api.gateway.server.configuration.UpstreamCircuitBreaker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker of a single upstream host.
+ *
+ * While the circuit is closed all requests are let through, and their outcomes are recorded in a
+ * <code>RollingWindow</code>. The circuit opens when the failure rate or the slow call rate in the window exceeds its
+ * threshold, or when a number of consecutive requests failed. While the circuit is open the host is ejected, and no
+ * requests are let through. After the open duration the circuit becomes half open and a limited number of probe
+ * requests are let through. The circuit closes when all probes succeed, and opens again, for twice the duration, when
+ * a probe fails.
+ *
+ * Checking and recording requests is lock-free. Only the state transitions, which are rare, are synchronized.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The number of buckets of the rolling window.
+     */
+    private static final int BUCKET_COUNT = 10;
+
+    /**
+     * The uri of the host, used for logging.
+     */
+    private final URI uri;
+
+    private final RollingWindow window;
+    private final int minimumRequests;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final int slowCallRateThreshold;
+    private final int consecutiveFailuresThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final int halfOpenRequests;
+
+    /**
+     * The current state.
+     */
+    private volatile State state = State.CLOSED;
+
+    /**
+     * The time in nanoseconds at which an open circuit becomes half open.
+     */
+    private volatile long openUntil;
+
+    /**
+     * The number of times the circuit opened since it was closed the last time.
+     */
+    private int openings;
+
+    /**
+     * The number of consecutive failures while the circuit is closed.
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * The number of probe requests that may still be let through while the circuit is half open.
+     */
+    private final AtomicInteger probePermits = new AtomicInteger();
+
+    /**
+     * The number of successful probe requests while the circuit is half open.
+     */
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Constructs a new <code>CircuitBreaker</code> instance.
+     *
+     * @param uri The uri of the host the circuit breaker guards.
+     * @param settings The circuit breaker settings of the upstream.
+     */
+    public CircuitBreaker(URI uri, UpstreamCircuitBreaker settings) {
+        this.uri = uri;
+        this.window = new RollingWindow(TimeUnit.MILLISECONDS.toNanos(settings.window), BUCKET_COUNT);
+        this.minimumRequests = Math.max(1, settings.minimumRequests);
+        this.failureRateThreshold = settings.failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(settings.slowCallDuration);
+        this.slowCallRateThreshold = settings.slowCallRateThreshold;
+        this.consecutiveFailuresThreshold = settings.consecutiveFailures;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(settings.openDuration);
+        this.maxOpenNanos = Math.max(this.openNanos, TimeUnit.MILLISECONDS.toNanos(settings.maxOpenDuration));
+        this.halfOpenRequests = Math.max(1, settings.halfOpenRequests);
+    }
+
+    /**
+     * Checks whether a request may be sent to the host. A request that is let through while the circuit is half open
+     * is a probe, and its outcome must be reported with {@link #onResult(long, long, boolean)} or
+     * {@link #onIgnored()}.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return <code>true</code> when the request may be sent to the host, <code>false</code> when the host is ejected.
+     */
+    public boolean tryAcquire(long now) {
+        var currentState = this.state;
+        if (currentState == State.CLOSED) {
+            return true;
+        }
+        if (currentState == State.OPEN) {
+            if (now - this.openUntil < 0) {
+                this.rejections.increment();
+                return false;
+            }
+            halfOpen();
+        }
+        var permits = this.probePermits.get();
+        while (permits > 0) {
+            if (this.probePermits.compareAndSet(permits, permits - 1)) {
+                return true;
+            }
+            permits = this.probePermits.get();
+        }
+        this.rejections.increment();
+        return false;
+    }
+
+    /**
+     * Records the outcome of a request to the host.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @param latencyNanos The number of nanoseconds the request took.
+     * @param failure Whether the request failed.
+     */
+    public void onResult(long now, long latencyNanos, boolean failure) {
+        final var slow = this.slowCallNanos > 0 && latencyNanos >= this.slowCallNanos;
+        final var currentState = this.state;
+        if (currentState == State.HALF_OPEN) {
+            if (failure || slow) {
+                open(State.HALF_OPEN, now, "a failed probe request");
+            } else if (this.probeSuccesses.incrementAndGet() >= this.halfOpenRequests) {
+                close();
+            }
+            return;
+        }
+        if (currentState == State.OPEN) {
+            // The request was sent before the circuit opened.
+            return;
+        }
+        this.window.record(now, failure, slow);
+        if (failure) {
+            if (this.consecutiveFailuresThreshold > 0 && this.consecutiveFailures.incrementAndGet() >= this.consecutiveFailuresThreshold) {
+                open(State.CLOSED, now, this.consecutiveFailuresThreshold + " consecutive failures");
+                return;
+            }
+        } else if (this.consecutiveFailures.get() != 0) {
+            this.consecutiveFailures.set(0);
+        }
+        // The rates can only exceed their threshold by a failure or a slow call.
+        if (failure || slow) {
+            final var totals = this.window.totals(now);
+            if (totals[0] < this.minimumRequests) {
+                return;
+            }
+            if (totals[1] * 100 >= totals[0] * this.failureRateThreshold) {
+                open(State.CLOSED, now, "a failure rate of " + (totals[1] * 100 / totals[0]) + "%");
+            } else if (this.slowCallNanos > 0 && totals[2] * 100 >= totals[0] * this.slowCallRateThreshold) {
+                open(State.CLOSED, now, "a slow call rate of " + (totals[2] * 100 / totals[0]) + "%");
+            }
+        }
+    }
+
+    /**
+     * Reports that a request that was let through by {@link #tryAcquire(long)} was never sent to the host, for
+     * example because the queue of the connection pool was full. A probe permit is returned when the circuit is half
+     * open.
+     */
+    public void onIgnored() {
+        if (this.state == State.HALF_OPEN) {
+            this.probePermits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gives the current state of the circuit.
+     *
+     * @return The <code>State</code> of the circuit.
+     */
+    public State getState() {
+        return this.state;
+    }
+
+    /**
+     * Gives the number of times the circuit opened.
+     *
+     * @return The number of times the circuit opened.
+     */
+    public long getTrips() {
+        return this.trips.sum();
+    }
+
+    /**
+     * Gives the number of requests that were not let through because the circuit was open or no probe permits were
+     * left.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejections() {
+        return this.rejections.sum();
+    }
+
+    /**
+     * Opens the circuit, when it is still in the expected state.
+     *
+     * @param expectedState The state the circuit must be in.
+     * @param now The current time in nanoseconds.
+     * @param reason The reason the circuit opens, used for logging.
+     */
+    private synchronized void open(State expectedState, long now, String reason) {
+        if (this.state != expectedState) {
+            return;
+        }
+        final var duration = Math.min(this.maxOpenNanos, this.openNanos << Math.min(this.openings, 20));
+        this.openings++;
+        this.openUntil = now + duration;
+        this.state = State.OPEN;
+        this.trips.increment();
+        if (logger.isWarnEnabled()) {
+            logger.warn("Ejected upstream host '" + this.uri + "' for " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms after " + reason + ".");
+        }
+    }
+
+    /**
+     * Makes an open circuit half open.
+     */
+    private synchronized void halfOpen() {
+        if (this.state != State.OPEN) {
+            return;
+        }
+        this.probeSuccesses.set(0);
+        this.probePermits.set(this.halfOpenRequests);
+        this.state = State.HALF_OPEN;
+        if (logger.isInfoEnabled()) {
+            logger.info("Sending probe requests to upstream host '" + this.uri + "'.");
+        }
+    }
+
+    /**
+     * Closes a half open circuit.
+     */
+    private synchronized void close() {
+        if (this.state != State.HALF_OPEN) {
+            return;
+        }
+        this.openings = 0;
+        this.consecutiveFailures.set(0);
+        this.window.reset();
+        this.state = State.CLOSED;
+        if (logger.isInfoEnabled()) {
+            logger.info("Restored upstream host '" + this.uri + "' after successful probe requests.");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>LoadBalancer</code> that selects the host with the fewest requests in flight. The scan starts at another host
+ * for each request, so ties are spread over the hosts.
+ */
+final class LeastRequestLoadBalancer implements LoadBalancer {
+
+    private final UpstreamHostLoad[] loads;
+    private final AtomicInteger next = new AtomicInteger();
+
+    LeastRequestLoadBalancer(List<UpstreamConnectionPool> pools) {
+        this.loads = pools.stream().map(UpstreamConnectionPool::getLoad).toArray(UpstreamHostLoad[]::new);
+    }
+
+    @Override
+    public int select(long now) {
+        final var start = Math.floorMod(this.next.getAndIncrement(), this.loads.length);
+        var selected = start;
+        var fewest = this.loads[start].getInFlightRequests();
+        for (var i = 1; i < this.loads.length && fewest > 0; i++) {
+            final var index = (start + i) % this.loads.length;
+            final var inFlight = this.loads[index].getInFlightRequests();
+            if (inFlight < fewest) {
+                selected = index;
+                fewest = inFlight;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import com.machnos.api.gateway.server.configuration.LoadBalancing;
+
+import java.util.List;
+
+/**
+ * Strategy that selects the host of an upstream a request is forwarded to. Implementations are called concurrently by
+ * all I/O threads and must not lock.
+ */
+public interface LoadBalancer {
+
+    /**
+     * Gives the index of the pool that should serve the next request. When the selected host is ejected by its circuit
+     * breaker the next hosts in the list are tried in order.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return The index of the selected pool.
+     */
+    int select(long now);
+
+    /**
+     * Creates a <code>LoadBalancer</code>.
+     *
+     * @param loadBalancing The strategy of the <code>LoadBalancer</code>.
+     * @param pools The pools of the hosts to select from. The list must not be empty.
+     * @return The <code>LoadBalancer</code>.
+     */
+    static LoadBalancer create(LoadBalancing loadBalancing, List<UpstreamConnectionPool> pools) {
+        if (pools.size() == 1) {
+            return now -> 0;
+        }
+        switch (loadBalancing == null ? LoadBalancing.ROUND_ROBIN : loadBalancing) {
+            case WEIGHTED_ROUND_ROBIN:
+                return new WeightedRoundRobinLoadBalancer(pools);
+            case LEAST_REQUEST:
+                return new LeastRequestLoadBalancer(pools);
+            case P2C_EWMA:
+                return new P2cEwmaLoadBalancer(pools);
+            default:
+                return new RoundRobinLoadBalancer(pools.size());
+        }
+    }
+}
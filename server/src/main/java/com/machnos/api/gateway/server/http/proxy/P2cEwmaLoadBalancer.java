@@ -0,0 +1,44 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <code>LoadBalancer</code> that picks two distinct hosts at random and selects the one with the lowest cost, see
+ * {@link UpstreamHostLoad#getCost(long)}. Comparing two random hosts avoids that all I/O threads send their requests to
+ * the same host before its load is updated, while it still steers the traffic away from slow and busy hosts.
+ */
+final class P2cEwmaLoadBalancer implements LoadBalancer {
+
+    private final UpstreamHostLoad[] loads;
+
+    P2cEwmaLoadBalancer(List<UpstreamConnectionPool> pools) {
+        this.loads = pools.stream().map(UpstreamConnectionPool::getLoad).toArray(UpstreamHostLoad[]::new);
+    }
+
+    @Override
+    public int select(long now) {
+        final var random = ThreadLocalRandom.current();
+        final var first = random.nextInt(this.loads.length);
+        // Pick the second host from the remaining hosts, so both picks are distinct.
+        final var second = (first + 1 + random.nextInt(this.loads.length - 1)) % this.loads.length;
+        return this.loads[first].getCost(now) <= this.loads[second].getCost(now) ? first : second;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free rolling window of request outcomes. The window is a ring of buckets that each cover a fixed part of the
+ * window. A bucket is reset by the first request that lands in it after it has expired, so the window never needs a
+ * timer. The counters of all buckets live in a single <code>AtomicLongArray</code>.
+ *
+ * The counts are approximate: an increment that races with the reset of its bucket may get lost. This is harmless for
+ * the rates the counts are used for.
+ */
+class RollingWindow {
+
+    private static final int EPOCH = 0;
+    private static final int REQUESTS = 1;
+    private static final int FAILURES = 2;
+    private static final int SLOW_CALLS = 3;
+    private static final int FIELDS = 4;
+
+    /**
+     * The number of buckets in the window.
+     */
+    private final int bucketCount;
+
+    /**
+     * The number of nanoseconds covered by a single bucket.
+     */
+    private final long bucketNanos;
+
+    /**
+     * The epoch and counters of the buckets.
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * Constructs a new <code>RollingWindow</code> instance.
+     *
+     * @param windowNanos The number of nanoseconds covered by the window.
+     * @param bucketCount The number of buckets the window is divided in.
+     */
+    RollingWindow(long windowNanos, int bucketCount) {
+        this.bucketCount = bucketCount;
+        this.bucketNanos = Math.max(1, windowNanos / bucketCount);
+        this.buckets = new AtomicLongArray(bucketCount * FIELDS);
+        for (var i = 0; i < bucketCount; i++) {
+            this.buckets.set(i * FIELDS + EPOCH, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Records the outcome of a request.
+     *
+     * @param now The current time in nanoseconds.
+     * @param failure Whether the request failed.
+     * @param slow Whether the request was a slow call.
+     */
+    void record(long now, boolean failure, boolean slow) {
+        final var epoch = Math.floorDiv(now, this.bucketNanos);
+        final var base = Math.floorMod(epoch, this.bucketCount) * FIELDS;
+        final var bucketEpoch = this.buckets.get(base + EPOCH);
+        if (bucketEpoch != epoch) {
+            if (bucketEpoch > epoch) {
+                // The outcome belongs to a bucket that already expired.
+                return;
+            }
+            if (this.buckets.compareAndSet(base + EPOCH, bucketEpoch, epoch)) {
+                this.buckets.set(base + REQUESTS, 0);
+                this.buckets.set(base + FAILURES, 0);
+                this.buckets.set(base + SLOW_CALLS, 0);
+            }
+        }
+        this.buckets.incrementAndGet(base + REQUESTS);
+        if (failure) {
+            this.buckets.incrementAndGet(base + FAILURES);
+        }
+        if (slow) {
+            this.buckets.incrementAndGet(base + SLOW_CALLS);
+        }
+    }
+
+    /**
+     * Gives the totals of the buckets that are not expired.
+     *
+     * @param now The current time in nanoseconds.
+     * @return The number of requests, failures and slow calls, in that order.
+     */
+    long[] totals(long now) {
+        final var epoch = Math.floorDiv(now, this.bucketNanos);
+        final var totals = new long[3];
+        for (var i = 0; i < this.bucketCount; i++) {
+            final var base = i * FIELDS;
+            final var bucketEpoch = this.buckets.get(base + EPOCH);
+            if (bucketEpoch <= epoch && bucketEpoch > epoch - this.bucketCount) {
+                totals[0] += this.buckets.get(base + REQUESTS);
+                totals[1] += this.buckets.get(base + FAILURES);
+                totals[2] += this.buckets.get(base + SLOW_CALLS);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Expires all buckets.
+     */
+    void reset() {
+        for (var i = 0; i < this.bucketCount; i++) {
+            this.buckets.set(i * FIELDS + EPOCH, Long.MIN_VALUE);
+        }
+    }
+}
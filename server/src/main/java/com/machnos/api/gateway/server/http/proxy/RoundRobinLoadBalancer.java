@@ -0,0 +1,38 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>LoadBalancer</code> that selects the hosts in turn.
+ */
+final class RoundRobinLoadBalancer implements LoadBalancer {
+
+    private final int size;
+    private final AtomicInteger next = new AtomicInteger();
+
+    RoundRobinLoadBalancer(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public int select(long now) {
+        return Math.floorMod(this.next.getAndIncrement(), this.size);
+    }
+}
@@ -0,0 +1,647 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import com.machnos.api.gateway.server.configuration.Upstream;
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientConnection;
+import io.undertow.client.UndertowClient;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.UpgradeFailedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioIoThread;
+import org.xnio.ssl.XnioSsl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep-alive connection pool towards a single upstream host.
+ *
+ * The pool keeps its connections per I/O thread. Each request is served by a connection that belongs to the I/O thread
+ * of the request, so the state of the pool is only touched by the thread that owns it and no locking is required.
+ * Nothing in this class ever blocks; when all connections are in use the request is queued until a connection is
+ * released, or until the queue timeout expires.
+ *
+ * When HTTP/2 is enabled for the upstream, connections that support multiplexing are shared by up to
+ * <code>maxConcurrentStreams</code> concurrent requests. New requests are sent over the least loaded connection, so
+ * the streams, and with that the flow control windows, are spread over the connections. Connections that turn out to
+ * be HTTP/1.1 only are pooled as usual.
+ */
+public class UpstreamConnectionPool {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The uri of the upstream host.
+     */
+    private final URI uri;
+
+    /**
+     * The uri that is used to open connections. This differs from the uri of the host when a http host is upgraded to
+     * h2c, and is reset to the uri of the host when the host rejects the upgrade.
+     */
+    private volatile URI connectUri;
+
+    /**
+     * Whether the host is known to only support HTTP/1.1 connections.
+     */
+    private volatile boolean http1Only;
+
+    /**
+     * The path that is prepended to the path of each proxied request.
+     */
+    private final String targetPath;
+
+    /**
+     * The <code>XnioSsl</code> instance used to connect to https hosts, or <code>null</code> for plain http hosts.
+     */
+    private final XnioSsl ssl;
+
+    /**
+     * The options of the upstream connections.
+     */
+    private final OptionMap options;
+
+    private final int maxConnectionsPerThread;
+    private final int maxRequestsPerConnection;
+    private final long idleTimeoutNanos;
+    private final int maxQueueSize;
+    private final long queueTimeoutMillis;
+    private final boolean http2;
+    private final int maxConcurrentStreams;
+
+    /**
+     * The statistics of this pool.
+     */
+    private final UpstreamPoolStatistics statistics = new UpstreamPoolStatistics();
+
+    /**
+     * The circuit breaker of the host, or <code>null</code> when the upstream has no circuit breaker.
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * The load of the host, used by the <code>LoadBalancer</code> of the upstream.
+     */
+    private final UpstreamHostLoad load;
+
+    /**
+     * The pool state per I/O thread.
+     */
+    private final ConcurrentMap<XnioIoThread, ThreadPool> threadPools = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new <code>UpstreamConnectionPool</code> instance.
+     *
+     * @param upstream The <code>Upstream</code> configuration that holds the pool settings.
+     * @param uri The uri of the host to connect to.
+     * @param ssl The <code>XnioSsl</code> used to connect to https hosts.
+     * @param options The options of the upstream connections.
+     */
+    public UpstreamConnectionPool(Upstream upstream, URI uri, XnioSsl ssl, OptionMap options) {
+        this.uri = uri;
+        this.targetPath = uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath();
+        this.ssl = ssl;
+        this.options = options;
+        this.maxConnectionsPerThread = Math.max(1, upstream.maxConnectionsPerThread);
+        this.maxRequestsPerConnection = upstream.maxRequestsPerConnection;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(upstream.idleTimeout);
+        this.maxQueueSize = upstream.maxQueueSize;
+        this.queueTimeoutMillis = upstream.queueTimeout;
+        this.http2 = upstream.http2;
+        this.maxConcurrentStreams = Math.max(1, upstream.maxConcurrentStreams);
+        this.connectUri = this.http2 && "http".equalsIgnoreCase(uri.getScheme()) ? withScheme(uri, "h2c") : uri;
+        this.http1Only = !this.http2 && !uri.getScheme().toLowerCase(Locale.ROOT).startsWith("h2c");
+        this.circuitBreaker = upstream.circuitBreaker == null ? null : new CircuitBreaker(uri, upstream.circuitBreaker);
+        this.load = new UpstreamHostLoad(upstream.weights.getOrDefault(uri.toString(), 1));
+    }
+
+    /**
+     * Gives the uri of the upstream host.
+     *
+     * @return The uri of the upstream host.
+     */
+    public URI getUri() {
+        return this.uri;
+    }
+
+    /**
+     * Gives the statistics of this pool.
+     *
+     * @return The <code>UpstreamPoolStatistics</code>.
+     */
+    public UpstreamPoolStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Gives the load of the host.
+     *
+     * @return The <code>UpstreamHostLoad</code>.
+     */
+    public UpstreamHostLoad getLoad() {
+        return this.load;
+    }
+
+    /**
+     * Gives the circuit breaker of the host.
+     *
+     * @return The <code>CircuitBreaker</code>, or <code>null</code> when the upstream has no circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * Checks whether a request may be sent to the host. A request that is let through must be handed to
+     * {@link #getConnection(HttpServerExchange, ProxyCallback)}.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return <code>true</code> when the host is available, <code>false</code> when it is ejected by its circuit
+     * breaker.
+     */
+    public boolean tryAcquire(long now) {
+        return this.circuitBreaker == null || this.circuitBreaker.tryAcquire(now);
+    }
+
+    /**
+     * Obtains a connection for the given exchange. The connection is returned to the pool as soon as the exchange is
+     * completed.
+     *
+     * @param exchange The <code>HttpServerExchange</code> that needs a connection.
+     * @param callback The callback that is notified when a connection is available, or when no connection could be
+     *                 obtained.
+     */
+    public void getConnection(final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback) {
+        final var ioThread = exchange.getIoThread();
+        if (Thread.currentThread() != ioThread) {
+            ioThread.execute(() -> getConnection(exchange, callback));
+            return;
+        }
+        final var pool = this.threadPools.computeIfAbsent(ioThread, ThreadPool::new);
+        PooledConnection pooled = leastLoadedMultiplexedConnection(pool);
+        if (pooled != null) {
+            this.statistics.connectionReused();
+            lease(pool, pooled, exchange, callback);
+            return;
+        }
+        while ((pooled = pool.idle.pollFirst()) != null) {
+            if (pooled.connection.isOpen()) {
+                this.statistics.connectionReused();
+                lease(pool, pooled, exchange, callback);
+                return;
+            }
+        }
+        // A connection that is being opened may turn out to be multiplexed, in which case the request can share it.
+        final var awaitMultiplexedConnection = !this.http1Only && pool.pendingConnections > 0;
+        if (!awaitMultiplexedConnection && pool.openConnections < this.maxConnectionsPerThread) {
+            openConnection(pool, exchange, callback);
+            return;
+        }
+        if (pool.waiters.size() >= this.maxQueueSize) {
+            this.statistics.requestRejected();
+            if (this.circuitBreaker != null) {
+                this.circuitBreaker.onIgnored();
+            }
+            callback.queuedRequestFailed(exchange);
+            return;
+        }
+        final var waiter = new Waiter(exchange, callback);
+        pool.waiters.addLast(waiter);
+        waiter.timeoutKey = ioThread.executeAfter(() -> {
+            if (pool.waiters.remove(waiter)) {
+                this.statistics.waitTimedOut();
+                // The host does not release its connections in time, which counts as a failure of the host.
+                recordResult(waiter.queuedAt, true);
+                callback.queuedRequestFailed(exchange);
+            }
+        }, this.queueTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forgets the state of all I/O threads. Must be called when the I/O threads are shut down.
+     */
+    public void clear() {
+        this.threadPools.clear();
+    }
+
+    /**
+     * Opens a new connection to the upstream host and hands it to the exchange once it is established.
+     *
+     * @param pool The <code>ThreadPool</code> the connection belongs to.
+     * @param exchange The <code>HttpServerExchange</code> that needs the connection.
+     * @param callback The callback to notify.
+     */
+    private void openConnection(final ThreadPool pool, final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback) {
+        pool.openConnections++;
+        pool.pendingConnections++;
+        this.statistics.connectionOpening();
+        final long start = System.nanoTime();
+        final var connectUri = this.connectUri;
+        UndertowClient.getInstance().connect(new ClientCallback<>() {
+            @Override
+            public void completed(ClientConnection connection) {
+                pool.pendingConnections--;
+                statistics.connectionCreated(System.nanoTime() - start);
+                final var pooled = new PooledConnection(connection);
+                connection.addCloseListener(c -> connectionClosed(pool, pooled));
+                if (connection.isMultiplexingSupported()) {
+                    statistics.multiplexedConnectionCreated();
+                    pooled.multiplexed = true;
+                    pool.multiplexed.add(pooled);
+                    lease(pool, pooled, exchange, callback);
+                    serveWaiters(pool, pooled);
+                } else {
+                    http1Only = true;
+                    lease(pool, pooled, exchange, callback);
+                    serveNextWaiter(pool);
+                }
+            }
+
+            @Override
+            public void failed(IOException e) {
+                pool.pendingConnections--;
+                pool.openConnections--;
+                statistics.connectFailed();
+                if (connectUri != uri && isUpgradeRejected(e)) {
+                    // The host accepted the connection but does not support the h2c upgrade, fall back to HTTP/1.1.
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Unable to upgrade the connection to upstream host '" + uri + "' to HTTP/2, falling back to HTTP/1.1.", e);
+                    }
+                    statistics.http2FallenBack();
+                    UpstreamConnectionPool.this.connectUri = uri;
+                    http1Only = true;
+                    openConnection(pool, exchange, callback);
+                    return;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to connect to upstream host '" + uri + "'.", e);
+                }
+                recordResult(start, true);
+                callback.failed(exchange);
+                serveNextWaiter(pool);
+            }
+        }, connectUri, pool.ioThread, this.ssl, exchange.getConnection().getByteBufferPool(), this.options);
+    }
+
+    /**
+     * Determines whether a failed connect attempt failed because the host rejected the h2c upgrade, as opposed to a
+     * host that could not be reached or an I/O error on the connection. Only a rejected upgrade means the host does
+     * not support HTTP/2 without TLS.
+     *
+     * @param e The <code>IOException</code> the connect attempt failed with.
+     * @return <code>true</code> when the upgrade was rejected, <code>false</code> otherwise.
+     */
+    private static boolean isUpgradeRejected(IOException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UpgradeFailedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands a connection to an exchange. The connection is released when the exchange completes.
+     *
+     * @param pool The <code>ThreadPool</code> the connection belongs to.
+     * @param pooled The connection to hand out.
+     * @param exchange The <code>HttpServerExchange</code> that receives the connection.
+     * @param callback The callback to notify.
+     */
+    private void lease(final ThreadPool pool, final PooledConnection pooled, final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback) {
+        pooled.requests++;
+        if (pooled.multiplexed) {
+            pooled.activeStreams++;
+            this.statistics.multiplexedRequest();
+        }
+        final long leasedAt = this.circuitBreaker == null ? 0 : System.nanoTime();
+        exchange.addExchangeCompleteListener((completedExchange, nextListener) -> {
+            if (this.circuitBreaker != null) {
+                recordResult(leasedAt, completedExchange.getStatusCode() >= 500);
+            }
+            if (Thread.currentThread() == pool.ioThread) {
+                release(pool, pooled);
+            } else {
+                pool.ioThread.execute(() -> release(pool, pooled));
+            }
+            nextListener.proceed();
+        });
+        callback.completed(exchange, new ProxyConnection(pooled.connection, this.targetPath));
+    }
+
+    /**
+     * Records the outcome of a request in the circuit breaker of the host, if any.
+     *
+     * @param startedAt The time in nanoseconds at which the request started.
+     * @param failure Whether the request failed.
+     */
+    private void recordResult(long startedAt, boolean failure) {
+        if (this.circuitBreaker != null) {
+            final long now = System.nanoTime();
+            this.circuitBreaker.onResult(now, now - startedAt, failure);
+        }
+    }
+
+    /**
+     * Releases a connection. The connection is handed to the first waiting exchange, or put back in the pool when
+     * nobody is waiting.
+     *
+     * @param pool The <code>ThreadPool</code> the connection belongs to.
+     * @param pooled The connection to release.
+     */
+    private void release(final ThreadPool pool, final PooledConnection pooled) {
+        if (pooled.multiplexed) {
+            releaseStream(pool, pooled);
+            return;
+        }
+        if (pooled.closed || !pooled.connection.isOpen()) {
+            // The close listener takes care of the bookkeeping.
+            return;
+        }
+        if (this.maxRequestsPerConnection > 0 && pooled.requests >= this.maxRequestsPerConnection) {
+            this.statistics.connectionRetired();
+            IoUtils.safeClose(pooled.connection);
+            return;
+        }
+        final var waiter = pool.waiters.pollFirst();
+        if (waiter != null) {
+            waiter.dequeued(this.statistics);
+            this.statistics.connectionReused();
+            lease(pool, pooled, waiter.exchange, waiter.callback);
+            return;
+        }
+        pooled.idleSince = System.nanoTime();
+        pool.idle.addFirst(pooled);
+        scheduleEviction(pool);
+    }
+
+    /**
+     * Releases a stream of a multiplexed connection. The capacity that comes available is handed to the waiting
+     * exchanges. A connection that reached the maximum number of requests is closed as soon as its last stream is
+     * released.
+     *
+     * @param pool The <code>ThreadPool</code> the connection belongs to.
+     * @param pooled The connection to release the stream of.
+     */
+    private void releaseStream(final ThreadPool pool, final PooledConnection pooled) {
+        pooled.activeStreams--;
+        if (pooled.closed || !pooled.connection.isOpen()) {
+            return;
+        }
+        if (isExhausted(pooled)) {
+            pool.multiplexed.remove(pooled);
+            if (pooled.activeStreams == 0) {
+                this.statistics.connectionRetired();
+                IoUtils.safeClose(pooled.connection);
+            }
+            return;
+        }
+        serveWaiters(pool, pooled);
+        if (pooled.activeStreams == 0) {
+            pooled.idleSince = System.nanoTime();
+            scheduleEviction(pool);
+        }
+    }
+
+    /**
+     * Hands a multiplexed connection to waiting exchanges for as long as it has capacity for new streams.
+     *
+     * @param pool The <code>ThreadPool</code> the connection belongs to.
+     * @param pooled The multiplexed connection.
+     */
+    private void serveWaiters(final ThreadPool pool, final PooledConnection pooled) {
+        Waiter waiter;
+        while (pooled.activeStreams < this.maxConcurrentStreams && !isExhausted(pooled) && (waiter = pool.waiters.pollFirst()) != null) {
+            waiter.dequeued(this.statistics);
+            this.statistics.connectionReused();
+            lease(pool, pooled, waiter.exchange, waiter.callback);
+        }
+        if (isExhausted(pooled)) {
+            pool.multiplexed.remove(pooled);
+        }
+    }
+
+    /**
+     * Gives the multiplexed connection with the fewest active streams that has capacity for a new stream.
+     *
+     * @param pool The <code>ThreadPool</code> to select the connection from.
+     * @return The multiplexed connection, or <code>null</code> when no multiplexed connection has capacity.
+     */
+    private PooledConnection leastLoadedMultiplexedConnection(final ThreadPool pool) {
+        PooledConnection result = null;
+        for (var i = 0; i < pool.multiplexed.size(); i++) {
+            final var pooled = pool.multiplexed.get(i);
+            if (pooled.activeStreams < this.maxConcurrentStreams && !isExhausted(pooled) && pooled.connection.isOpen()
+                    && (result == null || pooled.activeStreams < result.activeStreams)) {
+                result = pooled;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether a connection reached the maximum number of requests.
+     *
+     * @param pooled The connection to check.
+     * @return <code>true</code> when no new requests may be sent over the connection.
+     */
+    private boolean isExhausted(final PooledConnection pooled) {
+        return this.maxRequestsPerConnection > 0 && pooled.requests >= this.maxRequestsPerConnection;
+    }
+
+    /**
+     * Called when a connection is closed, either by the upstream host or by this pool.
+     *
+     * @param pool The <code>ThreadPool</code> the connection belongs to.
+     * @param pooled The closed connection.
+     */
+    private void connectionClosed(final ThreadPool pool, final PooledConnection pooled) {
+        if (pooled.closed) {
+            return;
+        }
+        pooled.closed = true;
+        pool.openConnections--;
+        pool.idle.remove(pooled);
+        pool.multiplexed.remove(pooled);
+        this.statistics.connectionClosed();
+        serveNextWaiter(pool);
+    }
+
+    /**
+     * Opens a new connection for the first waiting exchange when there is room for a new connection.
+     *
+     * @param pool The <code>ThreadPool</code> to serve the waiting exchange from.
+     */
+    private void serveNextWaiter(final ThreadPool pool) {
+        if (pool.openConnections >= this.maxConnectionsPerThread || (!this.http1Only && pool.pendingConnections > 0)) {
+            return;
+        }
+        final var waiter = pool.waiters.pollFirst();
+        if (waiter != null) {
+            waiter.dequeued(this.statistics);
+            openConnection(pool, waiter.exchange, waiter.callback);
+        }
+    }
+
+    /**
+     * Schedules the eviction of idle connections when idle eviction is enabled and no eviction is scheduled yet.
+     *
+     * @param pool The <code>ThreadPool</code> to evict the idle connections from.
+     */
+    private void scheduleEviction(final ThreadPool pool) {
+        if (this.idleTimeoutNanos <= 0 || pool.evictionKey != null) {
+            return;
+        }
+        var found = false;
+        long idleSince = 0;
+        final var oldest = pool.idle.peekLast();
+        if (oldest != null) {
+            idleSince = oldest.idleSince;
+            found = true;
+        }
+        for (var i = 0; i < pool.multiplexed.size(); i++) {
+            final var pooled = pool.multiplexed.get(i);
+            if (pooled.activeStreams == 0 && (!found || pooled.idleSince - idleSince < 0)) {
+                idleSince = pooled.idleSince;
+                found = true;
+            }
+        }
+        if (!found) {
+            return;
+        }
+        final long delay = Math.max(0, idleSince + this.idleTimeoutNanos - System.nanoTime());
+        pool.evictionKey = pool.ioThread.executeAfter(() -> evictIdleConnections(pool), delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Closes all connections that are idle for longer than the idle timeout. Connections are pushed on the head of
+     * the idle queue when released, so the connections that are idle the longest are found at the tail.
+     *
+     * @param pool The <code>ThreadPool</code> to evict the idle connections from.
+     */
+    private void evictIdleConnections(final ThreadPool pool) {
+        pool.evictionKey = null;
+        final long now = System.nanoTime();
+        PooledConnection oldest;
+        while ((oldest = pool.idle.peekLast()) != null && now - oldest.idleSince >= this.idleTimeoutNanos) {
+            pool.idle.pollLast();
+            this.statistics.connectionEvicted();
+            IoUtils.safeClose(oldest.connection);
+        }
+        for (final var iterator = pool.multiplexed.iterator(); iterator.hasNext(); ) {
+            final var pooled = iterator.next();
+            if (pooled.activeStreams == 0 && now - pooled.idleSince >= this.idleTimeoutNanos) {
+                iterator.remove();
+                this.statistics.connectionEvicted();
+                IoUtils.safeClose(pooled.connection);
+            }
+        }
+        scheduleEviction(pool);
+    }
+
+    /**
+     * The state of the pool for a single I/O thread. Only accessed by the owning I/O thread.
+     */
+    private static final class ThreadPool {
+
+        private final XnioIoThread ioThread;
+        private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private final ArrayList<PooledConnection> multiplexed = new ArrayList<>();
+        private int openConnections;
+        private int pendingConnections;
+        private XnioExecutor.Key evictionKey;
+
+        private ThreadPool(XnioIoThread ioThread) {
+            this.ioThread = ioThread;
+        }
+    }
+
+    /**
+     * A connection that is managed by the pool.
+     */
+    private static final class PooledConnection {
+
+        private final ClientConnection connection;
+        private int requests;
+        private long idleSince;
+        private boolean closed;
+        private boolean multiplexed;
+        private int activeStreams;
+
+        private PooledConnection(ClientConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * An exchange that is waiting for a connection.
+     */
+    private static final class Waiter {
+
+        private final HttpServerExchange exchange;
+        private final ProxyCallback<ProxyConnection> callback;
+        private final long queuedAt = System.nanoTime();
+        private XnioExecutor.Key timeoutKey;
+
+        private Waiter(HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback) {
+            this.exchange = exchange;
+            this.callback = callback;
+        }
+
+        private void dequeued(UpstreamPoolStatistics statistics) {
+            if (this.timeoutKey != null) {
+                this.timeoutKey.remove();
+            }
+            statistics.waitCompleted(System.nanoTime() - this.queuedAt);
+        }
+    }
+
+    /**
+     * Gives a copy of an uri with another scheme.
+     *
+     * @param uri The uri to copy.
+     * @param scheme The scheme of the copy.
+     * @return The copy of the uri.
+     */
+    private static URI withScheme(URI uri, String scheme) {
+        try {
+            return new URI(scheme, uri.getUserInfo(), uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
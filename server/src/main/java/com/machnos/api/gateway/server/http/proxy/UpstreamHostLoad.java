@@ -0,0 +1,144 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The load of a single upstream host, as seen by the gateway: the number of requests in flight and the latency of the
+ * responses. The load is used by the <code>LoadBalancer</code>s to select a host, and is updated lock-free by all
+ * threads that forward requests to the host.
+ *
+ * The latency is a peak EWMA: a response that is slower than the average raises the average to its latency at once,
+ * faster responses lower it gradually. The weight of the history decays with the time since the previous response, and
+ * the average itself decays while no responses arrive, so a host that was slow in the past is tried again.
+ */
+public class UpstreamHostLoad {
+
+    /**
+     * The number of nanoseconds in which the weight of the history decays to 1/e.
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * The weight of the host.
+     */
+    private final int weight;
+
+    /**
+     * The number of requests that are forwarded to the host, and are not completed yet.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * The bits of the <code>double</code> that holds the average latency in nanoseconds.
+     */
+    private final AtomicLong latencyEwma = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    /**
+     * The time in nanoseconds of the last update of the average latency.
+     */
+    private volatile long lastUpdate = System.nanoTime();
+
+    /**
+     * Constructs a new <code>UpstreamHostLoad</code> instance.
+     *
+     * @param weight The weight of the host.
+     */
+    UpstreamHostLoad(int weight) {
+        this.weight = Math.max(1, weight);
+    }
+
+    /**
+     * Registers a request that is forwarded to the host.
+     */
+    void requestStarted() {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Registers a request to the host that is completed.
+     */
+    void requestCompleted() {
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Adds the latency of a response of the host to the average latency.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @param latencyNanos The number of nanoseconds between forwarding the request and receiving the response.
+     */
+    void latencyMeasured(long now, long latencyNanos) {
+        final var elapsed = Math.max(0, now - this.lastUpdate);
+        final var historyWeight = Math.exp(-elapsed / DECAY_NANOS);
+        var bits = this.latencyEwma.get();
+        while (true) {
+            final var average = Double.longBitsToDouble(bits);
+            final var newAverage = latencyNanos > average ? latencyNanos : average * historyWeight + latencyNanos * (1 - historyWeight);
+            if (this.latencyEwma.compareAndSet(bits, Double.doubleToRawLongBits(newAverage))) {
+                break;
+            }
+            bits = this.latencyEwma.get();
+        }
+        this.lastUpdate = now;
+    }
+
+    /**
+     * Gives the weight of the host.
+     *
+     * @return The weight.
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Gives the number of requests that are forwarded to the host, and are not completed yet.
+     *
+     * @return The number of requests in flight.
+     */
+    public int getInFlightRequests() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Gives the average latency of the host, decayed by the time since the last response.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return The average latency in nanoseconds.
+     */
+    public double getLatencyEwma(long now) {
+        final var elapsed = Math.max(0, now - this.lastUpdate);
+        return Double.longBitsToDouble(this.latencyEwma.get()) * Math.exp(-elapsed / DECAY_NANOS);
+    }
+
+    /**
+     * Gives the cost of sending a request to the host, which is the expected latency multiplied by the number of
+     * requests that are ahead of it, divided by the weight of the host.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return The cost.
+     */
+    double getCost(long now) {
+        // Add a nanosecond so hosts without a measured latency are still compared by their requests in flight.
+        return (getLatencyEwma(now) + 1) * (this.inFlight.get() + 1) / this.weight;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of an <code>UpstreamConnectionPool</code>. The counters are updated by the I/O threads that own the pooled
+ * connections and can be read from any thread.
+ */
+public class UpstreamPoolStatistics {
+
+    private final LongAdder openConnections = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsReused = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder connectionsEvicted = new LongAdder();
+    private final LongAdder connectionsRetired = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder connectTimeNanos = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitTimeNanos = new LongAdder();
+    private final LongAccumulator maxWaitTimeNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder waitTimeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder multiplexedConnectionsCreated = new LongAdder();
+    private final LongAdder multiplexedRequests = new LongAdder();
+    private final LongAdder http2Fallbacks = new LongAdder();
+
+    void connectionCreated(long connectTimeNanos) {
+        this.connectionsCreated.increment();
+        this.connectTimeNanos.add(connectTimeNanos);
+    }
+
+    void connectionOpening() {
+        this.openConnections.increment();
+    }
+
+    void connectFailed() {
+        this.openConnections.decrement();
+        this.connectFailures.increment();
+    }
+
+    void connectionReused() {
+        this.connectionsReused.increment();
+    }
+
+    void connectionClosed() {
+        this.openConnections.decrement();
+        this.connectionsClosed.increment();
+    }
+
+    void connectionEvicted() {
+        this.connectionsEvicted.increment();
+    }
+
+    void connectionRetired() {
+        this.connectionsRetired.increment();
+    }
+
+    void waitCompleted(long waitTimeNanos) {
+        this.waits.increment();
+        this.waitTimeNanos.add(waitTimeNanos);
+        this.maxWaitTimeNanos.accumulate(waitTimeNanos);
+    }
+
+    void waitTimedOut() {
+        this.waitTimeouts.increment();
+    }
+
+    void requestRejected() {
+        this.rejections.increment();
+    }
+
+    void multiplexedConnectionCreated() {
+        this.multiplexedConnectionsCreated.increment();
+    }
+
+    void multiplexedRequest() {
+        this.multiplexedRequests.increment();
+    }
+
+    void http2FallenBack() {
+        this.http2Fallbacks.increment();
+    }
+
+    /**
+     * Gives the number of connections that are currently open or being opened.
+     *
+     * @return The number of open connections.
+     */
+    public long getOpenConnections() {
+        return this.openConnections.sum();
+    }
+
+    /**
+     * Gives the number of connections that are successfully established.
+     *
+     * @return The number of created connections.
+     */
+    public long getConnectionsCreated() {
+        return this.connectionsCreated.sum();
+    }
+
+    /**
+     * Gives the number of times an idle pooled connection is handed out to a request.
+     *
+     * @return The number of reused connections.
+     */
+    public long getConnectionsReused() {
+        return this.connectionsReused.sum();
+    }
+
+    /**
+     * Gives the number of connections that are closed, either by the gateway or by the upstream host.
+     *
+     * @return The number of closed connections.
+     */
+    public long getConnectionsClosed() {
+        return this.connectionsClosed.sum();
+    }
+
+    /**
+     * Gives the number of connections that are closed because they were idle for too long.
+     *
+     * @return The number of evicted connections.
+     */
+    public long getConnectionsEvicted() {
+        return this.connectionsEvicted.sum();
+    }
+
+    /**
+     * Gives the number of connections that are closed because they reached the maximum number of requests.
+     *
+     * @return The number of retired connections.
+     */
+    public long getConnectionsRetired() {
+        return this.connectionsRetired.sum();
+    }
+
+    /**
+     * Gives the number of connection attempts that failed.
+     *
+     * @return The number of failed connection attempts.
+     */
+    public long getConnectFailures() {
+        return this.connectFailures.sum();
+    }
+
+    /**
+     * Gives the total time in nanoseconds spent establishing connections.
+     *
+     * @return The total connect time in nanoseconds.
+     */
+    public long getConnectTimeNanos() {
+        return this.connectTimeNanos.sum();
+    }
+
+    /**
+     * Gives the number of requests that had to wait for a connection.
+     *
+     * @return The number of requests that waited for a connection.
+     */
+    public long getWaits() {
+        return this.waits.sum();
+    }
+
+    /**
+     * Gives the total time in nanoseconds requests have been waiting for a connection.
+     *
+     * @return The total wait time in nanoseconds.
+     */
+    public long getWaitTimeNanos() {
+        return this.waitTimeNanos.sum();
+    }
+
+    /**
+     * Gives the longest time in nanoseconds a request has been waiting for a connection.
+     *
+     * @return The maximum wait time in nanoseconds.
+     */
+    public long getMaxWaitTimeNanos() {
+        return this.maxWaitTimeNanos.get();
+    }
+
+    /**
+     * Gives the number of requests that gave up waiting for a connection.
+     *
+     * @return The number of wait timeouts.
+     */
+    public long getWaitTimeouts() {
+        return this.waitTimeouts.sum();
+    }
+
+    /**
+     * Gives the number of requests that were rejected because the wait queue was full.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejections() {
+        return this.rejections.sum();
+    }
+
+    /**
+     * Gives the number of created connections that multiplex requests (HTTP/2).
+     *
+     * @return The number of multiplexed connections created.
+     */
+    public long getMultiplexedConnectionsCreated() {
+        return this.multiplexedConnectionsCreated.sum();
+    }
+
+    /**
+     * Gives the number of requests that are sent over a multiplexed connection.
+     *
+     * @return The number of multiplexed requests.
+     */
+    public long getMultiplexedRequests() {
+        return this.multiplexedRequests.sum();
+    }
+
+    /**
+     * Gives the number of times the HTTP/2 upgrade failed and the pool fell back to HTTP/1.1.
+     *
+     * @return The number of HTTP/2 fallbacks.
+     */
+    public long getHttp2Fallbacks() {
+        return this.http2Fallbacks.sum();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import com.machnos.api.gateway.server.configuration.Upstream;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.http.tracing.Span;
+import com.machnos.api.gateway.server.http.tracing.Tracer;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.protocols.ssl.UndertowXnioSsl;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyClient;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.AttachmentKey;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.ssl.XnioSsl;
+
+import javax.net.ssl.SSLContext;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * <code>ProxyClient</code> implementation that forwards requests to the hosts of an <code>Upstream</code>. Each host
+ * has its own <code>UpstreamConnectionPool</code>; the hosts are selected by the <code>LoadBalancer</code> of the
+ * upstream. The client keeps track of the requests in flight and the latency of each host. Hosts that are ejected by
+ * their circuit breaker are skipped, and when all hosts are ejected the request fails fast with a
+ * <code>503 Service Unavailable</code> response.
+ */
+public class UpstreamProxyClient implements ProxyClient {
+
+    /**
+     * The key under which the number of nanoseconds from forwarding the request until the response of the host is
+     * committed is attached to the exchange.
+     */
+    public static final AttachmentKey<Long> UPSTREAM_TIME = AttachmentKey.create(Long.class);
+
+    /**
+     * The one and only target of this client. The actual host is selected when the connection is obtained.
+     */
+    private static final ProxyTarget UPSTREAM_TARGET = new ProxyTarget() {};
+
+    /**
+     * The name of the upstream.
+     */
+    private final String name;
+
+    /**
+     * The connection pools, one for each host of the upstream.
+     */
+    private final List<UpstreamConnectionPool> pools;
+
+    /**
+     * The <code>LoadBalancer</code> that selects the pool of each request, or <code>null</code> when the upstream has
+     * no hosts.
+     */
+    private final LoadBalancer loadBalancer;
+
+    /**
+     * Constructs a new <code>UpstreamProxyClient</code> instance.
+     *
+     * @param upstream The <code>Upstream</code> to forward the requests to.
+     */
+    public UpstreamProxyClient(Upstream upstream) {
+        this.name = upstream.name;
+        final var options = OptionMap.builder()
+                .set(Options.TCP_NODELAY, true)
+                .set(UndertowOptions.ENABLE_HTTP2, upstream.http2)
+                .getMap();
+        final var hostUris = upstream.getHostUris();
+        final XnioSsl ssl = hostUris.stream().anyMatch(p -> "https".equalsIgnoreCase(p.getScheme())) ? createXnioSsl() : null;
+        this.pools = Collections.unmodifiableList(hostUris.stream()
+                .map(uri -> new UpstreamConnectionPool(upstream, uri, ssl, options))
+                .collect(Collectors.toList()));
+        this.loadBalancer = this.pools.isEmpty() ? null : LoadBalancer.create(upstream.loadBalancing, this.pools);
+    }
+
+    /**
+     * Gives the name of the upstream this client forwards to.
+     *
+     * @return The name of the upstream.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gives the connection pools of this client, one for each host of the upstream.
+     *
+     * @return The <code>UpstreamConnectionPool</code>s of this client.
+     */
+    public List<UpstreamConnectionPool> getPools() {
+        return this.pools;
+    }
+
+    @Override
+    public ProxyTarget findTarget(HttpServerExchange exchange) {
+        return this.pools.isEmpty() ? null : UPSTREAM_TARGET;
+    }
+
+    @Override
+    public void getConnection(ProxyTarget target, HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit) {
+        final var size = this.pools.size();
+        final var now = System.nanoTime();
+        final var first = this.loadBalancer.select(now);
+        for (var i = 0; i < size; i++) {
+            final var pool = this.pools.get((first + i) % size);
+            if (pool.tryAcquire(now)) {
+                trackLoad(pool.getLoad(), exchange, now, startUpstreamSpan(pool, exchange));
+                pool.getConnection(exchange, callback);
+                return;
+            }
+        }
+        callback.couldNotResolveBackend(exchange);
+    }
+
+    /**
+     * Keeps track of the load a request puts on a host. The latency is measured until the response is committed, so
+     * the time it takes to send the response to the client is not included, and is attached to the exchange as
+     * {@link #UPSTREAM_TIME}. Responses with a 5xx status code are left out of the load, because a host that fails
+     * fast should not attract more traffic; those are handled by the circuit breaker.
+     *
+     * @param load The <code>UpstreamHostLoad</code> of the host.
+     * @param exchange The <code>HttpServerExchange</code> that is forwarded to the host.
+     * @param startedAt The time in nanoseconds at which the request is forwarded.
+     * @param span The <code>Span</code> of the upstream call, which ends when the response is committed, or
+     *             <code>null</code> when the request is not sampled.
+     */
+    private static void trackLoad(UpstreamHostLoad load, HttpServerExchange exchange, long startedAt, Span span) {
+        load.requestStarted();
+        exchange.addResponseCommitListener(committedExchange -> {
+            final var now = System.nanoTime();
+            final var status = committedExchange.getStatusCode();
+            committedExchange.putAttachment(UPSTREAM_TIME, now - startedAt);
+            if (status < 500) {
+                load.latencyMeasured(now, now - startedAt);
+            }
+            if (span != null) {
+                span.setAttribute("http.response.status_code", status);
+                if (status >= 400) {
+                    span.setError(null);
+                }
+                span.end();
+            }
+        });
+        exchange.addExchangeCompleteListener((completedExchange, nextListener) -> {
+            load.requestCompleted();
+            if (span != null && !span.isEnded()) {
+                span.setError("No response").end();
+            }
+            nextListener.proceed();
+        });
+    }
+
+    /**
+     * Starts the span of the call to an upstream host when the request is sampled, and makes it the parent of the
+     * span of the host by replacing the <code>traceparent</code> header of the request. The headers are copied to the
+     * upstream request after the connection is obtained.
+     *
+     * @param pool The <code>UpstreamConnectionPool</code> of the host.
+     * @param exchange The <code>HttpServerExchange</code> that is forwarded to the host.
+     * @return The <code>Span</code> of the upstream call, or <code>null</code> when the request is not sampled.
+     */
+    private Span startUpstreamSpan(UpstreamConnectionPool pool, HttpServerExchange exchange) {
+        final var parent = exchange.getAttachment(Tracer.SPAN);
+        if (parent == null) {
+            return null;
+        }
+        final var span = parent.startChild(exchange.getRequestMethod().toString(), Span.Kind.CLIENT)
+                .setAttribute("machnos.upstream", this.name)
+                .setAttribute("server.address", pool.getUri().getHost())
+                .setAttribute("server.port", pool.getUri().getPort());
+        exchange.getRequestHeaders().put(Tracer.TRACEPARENT, span.toTraceparent());
+        return span;
+    }
+
+    /**
+     * Forgets the per I/O thread state of all pools. Must be called when the I/O threads are shut down.
+     */
+    public void clear() {
+        this.pools.forEach(UpstreamConnectionPool::clear);
+    }
+
+    /**
+     * Creates the <code>XnioSsl</code> instance that is used to connect to https hosts.
+     *
+     * @return The <code>XnioSsl</code> instance.
+     */
+    private static XnioSsl createXnioSsl() {
+        try {
+            return new UndertowXnioSsl(Xnio.getInstance(Undertow.class.getClassLoader()), OptionMap.EMPTY, SSLContext.getDefault());
+        } catch (NoSuchAlgorithmException e) {
+            throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>LoadBalancer</code> that selects the hosts in turn, each in proportion to its weight.
+ *
+ * The order is calculated once with the smooth weighted round robin algorithm, which interleaves the hosts instead of
+ * sending a burst of requests to the host with the highest weight. Selecting a host only walks through this order, so
+ * no lock is needed.
+ */
+final class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    /**
+     * The indexes of the pools in the order they are selected.
+     */
+    private final int[] schedule;
+    private final AtomicInteger next = new AtomicInteger();
+
+    WeightedRoundRobinLoadBalancer(List<UpstreamConnectionPool> pools) {
+        final var weights = pools.stream().mapToInt(pool -> pool.getLoad().getWeight()).toArray();
+        final var totalWeight = Arrays.stream(weights).sum();
+        final var currentWeights = new int[weights.length];
+        this.schedule = new int[totalWeight];
+        for (var i = 0; i < totalWeight; i++) {
+            var selected = 0;
+            for (var j = 0; j < weights.length; j++) {
+                currentWeights[j] += weights[j];
+                if (currentWeights[j] > currentWeights[selected]) {
+                    selected = j;
+                }
+            }
+            currentWeights[selected] -= totalWeight;
+            this.schedule[i] = selected;
+        }
+    }
+
+    @Override
+    public int select(long now) {
+        return this.schedule[Math.floorMod(this.next.getAndIncrement(), this.schedule.length)];
+    }
+}
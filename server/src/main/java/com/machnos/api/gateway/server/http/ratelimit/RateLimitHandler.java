@@ -0,0 +1,126 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.ratelimit;
+
+import com.machnos.api.gateway.server.configuration.ApiRateLimit;
+import com.machnos.api.gateway.server.http.pipeline.PipelineHandler;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>HttpHandler</code> that applies the rate limit of an api to each consumer. Requests that exceed the rate limit
+ * are answered with a <code>429 Too Many Requests</code> response with a <code>Retry-After</code> header, and are not
+ * handed to the next handler.
+ */
+public class RateLimitHandler implements HttpHandler {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The <code>RateLimiter</code> that holds the state of the consumers.
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * The name of the variable that identifies the consumer, or <code>null</code>.
+     */
+    private final String keyVariable;
+
+    /**
+     * The header that identifies the consumer, or <code>null</code>.
+     */
+    private final HttpString keyHeader;
+
+    /**
+     * The handler the request is handed to when it is within the rate limit.
+     */
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>RateLimitHandler</code> instance.
+     *
+     * @param rateLimiter The <code>RateLimiter</code> that holds the state of the consumers.
+     * @param apiRateLimit The rate limit settings of the api.
+     * @param next The handler the request is handed to when it is within the rate limit.
+     */
+    public RateLimitHandler(RateLimiter rateLimiter, ApiRateLimit apiRateLimit, HttpHandler next) {
+        this.rateLimiter = rateLimiter;
+        this.keyVariable = apiRateLimit.keyVariable;
+        this.keyHeader = apiRateLimit.keyHeader == null ? null : new HttpString(apiRateLimit.keyHeader);
+        this.next = next;
+    }
+
+    /**
+     * Gives the <code>RateLimiter</code> that holds the state of the consumers.
+     *
+     * @return The <code>RateLimiter</code>.
+     */
+    public RateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final var key = getKey(exchange);
+        final var wait = this.rateLimiter.tryAcquire(key);
+        if (wait == 0) {
+            this.next.handleRequest(exchange);
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Request for '" + exchange.getRequestPath() + "' exceeds the rate limit of '" + key + "'.");
+        }
+        exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+        exchange.endExchange();
+    }
+
+    /**
+     * Gives the key that identifies the consumer of a request. The address of the client is used when the request
+     * has no value for the configured variable or header. The address is the same instance for all requests on a
+     * connection, so it does not need to be converted to a <code>String</code>.
+     *
+     * @param exchange The <code>HttpServerExchange</code> to give the key for.
+     * @return The key of the consumer.
+     */
+    private Object getKey(HttpServerExchange exchange) {
+        if (this.keyVariable != null) {
+            final var variables = exchange.getAttachment(PipelineHandler.VARIABLES);
+            final var variable = variables == null ? null : variables.getStringVariable(this.keyVariable);
+            if (variable != null && variable.hasValue()) {
+                return variable.getValue();
+            }
+        } else if (this.keyHeader != null) {
+            final var value = exchange.getRequestHeaders().getFirst(this.keyHeader);
+            if (value != null) {
+                return value;
+            }
+        }
+        return exchange.getSourceAddress().getAddress();
+    }
+}
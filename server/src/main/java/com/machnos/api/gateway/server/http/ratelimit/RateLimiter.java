@@ -0,0 +1,209 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.ratelimit;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limiter that implements the generic cell rate algorithm (GCRA) per key. The state of a key is a single
+ * theoretical arrival time (TAT) that is updated with a compare-and-set, so requests of different keys never contend,
+ * and requests of the same key never block each other. Checking a key that is already known does not allocate.
+ *
+ * A key is idle as soon as its theoretical arrival time lies in the past, because from then on it is allowed its full
+ * burst again, which is exactly the state of an unknown key. Idle keys are removed by {@link #evictIdle()}, so the
+ * number of keys is bounded by the number of consumers that were active during the last burst period.
+ *
+ * Keys must implement <code>equals</code> and <code>hashCode</code>, for example <code>String</code>s or
+ * <code>InetAddress</code>es.
+ */
+public class RateLimiter {
+
+    /**
+     * The marker of a state that is removed by {@link #evictIdle(long)}. A request that finds this marker retries with
+     * a new state.
+     */
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    /**
+     * The theoretical arrival times, mapped by key.
+     */
+    private final ConcurrentHashMap<Object, AtomicLong> states = new ConcurrentHashMap<>();
+
+    /**
+     * The number of nanoseconds between two requests at the sustained rate.
+     */
+    private final long emissionInterval;
+
+    /**
+     * The number of nanoseconds the theoretical arrival time may lie ahead of the current time.
+     */
+    private final long tolerance;
+
+    /**
+     * The number of allowed requests.
+     */
+    private final LongAdder allowed = new LongAdder();
+
+    /**
+     * The number of rejected requests.
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * The number of evicted keys.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new <code>RateLimiter</code> instance.
+     *
+     * @param rate The sustained number of requests per second per key.
+     * @param burst The number of requests a key is allowed at once after being idle.
+     * @throws MachnosException with code {@link MachnosException#INVALID_RATE_LIMIT} when the rate is not positive or
+     * the burst is smaller than 1.
+     */
+    public RateLimiter(double rate, int burst) {
+        if (!(rate > 0) || burst < 1) {
+            throw new MachnosException(MachnosException.INVALID_RATE_LIMIT, Double.toString(rate), Integer.toString(burst));
+        }
+        this.emissionInterval = Math.max(1, (long) (1_000_000_000d / rate));
+        this.tolerance = this.emissionInterval * burst;
+    }
+
+    /**
+     * Tries to acquire a permit for a key at the current time.
+     *
+     * @param key The key to acquire the permit for.
+     * @return 0 when the permit is acquired, or the number of nanoseconds after which the next permit becomes
+     * available.
+     * @see #tryAcquire(Object, long)
+     */
+    public long tryAcquire(Object key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Tries to acquire a permit for a key.
+     *
+     * @param key The key to acquire the permit for.
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return 0 when the permit is acquired, or the number of nanoseconds after which the next permit becomes
+     * available.
+     */
+    public long tryAcquire(Object key, long now) {
+        while (true) {
+            var state = this.states.get(key);
+            if (state == null) {
+                // An unknown key is allowed its full burst, so the first permit is always granted.
+                state = this.states.putIfAbsent(key, new AtomicLong(now + this.emissionInterval));
+                if (state == null) {
+                    this.allowed.increment();
+                    return 0;
+                }
+            }
+            var arrivalTime = state.get();
+            while (arrivalTime != EVICTED) {
+                final var newArrivalTime = Math.max(arrivalTime, now) + this.emissionInterval;
+                final var wait = newArrivalTime - now - this.tolerance;
+                if (wait > 0) {
+                    this.rejected.increment();
+                    return wait;
+                }
+                if (state.compareAndSet(arrivalTime, newArrivalTime)) {
+                    this.allowed.increment();
+                    return 0;
+                }
+                arrivalTime = state.get();
+            }
+            // The state is being evicted, help removing it and start over with a new state.
+            this.states.remove(key, state);
+        }
+    }
+
+    /**
+     * Removes the state of all keys that are idle at the current time.
+     *
+     * @return The number of removed keys.
+     * @see #evictIdle(long)
+     */
+    public int evictIdle() {
+        return evictIdle(System.nanoTime());
+    }
+
+    /**
+     * Removes the state of all keys that are idle. A key is idle when its full burst is available again, so removing
+     * it does not change the outcome of future requests.
+     *
+     * @param now The current time in nanoseconds, as given by <code>System.nanoTime()</code>.
+     * @return The number of removed keys.
+     */
+    public int evictIdle(long now) {
+        var evicted = 0;
+        for (final var entry : this.states.entrySet()) {
+            final var state = entry.getValue();
+            final var arrivalTime = state.get();
+            // Mark the state before removing it, so a concurrent request cannot update a state that is no longer mapped.
+            if (arrivalTime != EVICTED && arrivalTime - now <= 0 && state.compareAndSet(arrivalTime, EVICTED)) {
+                this.states.remove(entry.getKey(), state);
+                evicted++;
+            }
+        }
+        this.evictions.add(evicted);
+        return evicted;
+    }
+
+    /**
+     * Gives the number of keys that currently have state.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return this.states.size();
+    }
+
+    /**
+     * Gives the number of allowed requests.
+     *
+     * @return The number of allowed requests.
+     */
+    public long getAllowed() {
+        return this.allowed.sum();
+    }
+
+    /**
+     * Gives the number of rejected requests.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * Gives the number of keys that are removed because they were idle.
+     *
+     * @return The number of evicted keys.
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.routing;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import io.undertow.server.HttpHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class representing a route to an api. A route is identified by the hosts, methods and path template it is served on.
+ *
+ * A path template consists of segments separated by a <code>/</code>. A segment is either a static text, a path
+ * parameter in the form <code>{name}</code> that matches exactly one non empty segment, or a <code>*</code> as last
+ * segment that matches all remaining segments.
+ */
+public class Route {
+
+    /**
+     * The name of the route.
+     */
+    private final String name;
+
+    /**
+     * The hosts this route is served on. An empty list means all hosts.
+     */
+    private final List<String> hosts;
+
+    /**
+     * The methods this route is served on. An empty list means all methods.
+     */
+    private final List<String> methods;
+
+    /**
+     * The path template of this route.
+     */
+    private final String pathTemplate;
+
+    /**
+     * The tokens of the path template.
+     */
+    private final List<Token> tokens;
+
+    /**
+     * The handler that handles the requests matched to this route.
+     */
+    private final HttpHandler handler;
+
+    /**
+     * Constructs a new <code>Route</code> instance.
+     *
+     * @param name The name of the route.
+     * @param hosts The hosts the route is served on, or an empty list for all hosts.
+     * @param methods The methods the route is served on, or an empty list for all methods.
+     * @param pathTemplate The path template of the route.
+     * @param handler The handler that handles the requests matched to this route.
+     * @throws MachnosException with code {@link MachnosException#INVALID_API_PATH} when the path template is invalid.
+     */
+    public Route(String name, List<String> hosts, List<String> methods, String pathTemplate, HttpHandler handler) {
+        this.name = name;
+        this.hosts = hosts == null ? Collections.emptyList() : List.copyOf(hosts);
+        this.methods = methods == null ? Collections.emptyList() : List.copyOf(methods);
+        this.pathTemplate = pathTemplate;
+        this.tokens = tokenize(name, pathTemplate);
+        this.handler = handler;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<String> getHosts() {
+        return this.hosts;
+    }
+
+    public List<String> getMethods() {
+        return this.methods;
+    }
+
+    public String getPathTemplate() {
+        return this.pathTemplate;
+    }
+
+    public HttpHandler getHandler() {
+        return this.handler;
+    }
+
+    /**
+     * Gives the tokens of the path template.
+     *
+     * @return The tokens of the path template.
+     */
+    List<Token> getTokens() {
+        return this.tokens;
+    }
+
+    /**
+     * Extracts the path parameters from a path that is matched to this route. This method is not used during request
+     * matching so the matching itself does not need to allocate any objects.
+     *
+     * @param path The path that is matched to this route.
+     * @return The path parameters mapped by their name. When the template ends with a <code>*</code> the remainder of
+     * the path is available under the key <code>*</code>.
+     */
+    public Map<String, String> getPathParameters(String path) {
+        final var parameters = new LinkedHashMap<String, String>();
+        var position = 0;
+        for (final var token : this.tokens) {
+            switch (token.type) {
+                case STATIC:
+                    position = Math.min(path.length(), position + token.text.length());
+                    break;
+                case PARAMETER:
+                    var end = path.indexOf('/', position);
+                    if (end == -1) {
+                        end = path.length();
+                    }
+                    parameters.put(token.text, path.substring(position, end));
+                    position = end;
+                    break;
+                case WILDCARD:
+                    parameters.put(token.text, path.substring(position));
+                    position = path.length();
+                    break;
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Splits a path template into tokens. Consecutive static segments are merged into a single token.
+     *
+     * @param name The name of the route.
+     * @param pathTemplate The path template to split.
+     * @return The tokens of the path template.
+     */
+    private static List<Token> tokenize(String name, String pathTemplate) {
+        if (pathTemplate == null || !pathTemplate.startsWith("/")) {
+            throw new MachnosException(MachnosException.INVALID_API_PATH, name, pathTemplate);
+        }
+        final var tokens = new ArrayList<Token>();
+        final var staticText = new StringBuilder();
+        final var segments = pathTemplate.substring(1).split("/", -1);
+        for (var i = 0; i < segments.length; i++) {
+            final var segment = segments[i];
+            final var last = i == segments.length - 1;
+            staticText.append('/');
+            if (segment.startsWith("{") && segment.endsWith("}") && segment.length() > 2) {
+                tokens.add(new Token(TokenType.STATIC, staticText.toString()));
+                staticText.setLength(0);
+                tokens.add(new Token(TokenType.PARAMETER, segment.substring(1, segment.length() - 1)));
+            } else if ("*".equals(segment)) {
+                if (!last) {
+                    throw new MachnosException(MachnosException.INVALID_API_PATH, name, pathTemplate);
+                }
+                tokens.add(new Token(TokenType.STATIC, staticText.toString()));
+                staticText.setLength(0);
+                tokens.add(new Token(TokenType.WILDCARD, "*"));
+            } else if (segment.indexOf('{') != -1 || segment.indexOf('}') != -1 || segment.indexOf('*') != -1 || (segment.isEmpty() && !last)) {
+                throw new MachnosException(MachnosException.INVALID_API_PATH, name, pathTemplate);
+            } else {
+                staticText.append(segment);
+            }
+        }
+        if (staticText.length() > 0) {
+            // Strip the trailing slash, unless the path is the root path.
+            var text = staticText.toString();
+            if (text.length() > 1 && text.endsWith("/")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            if (!text.equals("/") || tokens.isEmpty()) {
+                tokens.add(new Token(TokenType.STATIC, text));
+            }
+        }
+        return Collections.unmodifiableList(tokens);
+    }
+
+    /**
+     * The types of tokens a path template consists of.
+     */
+    enum TokenType {STATIC, PARAMETER, WILDCARD}
+
+    /**
+     * A token of a path template.
+     */
+    static final class Token {
+
+        final TokenType type;
+        final String text;
+
+        Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.routing;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+
+/**
+ * <code>HttpHandler</code> that dispatches each request to the handler of the <code>Route</code> it matches in a
+ * <code>RouteTable</code>. The matched <code>Route</code> is attached to the exchange under the {@link #ROUTE} key.
+ */
+public class RouteHandler implements HttpHandler {
+
+    /**
+     * The key under which the matched <code>Route</code> is attached to the exchange.
+     */
+    public static final AttachmentKey<Route> ROUTE = AttachmentKey.create(Route.class);
+
+    /**
+     * The <code>RouteTable</code> to match the requests against.
+     */
+    private final RouteTable routeTable;
+
+    /**
+     * The handler that handles the requests that do not match any <code>Route</code>.
+     */
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>RouteHandler</code> instance.
+     *
+     * @param routeTable The <code>RouteTable</code> to match the requests against.
+     * @param next The handler that handles the requests that do not match any <code>Route</code>.
+     */
+    public RouteHandler(RouteTable routeTable, HttpHandler next) {
+        this.routeTable = routeTable;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final var route = this.routeTable.match(exchange.getHostName(), exchange.getRequestMethod(), exchange.getRelativePath());
+        if (route == null) {
+            this.next.handleRequest(exchange);
+            return;
+        }
+        exchange.putAttachment(ROUTE, route);
+        route.getHandler().handleRequest(exchange);
+    }
+}
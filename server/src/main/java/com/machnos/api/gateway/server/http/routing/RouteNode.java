@@ -0,0 +1,269 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.routing;
+
+import io.undertow.util.HttpString;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A node in the radix tree of a <code>RouteTable</code>. A node matches a static prefix of the path and holds the
+ * routes that end at that prefix. Static children are looked up by the first character of their prefix; path
+ * parameters and wildcards have a dedicated child with an empty prefix.
+ */
+final class RouteNode {
+
+    private static final char[] NO_INDICES = new char[0];
+    private static final RouteNode[] NO_CHILDREN = new RouteNode[0];
+    private static final HttpString[] NO_METHODS = new HttpString[0];
+    private static final Route[] NO_ROUTES = new Route[0];
+
+    /**
+     * The static prefix this node matches.
+     */
+    private String prefix;
+
+    /**
+     * The first character of the prefix of each static child, in the same order as the children.
+     */
+    private char[] indices = NO_INDICES;
+
+    /**
+     * The static children of this node.
+     */
+    private RouteNode[] children = NO_CHILDREN;
+
+    /**
+     * The child that matches a single path segment, or <code>null</code> when not present.
+     */
+    private RouteNode parameterChild;
+
+    /**
+     * The child that matches the remainder of the path, or <code>null</code> when not present.
+     */
+    private RouteNode wildcardChild;
+
+    /**
+     * The methods of the routes that end at this node, in the same order as the routes.
+     */
+    private HttpString[] methods = NO_METHODS;
+
+    /**
+     * The routes that end at this node and are bound to a method.
+     */
+    private Route[] methodRoutes = NO_ROUTES;
+
+    /**
+     * The route that ends at this node and is served on all methods, or <code>null</code> when not present.
+     */
+    private Route anyMethodRoute;
+
+    RouteNode(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Inserts a static path below this node, splitting existing nodes when they share a part of their prefix with the
+     * path.
+     *
+     * @param path The static path relative to the end of this node.
+     * @return The node that ends at the given path.
+     */
+    RouteNode insertStatic(String path) {
+        if (path.isEmpty()) {
+            return this;
+        }
+        final var index = indexOf(path.charAt(0));
+        if (index == -1) {
+            final var child = new RouteNode(path);
+            this.indices = Arrays.copyOf(this.indices, this.indices.length + 1);
+            this.indices[this.indices.length - 1] = path.charAt(0);
+            this.children = Arrays.copyOf(this.children, this.children.length + 1);
+            this.children[this.children.length - 1] = child;
+            return child;
+        }
+        var child = this.children[index];
+        final var maxLength = Math.min(child.prefix.length(), path.length());
+        var common = 0;
+        while (common < maxLength && child.prefix.charAt(common) == path.charAt(common)) {
+            common++;
+        }
+        if (common < child.prefix.length()) {
+            // Split the child in the common part and the remainder.
+            final var intermediate = new RouteNode(child.prefix.substring(0, common));
+            child.prefix = child.prefix.substring(common);
+            intermediate.indices = new char[] {child.prefix.charAt(0)};
+            intermediate.children = new RouteNode[] {child};
+            this.children[index] = intermediate;
+            child = intermediate;
+        }
+        return child.insertStatic(path.substring(common));
+    }
+
+    /**
+     * Gives the child that matches a single path segment, creating it when not present.
+     *
+     * @return The path parameter child.
+     */
+    RouteNode parameterChild() {
+        if (this.parameterChild == null) {
+            this.parameterChild = new RouteNode("");
+        }
+        return this.parameterChild;
+    }
+
+    /**
+     * Gives the child that matches the remainder of the path, creating it when not present.
+     *
+     * @return The wildcard child.
+     */
+    RouteNode wildcardChild() {
+        if (this.wildcardChild == null) {
+            this.wildcardChild = new RouteNode("");
+        }
+        return this.wildcardChild;
+    }
+
+    /**
+     * Adds a route that ends at this node.
+     *
+     * @param route The route to add.
+     * @return <code>true</code> when the route is added, <code>false</code> when a route for one of the methods is
+     * already present.
+     */
+    boolean addRoute(Route route) {
+        if (route.getMethods().isEmpty()) {
+            if (this.anyMethodRoute != null) {
+                return false;
+            }
+            this.anyMethodRoute = route;
+            return true;
+        }
+        final var routeMethods = route.getMethods().stream()
+                .map(method -> new HttpString(method.toUpperCase(Locale.ROOT)))
+                .distinct()
+                .toArray(HttpString[]::new);
+        for (final var method : routeMethods) {
+            if (routeFor(method, false) != null) {
+                return false;
+            }
+        }
+        final var offset = this.methods.length;
+        this.methods = Arrays.copyOf(this.methods, offset + routeMethods.length);
+        this.methodRoutes = Arrays.copyOf(this.methodRoutes, offset + routeMethods.length);
+        for (var i = 0; i < routeMethods.length; i++) {
+            this.methods[offset + i] = routeMethods[i];
+            this.methodRoutes[offset + i] = route;
+        }
+        return true;
+    }
+
+    /**
+     * Matches a part of a path against this node and its descendants.
+     *
+     * @param path The path to match.
+     * @param start The start index of the part of the path that is not matched yet.
+     * @param end The end index (exclusive) of the path.
+     * @param method The method of the request.
+     * @return The matching route, or <code>null</code> when this node has no matching route.
+     */
+    Route match(String path, int start, int end, HttpString method) {
+        final var prefixLength = this.prefix.length();
+        if (end - start < prefixLength) {
+            // A wildcard also matches the path without the trailing slash, for example '/static/*' matches '/static'.
+            if (this.wildcardChild != null && end - start == prefixLength - 1 && this.prefix.charAt(prefixLength - 1) == '/'
+                    && path.regionMatches(start, this.prefix, 0, prefixLength - 1)) {
+                return this.wildcardChild.routeFor(method, true);
+            }
+            return null;
+        }
+        if (!path.regionMatches(start, this.prefix, 0, prefixLength)) {
+            return null;
+        }
+        final var position = start + prefixLength;
+        Route route;
+        if (position == end) {
+            route = routeFor(method, true);
+            if (route != null) {
+                return route;
+            }
+            final var index = indexOf('/');
+            if (index != -1) {
+                route = this.children[index].match(path, position, end, method);
+                if (route != null) {
+                    return route;
+                }
+            }
+        } else {
+            final var index = indexOf(path.charAt(position));
+            if (index != -1) {
+                route = this.children[index].match(path, position, end, method);
+                if (route != null) {
+                    return route;
+                }
+            }
+            if (this.parameterChild != null && path.charAt(position) != '/') {
+                var segmentEnd = path.indexOf('/', position);
+                if (segmentEnd == -1 || segmentEnd > end) {
+                    segmentEnd = end;
+                }
+                route = this.parameterChild.match(path, segmentEnd, end, method);
+                if (route != null) {
+                    return route;
+                }
+            }
+        }
+        if (this.wildcardChild != null) {
+            return this.wildcardChild.routeFor(method, true);
+        }
+        return null;
+    }
+
+    /**
+     * Gives the route for a method that ends at this node.
+     *
+     * @param method The method.
+     * @param includeAnyMethod <code>true</code> when the route that is served on all methods should be returned when
+     * there is no route for the given method.
+     * @return The route, or <code>null</code> when not present.
+     */
+    private Route routeFor(HttpString method, boolean includeAnyMethod) {
+        for (var i = 0; i < this.methods.length; i++) {
+            if (this.methods[i].equals(method)) {
+                return this.methodRoutes[i];
+            }
+        }
+        return includeAnyMethod ? this.anyMethodRoute : null;
+    }
+
+    /**
+     * Gives the index of the static child with a prefix starting with the given character.
+     *
+     * @param c The first character of the prefix.
+     * @return The index of the child, or -1 when not present.
+     */
+    private int indexOf(char c) {
+        for (var i = 0; i < this.indices.length; i++) {
+            if (this.indices[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.routing;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import io.undertow.util.HttpString;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Table that matches requests to <code>Route</code>s by host, method and path.
+ *
+ * The path templates of the routes are compiled into a radix tree per host, so a request is matched in a time that is
+ * proportional to the length of its path, regardless of the number of routes in the table. Matching a request does not
+ * allocate any objects. Routes that are not bound to a host are stored in a separate tree that is consulted when the
+ * tree of the requested host has no matching route.
+ *
+ * When multiple routes match a path, static segments take precedence over path parameters, and path parameters take
+ * precedence over wildcards.
+ *
+ * Routes must be added before the table is shared with other threads.
+ */
+public class RouteTable {
+
+    /**
+     * The radix trees of the routes that are bound to a host, mapped by the lower case host name.
+     */
+    private final Map<String, RouteNode> hostTrees = new HashMap<>();
+
+    /**
+     * The radix tree of the routes that are served on all hosts.
+     */
+    private final RouteNode anyHostTree = new RouteNode("");
+
+    /**
+     * The number of routes in this table.
+     */
+    private int size;
+
+    /**
+     * Add a <code>Route</code> to the table.
+     *
+     * @param route The <code>Route</code> to add.
+     * @return This <code>RouteTable</code> instance.
+     * @throws MachnosException with code {@link MachnosException#DUPLICATE_ROUTE} when a route with the same host,
+     * method and path template is already present.
+     */
+    public RouteTable add(Route route) {
+        if (route.getHosts().isEmpty()) {
+            add(this.anyHostTree, route);
+        } else {
+            route.getHosts().forEach(host -> add(this.hostTrees.computeIfAbsent(host.toLowerCase(Locale.ROOT), k -> new RouteNode("")), route));
+        }
+        this.size++;
+        return this;
+    }
+
+    /**
+     * Gives the number of routes in this table.
+     *
+     * @return The number of routes.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Matches a request to a <code>Route</code>.
+     *
+     * @param host The host name of the request, without the port.
+     * @param method The method of the request.
+     * @param path The path of the request.
+     * @return The matching <code>Route</code>, or <code>null</code> when no route matches the request.
+     */
+    public Route match(String host, HttpString method, String path) {
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        Route route = null;
+        if (host != null && !this.hostTrees.isEmpty()) {
+            // toLowerCase returns the same instance when the host is already in lower case.
+            final var tree = this.hostTrees.get(host.toLowerCase(Locale.ROOT));
+            if (tree != null) {
+                route = match(tree, method, path);
+            }
+        }
+        if (route == null) {
+            route = match(this.anyHostTree, method, path);
+        }
+        return route;
+    }
+
+    /**
+     * Matches a path against a tree. A trailing slash on the path is ignored when the path itself has no match.
+     *
+     * @param tree The root of the tree.
+     * @param method The method of the request.
+     * @param path The path of the request.
+     * @return The matching <code>Route</code>, or <code>null</code> when no route matches.
+     */
+    private Route match(RouteNode tree, HttpString method, String path) {
+        var route = tree.match(path, 0, path.length(), method);
+        if (route == null && path.length() > 1 && path.charAt(path.length() - 1) == '/') {
+            route = tree.match(path, 0, path.length() - 1, method);
+        }
+        return route;
+    }
+
+    /**
+     * Adds a <code>Route</code> to a tree.
+     *
+     * @param tree The root of the tree.
+     * @param route The <code>Route</code> to add.
+     */
+    private void add(RouteNode tree, Route route) {
+        var node = tree;
+        for (final var token : route.getTokens()) {
+            switch (token.type) {
+                case STATIC:
+                    node = node.insertStatic(token.text);
+                    break;
+                case PARAMETER:
+                    node = node.parameterChild();
+                    break;
+                case WILDCARD:
+                    node = node.wildcardChild();
+                    break;
+            }
+        }
+        if (!node.addRoute(route)) {
+            throw new MachnosException(MachnosException.DUPLICATE_ROUTE, route.getName(), route.getPathTemplate());
+        }
+    }
+}
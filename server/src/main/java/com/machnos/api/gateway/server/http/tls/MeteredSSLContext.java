@@ -0,0 +1,94 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.SecureRandom;
+
+/**
+ * <code>SSLContext</code> that delegates to another, initialized, <code>SSLContext</code> and records the handshakes
+ * of the <code>SSLEngine</code>s it creates in a <code>TlsStatistics</code> instance.
+ */
+public class MeteredSSLContext extends SSLContext {
+
+    /**
+     * Constructs a new <code>MeteredSSLContext</code> instance.
+     *
+     * @param delegate The initialized <code>SSLContext</code> to delegate to.
+     * @param statistics The <code>TlsStatistics</code> to record the handshakes in.
+     */
+    public MeteredSSLContext(SSLContext delegate, TlsStatistics statistics) {
+        super(new MeteredSSLContextSpi(delegate, statistics), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    /**
+     * The service provider that does the actual delegation.
+     */
+    private static final class MeteredSSLContextSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+        private final TlsStatistics statistics;
+
+        private MeteredSSLContextSpi(SSLContext delegate, TlsStatistics statistics) {
+            this.delegate = delegate;
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom secureRandom) {
+            throw new UnsupportedOperationException("The delegate SSLContext is already initialized.");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return this.delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return this.delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return new MeteredSSLEngine(this.delegate.createSSLEngine(), this.statistics);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            return new MeteredSSLEngine(this.delegate.createSSLEngine(host, port), this.statistics);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return this.delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return this.delegate.getClientSessionContext();
+        }
+    }
+}
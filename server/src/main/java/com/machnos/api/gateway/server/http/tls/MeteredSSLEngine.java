@@ -0,0 +1,264 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * <code>SSLEngine</code> that delegates to another <code>SSLEngine</code> and records the outcome of the initial
+ * handshake in a <code>TlsStatistics</code> instance.
+ *
+ * The JDK does not tell whether a handshake resumed a session. A session that was created before this engine was
+ * created can only have been obtained from the session cache or from a session ticket, so in that case the handshake
+ * is counted as resumed.
+ */
+class MeteredSSLEngine extends SSLEngine {
+
+    /**
+     * The engine to delegate to.
+     */
+    private final SSLEngine delegate;
+
+    /**
+     * The statistics to record the handshake in.
+     */
+    private final TlsStatistics statistics;
+
+    /**
+     * The time in milliseconds this engine was created.
+     */
+    private final long createdAt = System.currentTimeMillis();
+
+    /**
+     * Whether the outcome of the initial handshake is recorded.
+     */
+    private boolean handshakeRecorded;
+
+    /**
+     * The application protocol selector as it is set by the caller.
+     */
+    private BiFunction<SSLEngine, List<String>, String> applicationProtocolSelector;
+
+    MeteredSSLEngine(SSLEngine delegate, TlsStatistics statistics) {
+        super(delegate.getPeerHost(), delegate.getPeerPort());
+        this.delegate = delegate;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+        try {
+            return record(this.delegate.wrap(srcs, offset, length, dst));
+        } catch (SSLException e) {
+            recordFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+        try {
+            return record(this.delegate.unwrap(src, dsts, offset, length));
+        } catch (SSLException e) {
+            recordFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the outcome of the initial handshake when the given result finishes it.
+     *
+     * @param result The result of a wrap or unwrap operation.
+     * @return The result.
+     */
+    private SSLEngineResult record(SSLEngineResult result) {
+        if (!this.handshakeRecorded && result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+            this.handshakeRecorded = true;
+            if (this.delegate.getSession().getCreationTime() < this.createdAt) {
+                this.statistics.resumedHandshake();
+            } else {
+                this.statistics.fullHandshake();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a failure of the initial handshake.
+     */
+    private void recordFailure() {
+        if (!this.handshakeRecorded) {
+            this.handshakeRecorded = true;
+            this.statistics.failedHandshake();
+        }
+    }
+
+    @Override
+    public Runnable getDelegatedTask() {
+        return this.delegate.getDelegatedTask();
+    }
+
+    @Override
+    public void closeInbound() throws SSLException {
+        this.delegate.closeInbound();
+    }
+
+    @Override
+    public boolean isInboundDone() {
+        return this.delegate.isInboundDone();
+    }
+
+    @Override
+    public void closeOutbound() {
+        this.delegate.closeOutbound();
+    }
+
+    @Override
+    public boolean isOutboundDone() {
+        return this.delegate.isOutboundDone();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return this.delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+        return this.delegate.getEnabledCipherSuites();
+    }
+
+    @Override
+    public void setEnabledCipherSuites(String[] suites) {
+        this.delegate.setEnabledCipherSuites(suites);
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+        return this.delegate.getSupportedProtocols();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+        return this.delegate.getEnabledProtocols();
+    }
+
+    @Override
+    public void setEnabledProtocols(String[] protocols) {
+        this.delegate.setEnabledProtocols(protocols);
+    }
+
+    @Override
+    public SSLSession getSession() {
+        return this.delegate.getSession();
+    }
+
+    @Override
+    public SSLSession getHandshakeSession() {
+        return this.delegate.getHandshakeSession();
+    }
+
+    @Override
+    public void beginHandshake() throws SSLException {
+        this.delegate.beginHandshake();
+    }
+
+    @Override
+    public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+        return this.delegate.getHandshakeStatus();
+    }
+
+    @Override
+    public void setUseClientMode(boolean mode) {
+        this.delegate.setUseClientMode(mode);
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+        return this.delegate.getUseClientMode();
+    }
+
+    @Override
+    public void setNeedClientAuth(boolean need) {
+        this.delegate.setNeedClientAuth(need);
+    }
+
+    @Override
+    public boolean getNeedClientAuth() {
+        return this.delegate.getNeedClientAuth();
+    }
+
+    @Override
+    public void setWantClientAuth(boolean want) {
+        this.delegate.setWantClientAuth(want);
+    }
+
+    @Override
+    public boolean getWantClientAuth() {
+        return this.delegate.getWantClientAuth();
+    }
+
+    @Override
+    public void setEnableSessionCreation(boolean flag) {
+        this.delegate.setEnableSessionCreation(flag);
+    }
+
+    @Override
+    public boolean getEnableSessionCreation() {
+        return this.delegate.getEnableSessionCreation();
+    }
+
+    @Override
+    public SSLParameters getSSLParameters() {
+        return this.delegate.getSSLParameters();
+    }
+
+    @Override
+    public void setSSLParameters(SSLParameters params) {
+        this.delegate.setSSLParameters(params);
+    }
+
+    @Override
+    public String getApplicationProtocol() {
+        return this.delegate.getApplicationProtocol();
+    }
+
+    @Override
+    public String getHandshakeApplicationProtocol() {
+        return this.delegate.getHandshakeApplicationProtocol();
+    }
+
+    @Override
+    public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+        // The selector must be called with this engine, as that is the engine the caller knows about.
+        this.applicationProtocolSelector = selector;
+        this.delegate.setHandshakeApplicationProtocolSelector(selector == null ? null : (engine, protocols) -> selector.apply(this, protocols));
+    }
+
+    @Override
+    public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+        return this.applicationProtocolSelector;
+    }
+}
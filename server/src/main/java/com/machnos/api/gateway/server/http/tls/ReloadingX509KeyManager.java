@@ -0,0 +1,311 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.keystore.FileSystemKeyStoreWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>X509ExtendedKeyManager</code> that serves the key material of a <code>FileSystemKeyStoreWrapper</code> and
+ * picks up changes of the keystore file without restarting the listeners.
+ *
+ * The keystore file is checked for changes at most once per check interval, on the thread that selects the key for
+ * a handshake. When the file is changed the key material is loaded into a new delegate key manager, which replaces the
+ * current delegate atomically. Handshakes that are in progress keep using the key material they started with, and
+ * established connections are not affected at all.
+ *
+ * A handshake selects an alias first and requests the certificate chain and private key of that alias later on. To
+ * prevent a handshake from combining the certificate of one generation of key material with the private key of
+ * another, the aliases handed out by this class are prefixed with the generation of the key material they belong to.
+ */
+public class ReloadingX509KeyManager extends X509ExtendedKeyManager {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The character that separates the generation from the alias in the aliases handed out by this class.
+     */
+    private static final char GENERATION_SEPARATOR = ':';
+
+    /**
+     * The <code>FileSystemKeyStoreWrapper</code> that holds the key material.
+     */
+    private final FileSystemKeyStoreWrapper keyStoreWrapper;
+
+    /**
+     * The password of the private key entries in the keystore.
+     */
+    private final char[] entryPassword;
+
+    /**
+     * The minimum number of nanoseconds between two checks of the keystore file, or 0 when the file is never checked.
+     */
+    private final long checkIntervalNanos;
+
+    /**
+     * The <code>System.nanoTime()</code> after which the keystore file should be checked again.
+     */
+    private final AtomicLong nextCheck;
+
+    /**
+     * The key material that is used for new handshakes.
+     */
+    private volatile KeyMaterial current;
+
+    /**
+     * The key material that was used before the last reload, or <code>null</code> when the key material was never
+     * reloaded. Handshakes that selected an alias before the reload still need this key material.
+     */
+    private volatile KeyMaterial previous;
+
+    /**
+     * Constructs a new <code>ReloadingX509KeyManager</code> instance.
+     *
+     * @param keyStoreWrapper The <code>FileSystemKeyStoreWrapper</code> that holds the key material.
+     * @param entryPassword The password of the private key entries in the keystore.
+     * @param checkInterval The minimum number of milliseconds between two checks of the keystore file for changes, or
+     * 0 to never check for changes.
+     * @throws MachnosException with code {@link MachnosException#WRAPPED_EXCEPTION} when the key material cannot be
+     * loaded.
+     */
+    public ReloadingX509KeyManager(FileSystemKeyStoreWrapper keyStoreWrapper, char[] entryPassword, long checkInterval) {
+        this.keyStoreWrapper = keyStoreWrapper;
+        this.entryPassword = entryPassword;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, checkInterval));
+        this.nextCheck = new AtomicLong(System.nanoTime() + this.checkIntervalNanos);
+        try {
+            final var lastModified = keyStoreWrapper.getLastModified();
+            this.current = new KeyMaterial(0, lastModified, createDelegate());
+        } catch (GeneralSecurityException e) {
+            throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
+        }
+    }
+
+    /**
+     * Checks the keystore for changes and replaces the key material when the keystore is changed. When the changed key
+     * material cannot be loaded, for example because the file is only partially written, the current key material is
+     * kept and the keystore is loaded again on the next check.
+     *
+     * @return <code>true</code> when the key material is replaced, <code>false</code> otherwise.
+     */
+    public synchronized boolean reload() {
+        final var material = this.current;
+        try {
+            // Getting the keystore from the wrapper reloads it when the file is changed.
+            this.keyStoreWrapper.getKeyStore();
+            final var lastModified = this.keyStoreWrapper.getLastModified();
+            if (lastModified == material.lastModified) {
+                return false;
+            }
+            final var delegate = createDelegate();
+            this.previous = material;
+            this.current = new KeyMaterial(material.generation + 1, lastModified, delegate);
+            if (logger.isInfoEnabled()) {
+                logger.info("Reloaded the TLS key material from the keystore, new handshakes use generation " + (material.generation + 1) + ".");
+            }
+            return true;
+        } catch (GeneralSecurityException | MachnosException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Unable to reload the TLS key material from the keystore, continuing with the current key material.", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gives the number of times the key material is replaced.
+     *
+     * @return The generation of the key material that is used for new handshakes.
+     */
+    public long getGeneration() {
+        return this.current.generation;
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        final var material = currentMaterial();
+        return material.toAlias(material.delegate.chooseEngineServerAlias(keyType, issuers, engine));
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        final var material = currentMaterial();
+        return material.toAlias(material.delegate.chooseServerAlias(keyType, issuers, socket));
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] keyTypes, Principal[] issuers, SSLEngine engine) {
+        final var material = currentMaterial();
+        return material.toAlias(material.delegate.chooseEngineClientAlias(keyTypes, issuers, engine));
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyTypes, Principal[] issuers, Socket socket) {
+        final var material = currentMaterial();
+        return material.toAlias(material.delegate.chooseClientAlias(keyTypes, issuers, socket));
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        final var material = this.current;
+        return material.toAliases(material.delegate.getServerAliases(keyType, issuers));
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        final var material = this.current;
+        return material.toAliases(material.delegate.getClientAliases(keyType, issuers));
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        final var material = materialOf(alias);
+        return material == null ? null : material.delegate.getCertificateChain(stripGeneration(alias));
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        final var material = materialOf(alias);
+        return material == null ? null : material.delegate.getPrivateKey(stripGeneration(alias));
+    }
+
+    /**
+     * Gives the key material for a new handshake. When the check interval has passed the keystore is checked for
+     * changes first. Only one thread performs the check, other threads continue with the current key material.
+     *
+     * @return The key material to use.
+     */
+    private KeyMaterial currentMaterial() {
+        if (this.checkIntervalNanos > 0) {
+            final var now = System.nanoTime();
+            final var next = this.nextCheck.get();
+            if (now - next >= 0 && this.nextCheck.compareAndSet(next, now + this.checkIntervalNanos)) {
+                reload();
+            }
+        }
+        return this.current;
+    }
+
+    /**
+     * Gives the key material an alias that was handed out by this class belongs to.
+     *
+     * @param alias The alias, prefixed with the generation of the key material.
+     * @return The key material, or <code>null</code> when the key material of that generation is no longer available.
+     */
+    private KeyMaterial materialOf(String alias) {
+        if (alias == null) {
+            return null;
+        }
+        final var separatorIndex = alias.indexOf(GENERATION_SEPARATOR);
+        if (separatorIndex == -1) {
+            return null;
+        }
+        final long generation;
+        try {
+            generation = Long.parseLong(alias, 0, separatorIndex, 10);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        var material = this.current;
+        if (material.generation == generation) {
+            return material;
+        }
+        material = this.previous;
+        if (material != null && material.generation == generation) {
+            return material;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the generation prefix from an alias.
+     *
+     * @param alias The alias, prefixed with the generation of the key material.
+     * @return The alias in the keystore.
+     */
+    private static String stripGeneration(String alias) {
+        return alias.substring(alias.indexOf(GENERATION_SEPARATOR) + 1);
+    }
+
+    /**
+     * Creates a key manager for the current entries of the keystore.
+     *
+     * @return The <code>X509ExtendedKeyManager</code> that holds the key material.
+     * @throws GeneralSecurityException when the key material cannot be loaded.
+     */
+    private X509ExtendedKeyManager createDelegate() throws GeneralSecurityException {
+        final var keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(this.keyStoreWrapper.getKeyStore(), this.entryPassword);
+        for (final KeyManager keyManager : keyManagerFactory.getKeyManagers()) {
+            if (keyManager instanceof X509ExtendedKeyManager) {
+                return (X509ExtendedKeyManager) keyManager;
+            }
+        }
+        throw new GeneralSecurityException("No X509ExtendedKeyManager available for algorithm '" + KeyManagerFactory.getDefaultAlgorithm() + "'.");
+    }
+
+    /**
+     * A generation of key material.
+     */
+    private static final class KeyMaterial {
+
+        private final long generation;
+        private final long lastModified;
+        private final X509ExtendedKeyManager delegate;
+        private final String aliasPrefix;
+
+        private KeyMaterial(long generation, long lastModified, X509ExtendedKeyManager delegate) {
+            this.generation = generation;
+            this.lastModified = lastModified;
+            this.delegate = delegate;
+            this.aliasPrefix = Long.toString(generation) + GENERATION_SEPARATOR;
+        }
+
+        private String toAlias(String alias) {
+            return alias == null ? null : this.aliasPrefix + alias;
+        }
+
+        private String[] toAliases(String[] aliases) {
+            if (aliases == null) {
+                return null;
+            }
+            final var result = new String[aliases.length];
+            for (var i = 0; i < aliases.length; i++) {
+                result[i] = toAlias(aliases[i]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import com.machnos.api.gateway.server.configuration.KeyAlgorithm;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Generator of the self signed certificates that are used when the keystore of an https listener holds no key
+ * material.
+ */
+public final class SelfSignedCertificateGenerator {
+
+    /**
+     * The alias of the self signed certificate in the keystore.
+     */
+    public static final String ALIAS = "machnos-api-gateway-self-signed";
+
+    private SelfSignedCertificateGenerator() {
+    }
+
+    /**
+     * Generates a key pair and a self signed certificate for the public key.
+     *
+     * @param keyAlgorithm The <code>KeyAlgorithm</code> of the key pair.
+     * @param subjectName The common name of the subject of the certificate.
+     * @param hostNames The host names to add as subject alternative names.
+     * @param validity The period the certificate is valid, starting now.
+     * @return The <code>PrivateKeyEntry</code> that holds the private key and the certificate.
+     * @throws MachnosException with code {@link MachnosException#WRAPPED_EXCEPTION} when the key algorithm is not
+     * supported by the JVM or the certificate cannot be created.
+     */
+    public static KeyStore.PrivateKeyEntry generate(KeyAlgorithm keyAlgorithm, String subjectName, Collection<String> hostNames, Duration validity) {
+        try {
+            final var keyPairGenerator = createKeyPairGenerator(keyAlgorithm);
+            final var keyPair = keyPairGenerator.generateKeyPair();
+
+            final var now = Instant.now();
+            final var notBefore = Date.from(now);
+            final var notAfter = Date.from(now.plus(validity));
+
+            final var publicKeyInfo = SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded());
+            final var publicKeyExtensionUtils = new X509ExtensionUtils(new BcDigestCalculatorProvider().get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)));
+
+            final var contentSigner = new JcaContentSignerBuilder(getSignatureAlgorithm(keyAlgorithm)).build(keyPair.getPrivate());
+
+            final var generalNames = hostNames.stream()
+                    .distinct()
+                    .map(f -> new GeneralName(GeneralName.dNSName, f))
+                    .toArray(GeneralName[]::new);
+
+            final var certificateBuilder =
+                    new JcaX509v3CertificateBuilder(new X500Name("CN=Machnos,O=Machnos,C=NL"),
+                            BigInteger.valueOf(now.toEpochMilli()),
+                            notBefore,
+                            notAfter,
+                            new X500Name("CN=" + subjectName),
+                            keyPair.getPublic())
+                            .addExtension(Extension.subjectAlternativeName, true, new GeneralNames(generalNames))
+                            .addExtension(Extension.subjectKeyIdentifier, false, publicKeyExtensionUtils.createSubjectKeyIdentifier(publicKeyInfo))
+                            .addExtension(Extension.authorityKeyIdentifier, false, publicKeyExtensionUtils.createAuthorityKeyIdentifier(publicKeyInfo))
+                            .addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature))
+                            .addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
+                            .addExtension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(KeyPurposeId.id_kp_serverAuth));
+
+            final var cert = new JcaX509CertificateConverter()
+                    .setProvider(new BouncyCastleProvider()).getCertificate(certificateBuilder.build(contentSigner));
+            return new KeyStore.PrivateKeyEntry(keyPair.getPrivate(), new Certificate[] {cert});
+        } catch (GeneralSecurityException | CertIOException | OperatorCreationException e) {
+            throw new MachnosException(MachnosException.WRAPPED_EXCEPTION, e);
+        }
+    }
+
+    /**
+     * Checks if the public key of a certificate is generated with a <code>KeyAlgorithm</code>.
+     *
+     * @param keyAlgorithm The <code>KeyAlgorithm</code>.
+     * @param certificate The certificate to check.
+     * @return <code>true</code> when the public key matches the key algorithm, <code>false</code> otherwise.
+     */
+    public static boolean matches(KeyAlgorithm keyAlgorithm, X509Certificate certificate) {
+        final var publicKey = certificate.getPublicKey();
+        switch (keyAlgorithm) {
+            case EC_P256:
+                return publicKey instanceof ECPublicKey && ((ECPublicKey) publicKey).getParams().getOrder().bitLength() == 256;
+            case EC_P384:
+                return publicKey instanceof ECPublicKey && ((ECPublicKey) publicKey).getParams().getOrder().bitLength() == 384;
+            case ED25519:
+                return "Ed25519".equals(publicKey.getAlgorithm()) || "EdDSA".equals(publicKey.getAlgorithm());
+            case RSA_2048:
+                return publicKey instanceof RSAPublicKey && ((RSAPublicKey) publicKey).getModulus().bitLength() == 2048;
+            case RSA_4096:
+                return publicKey instanceof RSAPublicKey && ((RSAPublicKey) publicKey).getModulus().bitLength() == 4096;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Creates an initialized <code>KeyPairGenerator</code> for a <code>KeyAlgorithm</code>.
+     *
+     * @param keyAlgorithm The <code>KeyAlgorithm</code>.
+     * @return The <code>KeyPairGenerator</code>.
+     * @throws GeneralSecurityException when the key algorithm is not supported by the JVM.
+     */
+    private static KeyPairGenerator createKeyPairGenerator(KeyAlgorithm keyAlgorithm) throws GeneralSecurityException {
+        final KeyPairGenerator keyPairGenerator;
+        switch (keyAlgorithm) {
+            case EC_P256:
+                keyPairGenerator = KeyPairGenerator.getInstance("EC");
+                keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+                break;
+            case EC_P384:
+                keyPairGenerator = KeyPairGenerator.getInstance("EC");
+                keyPairGenerator.initialize(new ECGenParameterSpec("secp384r1"));
+                break;
+            case ED25519:
+                // Ed25519 is part of the JDK as of Java 15.
+                keyPairGenerator = KeyPairGenerator.getInstance("Ed25519");
+                break;
+            case RSA_2048:
+                keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+                keyPairGenerator.initialize(2048);
+                break;
+            case RSA_4096:
+                keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+                keyPairGenerator.initialize(4096);
+                break;
+            default:
+                throw new GeneralSecurityException("Unsupported key algorithm '" + keyAlgorithm + "'.");
+        }
+        return keyPairGenerator;
+    }
+
+    /**
+     * Gives the algorithm that is used to sign the certificate with a key of a <code>KeyAlgorithm</code>.
+     *
+     * @param keyAlgorithm The <code>KeyAlgorithm</code>.
+     * @return The signature algorithm.
+     */
+    private static String getSignatureAlgorithm(KeyAlgorithm keyAlgorithm) {
+        switch (keyAlgorithm) {
+            case EC_P256:
+                return "SHA256withECDSA";
+            case EC_P384:
+                return "SHA384withECDSA";
+            case ED25519:
+                return "Ed25519";
+            default:
+                return "SHA256withRSA";
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the TLS handshakes on the https listeners of an interface. The counters are updated by the I/O threads
+ * that perform the handshakes and can be read from any thread.
+ */
+public class TlsStatistics {
+
+    private final LongAdder fullHandshakes = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
+    private final LongAdder failedHandshakes = new LongAdder();
+
+    void fullHandshake() {
+        this.fullHandshakes.increment();
+    }
+
+    void resumedHandshake() {
+        this.resumedHandshakes.increment();
+    }
+
+    void failedHandshake() {
+        this.failedHandshakes.increment();
+    }
+
+    /**
+     * Gives the number of handshakes that established a new session. A full handshake requires a signature with the
+     * private key of the server, which makes it far more expensive than a resumed handshake.
+     *
+     * @return The number of full handshakes.
+     */
+    public long getFullHandshakes() {
+        return this.fullHandshakes.sum();
+    }
+
+    /**
+     * Gives the number of handshakes that resumed a session from the session cache or from a session ticket.
+     *
+     * @return The number of resumed handshakes.
+     */
+    public long getResumedHandshakes() {
+        return this.resumedHandshakes.sum();
+    }
+
+    /**
+     * Gives the number of handshakes that failed.
+     *
+     * @return The number of failed handshakes.
+     */
+    public long getFailedHandshakes() {
+        return this.failedHandshakes.sum();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.functions.Function;
+import com.machnos.api.gateway.server.domain.api.functions.Pipeline;
+import com.machnos.api.gateway.server.domain.api.functions.Result;
+
+import java.util.stream.Collectors;
+
+/**
+ * <code>Pipeline.Listener</code> that records a child span of the gateway span for each executed
+ * <code>Function</code>.
+ */
+public class FunctionSpans implements Pipeline.Listener {
+
+    private final Span parent;
+    private Span current;
+
+    /**
+     * Constructs a new <code>FunctionSpans</code> instance.
+     *
+     * @param parent The <code>Span</code> of the gateway the function spans are children of.
+     */
+    public FunctionSpans(Span parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void functionStarted(Function function) {
+        this.current = this.parent.startChild(function.getName(), Span.Kind.INTERNAL)
+                .setAttribute("machnos.function.id", function.getId());
+    }
+
+    @Override
+    public void functionCompleted(Function function, Result result) {
+        if (result.hasExceptions()) {
+            this.current.setError("Error code(s): " + result.getExceptions().stream()
+                    .map(MachnosException::getErrorCode)
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", ")));
+        }
+        this.current.end();
+        this.current = null;
+    }
+}
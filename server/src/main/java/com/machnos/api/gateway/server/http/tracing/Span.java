@@ -0,0 +1,209 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed operation of a sampled request. Spans are only created for sampled requests, and are handed to the
+ * <code>SpanExporter</code> of their <code>Tracer</code> when they end.
+ *
+ * A span is not thread safe, but it may be started, modified and ended on different threads, as long as those
+ * threads hand over the span in order, like the threads that handle an exchange do.
+ */
+public final class Span {
+
+    /**
+     * The kinds of spans, with their OTLP values.
+     */
+    public enum Kind {
+        INTERNAL(1), SERVER(2), CLIENT(3);
+
+        private final int value;
+
+        Kind(int value) {
+            this.value = value;
+        }
+
+        /**
+         * Gives the value of the kind in the OTLP format.
+         *
+         * @return The OTLP value.
+         */
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+    private final Tracer tracer;
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final long parentSpanId;
+    private final Kind kind;
+    private final long startTime;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private String name;
+    private long endTime;
+    private boolean error;
+    private String statusMessage;
+
+    /**
+     * Constructs a new <code>Span</code> instance that starts now.
+     *
+     * @param tracer The <code>Tracer</code> the span is exported by.
+     * @param traceIdHigh The most significant 64 bits of the trace id.
+     * @param traceIdLow The least significant 64 bits of the trace id.
+     * @param parentSpanId The id of the parent span, or 0 when the span is the root of the trace.
+     * @param name The name of the span.
+     * @param kind The <code>Kind</code> of the span.
+     */
+    Span(Tracer tracer, long traceIdHigh, long traceIdLow, long parentSpanId, String name, Kind kind) {
+        this.tracer = tracer;
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = Tracer.newId();
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startTime = tracer.now();
+    }
+
+    /**
+     * Starts a child span of this span.
+     *
+     * @param name The name of the child span.
+     * @param kind The <code>Kind</code> of the child span.
+     * @return The child <code>Span</code>.
+     */
+    public Span startChild(String name, Kind kind) {
+        return new Span(this.tracer, this.traceIdHigh, this.traceIdLow, this.spanId, name, kind);
+    }
+
+    /**
+     * Gives the <code>traceparent</code> header that makes this span the parent of the span of the next hop.
+     *
+     * @return The value of the <code>traceparent</code> header.
+     */
+    public String toTraceparent() {
+        return TraceContext.format(this.traceIdHigh, this.traceIdLow, this.spanId, true);
+    }
+
+    /**
+     * Changes the name of the span, for example when the route of a request is known.
+     *
+     * @param name The name of the span.
+     * @return This <code>Span</code>.
+     */
+    public Span setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Sets an attribute of the span.
+     *
+     * @param key The key of the attribute.
+     * @param value The value of the attribute, a <code>String</code>, <code>Long</code>, <code>Integer</code> or
+     *              <code>Boolean</code>.
+     * @return This <code>Span</code>.
+     */
+    public Span setAttribute(String key, Object value) {
+        if (value != null) {
+            this.attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Marks the span as failed.
+     *
+     * @param message The description of the failure, or <code>null</code>.
+     * @return This <code>Span</code>.
+     */
+    public Span setError(String message) {
+        this.error = true;
+        this.statusMessage = message;
+        return this;
+    }
+
+    /**
+     * Ends the span and hands it to the exporter. Ending a span that is already ended does nothing.
+     */
+    public void end() {
+        if (this.endTime != 0) {
+            return;
+        }
+        this.endTime = Math.max(this.startTime, this.tracer.now());
+        this.tracer.export(this);
+    }
+
+    /**
+     * Gives whether the span is ended.
+     *
+     * @return <code>true</code> when the span is ended, <code>false</code> otherwise.
+     */
+    public boolean isEnded() {
+        return this.endTime != 0;
+    }
+
+    long getTraceIdHigh() {
+        return this.traceIdHigh;
+    }
+
+    long getTraceIdLow() {
+        return this.traceIdLow;
+    }
+
+    long getSpanId() {
+        return this.spanId;
+    }
+
+    long getParentSpanId() {
+        return this.parentSpanId;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    Kind getKind() {
+        return this.kind;
+    }
+
+    long getStartTime() {
+        return this.startTime;
+    }
+
+    long getEndTime() {
+        return this.endTime;
+    }
+
+    Map<String, Object> getAttributes() {
+        return this.attributes;
+    }
+
+    boolean isError() {
+        return this.error;
+    }
+
+    String getStatusMessage() {
+        return this.statusMessage;
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+import com.machnos.api.gateway.server.configuration.Tracing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exporter that writes the ended spans to a file in the OTLP/JSON format. Each batch of spans is written as a single
+ * line holding an export request, the format the file exporter of the OpenTelemetry Collector writes and its file
+ * receiver reads.
+ *
+ * The spans are handed to a background thread through a bounded queue. When the background thread cannot keep up
+ * and the queue is full, the spans are dropped instead of slowing down the requests.
+ */
+public class SpanExporter {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The maximum number of milliseconds the background thread waits for a span before it checks whether it is
+     * stopped.
+     */
+    private static final long POLL_INTERVAL = 100;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BlockingQueue<Span> queue;
+    private final String serviceName;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private final LongAdder dropped = new LongAdder();
+    private volatile long exported;
+
+    private volatile boolean running;
+    private Thread thread;
+    private FileChannel channel;
+    private long fileSize;
+
+    /**
+     * Constructs a new <code>SpanExporter</code> instance.
+     *
+     * @param tracing The tracing settings of the interface.
+     */
+    public SpanExporter(Tracing tracing) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, tracing.bufferSize));
+        this.serviceName = tracing.serviceName;
+        this.batchSize = Math.max(1, tracing.batchSize);
+        this.flushInterval = Math.max(0, tracing.flushInterval);
+        this.file = Paths.get(tracing.file);
+        this.maxFileSize = tracing.maxFileSize;
+        this.maxFiles = Math.max(0, tracing.maxFiles);
+    }
+
+    /**
+     * Starts the background thread that writes the spans to the file. If the exporter is already started, this method
+     * does nothing.
+     */
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        this.thread = new Thread(this::run, "machnos-tracing");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops the background thread after it has written the spans that are in the queue. If the exporter is not
+     * started, this method does nothing.
+     */
+    public synchronized void stop() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+    }
+
+    /**
+     * Hands an ended span to the background thread. This method never blocks.
+     *
+     * @param span The ended <code>Span</code>.
+     */
+    void export(Span span) {
+        if (!this.queue.offer(span)) {
+            this.dropped.increment();
+        }
+    }
+
+    /**
+     * Gives the number of spans that are written to the file.
+     *
+     * @return The number of exported spans.
+     */
+    public long getExported() {
+        return this.exported;
+    }
+
+    /**
+     * Gives the number of spans that are not exported because the queue was full.
+     *
+     * @return The number of dropped spans.
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * The loop of the background thread, which collects the spans in batches and writes each batch when it is full
+     * or when its first span has waited for the flush interval.
+     */
+    private void run() {
+        final List<Span> batch = new ArrayList<>(this.batchSize);
+        var batchStart = 0L;
+        while (true) {
+            // Read the running state before draining, so the spans exported before a stop are always written.
+            final var stopping = !this.running;
+            try {
+                if (batch.isEmpty()) {
+                    final var span = this.queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (span != null) {
+                        batch.add(span);
+                        batchStart = System.nanoTime();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                    final var remaining = this.flushInterval - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart);
+                    if (batch.size() < this.batchSize && remaining > 0 && !stopping) {
+                        final var span = this.queue.poll(Math.min(remaining, POLL_INTERVAL), TimeUnit.MILLISECONDS);
+                        if (span != null) {
+                            batch.add(span);
+                        }
+                        continue;
+                    }
+                    write(batch);
+                    batch.clear();
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (stopping && this.queue.isEmpty()) {
+                break;
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+        closeFile();
+    }
+
+    /**
+     * Writes a batch of spans as a single line, rolling the file over first when it would exceed the maximum size.
+     * When the spans cannot be written they are discarded, so a full disk does not stop the exporter.
+     *
+     * @param batch The spans to write.
+     */
+    private void write(List<Span> batch) {
+        final var builder = new StringBuilder(512 * batch.size());
+        encode(batch, builder);
+        builder.append('\n');
+        final var output = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            if (this.channel == null) {
+                openFile();
+            }
+            if (this.fileSize > 0 && this.fileSize + output.remaining() > this.maxFileSize) {
+                rollOver();
+                openFile();
+            }
+            while (output.hasRemaining()) {
+                this.fileSize += this.channel.write(output);
+            }
+            this.exported += batch.size();
+        } catch (IOException e) {
+            if (logger.isErrorEnabled()) {
+                logger.error("Unable to write the spans to '" + this.file + "'.", e);
+            }
+            closeFile();
+        }
+    }
+
+    private void openFile() throws IOException {
+        final var parent = this.file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.fileSize = this.channel.size();
+    }
+
+    private void closeFile() {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Unable to close the span file '" + this.file + "'.", e);
+            }
+        }
+        this.channel = null;
+    }
+
+    /**
+     * Renames the file with the suffix <code>.1</code>, after shifting the older files to the next suffix.
+     */
+    private void rollOver() throws IOException {
+        closeFile();
+        if (this.maxFiles == 0) {
+            Files.deleteIfExists(this.file);
+            return;
+        }
+        Files.deleteIfExists(rolledFile(this.maxFiles));
+        for (var i = this.maxFiles - 1; i >= 1; i--) {
+            final var rolled = rolledFile(i);
+            if (Files.exists(rolled)) {
+                Files.move(rolled, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(this.file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolledFile(int index) {
+        return this.file.resolveSibling(this.file.getFileName() + "." + index);
+    }
+
+    /**
+     * Formats a batch of spans as an OTLP/JSON export request.
+     *
+     * @param batch The spans to format.
+     * @param builder The <code>StringBuilder</code> to append the export request to.
+     */
+    void encode(List<Span> batch, StringBuilder builder) {
+        builder.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        appendAttribute("service.name", this.serviceName, builder);
+        builder.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"machnos-api-gateway\"},\"spans\":[");
+        for (var i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            appendSpan(batch.get(i), builder);
+        }
+        builder.append("]}]}]}");
+    }
+
+    private static void appendSpan(Span span, StringBuilder builder) {
+        builder.append("{\"traceId\":\"");
+        appendHex(span.getTraceIdHigh(), builder);
+        appendHex(span.getTraceIdLow(), builder);
+        builder.append("\",\"spanId\":\"");
+        appendHex(span.getSpanId(), builder);
+        builder.append('"');
+        if (span.getParentSpanId() != 0) {
+            builder.append(",\"parentSpanId\":\"");
+            appendHex(span.getParentSpanId(), builder);
+            builder.append('"');
+        }
+        builder.append(",\"name\":");
+        appendString(span.getName(), builder);
+        builder.append(",\"kind\":").append(span.getKind().getValue())
+                .append(",\"startTimeUnixNano\":\"").append(span.getStartTime())
+                .append("\",\"endTimeUnixNano\":\"").append(span.getEndTime())
+                .append("\",\"attributes\":[");
+        var first = true;
+        for (final var attribute : span.getAttributes().entrySet()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            appendAttribute(attribute.getKey(), attribute.getValue(), builder);
+        }
+        builder.append(']');
+        if (span.isError()) {
+            builder.append(",\"status\":{\"code\":2");
+            if (span.getStatusMessage() != null) {
+                builder.append(",\"message\":");
+                appendString(span.getStatusMessage(), builder);
+            }
+            builder.append('}');
+        }
+        builder.append('}');
+    }
+
+    private static void appendAttribute(String key, Object value, StringBuilder builder) {
+        builder.append("{\"key\":");
+        appendString(key, builder);
+        builder.append(",\"value\":{");
+        if (value instanceof Long || value instanceof Integer) {
+            // 64 bit integers are strings in the JSON mapping of protocol buffers.
+            builder.append("\"intValue\":\"").append(value).append('"');
+        } else if (value instanceof Boolean) {
+            builder.append("\"boolValue\":").append(value);
+        } else {
+            builder.append("\"stringValue\":");
+            appendString(String.valueOf(value), builder);
+        }
+        builder.append("}}");
+    }
+
+    private static void appendHex(long id, StringBuilder builder) {
+        for (var shift = 60; shift >= 0; shift -= 4) {
+            builder.append(HEX[(int) ((id >>> shift) & 0xf)]);
+        }
+    }
+
+    private static void appendString(String value, StringBuilder builder) {
+        builder.append('"');
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+/**
+ * The trace context of a request, as carried by the <code>traceparent</code> header of the W3C Trace Context
+ * recommendation: <code>version-traceid-parentid-flags</code>, for example
+ * <code>00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01</code>.
+ */
+public final class TraceContext {
+
+    /**
+     * The length of a version 00 <code>traceparent</code> header.
+     */
+    static final int LENGTH = 55;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final boolean sampled;
+
+    /**
+     * Constructs a new <code>TraceContext</code> instance.
+     *
+     * @param traceIdHigh The most significant 64 bits of the trace id.
+     * @param traceIdLow The least significant 64 bits of the trace id.
+     * @param spanId The id of the span of the caller.
+     * @param sampled Whether the caller may have recorded the trace.
+     */
+    public TraceContext(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Parses a <code>traceparent</code> header. Headers of a future version are parsed as version 00, as the
+     * recommendation prescribes.
+     *
+     * @param traceparent The value of the header.
+     * @return The <code>TraceContext</code>, or <code>null</code> when the header is invalid.
+     */
+    public static TraceContext parse(String traceparent) {
+        if (traceparent == null || traceparent.length() < LENGTH || (traceparent.length() > LENGTH && traceparent.charAt(LENGTH) != '-')) {
+            return null;
+        }
+        for (var i = 0; i < LENGTH; i++) {
+            final var c = traceparent.charAt(i);
+            if (i == 2 || i == 35 || i == 52 ? c != '-' : !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return null;
+            }
+        }
+        final var version = parseHex(traceparent, 0, 2);
+        if (version == 0xff || (version == 0 && traceparent.length() != LENGTH)) {
+            return null;
+        }
+        final var traceIdHigh = parseHex(traceparent, 3, 19);
+        final var traceIdLow = parseHex(traceparent, 19, 35);
+        final var spanId = parseHex(traceparent, 36, 52);
+        if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+            return null;
+        }
+        return new TraceContext(traceIdHigh, traceIdLow, spanId, (parseHex(traceparent, 53, 55) & 1) == 1);
+    }
+
+    /**
+     * Formats a <code>traceparent</code> header.
+     *
+     * @param traceIdHigh The most significant 64 bits of the trace id.
+     * @param traceIdLow The least significant 64 bits of the trace id.
+     * @param spanId The id of the span that calls the next hop.
+     * @param sampled Whether the trace is recorded.
+     * @return The value of the header.
+     */
+    public static String format(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        final var chars = new char[LENGTH];
+        chars[0] = '0';
+        chars[1] = '0';
+        chars[2] = '-';
+        putHex(traceIdHigh, chars, 3);
+        putHex(traceIdLow, chars, 19);
+        chars[35] = '-';
+        putHex(spanId, chars, 36);
+        chars[52] = '-';
+        chars[53] = '0';
+        chars[54] = sampled ? '1' : '0';
+        return new String(chars);
+    }
+
+    /**
+     * Formats a 64 bit id as 16 lower case hexadecimal characters.
+     *
+     * @param id The id.
+     * @param chars The characters to write the id to.
+     * @param offset The index of the first character.
+     */
+    static void putHex(long id, char[] chars, int offset) {
+        for (var i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (id & 0xf)];
+            id >>>= 4;
+        }
+    }
+
+    /**
+     * Parses validated lower case hexadecimal characters, at most 16.
+     *
+     * @param value The string that holds the characters.
+     * @param start The index of the first character.
+     * @param end The index after the last character.
+     * @return The parsed value.
+     */
+    private static long parseHex(String value, int start, int end) {
+        var result = 0L;
+        for (var i = start; i < end; i++) {
+            final var c = value.charAt(i);
+            result = (result << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return result;
+    }
+
+    /**
+     * Gives the most significant 64 bits of the trace id.
+     *
+     * @return The most significant bits of the trace id.
+     */
+    public long getTraceIdHigh() {
+        return this.traceIdHigh;
+    }
+
+    /**
+     * Gives the least significant 64 bits of the trace id.
+     *
+     * @return The least significant bits of the trace id.
+     */
+    public long getTraceIdLow() {
+        return this.traceIdLow;
+    }
+
+    /**
+     * Gives the id of the span of the caller.
+     *
+     * @return The span id.
+     */
+    public long getSpanId() {
+        return this.spanId;
+    }
+
+    /**
+     * Gives whether the caller may have recorded the trace.
+     *
+     * @return <code>true</code> when the sampled flag is set, <code>false</code> otherwise.
+     */
+    public boolean isSampled() {
+        return this.sampled;
+    }
+
+    @Override
+    public String toString() {
+        return format(this.traceIdHigh, this.traceIdLow, this.spanId, this.sampled);
+    }
+}
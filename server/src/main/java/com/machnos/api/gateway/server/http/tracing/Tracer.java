@@ -0,0 +1,227 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+import com.machnos.api.gateway.server.configuration.Tracing;
+import com.machnos.api.gateway.server.http.ratelimit.RateLimiter;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HttpString;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts the traces of the requests and exports their spans. Whether a request is sampled is decided once, when its
+ * first span would be started, so the requests that are not sampled create no spans at all.
+ *
+ * The sampling decision is made in three steps:
+ * <ol>
+ *     <li>When the request has a trace context and the sampler is parent based, the sampled flag of the caller
+ *     decides.</li>
+ *     <li>Otherwise the trace id decides: the trace is sampled when its least significant bits fall below the sample
+ *     ratio. The decision only depends on the trace id, so all gateways with the same ratio take the same
+ *     decision.</li>
+ *     <li>A sampled trace is dropped when the maximum number of traces per second is exceeded.</li>
+ * </ol>
+ */
+public class Tracer {
+
+    /**
+     * The key under which the span of the gateway is attached to the exchanges of sampled requests.
+     */
+    public static final AttachmentKey<Span> SPAN = AttachmentKey.create(Span.class);
+
+    /**
+     * The name of the header that holds the trace context.
+     */
+    public static final HttpString TRACEPARENT = new HttpString("traceparent");
+
+    /**
+     * The name of the header that holds the vendor specific trace state, which is forwarded as is.
+     */
+    public static final HttpString TRACESTATE = new HttpString("tracestate");
+
+    /**
+     * The key of the traces in the rate limiter.
+     */
+    private static final Object RATE_LIMIT_KEY = new Object();
+
+    private final boolean parentBased;
+    private final boolean sampleAll;
+
+    /**
+     * The trace ids with their least significant 63 bits below this value are sampled.
+     */
+    private final long sampleThreshold;
+
+    /**
+     * The <code>RateLimiter</code> of the sampled traces, or <code>null</code> when the sampled traces are not
+     * limited.
+     */
+    private final RateLimiter rateLimiter;
+
+    private final SpanExporter exporter;
+
+    /**
+     * The difference between the epoch time and <code>System.nanoTime()</code> in nanoseconds.
+     */
+    private final long epochOffset;
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    /**
+     * Constructs a new <code>Tracer</code> instance.
+     *
+     * @param tracing The tracing settings of the interface.
+     */
+    public Tracer(Tracing tracing) {
+        this(tracing, new SpanExporter(tracing));
+    }
+
+    /**
+     * Constructs a new <code>Tracer</code> instance.
+     *
+     * @param tracing The tracing settings of the interface.
+     * @param exporter The <code>SpanExporter</code> the ended spans are handed to.
+     */
+    Tracer(Tracing tracing, SpanExporter exporter) {
+        this.parentBased = tracing.parentBased;
+        this.sampleAll = tracing.sampleRatio >= 1;
+        this.sampleThreshold = tracing.sampleRatio > 0 ? (long) (tracing.sampleRatio * Long.MAX_VALUE) : 0;
+        this.rateLimiter = tracing.maxTracesPerSecond > 0 ? new RateLimiter(tracing.maxTracesPerSecond, Math.max(1, (int) Math.ceil(tracing.maxTracesPerSecond))) : null;
+        this.exporter = exporter;
+        this.epochOffset = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+    }
+
+    /**
+     * Starts the background thread of the exporter.
+     */
+    public void start() {
+        this.exporter.start();
+    }
+
+    /**
+     * Stops the background thread of the exporter after the ended spans are written.
+     */
+    public void stop() {
+        this.exporter.stop();
+    }
+
+    /**
+     * Starts the first span of the gateway in a trace, when the trace is sampled.
+     *
+     * @param parent The <code>TraceContext</code> of the caller, or <code>null</code> when the request starts a new
+     *               trace.
+     * @param name The name of the span.
+     * @param kind The <code>Kind</code> of the span.
+     * @return The <code>Span</code>, or <code>null</code> when the trace is not sampled.
+     */
+    public Span startTrace(TraceContext parent, String name, Span.Kind kind) {
+        final var traceIdLow = parent == null ? newId() : parent.getTraceIdLow();
+        if (!sample(parent, traceIdLow)) {
+            return null;
+        }
+        final var traceIdHigh = parent == null ? ThreadLocalRandom.current().nextLong() : parent.getTraceIdHigh();
+        return new Span(this, traceIdHigh, traceIdLow, parent == null ? 0 : parent.getSpanId(), name, kind);
+    }
+
+    /**
+     * Decides whether a trace is sampled.
+     *
+     * @param parent The <code>TraceContext</code> of the caller, or <code>null</code>.
+     * @param traceIdLow The least significant 64 bits of the trace id.
+     * @return <code>true</code> when the trace is sampled, <code>false</code> otherwise.
+     */
+    boolean sample(TraceContext parent, long traceIdLow) {
+        final boolean sample;
+        if (parent != null && this.parentBased) {
+            sample = parent.isSampled();
+        } else {
+            sample = this.sampleAll || (traceIdLow & Long.MAX_VALUE) < this.sampleThreshold;
+        }
+        if (!sample) {
+            return false;
+        }
+        if (this.rateLimiter != null && this.rateLimiter.tryAcquire(RATE_LIMIT_KEY) != 0) {
+            this.rateLimited.increment();
+            return false;
+        }
+        this.sampled.increment();
+        return true;
+    }
+
+    /**
+     * Gives the current time.
+     *
+     * @return The number of nanoseconds since the epoch.
+     */
+    long now() {
+        return System.nanoTime() + this.epochOffset;
+    }
+
+    /**
+     * Creates a random span id or half of a trace id, which is never 0.
+     *
+     * @return The id.
+     */
+    static long newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * Hands an ended span to the exporter.
+     *
+     * @param span The ended <code>Span</code>.
+     */
+    void export(Span span) {
+        this.exporter.export(span);
+    }
+
+    /**
+     * Gives the number of sampled traces.
+     *
+     * @return The number of sampled traces.
+     */
+    public long getSampled() {
+        return this.sampled.sum();
+    }
+
+    /**
+     * Gives the number of traces that were not sampled because the maximum number of traces per second was exceeded.
+     *
+     * @return The number of rate limited traces.
+     */
+    public long getRateLimited() {
+        return this.rateLimited.sum();
+    }
+
+    /**
+     * Gives the <code>SpanExporter</code> of this tracer.
+     *
+     * @return The <code>SpanExporter</code>.
+     */
+    public SpanExporter getExporter() {
+        return this.exporter;
+    }
+}
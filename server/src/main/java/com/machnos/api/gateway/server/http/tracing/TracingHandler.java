@@ -0,0 +1,82 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+import com.machnos.api.gateway.server.http.routing.RouteHandler;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * <code>HttpHandler</code> that starts the span of the gateway for each sampled request, and ends it when the exchange
+ * completes. The span is attached to the exchange as {@link Tracer#SPAN}, so the pipeline and the upstream calls can
+ * record their spans as its children.
+ *
+ * The trace context headers of requests that are not sampled are left alone, so they are forwarded to the upstream as
+ * they are and the requests pay nothing but the sampling decision.
+ */
+public class TracingHandler implements HttpHandler, ExchangeCompletionListener {
+
+    private final Tracer tracer;
+    private final HttpHandler next;
+
+    /**
+     * Constructs a new <code>TracingHandler</code> instance.
+     *
+     * @param tracer The <code>Tracer</code> that starts the traces.
+     * @param next The handler the requests are handed to.
+     */
+    public TracingHandler(Tracer tracer, HttpHandler next) {
+        this.tracer = tracer;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final var traceparent = exchange.getRequestHeaders().getFirst(Tracer.TRACEPARENT);
+        final var span = this.tracer.startTrace(traceparent == null ? null : TraceContext.parse(traceparent), exchange.getRequestMethod().toString(), Span.Kind.SERVER);
+        if (span != null) {
+            span.setAttribute("http.request.method", exchange.getRequestMethod().toString())
+                    .setAttribute("url.path", exchange.getRequestPath());
+            exchange.putAttachment(Tracer.SPAN, span);
+            exchange.addExchangeCompleteListener(this);
+        }
+        this.next.handleRequest(exchange);
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            final var span = exchange.getAttachment(Tracer.SPAN);
+            final var status = exchange.getStatusCode();
+            final var route = exchange.getAttachment(RouteHandler.ROUTE);
+            if (route != null) {
+                span.setName(exchange.getRequestMethod() + " " + route.getPathTemplate())
+                        .setAttribute("http.route", route.getPathTemplate())
+                        .setAttribute("machnos.api", route.getName());
+            }
+            span.setAttribute("http.response.status_code", status);
+            if (status >= 500) {
+                span.setError(null);
+            }
+            span.end();
+        } finally {
+            nextListener.proceed();
+        }
+    }
+}
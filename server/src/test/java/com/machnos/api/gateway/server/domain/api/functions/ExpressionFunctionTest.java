@@ -0,0 +1,164 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>ExpressionFunction</code> class.
+ */
+public class ExpressionFunctionTest {
+
+    /**
+     * Test evaluating a pricing expression, and that it gives the same outcome as the chain of
+     * <code>MathFunction</code>s it replaces.
+     */
+    @Test
+    public void testPricing() {
+        final var price = new NumberVariable().setName("price").setValue(new BigDecimal("19.99"));
+        final var quantity = new NumberVariable().setName("quantity").setScale(0).setValue(new BigDecimal(3));
+        final var discount = new NumberVariable().setName("discount").setScale(3).setValue(new BigDecimal("0.125"));
+        final var variables = new Variables().add(price).add(quantity).add(discount);
+
+        // 1 - discount takes the scale of the literal, so the factor is 0.88.
+        final var result = evaluate("round(price * quantity * (1 - discount), 1)", variables);
+        assertFalse(result.hasExceptions());
+        assertEquals("52.8", result.getOutputVariables().getNumberVariable("total").getValue().toString());
+
+        final var one = new NumberVariable().setName("one").setValue(BigDecimal.ONE);
+        final var subtotal = MathFunction.multiply(price, quantity, "subtotal").getOutputVariables().getNumberVariable("subtotal");
+        final var factor = MathFunction.subtract(one, discount, "factor").getOutputVariables().getNumberVariable("factor");
+        final var total = MathFunction.multiply(subtotal, factor, "total").getOutputVariables().getNumberVariable("total");
+        assertEquals(total.setScale(1).getValue(), result.getOutputVariables().getNumberVariable("total").getValue());
+
+        // The variables of the expression are not changed.
+        assertEquals("19.99", price.getValue().toString());
+        assertEquals("0.125", discount.getValue().toString());
+    }
+
+    /**
+     * Test the precedence of the operators, parentheses, unary minus and the functions.
+     */
+    @Test
+    public void testOperators() {
+        final var variables = new Variables()
+                .add(new NumberVariable().setName("a").setValue(new BigDecimal("2")))
+                .add(new NumberVariable().setName("b").setValue(new BigDecimal("3")))
+                .add(new NumberVariable().setName("path.c").setValue(new BigDecimal("-4.5")));
+        assertEquals("8.00", value("a + b * 2", variables));
+        assertEquals("10.00", value("(a + b) * 2", variables));
+        assertEquals("-1.00", value("-a + b - 2", variables));
+        assertEquals("0.67", value("a / b", variables));
+        assertEquals("4.50", value("abs(path.c)", variables));
+        assertEquals("-4.50", value("min(a, min(b, path.c))", variables));
+        assertEquals("3.00", value("max(a, b)", variables));
+        assertEquals("0.125", value("0.125", variables));
+        assertEquals("2.67", value("a + 2 / 3", variables));
+        assertEquals("1", value("round(a / b, 0)", variables));
+    }
+
+    /**
+     * Test that a compiled expression gives the same outcome each time it is executed, with <code>Variables</code>
+     * that hold the variables in the resolved slots, and that an existing target variable takes the outcome.
+     */
+    @Test
+    public void testCompile() {
+        final var slots = new VariableSlots();
+        final var compiled = new ExpressionFunction().compile(Map.of(
+                ExpressionFunction.INPUT_KEY_EXPRESSION, "1 + a * 2",
+                ExpressionFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "a"), slots);
+        assertEquals(1, slots.size());
+
+        for (var i = 0; i < 3; i++) {
+            final var a = new NumberVariable().setName("a").setScale(1).setRoundingMode(RoundingMode.UP).setValue(new BigDecimal(i));
+            final var result = compiled.execute(new Variables(slots).add(a));
+            assertFalse(result.hasExceptions());
+            assertSame(a, result.getOutputVariables().getNumberVariable("a"));
+            assertEquals(new BigDecimal(1 + i * 2).setScale(2), a.getValue());
+        }
+    }
+
+    /**
+     * Test evaluating an expression of which a variable is missing or has no value.
+     */
+    @Test
+    public void testMissingVariable() {
+        final var variables = new Variables().add(new NumberVariable().setName("empty"));
+
+        var result = evaluate("missing * 2", variables);
+        assertEquals(1, result.getExceptions().size());
+        assertEquals(MachnosException.MISSING_VARIABLE, result.getExceptions().get(0).getErrorCode());
+
+        result = evaluate("2 * empty", variables);
+        assertEquals(1, result.getExceptions().size());
+        assertEquals(MachnosException.MISSING_VALUE, result.getExceptions().get(0).getErrorCode());
+    }
+
+    /**
+     * Test that invalid expressions are rejected when the function is compiled.
+     */
+    @Test
+    public void testInvalidConfiguration() {
+        final var function = Functions.getFunction("Expression");
+        for (final var expression : List.of("", "a +", "(a", "a b", "round(a)", "round(a, b)", "power(a, 2)", "1..2", "a * )")) {
+            final var exception = assertThrows(MachnosException.class, () -> function.compile(Map.of(
+                    ExpressionFunction.INPUT_KEY_EXPRESSION, expression,
+                    ExpressionFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "total"), new VariableSlots()), expression);
+            assertEquals(MachnosException.INVALID_FUNCTION_CONFIGURATION, exception.getErrorCode());
+        }
+        final var exception = assertThrows(MachnosException.class, () -> function.compile(Map.of(ExpressionFunction.INPUT_KEY_EXPRESSION, "a"), null));
+        assertEquals(MachnosException.INVALID_FUNCTION_CONFIGURATION, exception.getErrorCode());
+    }
+
+    /**
+     * Evaluates an expression into the <code>total</code> variable.
+     *
+     * @param expression The expression.
+     * @param variables The input <code>Variables</code>.
+     * @return The <code>Result</code> of the execution.
+     */
+    private static Result evaluate(String expression, Variables variables) {
+        return new ExpressionFunction().execute(variables, Map.of(
+                ExpressionFunction.INPUT_KEY_EXPRESSION, expression,
+                ExpressionFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "total"));
+    }
+
+    /**
+     * Evaluates an expression and gives its outcome as text.
+     *
+     * @param expression The expression.
+     * @param variables The input <code>Variables</code>.
+     * @return The outcome.
+     */
+    private static String value(String expression, Variables variables) {
+        final var result = evaluate(expression, variables);
+        assertFalse(result.hasExceptions(), expression);
+        return result.getOutputVariables().getNumberVariable("total").getValue().toString();
+    }
+}
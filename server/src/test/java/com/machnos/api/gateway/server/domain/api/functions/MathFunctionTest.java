@@ -17,13 +17,18 @@
 
 package com.machnos.api.gateway.server.domain.api.functions;
 
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.ValidationException;
 import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.VariableSlots;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test class for the <code>MathFunction</code> class.
@@ -151,4 +156,95 @@ public class MathFunctionTest {
         assertFalse(result.hasExceptions());
         assertEquals(two.getValue(), result.getOutputVariables().getNumberVariable(five.getName()).getValue());
     }
+
+    /**
+     * Test executing a compiled <code>MathFunction</code> more than once, with <code>Variables</code> that hold the
+     * variables in the resolved slots and with <code>Variables</code> that hold them by name.
+     */
+    @Test
+    public void testCompile() {
+        final var slots = new VariableSlots();
+        final var compiled = new MathFunction().compile(Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "price",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_MULTIPLY,
+                MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "quantity",
+                MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "total"), slots);
+        assertEquals(3, slots.size());
+
+        for (var quantity = 1; quantity <= 3; quantity++) {
+            final var variables = new Variables(slots)
+                    .add(new NumberVariable().setName("price").setValue(new BigDecimal("2.50")))
+                    .add(new NumberVariable().setName("quantity").setValue(new BigDecimal(quantity)));
+            final var result = compiled.execute(variables);
+            assertFalse(result.hasExceptions());
+            assertEquals(new BigDecimal("2.50").multiply(new BigDecimal(quantity)), result.getOutputVariables().getNumberVariable("total").getValue());
+        }
+        final var result = compiled.execute(new Variables().add(new NumberVariable().setName("price").setValue(BigDecimal.ONE)));
+        assertEquals(1, result.getExceptions().size());
+        assertEquals(MachnosException.MISSING_VARIABLE, result.getExceptions().get(0).getErrorCode());
+    }
+
+    /**
+     * Test that an invalid configuration is rejected when the <code>MathFunction</code> is compiled, and is reported
+     * in the <code>Result</code> when it is executed with the configuration.
+     */
+    @Test
+    public void testInvalidConfiguration() {
+        final var function = new MathFunction();
+        final var invalidConfigurations = List.of(
+                Map.of(MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE),
+                Map.of(MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one"),
+                Map.of(MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one", MathFunction.INPUT_KEY_FUNCTION, "power"),
+                Map.of(MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one", MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD));
+        for (final var configuration : invalidConfigurations) {
+            final var exception = assertThrows(MachnosException.class, () -> function.compile(configuration, new VariableSlots()));
+            assertEquals(MachnosException.INVALID_FUNCTION_CONFIGURATION, exception.getErrorCode());
+
+            final var result = function.execute(new Variables(), configuration);
+            assertEquals(1, result.getExceptions().size());
+            assertEquals(MachnosException.INVALID_FUNCTION_CONFIGURATION, result.getExceptions().get(0).getErrorCode());
+        }
+    }
+
+    /**
+     * Test that a missing variable is reported as a <code>ValidationException</code> without a stack trace, that a
+     * compiled <code>MathFunction</code> reports the same instance on each execution, and that a <code>Result</code>
+     * without exceptions or output does not create them.
+     */
+    @Test
+    public void testValidationFailure() {
+        final var compiled = new MathFunction().compile(Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD,
+                MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "two"), new VariableSlots());
+        final var variables = new Variables().add(new NumberVariable().setName("one").setValue(BigDecimal.ONE));
+        final var first = compiled.execute(variables);
+        final var second = compiled.execute(variables);
+        assertEquals(1, first.getExceptions().size());
+        final var exception = first.getExceptions().get(0);
+        assertTrue(exception instanceof ValidationException);
+        assertEquals(MachnosException.MISSING_VARIABLE, exception.getErrorCode());
+        assertArrayEquals(new String[] {"two"}, exception.getVariables());
+        assertEquals(0, exception.getStackTrace().length);
+        assertSame(exception, second.getExceptions().get(0));
+        assertFalse(first.hasOutputVariables());
+
+        variables.add(new NumberVariable().setName("two"));
+        assertEquals(MachnosException.MISSING_VALUE, compiled.execute(variables).getExceptions().get(0).getErrorCode());
+
+        // Without slots the exception is created when the validation fails.
+        final var configurationResult = new MathFunction().execute(new Variables().add(new NumberVariable().setName("one").setValue(BigDecimal.ONE)), Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD,
+                MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "two"));
+        assertArrayEquals(new String[] {"two"}, configurationResult.getExceptions().get(0).getVariables());
+
+        final var helperResult = MathFunction.add(new NumberVariable().setName("one").setValue(BigDecimal.ONE), null, null);
+        assertTrue(helperResult.getExceptions().get(0) instanceof ValidationException);
+
+        final var result = new Result();
+        assertFalse(result.hasExceptions());
+        assertFalse(result.hasOutputVariables());
+        assertTrue(result.getExceptions().isEmpty());
+    }
 }
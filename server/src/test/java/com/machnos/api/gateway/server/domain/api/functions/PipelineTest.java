@@ -0,0 +1,165 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.functions;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.variables.NumberVariable;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>Pipeline</code> class.
+ */
+public class PipelineTest {
+
+    /**
+     * Test that the output of a <code>Function</code> is the input of the next <code>Function</code>.
+     */
+    @Test
+    public void testExecute() {
+        final var pipeline = new Pipeline()
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD,
+                        MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "two",
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "three"))
+                .add(Functions.getFunction(new MathFunction().getId()), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "three",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_MULTIPLY,
+                        MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "two",
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "six"));
+        assertEquals(2, pipeline.size());
+        final var variables = new Variables()
+                .add(new NumberVariable().setName("one").setValue(new BigDecimal(1)))
+                .add(new NumberVariable().setName("two").setValue(new BigDecimal(2)));
+
+        final var result = pipeline.execute(variables);
+        assertFalse(result.hasExceptions());
+        assertFalse(result.hasOutputVariables());
+        assertEquals(0, new BigDecimal(3).compareTo(variables.getNumberVariable("three").getValue()));
+        assertEquals(0, new BigDecimal(6).compareTo(variables.getNumberVariable("six").getValue()));
+    }
+
+    /**
+     * Test that the names of the <code>Variable</code>s the <code>Function</code>s use are resolved to slots, and that
+     * the <code>Variables</code> created by the pipeline hold them in those slots.
+     */
+    @Test
+    public void testVariableSlots() {
+        final var pipeline = new Pipeline()
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ADD,
+                        MathFunction.INPUT_KEY_FUNCTION_PARAM1_VARIABLE_NAME, "two",
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "three"))
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "three",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE));
+        final var slots = pipeline.getVariableSlots();
+        assertEquals(3, slots.size());
+
+        final var variables = pipeline.createVariables()
+                .add(new NumberVariable().setName("one").setValue(new BigDecimal(-4)))
+                .add(new NumberVariable().setName("two").setValue(new BigDecimal(1)));
+        assertFalse(pipeline.execute(variables).hasExceptions());
+        assertEquals(0, new BigDecimal(3).compareTo(variables.getNumberVariable(slots.indexOf("three")).getValue()));
+    }
+
+    /**
+     * Test that the execution stops at the first <code>Function</code> that fails.
+     */
+    @Test
+    public void testExecuteStopsAtFailure() {
+        final var pipeline = new Pipeline()
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "missing",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE))
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE,
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "absolute"));
+        final var variables = new Variables().add(new NumberVariable().setName("one").setValue(new BigDecimal(-1)));
+
+        final var result = pipeline.execute(variables);
+        assertTrue(result.hasExceptions());
+        assertEquals(1, result.getExceptions().size());
+        assertEquals(MachnosException.MISSING_VARIABLE, result.getExceptions().get(0).getErrorCode());
+        assertNull(variables.getNumberVariable("absolute"));
+    }
+
+    /**
+     * Test that the listener is notified of each executed <code>Function</code>, up to the one that fails.
+     */
+    @Test
+    public void testListener() {
+        final var pipeline = new Pipeline()
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE,
+                        MathFunction.INPUT_KEY_TARGET_VARIABLE_NAME, "absolute"))
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "missing",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE))
+                .add(Functions.getFunction("Math"), Map.of(
+                        MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                        MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE));
+        final var events = new ArrayList<String>();
+        pipeline.execute(new Variables().add(new NumberVariable().setName("one").setValue(new BigDecimal(-1))), new Pipeline.Listener() {
+            @Override
+            public void functionStarted(Function function) {
+                events.add("started " + function.getName());
+            }
+
+            @Override
+            public void functionCompleted(Function function, Result result) {
+                events.add("completed " + function.getName() + (result.hasExceptions() ? " with exceptions" : ""));
+            }
+        });
+        final var name = new MathFunction().getName();
+        assertEquals(4, events.size());
+        assertEquals("started " + name, events.get(0));
+        assertEquals("completed " + name, events.get(1));
+        assertEquals("completed " + name + " with exceptions", events.get(3));
+    }
+
+    /**
+     * Test that a <code>Function</code> with an invalid configuration cannot be added to the pipeline.
+     */
+    @Test
+    public void testInvalidConfiguration() {
+        final var exception = assertThrows(MachnosException.class, () -> new Pipeline().add(Functions.getFunction("Math"), Map.of(
+                MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "one",
+                MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_DIVIDE)));
+        assertEquals(MachnosException.INVALID_FUNCTION_CONFIGURATION, exception.getErrorCode());
+    }
+
+    /**
+     * Test looking up an unknown <code>Function</code>.
+     */
+    @Test
+    public void testUnknownFunction() {
+        final var exception = assertThrows(MachnosException.class, () -> Functions.getFunction("Unknown"));
+        assertEquals(MachnosException.UNKNOWN_FUNCTION, exception.getErrorCode());
+    }
+}
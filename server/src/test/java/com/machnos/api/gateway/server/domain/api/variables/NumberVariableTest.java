@@ -20,10 +20,13 @@ package com.machnos.api.gateway.server.domain.api.variables;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test class for the <code>NumberVariable</code> class.
@@ -171,4 +174,152 @@ public class NumberVariableTest extends AbstractVariableTest<NumberVariable, Big
         instance.minimum(oneAndAHalf);
         assertEquals("1.50", instance.getValue().toString());
     }
+
+    /**
+     * Test that the arithmetic on values that are held as an unscaled <code>long</code> gives the same outcome as the
+     * arithmetic on <code>BigDecimal</code>s, for random scales, precisions, rounding modes and values, including
+     * values that overflow a <code>long</code>.
+     */
+    @Test
+    public void testArithmeticMatchesBigDecimal() {
+        final var random = new Random(42);
+        final var precisions = new int[] {0, 3, 16, 34};
+        final var roundingModes = RoundingMode.values();
+        for (var i = 0; i < 20_000; i++) {
+            final var scale = random.nextInt(7) - 1;
+            final var precision = precisions[random.nextInt(precisions.length)];
+            final var roundingMode = roundingModes[random.nextInt(roundingModes.length)];
+            final var mathContext = new MathContext(precision, roundingMode);
+            final var left = randomValue(random);
+            final var right = randomValue(random);
+            final var rightScale = random.nextInt(7) - 1;
+            final var operation = random.nextInt(7);
+
+            final Supplier<BigDecimal> actual = () -> {
+                final var instance = getInstance().setScale(scale).setPrecision(precision).setRoundingMode(roundingMode).setValue(left);
+                final var other = getInstance().setScale(rightScale).setPrecision(precision).setRoundingMode(roundingMode).setValue(right);
+                // Apply the operation twice, so the second time it starts from the outcome of the first.
+                apply(instance, other, operation);
+                return apply(instance, other, operation).getValue();
+            };
+            final Supplier<BigDecimal> expected = () -> {
+                final var other = right.setScale(rightScale, roundingMode);
+                final BiFunction<BigDecimal, BigDecimal, BigDecimal> calculation;
+                switch (operation) {
+                    case 0:
+                        calculation = (l, r) -> l.add(r, mathContext);
+                        break;
+                    case 1:
+                        calculation = (l, r) -> l.subtract(r, mathContext);
+                        break;
+                    case 2:
+                        calculation = (l, r) -> l.multiply(r, mathContext);
+                        break;
+                    case 3:
+                        calculation = (l, r) -> l.divide(r, mathContext);
+                        break;
+                    case 4:
+                        calculation = (l, r) -> l.abs(mathContext);
+                        break;
+                    case 5:
+                        calculation = BigDecimal::max;
+                        break;
+                    default:
+                        calculation = BigDecimal::min;
+                        break;
+                }
+                final var once = calculation.apply(left.setScale(scale, roundingMode), other).setScale(scale, roundingMode);
+                return calculation.apply(once, other).setScale(scale, roundingMode);
+            };
+            assertEquals(outcome(expected), outcome(actual), left + " and " + right + " with operation " + operation + ", scale " + scale + ", precision " + precision + " and rounding mode " + roundingMode);
+        }
+    }
+
+    /**
+     * Test that values which no longer fit in a <code>long</code> are promoted exactly.
+     */
+    @Test
+    public void testOverflow() {
+        final var max = getInstance().setScale(0).setValue(BigDecimal.valueOf(Long.MAX_VALUE));
+        final var instance = getInstance().setScale(0).setPrecision(0).assign(max);
+
+        assertEquals("18446744073709551614", instance.add(max).getValue().toString());
+        assertEquals("9223372036854775807", instance.subtract(max).getValue().toString());
+        assertEquals("85070591730234615847396907784232501249", instance.multiply(max).getValue().toString());
+        assertEquals("9223372036854775808", getInstance().setScale(0).setPrecision(0).setValue(BigDecimal.valueOf(Long.MIN_VALUE)).absolute().getValue().toString());
+    }
+
+    /**
+     * Test assigning the value of another <code>NumberVariable</code>.
+     */
+    @Test
+    public void testAssign() {
+        final var source = getInstance().setScale(3).setValue(new BigDecimal("1.235"));
+
+        assertEquals("1.24", getInstance().setRoundingMode(RoundingMode.HALF_UP).assign(source).getValue().toString());
+        assertEquals("1.23", getInstance().setRoundingMode(RoundingMode.DOWN).assign(source).getValue().toString());
+        assertEquals("1.2350", getInstance().setScale(4).assign(source).getValue().toString());
+        assertFalse(getInstance().setValue(BigDecimal.ONE).assign(getInstance()).hasValue());
+        assertThrows(ArithmeticException.class, () -> getInstance().setRoundingMode(RoundingMode.UNNECESSARY).assign(source));
+    }
+
+    /**
+     * Applies an operation to a <code>NumberVariable</code>.
+     *
+     * @param instance The <code>NumberVariable</code> to apply the operation to.
+     * @param other The other operand of the operation.
+     * @param operation The number of the operation.
+     * @return The <code>NumberVariable</code> the operation is applied to.
+     */
+    private static NumberVariable apply(NumberVariable instance, NumberVariable other, int operation) {
+        switch (operation) {
+            case 0:
+                return instance.add(other);
+            case 1:
+                return instance.subtract(other);
+            case 2:
+                return instance.multiply(other);
+            case 3:
+                return instance.divide(other);
+            case 4:
+                return instance.absolute();
+            case 5:
+                return instance.maximum(other);
+            default:
+                return instance.minimum(other);
+        }
+    }
+
+    /**
+     * Gives a random value that is small, large, or close to the limits of a <code>long</code>.
+     *
+     * @param random The <code>Random</code> to use.
+     * @return The value.
+     */
+    private static BigDecimal randomValue(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return BigDecimal.valueOf(random.nextInt(2001) - 1000, random.nextInt(4));
+            case 1:
+                return BigDecimal.valueOf(random.nextLong() % 10_000_000_000L, random.nextInt(8));
+            case 2:
+                return BigDecimal.valueOf(random.nextLong(), random.nextInt(20));
+            default:
+                return BigDecimal.valueOf(random.nextBoolean() ? Long.MAX_VALUE - random.nextInt(10) : Long.MIN_VALUE + random.nextInt(10), random.nextInt(3));
+        }
+    }
+
+    /**
+     * Gives the outcome of a calculation, which is either its value or the type of the exception it throws.
+     *
+     * @param calculation The calculation.
+     * @return The value, or the class of the exception.
+     */
+    private static Object outcome(Supplier<BigDecimal> calculation) {
+        try {
+            return calculation.get();
+        } catch (ArithmeticException e) {
+            return e.getClass();
+        }
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.domain.api.variables;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>Variables</code> class.
+ */
+public class VariablesTest {
+
+    /**
+     * Test getting <code>Variable</code>s by name and type from a container without slots.
+     */
+    @Test
+    public void testGetByName() {
+        final var variables = new Variables()
+                .add(new NumberVariable().setName("number").setValue(BigDecimal.ONE))
+                .add(new StringVariable().setName("string").setValue("value"))
+                .add(new BooleanVariable().setName("boolean").setValue(true));
+        assertEquals(0, BigDecimal.ONE.compareTo(variables.getNumberVariable("number").getValue()));
+        assertEquals("value", variables.getStringVariable("string").getValue());
+        assertTrue(variables.getBooleanVariable("boolean").getValue());
+        assertNull(variables.getStringVariable("number"));
+        assertNull(variables.getNumberVariable("missing"));
+        assertNull(variables.getNumberVariable(null));
+        assertNull(variables.getNumberVariable(0));
+    }
+
+    /**
+     * Test getting <code>Variable</code>s by slot and by name from a container with slots. Names without a slot
+     * should be held by name.
+     */
+    @Test
+    public void testGetBySlot() {
+        final var slots = new VariableSlots();
+        final var numberSlot = slots.add("number");
+        final var stringSlot = slots.add("string");
+        assertEquals(numberSlot, slots.add("number"));
+        assertEquals(2, slots.size());
+        assertEquals(-1, slots.indexOf("missing"));
+
+        final var variables = new Variables(slots)
+                .add(new NumberVariable().setName("number").setValue(BigDecimal.TEN))
+                .add(new StringVariable().setName("string").setValue("value"))
+                .add(new StringVariable().setName("unslotted").setValue("other"));
+        assertEquals(0, BigDecimal.TEN.compareTo(variables.getNumberVariable(numberSlot).getValue()));
+        assertEquals(0, BigDecimal.TEN.compareTo(variables.getNumberVariable("number").getValue()));
+        assertEquals("value", variables.getStringVariable(stringSlot).getValue());
+        assertNull(variables.getNumberVariable(stringSlot));
+        assertEquals("other", variables.getStringVariable("unslotted").getValue());
+        assertNull(variables.getStringVariable(-1));
+
+        // A slot that is added after the container is created is held by name.
+        final var lateSlot = slots.add("late");
+        variables.add(new BooleanVariable().setName("late").setValue(false));
+        assertNull(variables.getBooleanVariable(lateSlot));
+        assertFalse(variables.getBooleanVariable("late").getValue());
+
+        // The slots of a container without slots cannot be extended.
+        assertEquals(-1, VariableSlots.NONE.add(null));
+        final var exception = assertThrows(MachnosException.class, () -> VariableSlots.NONE.add("number"));
+        assertEquals(MachnosException.UNMODIFIABLE_VARIABLE_SLOTS, exception.getErrorCode());
+    }
+
+    /**
+     * Test that adding a <code>Variable</code> keeps the <code>Variable</code> with the same name, and adding all
+     * <code>Variable</code>s of another container replaces it.
+     */
+    @Test
+    public void testAddAndAddAll() {
+        final var slots = new VariableSlots();
+        slots.add("slotted");
+        final var variables = new Variables(slots)
+                .add(new NumberVariable().setName("slotted").setValue(BigDecimal.ONE))
+                .add(new NumberVariable().setName("unslotted").setValue(BigDecimal.ONE))
+                .add(new NumberVariable().setName("slotted").setValue(BigDecimal.TEN))
+                .add(new NumberVariable().setName("unslotted").setValue(BigDecimal.TEN))
+                .add(null);
+        assertEquals(0, BigDecimal.ONE.compareTo(variables.getNumberVariable("slotted").getValue()));
+        assertEquals(0, BigDecimal.ONE.compareTo(variables.getNumberVariable("unslotted").getValue()));
+
+        variables.addAll(new Variables()
+                .add(new NumberVariable().setName("slotted").setValue(BigDecimal.TEN))
+                .add(new StringVariable().setName("unslotted").setValue("ten")));
+        assertEquals(0, BigDecimal.TEN.compareTo(variables.getNumberVariable("slotted").getValue()));
+        assertNull(variables.getNumberVariable("unslotted"));
+        assertEquals("ten", variables.getStringVariable("unslotted").getValue());
+
+        final var copy = new Variables().addAll(variables);
+        assertEquals(0, BigDecimal.TEN.compareTo(copy.getNumberVariable("slotted").getValue()));
+        assertEquals("ten", copy.getStringVariable("unslotted").getValue());
+    }
+}
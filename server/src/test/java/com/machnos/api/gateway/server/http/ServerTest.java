@@ -18,12 +18,23 @@
 package com.machnos.api.gateway.server.http;
 
 import com.machnos.api.gateway.server.configuration.HttpInterface;
+import com.machnos.api.gateway.server.configuration.Upstream;
+import com.machnos.api.gateway.server.http.proxy.UpstreamPoolStatistics;
+import io.undertow.UndertowOptions;
+import io.undertow.server.handlers.BlockingHandler;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.machnos.api.gateway.server.http.TestServers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -74,4 +85,188 @@ public class ServerTest {
             fail(String.format("Port '%d' cannot be opened on interface '%s'.", managementInterface.listenPort, managementInterface.listenInterface), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test forwarding requests to an upstream. Sequential requests should reuse the pooled upstream connection.
+
+    /**
+     * Test forwarding requests to an upstream. Sequential requests should reuse the pooled upstream connection.
+     */
+    @Test
+    public void testForwardToUpstream() throws IOException, InterruptedException {
+        try (final var upstreamServer = startUpstream(exchange -> exchange.getResponseSender().send("Hello from upstream"));
+             final var gateway = startGateway(httpInterface -> {}, createUpstream("backend", upstreamServer.getHost()))) {
+            final var requests = 10;
+            for (var i = 0; i < requests; i++) {
+                final var response = gateway.get("/");
+                assertEquals(200, response.statusCode());
+                assertEquals("Hello from upstream", response.body());
+            }
+            final var statistics = gateway.getServer().getProxyClient("backend").getPools().get(0).getStatistics();
+            assertTrue(statistics.getConnectionsCreated() < requests);
+            assertTrue(statistics.getConnectionsReused() > 0);
+        }
+    }
+
+    /**
+     * Test relaying a request and response body that is many times larger than the buffers of the interface.
+     */
+    @Test
+    public void testStreamLargeBody() throws IOException, InterruptedException {
+        try (final var upstreamServer = startUpstream(new BlockingHandler(exchange -> exchange.getInputStream().transferTo(exchange.getOutputStream())));
+             final var gateway = startGateway(httpInterface -> httpInterface.bufferSize = 4096, createUpstream("echo", upstreamServer.getHost()))) {
+            final var payload = new byte[8 * 1024 * 1024];
+            new Random().nextBytes(payload);
+            final var request = HttpRequest.newBuilder(gateway.uri("/"))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                    .build();
+            final var response = gateway.getClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, response.statusCode());
+            assertArrayEquals(payload, response.body());
+        }
+    }
+
+    /**
+     * Test forwarding concurrent requests to an upstream that supports h2c. The requests should be multiplexed over a
+     * single connection.
+     */
+    @Test
+    public void testForwardToHttp2Upstream() throws IOException {
+        try (final var upstreamServer = startHttp2Upstream(findFreePort())) {
+            final var upstream = createUpstream("http2", upstreamServer.getHost());
+            upstream.http2 = true;
+            final var statistics = forwardConcurrentRequests(upstream, "HTTP/2.0");
+            assertEquals(0, statistics.getHttp2Fallbacks());
+            assertTrue(statistics.getMultiplexedConnectionsCreated() > 0);
+            assertEquals(statistics.getConnectionsCreated(), statistics.getMultiplexedConnectionsCreated());
+            assertTrue(statistics.getMultiplexedRequests() > statistics.getConnectionsCreated());
+        }
+    }
+
+    /**
+     * Test that an HTTP/2 upstream that is down for a while is not downgraded to HTTP/1.1. Refused connections are
+     * host failures, so the requests go over HTTP/2 again when the upstream is back.
+     */
+    @Test
+    public void testHttp2AfterUpstreamRestart() throws IOException, InterruptedException {
+        final var upstreamPort = findFreePort();
+        final var upstream = createUpstream("http2", "http://127.0.0.1:" + upstreamPort);
+        upstream.http2 = true;
+        try (final var gateway = startGateway(httpInterface -> {}, upstream)) {
+            try (final var upstreamServer = startHttp2Upstream(upstreamPort)) {
+                assertEquals("HTTP/2.0", gateway.get("/").body());
+            }
+            // Wait until the connection to the stopped upstream is closed, after which new connections are refused.
+            var response = gateway.get("/");
+            for (var attempt = 0; attempt < 50 && response.statusCode() < 500; attempt++) {
+                Thread.sleep(100);
+                response = gateway.get("/");
+            }
+            assertTrue(response.statusCode() >= 500);
+
+            try (final var upstreamServer = startHttp2Upstream(upstreamPort)) {
+                response = gateway.get("/");
+                for (var attempt = 0; attempt < 50 && response.statusCode() != 200; attempt++) {
+                    Thread.sleep(100);
+                    response = gateway.get("/");
+                }
+                assertEquals(200, response.statusCode());
+                assertEquals("HTTP/2.0", response.body());
+                assertEquals(0, gateway.getServer().getProxyClient(upstream.name).getPools().get(0).getStatistics().getHttp2Fallbacks());
+            }
+        }
+    }
+
+    /**
+     * Test forwarding requests to an upstream that is configured for HTTP/2 but only supports HTTP/1.1. The pool should
+     * fall back to HTTP/1.1 connections.
+     */
+    @Test
+    public void testHttp2FallbackToHttp1() throws IOException {
+        try (final var upstreamServer = startUpstream(exchange -> exchange.getResponseSender().send(exchange.getProtocol().toString()))) {
+            final var upstream = createUpstream("http1", upstreamServer.getHost());
+            upstream.http2 = true;
+            final var statistics = forwardConcurrentRequests(upstream, "HTTP/1.1");
+            assertTrue(statistics.getHttp2Fallbacks() > 0);
+            assertEquals(0, statistics.getMultiplexedConnectionsCreated());
+        }
+    }
+
+    /**
+     * Test that a stopped server completes the requests in flight, while a new server takes over the port.
+     */
+    @Test
+    public void testDrainAndHandover() throws IOException, InterruptedException {
+        final var upstreamRequests = new AtomicInteger();
+        try (final var upstreamServer = startUpstream(new BlockingHandler(exchange -> {
+                if (upstreamRequests.incrementAndGet() == 1) {
+                    try {
+                        // Keep the first request in flight while the server is stopped.
+                        Thread.sleep(1_000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                exchange.getResponseSender().send("body " + upstreamRequests.get());
+            }));
+             final var oldGateway = startGateway(httpInterface -> httpInterface.bindTimeout = 5_000, createUpstream("backend", upstreamServer.getHost()))) {
+            final var inFlight = oldGateway.getClient().sendAsync(HttpRequest.newBuilder(oldGateway.uri("/")).build(), HttpResponse.BodyHandlers.ofString());
+            while (upstreamRequests.get() == 0) {
+                Thread.sleep(10);
+            }
+            final var stopped = CompletableFuture.runAsync(oldGateway::close);
+            // The new server binds the port as soon as the old server closed its listeners.
+            final var newServer = new Server(oldGateway.getHttpInterface(), oldGateway.getConfiguration());
+            newServer.start();
+            try {
+                assertFalse(stopped.isDone());
+                final var response = inFlight.join();
+                assertEquals(200, response.statusCode());
+                assertEquals("body 1", response.body());
+                stopped.join();
+                assertFalse(oldGateway.getServer().isRunning());
+
+                // The new server listens on the same port as the old one.
+                final var newResponse = oldGateway.get("/");
+                assertEquals(200, newResponse.statusCode());
+                assertEquals("body 2", newResponse.body());
+            } finally {
+                newServer.stop();
+            }
+        }
+    }
+
+    /**
+     * Forwards 20 concurrent requests to an upstream through a newly started <code>Server</code>.
+     *
+     * @param upstream The <code>Upstream</code> to forward the requests to.
+     * @param expectedProtocol The protocol the upstream is expected to receive the requests with.
+     * @return The statistics of the connection pool to the upstream.
+     */
+    private static UpstreamPoolStatistics forwardConcurrentRequests(Upstream upstream, String expectedProtocol) throws IOException {
+        try (final var gateway = startGateway(httpInterface -> {}, upstream)) {
+            final var request = HttpRequest.newBuilder(gateway.uri("/")).build();
+            final var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (var i = 0; i < 20; i++) {
+                responses.add(gateway.getClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (final var future : responses) {
+                final var response = future.join();
+                assertEquals(200, response.statusCode());
+                assertEquals(expectedProtocol, response.body());
+            }
+            return gateway.getServer().getProxyClient(upstream.name).getPools().get(0).getStatistics();
+        }
+    }
+
+    /**
+     * Starts an upstream that supports HTTP/2 and responds with the protocol of the request.
+     *
+     * @param port The port the upstream listens on.
+     * @return The started upstream.
+     */
+    private static UndertowServer startHttp2Upstream(int port) {
+        return startUndertow(port, builder -> builder.setServerOption(UndertowOptions.ENABLE_HTTP2, true).setIoThreads(1),
+                exchange -> exchange.getResponseSender().send(exchange.getProtocol().toString()));
+    }
+}
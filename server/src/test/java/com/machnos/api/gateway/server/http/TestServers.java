@@ -0,0 +1,321 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http;
+
+import com.machnos.api.gateway.server.configuration.Api;
+import com.machnos.api.gateway.server.configuration.Configuration;
+import com.machnos.api.gateway.server.configuration.HttpInterface;
+import com.machnos.api.gateway.server.configuration.Upstream;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fixtures for the tests that send requests through a running gateway to an upstream on the loopback interface.
+ */
+public final class TestServers {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TestServers() {
+    }
+
+    /**
+     * Gives a tcp port that is free on the loopback interface.
+     *
+     * @return A free port.
+     */
+    public static int findFreePort() throws IOException {
+        try (final var socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Starts an upstream on a free port that answers the requests with the given handler.
+     *
+     * @param handler The <code>HttpHandler</code> that answers the requests.
+     * @return The started upstream.
+     */
+    public static UndertowServer startUpstream(HttpHandler handler) throws IOException {
+        return startUndertow(findFreePort(), builder -> {}, handler);
+    }
+
+    /**
+     * Starts an Undertow server that answers the requests with the given handler.
+     *
+     * @param port The port the server listens on.
+     * @param builderConfigurer Configures the server options and threads on the builder before the server is built.
+     * @param handler The <code>HttpHandler</code> that answers the requests.
+     * @return The started server.
+     */
+    public static UndertowServer startUndertow(int port, Consumer<Undertow.Builder> builderConfigurer, HttpHandler handler) {
+        final var builder = Undertow.builder();
+        builderConfigurer.accept(builder);
+        final var undertow = builder.addHttpListener(port, "127.0.0.1", handler).build();
+        undertow.start();
+        return new UndertowServer(undertow, port);
+    }
+
+    /**
+     * Creates the configuration of an upstream.
+     *
+     * @param name The name of the upstream.
+     * @param hosts The hosts of the upstream.
+     * @return The <code>Upstream</code>.
+     */
+    public static Upstream createUpstream(String name, String... hosts) {
+        final var upstream = new Upstream();
+        upstream.name = name;
+        upstream.hosts.addAll(List.of(hosts));
+        return upstream;
+    }
+
+    /**
+     * Creates the configuration of an api.
+     *
+     * @param name The name of the api.
+     * @param path The path the api is served on.
+     * @return The <code>Api</code>.
+     */
+    public static Api createApi(String name, String path) {
+        final var api = new Api();
+        api.name = name;
+        api.path = path;
+        return api;
+    }
+
+    /**
+     * Starts a gateway that forwards all requests of its interface to the given upstream.
+     *
+     * @param interfaceConfigurer Configures the <code>HttpInterface</code> before the gateway is started.
+     * @param upstream The <code>Upstream</code> to forward the requests to.
+     * @return The started gateway.
+     */
+    public static Gateway startGateway(Consumer<HttpInterface> interfaceConfigurer, Upstream upstream) throws IOException {
+        final var configuration = new Configuration();
+        configuration.upstreams.add(upstream);
+        return startGateway(httpInterface -> {
+            httpInterface.upstream = upstream.name;
+            interfaceConfigurer.accept(httpInterface);
+        }, configuration);
+    }
+
+    /**
+     * Starts a gateway that serves the given api, which forwards its requests to the given upstream.
+     *
+     * @param interfaceConfigurer Configures the <code>HttpInterface</code> before the gateway is started.
+     * @param upstream The <code>Upstream</code> the api forwards its requests to.
+     * @param api The <code>Api</code> to serve.
+     * @return The started gateway.
+     */
+    public static Gateway startGateway(Consumer<HttpInterface> interfaceConfigurer, Upstream upstream, Api api) throws IOException {
+        api.upstream = upstream.name;
+        final var configuration = new Configuration();
+        configuration.upstreams.add(upstream);
+        configuration.apis.add(api);
+        return startGateway(interfaceConfigurer, configuration);
+    }
+
+    /**
+     * Starts a gateway with the given configuration on a plain http interface on a free port.
+     *
+     * @param interfaceConfigurer Configures the <code>HttpInterface</code> before the gateway is started.
+     * @param configuration The <code>Configuration</code> of the gateway.
+     * @return The started gateway.
+     */
+    public static Gateway startGateway(Consumer<HttpInterface> interfaceConfigurer, Configuration configuration) throws IOException {
+        final var httpInterface = new HttpInterface();
+        httpInterface.listenPort = findFreePort();
+        httpInterface.tlsProtocols = null;
+        interfaceConfigurer.accept(httpInterface);
+        final var server = new Server(httpInterface, configuration);
+        server.start();
+        return new Gateway(server, httpInterface, configuration);
+    }
+
+    /**
+     * An Undertow server on the loopback interface that is stopped when it is closed.
+     */
+    public static final class UndertowServer implements AutoCloseable {
+
+        /**
+         * The running Undertow server.
+         */
+        private final Undertow undertow;
+
+        /**
+         * The port the server listens on.
+         */
+        private final int port;
+
+        /**
+         * Constructs a new <code>UndertowServer</code> instance.
+         *
+         * @param undertow The running Undertow server.
+         * @param port The port the server listens on.
+         */
+        private UndertowServer(Undertow undertow, int port) {
+            this.undertow = undertow;
+            this.port = port;
+        }
+
+        /**
+         * Gives the port the server listens on.
+         *
+         * @return The port.
+         */
+        public int getPort() {
+            return this.port;
+        }
+
+        /**
+         * Gives the host of the server, in the form that is used in the hosts of an <code>Upstream</code>.
+         *
+         * @return The host.
+         */
+        public String getHost() {
+            return "http://127.0.0.1:" + this.port;
+        }
+
+        /**
+         * Gives the uri of a path on the server.
+         *
+         * @param path The path.
+         * @return The uri.
+         */
+        public URI uri(String path) {
+            return URI.create(getHost() + path);
+        }
+
+        @Override
+        public void close() {
+            this.undertow.stop();
+        }
+    }
+
+    /**
+     * A running gateway with an HTTP/1.1 client to send requests to it. The gateway is stopped when it is closed.
+     */
+    public static final class Gateway implements AutoCloseable {
+
+        /**
+         * The running <code>Server</code>.
+         */
+        private final Server server;
+
+        /**
+         * The <code>HttpInterface</code> the server listens on.
+         */
+        private final HttpInterface httpInterface;
+
+        /**
+         * The <code>Configuration</code> of the server.
+         */
+        private final Configuration configuration;
+
+        /**
+         * The client that sends the requests to the server.
+         */
+        private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        /**
+         * Constructs a new <code>Gateway</code> instance.
+         *
+         * @param server The running <code>Server</code>.
+         * @param httpInterface The <code>HttpInterface</code> the server listens on.
+         * @param configuration The <code>Configuration</code> of the server.
+         */
+        private Gateway(Server server, HttpInterface httpInterface, Configuration configuration) {
+            this.server = server;
+            this.httpInterface = httpInterface;
+            this.configuration = configuration;
+        }
+
+        /**
+         * Gives the running <code>Server</code>.
+         *
+         * @return The <code>Server</code>.
+         */
+        public Server getServer() {
+            return this.server;
+        }
+
+        /**
+         * Gives the <code>HttpInterface</code> the server listens on.
+         *
+         * @return The <code>HttpInterface</code>.
+         */
+        public HttpInterface getHttpInterface() {
+            return this.httpInterface;
+        }
+
+        /**
+         * Gives the <code>Configuration</code> of the server.
+         *
+         * @return The <code>Configuration</code>.
+         */
+        public Configuration getConfiguration() {
+            return this.configuration;
+        }
+
+        /**
+         * Gives the client that sends the requests to the server.
+         *
+         * @return The <code>HttpClient</code>.
+         */
+        public HttpClient getClient() {
+            return this.client;
+        }
+
+        /**
+         * Gives the uri of a path on the server.
+         *
+         * @param path The path.
+         * @return The uri.
+         */
+        public URI uri(String path) {
+            return URI.create("http://127.0.0.1:" + this.httpInterface.listenPort + path);
+        }
+
+        /**
+         * Sends a get request for a path to the server.
+         *
+         * @param path The path.
+         * @return The response.
+         */
+        public HttpResponse<String> get(String path) throws IOException, InterruptedException {
+            return this.client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        @Override
+        public void close() {
+            this.server.stop();
+        }
+    }
+}
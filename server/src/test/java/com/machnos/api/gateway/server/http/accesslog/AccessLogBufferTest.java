@@ -0,0 +1,129 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.accesslog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>AccessLogBuffer</code> class.
+ */
+public class AccessLogBufferTest {
+
+    /**
+     * Test that the buffer rejects records when it is full, and accepts them again after the consumer released slots.
+     */
+    @Test
+    public void testFull() {
+        final var buffer = new AccessLogBuffer(3);
+        assertEquals(4, buffer.capacity());
+        for (var i = 0; i < 4; i++) {
+            final var sequence = buffer.claim();
+            assertEquals(i, sequence);
+            buffer.get(sequence).status = 200 + i;
+            buffer.publish(sequence);
+        }
+        assertEquals(-1, buffer.claim());
+        assertEquals(200, buffer.peek().status);
+        buffer.release();
+        final var sequence = buffer.claim();
+        assertEquals(4, sequence);
+        buffer.get(sequence).status = 204;
+        buffer.publish(sequence);
+        for (var i = 1; i < 5; i++) {
+            assertEquals(200 + i, buffer.peek().status);
+            buffer.release();
+        }
+        assertNull(buffer.peek());
+    }
+
+    /**
+     * Test that a record is only visible to the consumer once it is published, also when a later record is published
+     * first.
+     */
+    @Test
+    public void testPublishOrder() {
+        final var buffer = new AccessLogBuffer(4);
+        final var first = buffer.claim();
+        final var second = buffer.claim();
+        buffer.publish(second);
+        assertNull(buffer.peek());
+        buffer.publish(first);
+        assertNotNull(buffer.peek());
+        buffer.release();
+        assertNotNull(buffer.peek());
+        buffer.release();
+        assertNull(buffer.peek());
+    }
+
+    /**
+     * Test that concurrent producers never claim the same slot, and that every claimed record reaches the consumer.
+     */
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final var buffer = new AccessLogBuffer(1024);
+        final var producers = 4;
+        final var recordsPerProducer = 100_000;
+        final var start = new CountDownLatch(1);
+        final var threads = new ArrayList<Thread>();
+        for (var p = 0; p < producers; p++) {
+            final var producer = p;
+            final var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (var i = 0; i < recordsPerProducer; i++) {
+                    long sequence;
+                    while ((sequence = buffer.claim()) < 0) {
+                        Thread.onSpinWait();
+                    }
+                    final var record = buffer.get(sequence);
+                    record.status = producer;
+                    record.bytesSent = i;
+                    buffer.publish(sequence);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        final var expected = new long[producers];
+        var consumed = 0;
+        while (consumed < producers * recordsPerProducer) {
+            final var record = buffer.peek();
+            if (record == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // The records of a single producer arrive in order.
+            assertEquals(expected[record.status]++, record.bytesSent);
+            buffer.release();
+            consumed++;
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertNull(buffer.peek());
+    }
+}
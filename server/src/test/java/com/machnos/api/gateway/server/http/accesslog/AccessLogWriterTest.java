@@ -0,0 +1,103 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.accesslog;
+
+import com.machnos.api.gateway.server.configuration.AccessLog;
+import com.machnos.api.gateway.server.configuration.AccessLogField;
+import io.undertow.util.HttpString;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>AccessLogWriter</code> class.
+ */
+public class AccessLogWriterTest {
+
+    /**
+     * Test the format of the lines in the access log.
+     */
+    @Test
+    public void testFormat() throws IOException {
+        final var directory = Files.createTempDirectory("access-log");
+        final var accessLog = new AccessLog();
+        accessLog.file = directory.resolve("access.log").toString();
+        accessLog.fields = List.of(AccessLogField.values());
+        final var writer = new AccessLogWriter(accessLog);
+        writer.start();
+        append(writer, 1_700_000_000_123L, "/orders/1", "expand=\"items\"", "orders", "curl/8.0 \u00e9\n");
+        append(writer, 1_700_000_001_000L, "/", null, null, null);
+        writer.stop();
+
+        final var lines = Files.readAllLines(directory.resolve("access.log"), StandardCharsets.US_ASCII);
+        assertEquals(2, lines.size());
+        assertEquals("2023-11-14T22:13:20.123Z 10.0.0.1 GET \"/orders/1\" \"expand=\\\"items\\\"\" HTTP/1.1 200 512 1500 \"orders\" \"api.example.com\" \"curl/8.0 \\u00e9\\u000a\" -", lines.get(0));
+        assertEquals("2023-11-14T22:13:21.000Z 10.0.0.1 GET \"/\" - HTTP/1.1 200 512 1500 - \"api.example.com\" - -", lines.get(1));
+        assertEquals(2, writer.getWritten());
+        assertEquals(0, writer.getDropped());
+    }
+
+    /**
+     * Test that the file is rolled over when it exceeds the maximum size, keeping the configured number of files.
+     */
+    @Test
+    public void testRollOver() throws IOException {
+        final var directory = Files.createTempDirectory("access-log");
+        final var accessLog = new AccessLog();
+        accessLog.file = directory.resolve("access.log").toString();
+        accessLog.fields = List.of(AccessLogField.PATH);
+        accessLog.flushInterval = 0;
+        accessLog.maxFileSize = 6;
+        accessLog.maxFiles = 2;
+        final var writer = new AccessLogWriter(accessLog);
+        for (var i = 0; i < 4; i++) {
+            writer.start();
+            append(writer, 0, "/" + i, null, null, null);
+            writer.stop();
+        }
+        assertEquals("\"/3\"", Files.readString(directory.resolve("access.log")).trim());
+        assertEquals("\"/2\"", Files.readString(directory.resolve("access.log.1")).trim());
+        assertEquals("\"/1\"", Files.readString(directory.resolve("access.log.2")).trim());
+        assertFalse(Files.exists(directory.resolve("access.log.3")));
+    }
+
+    private static void append(AccessLogWriter writer, long time, String path, String query, String api, String userAgent) throws IOException {
+        final var buffer = writer.getBuffer();
+        final var sequence = buffer.claim();
+        final var record = buffer.get(sequence);
+        record.time = time;
+        record.duration = 1_500_000;
+        record.status = 200;
+        record.bytesSent = 512;
+        record.method = new HttpString("GET");
+        record.path = path;
+        record.query = query;
+        record.protocol = new HttpString("HTTP/1.1");
+        record.clientAddress = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        record.api = api;
+        record.host = "api.example.com";
+        record.userAgent = userAgent;
+        buffer.publish(sequence);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.cache;
+
+import com.machnos.api.gateway.server.configuration.ApiCache;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.machnos.api.gateway.server.http.TestServers.createApi;
+import static com.machnos.api.gateway.server.http.TestServers.createUpstream;
+import static com.machnos.api.gateway.server.http.TestServers.startGateway;
+import static com.machnos.api.gateway.server.http.TestServers.startUpstream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the <code>ResponseCache</code> class.
+ */
+public class ResponseCacheTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * Test that bodies that span multiple blocks are stored and read back unchanged.
+     */
+    @Test
+    public void testStoreBody() {
+        final var cache = new ResponseCache(BLOCK_SIZE * 8, BLOCK_SIZE);
+        final var body = "A body that needs more than two blocks of sixteen bytes";
+        cache.put(createEntry(cache, "body", body));
+        final var entry = cache.get("body", null);
+        assertNotNull(entry);
+        assertEquals(body, read(cache, entry));
+        assertEquals(4L * BLOCK_SIZE, cache.getUsedBytes());
+        entry.release(cache.getStore());
+    }
+
+    /**
+     * Test that responses that are requested again survive a burst of responses that are requested only once.
+     */
+    @Test
+    public void testSegmentedLruEviction() {
+        final var cache = new ResponseCache(BLOCK_SIZE * 4, BLOCK_SIZE);
+        cache.put(createEntry(cache, "frequent", "frequent"));
+        cache.get("frequent", null).release(cache.getStore());
+        for (var i = 0; i < 10; i++) {
+            cache.put(createEntry(cache, "once-" + i, "once"));
+        }
+        assertEquals(4, cache.size());
+        assertEquals(7, cache.getEvictions());
+        final var frequent = cache.get("frequent", null);
+        assertNotNull(frequent);
+        frequent.release(cache.getStore());
+        assertNull(cache.get("once-0", null));
+        assertNotNull(cache.get("once-9", null));
+    }
+
+    /**
+     * Test that the blocks of an evicted response are not reused while the response is being served.
+     */
+    @Test
+    public void testReleaseEvictedResponse() {
+        final var cache = new ResponseCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        cache.put(createEntry(cache, "served", "served"));
+        final var served = cache.get("served", null);
+        cache.invalidate("served");
+        assertEquals(0, cache.size());
+        assertEquals(BLOCK_SIZE, cache.getUsedBytes());
+        // Allocating evicts the other response, the block of the retained response is not available.
+        cache.put(createEntry(cache, "other", "other"));
+        final var block = cache.allocateBlock();
+        assertEquals(0, cache.size());
+        assertEquals(-1, cache.allocateBlock());
+        cache.block(block).put("overwritten".getBytes(StandardCharsets.UTF_8));
+        assertEquals("served", read(cache, served));
+        served.release(cache.getStore());
+        cache.free(new int[] {block}, 1);
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    /**
+     * Test serving responses from the response cache. Fresh responses should be served without contacting the
+     * upstream, stale responses should be revalidated and private responses should not be cached at all.
+     */
+    @Test
+    public void testCacheResponses() throws IOException, InterruptedException {
+        final var upstreamRequests = new AtomicInteger();
+        final var notModifiedResponses = new AtomicInteger();
+        final var api = createApi("cached", "/*");
+        api.cache = new ApiCache();
+        try (final var upstreamServer = startUpstream(exchange -> {
+                upstreamRequests.incrementAndGet();
+                final var responseHeaders = exchange.getResponseHeaders();
+                switch (exchange.getRequestPath()) {
+                    case "/cached":
+                        responseHeaders.put(Headers.CACHE_CONTROL, "max-age=60");
+                        responseHeaders.put(Headers.ETAG, "\"v1\"");
+                        exchange.getResponseSender().send("cached body");
+                        break;
+                    case "/revalidated":
+                        responseHeaders.put(Headers.CACHE_CONTROL, "no-cache");
+                        responseHeaders.put(Headers.ETAG, "\"v2\"");
+                        if ("\"v2\"".equals(exchange.getRequestHeaders().getFirst(Headers.IF_NONE_MATCH))) {
+                            notModifiedResponses.incrementAndGet();
+                            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+                            exchange.endExchange();
+                        } else {
+                            exchange.getResponseSender().send("revalidated body");
+                        }
+                        break;
+                    default:
+                        responseHeaders.put(Headers.CACHE_CONTROL, "private, max-age=60");
+                        exchange.getResponseSender().send("private body");
+                        break;
+                }
+            });
+             final var gateway = startGateway(httpInterface -> {}, createUpstream("backend", upstreamServer.getHost()), api)) {
+            for (var i = 0; i < 3; i++) {
+                final var response = gateway.get("/cached");
+                assertEquals(200, response.statusCode());
+                assertEquals("cached body", response.body());
+                assertTrue(response.headers().firstValue("Age").isPresent());
+            }
+            assertEquals(1, upstreamRequests.get());
+            // A client with a valid copy gets a 304 from the cache.
+            final var conditionalResponse = gateway.getClient().send(HttpRequest.newBuilder(gateway.uri("/cached")).header("If-None-Match", "\"v1\"").build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(304, conditionalResponse.statusCode());
+            assertEquals(1, upstreamRequests.get());
+
+            for (var i = 0; i < 2; i++) {
+                final var response = gateway.get("/revalidated");
+                assertEquals(200, response.statusCode());
+                assertEquals("revalidated body", response.body());
+            }
+            assertEquals(3, upstreamRequests.get());
+            assertEquals(1, notModifiedResponses.get());
+
+            for (var i = 0; i < 2; i++) {
+                assertEquals("private body", gateway.get("/private").body());
+            }
+            assertEquals(5, upstreamRequests.get());
+
+            final var cache = gateway.getServer().getResponseCache();
+            assertEquals(2, cache.size());
+            assertEquals(3, cache.getHits());
+            assertEquals(1, cache.getRevalidations());
+        }
+    }
+
+    /**
+     * Test that concurrent identical requests for a response that is not cached share a single upstream request.
+     */
+    @Test
+    public void testCoalesceRequests() throws IOException {
+        final var upstreamRequests = new AtomicInteger();
+        final var api = createApi("hot", "/*");
+        api.cache = new ApiCache();
+        api.cache.coalesce = true;
+        try (final var upstreamServer = startUpstream(new BlockingHandler(exchange -> {
+                upstreamRequests.incrementAndGet();
+                try {
+                    // Keep the request in flight long enough for the identical requests to arrive.
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseSender().send("hot body");
+            }));
+             final var gateway = startGateway(httpInterface -> {}, createUpstream("backend", upstreamServer.getHost()), api)) {
+            final var request = HttpRequest.newBuilder(gateway.uri("/hot")).build();
+            final var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (var i = 0; i < 10; i++) {
+                responses.add(gateway.getClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            responses.forEach(response -> {
+                assertEquals(200, response.join().statusCode());
+                assertEquals("hot body", response.join().body());
+            });
+            assertEquals(1, upstreamRequests.get());
+            assertEquals(9, gateway.getServer().getResponseCache().getCoalesced());
+        }
+    }
+
+    /**
+     * Creates a response and copies the body into the blocks of the cache.
+     */
+    private static CachedResponse createEntry(ResponseCache cache, String key, String body) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        final var blockCount = (bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final var blocks = new int[blockCount];
+        for (var i = 0; i < blockCount; i++) {
+            blocks[i] = cache.allocateBlock();
+            cache.block(blocks[i]).put(bytes, i * BLOCK_SIZE, Math.min(BLOCK_SIZE, bytes.length - i * BLOCK_SIZE));
+        }
+        final var metadata = new CachedResponse.Metadata(null, System.currentTimeMillis(), 0, 60_000, null, null);
+        return new CachedResponse(key, new HttpString[0], new String[0], 200, blocks, blockCount, bytes.length, metadata);
+    }
+
+    /**
+     * Reads the body of a response from the blocks of the cache.
+     */
+    private static String read(ResponseCache cache, CachedResponse entry) {
+        final var bytes = new byte[(int) entry.bodyLength];
+        var offset = 0;
+        for (final var buffer : entry.body(cache.getStore())) {
+            final var length = buffer.remaining();
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.compression;
+
+import com.machnos.api.gateway.server.configuration.ApiCache;
+import com.machnos.api.gateway.server.configuration.ApiCompression;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import io.undertow.util.Headers;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static com.machnos.api.gateway.server.http.TestServers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>CompressionHandler</code> class.
+ */
+public class CompressionHandlerTest {
+
+    /**
+     * Test the negotiation of the encoding with the <code>Accept-Encoding</code> header.
+     */
+    @Test
+    public void testNegotiate() {
+        final var handler = new CompressionHandler(new ApiCompression(), exchange -> {});
+        assertEquals(-1, handler.negotiate(null));
+        assertEquals(-1, handler.negotiate(List.of("identity")));
+        assertEquals(-1, handler.negotiate(List.of("br")));
+        assertEquals(0, handler.negotiate(List.of("gzip, deflate, br")));
+        assertEquals(0, handler.negotiate(List.of("GZIP")));
+        assertEquals(1, handler.negotiate(List.of("deflate")));
+        assertEquals(1, handler.negotiate(List.of("gzip;q=0.5, deflate")));
+        assertEquals(1, handler.negotiate(List.of("gzip;q=0", "*")));
+        assertEquals(0, handler.negotiate(List.of("*;q=0.8")));
+        assertEquals(-1, handler.negotiate(List.of("*;q=0")));
+        assertEquals(-1, handler.negotiate(List.of("gzip;q=invalid")));
+    }
+
+    /**
+     * Test that invalid compression settings are rejected.
+     */
+    @Test
+    public void testInvalidSettings() {
+        final var unsupportedEncoding = new ApiCompression();
+        unsupportedEncoding.encodings = List.of("br");
+        var exception = assertThrows(MachnosException.class, () -> new CompressionHandler(unsupportedEncoding, exchange -> {}));
+        assertEquals(MachnosException.INVALID_COMPRESSION, exception.getErrorCode());
+
+        final var invalidLevel = new ApiCompression();
+        invalidLevel.level = 10;
+        exception = assertThrows(MachnosException.class, () -> new CompressionHandler(invalidLevel, exchange -> {}));
+        assertEquals(MachnosException.INVALID_COMPRESSION, exception.getErrorCode());
+    }
+
+    /**
+     * Test that responses are compressed when the client accepts it, and that the compressed variant is served from
+     * the response cache next to the uncompressed variant.
+     */
+    @Test
+    public void testCompressResponses() throws IOException, InterruptedException {
+        final var upstreamRequests = new AtomicInteger();
+        final var body = "{\"orders\":[" + "{\"id\":1,\"status\":\"shipped\"},".repeat(100) + "{}]}";
+        final var api = createApi("compressed", "/*");
+        api.cache = new ApiCache();
+        api.compression = new ApiCompression();
+        try (final var upstreamServer = startUpstream(exchange -> {
+                upstreamRequests.incrementAndGet();
+                final var responseHeaders = exchange.getResponseHeaders();
+                responseHeaders.put(Headers.CONTENT_TYPE, "application/json; charset=utf-8");
+                responseHeaders.put(Headers.CACHE_CONTROL, "max-age=60");
+                responseHeaders.put(Headers.ETAG, "\"v1\"");
+                exchange.getResponseSender().send("/small".equals(exchange.getRequestPath()) ? "{}" : body);
+            });
+             final var gateway = startGateway(httpInterface -> {}, createUpstream("backend", upstreamServer.getHost()), api)) {
+            for (var i = 0; i < 2; i++) {
+                final var response = gateway.getClient().send(HttpRequest.newBuilder(gateway.uri("/orders")).header("Accept-Encoding", "gzip, deflate").build(), HttpResponse.BodyHandlers.ofByteArray());
+                assertEquals(200, response.statusCode());
+                assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElseThrow());
+                assertEquals("W/\"v1\"", response.headers().firstValue("ETag").orElseThrow());
+                assertTrue(response.headers().allValues("Vary").contains("Accept-Encoding"));
+                assertTrue(response.body().length < body.length());
+                try (final var in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                    assertEquals(body, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            assertEquals(1, upstreamRequests.get());
+            // Other spellings of the same preference are served from the same variant.
+            for (final var acceptEncoding : List.of("gzip", "br, gzip")) {
+                final var response = gateway.getClient().send(HttpRequest.newBuilder(gateway.uri("/orders")).header("Accept-Encoding", acceptEncoding).build(), HttpResponse.BodyHandlers.ofByteArray());
+                assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElseThrow());
+            }
+            assertEquals(1, upstreamRequests.get());
+
+            final var uncompressed = gateway.get("/orders");
+            assertEquals(body, uncompressed.body());
+            assertTrue(uncompressed.headers().firstValue("Content-Encoding").isEmpty());
+            assertEquals("\"v1\"", uncompressed.headers().firstValue("ETag").orElseThrow());
+            assertEquals(2, upstreamRequests.get());
+
+            // Responses below the minimum size are not compressed.
+            final var small = gateway.getClient().send(HttpRequest.newBuilder(gateway.uri("/small")).header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals("{}", small.body());
+            assertTrue(small.headers().firstValue("Content-Encoding").isEmpty());
+            assertEquals(3, gateway.getServer().getResponseCache().getHits());
+        }
+    }
+}
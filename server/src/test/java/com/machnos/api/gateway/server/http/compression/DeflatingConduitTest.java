@@ -0,0 +1,184 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.compression;
+
+import io.undertow.connector.PooledByteBuffer;
+import org.junit.jupiter.api.Test;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>DeflatingConduit</code> class.
+ */
+public class DeflatingConduitTest {
+
+    /**
+     * Test that a body written to a slow client is compressed in the gzip format, and that the deflater is returned to
+     * the pool afterwards.
+     */
+    @Test
+    public void testGzipWithBackpressure() throws IOException {
+        final var body = createBody(100_000);
+        final var pool = new DeflaterPool(6, true, 1);
+        final var sink = new SlowConduit(100);
+        final var pooledBuffer = new TestPooledByteBuffer(1024);
+        final var conduit = new DeflatingConduit(sink, pool, pooledBuffer);
+        final var src = ByteBuffer.wrap(body);
+        while (src.hasRemaining()) {
+            conduit.write(src);
+        }
+        conduit.terminateWrites();
+        while (!conduit.flush()) {
+            assertFalse(sink.terminated);
+        }
+        assertTrue(sink.terminated);
+        assertTrue(sink.output.size() < body.length);
+        try (final var in = new GZIPInputStream(new ByteArrayInputStream(sink.output.toByteArray()))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+        assertFalse(pooledBuffer.isOpen());
+        assertEquals(1, pool.getIdle());
+    }
+
+    /**
+     * Test that a flush before the end of the body makes all data written so far available to the client.
+     */
+    @Test
+    public void testDeflateFlush() throws Exception {
+        final var pool = new DeflaterPool(6, false, 1);
+        final var sink = new SlowConduit(Integer.MAX_VALUE);
+        final var conduit = new DeflatingConduit(sink, pool, new TestPooledByteBuffer(1024));
+        final var first = "{\"event\":\"first\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(first.length, conduit.write(ByteBuffer.wrap(first)));
+        assertTrue(conduit.flush());
+        final var inflater = new Inflater();
+        inflater.setInput(sink.output.toByteArray());
+        final var inflated = new byte[first.length];
+        assertEquals(first.length, inflater.inflate(inflated));
+        assertArrayEquals(first, inflated);
+        inflater.end();
+
+        final var second = "{\"event\":\"second\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(second.length, conduit.write(new ByteBuffer[]{ByteBuffer.wrap(second)}, 0, 1));
+        conduit.terminateWrites();
+        assertTrue(conduit.flush());
+        try (final var in = new InflaterInputStream(new ByteArrayInputStream(sink.output.toByteArray()))) {
+            assertEquals("{\"event\":\"first\"}{\"event\":\"second\"}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Test that an empty body results in a valid gzip stream.
+     */
+    @Test
+    public void testEmptyBody() throws IOException {
+        final var sink = new SlowConduit(Integer.MAX_VALUE);
+        final var conduit = new DeflatingConduit(sink, new DeflaterPool(1, true, 1), new TestPooledByteBuffer(64));
+        conduit.terminateWrites();
+        assertTrue(conduit.flush());
+        try (final var in = new GZIPInputStream(new ByteArrayInputStream(sink.output.toByteArray()))) {
+            assertEquals(0, in.readAllBytes().length);
+        }
+    }
+
+    private static byte[] createBody(int size) {
+        final var builder = new StringBuilder();
+        for (var i = 0; builder.length() < size; i++) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"order ").append(i % 97).append("\"},");
+        }
+        return builder.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Conduit that collects the written data, and accepts at most a fixed number of bytes per write. Every other write
+     * accepts nothing, like a socket with a full send buffer.
+     */
+    private static final class SlowConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final int maxWrite;
+        private boolean blocked;
+        private boolean terminated;
+
+        private SlowConduit(int maxWrite) {
+            super(null);
+            this.maxWrite = maxWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            if (this.maxWrite != Integer.MAX_VALUE) {
+                this.blocked = !this.blocked;
+                if (this.blocked) {
+                    return 0;
+                }
+            }
+            final var length = Math.min(this.maxWrite, src.remaining());
+            final var bytes = new byte[length];
+            src.get(bytes);
+            this.output.write(bytes, 0, length);
+            return length;
+        }
+
+        @Override
+        public void terminateWrites() {
+            this.terminated = true;
+        }
+
+        @Override
+        public boolean flush() {
+            return true;
+        }
+    }
+
+    private static final class TestPooledByteBuffer implements PooledByteBuffer {
+
+        private final ByteBuffer buffer;
+        private boolean open = true;
+
+        private TestPooledByteBuffer(int size) {
+            this.buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return this.buffer;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>LatencyHistogram</code> class.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Test that each latency is counted in the bucket that covers it, and that the buckets are contiguous.
+     */
+    @Test
+    public void testBuckets() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(7, LatencyHistogram.bucketOf(7));
+        assertEquals(8, LatencyHistogram.bucketOf(8));
+        assertEquals(15, LatencyHistogram.bucketOf(15));
+        assertEquals(16, LatencyHistogram.bucketOf(16));
+        assertEquals(16, LatencyHistogram.bucketOf(17));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        for (var bucket = 1; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            final var lowest = LatencyHistogram.lowestOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowest));
+            assertEquals(bucket - 1, LatencyHistogram.bucketOf(lowest - 1));
+        }
+    }
+
+    /**
+     * Test the count, sum, counts below the powers of two and percentiles of a snapshot.
+     */
+    @Test
+    public void testSnapshot() {
+        final var histogram = new LatencyHistogram();
+        for (var micros = 1; micros <= 1_000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        histogram.record(-1);
+        final var snapshot = histogram.snapshot();
+        assertEquals(1_001, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500_500), snapshot.getSum());
+        assertEquals(16, snapshot.getCountBelow(4));
+        assertEquals(512, snapshot.getCountBelow(9));
+        assertEquals(1_001, snapshot.getCountBelow(26));
+        final var median = snapshot.getValueAtPercentile(50);
+        assertTrue(median >= 500 && median < 500 * 1.125, "Median " + median);
+        final var p99 = snapshot.getValueAtPercentile(99);
+        assertTrue(p99 >= 990 && p99 < 990 * 1.125, "P99 " + p99);
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+    }
+
+    /**
+     * Test that no latencies are lost when many threads record at the same time.
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final var histogram = new LatencyHistogram();
+        final var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            final var thread = new Thread(() -> {
+                for (var j = 0; j < 10_000; j++) {
+                    histogram.record(1_000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        final var snapshot = histogram.snapshot();
+        assertEquals(80_000, snapshot.getCount());
+        assertEquals(80_000_000, snapshot.getSum());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import io.undertow.server.handlers.BlockingHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static com.machnos.api.gateway.server.http.TestServers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>MetricsHandler</code> class.
+ */
+public class MetricsHandlerTest {
+
+    /**
+     * Test that the latency and traffic of the requests are recorded per api and served on the metrics path.
+     */
+    @Test
+    public void testMetrics() throws IOException, InterruptedException {
+        try (final var upstreamServer = startUpstream(new BlockingHandler(exchange -> {
+                Thread.sleep(20);
+                exchange.getResponseSender().send("body");
+            }));
+             final var gateway = startGateway(httpInterface -> {}, createUpstream("backend", upstreamServer.getHost()), createApi("orders", "/orders"))) {
+            for (var i = 0; i < 3; i++) {
+                assertEquals(200, gateway.get("/orders").statusCode());
+            }
+            assertEquals(404, gateway.get("/unknown").statusCode());
+
+            final var metricsHandler = gateway.getServer().getMetricsHandler();
+            final var orders = metricsHandler.getApiMetrics("orders");
+            assertEquals(3, orders.getResponses(2));
+            assertEquals(12, orders.getResponseBytes());
+            final var upstreamLatency = orders.getUpstreamLatency().snapshot();
+            assertEquals(3, upstreamLatency.getCount());
+            assertTrue(upstreamLatency.getValueAtPercentile(50) >= 20_000);
+            final var totalLatency = orders.getTotalLatency().snapshot();
+            assertTrue(totalLatency.getSum() >= upstreamLatency.getSum());
+            assertEquals(3, orders.getGatewayOverhead().snapshot().getCount());
+            assertEquals(1, metricsHandler.getApiMetrics(MetricsHandler.NO_API).getResponses(4));
+
+            final var response = gateway.get(gateway.getHttpInterface().metricsPath);
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain; version=0.0.4"));
+            final var body = response.body();
+            assertTrue(body.contains("machnos_requests_total{api=\"orders\",code=\"2xx\"} 3\n"));
+            assertTrue(body.contains("machnos_upstream_duration_seconds_count{api=\"orders\"} 3\n"));
+            assertTrue(body.contains("machnos_request_duration_seconds_bucket{api=\"orders\",le=\"+Inf\"} 3\n"));
+            assertTrue(body.contains("machnos_active_connections "));
+            assertTrue(body.contains("machnos_upstream_connections_open{upstream=\"backend\",host=\"" + upstreamServer.getHost() + "\"} "));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>PrometheusWriter</code> class.
+ */
+public class PrometheusWriterTest {
+
+    /**
+     * Test writing families and samples, with escaped help texts and label values.
+     */
+    @Test
+    public void testSamples() {
+        final var writer = new PrometheusWriter()
+                .family("machnos_test_total", PrometheusWriter.Type.COUNTER, "A back\\slash and a\nnew line.")
+                .sample("machnos_test_total", 42, "api", "say \"hi\"", "code", "2xx")
+                .family("machnos_test_ratio", PrometheusWriter.Type.GAUGE, "A gauge.")
+                .sample("machnos_test_ratio", 0.5)
+                .sample("machnos_test_ratio", Double.POSITIVE_INFINITY, "api", "a\\b");
+        assertEquals("# HELP machnos_test_total A back\\\\slash and a\\nnew line.\n"
+                + "# TYPE machnos_test_total counter\n"
+                + "machnos_test_total{api=\"say \\\"hi\\\"\",code=\"2xx\"} 42\n"
+                + "# HELP machnos_test_ratio A gauge.\n"
+                + "# TYPE machnos_test_ratio gauge\n"
+                + "machnos_test_ratio 0.5\n"
+                + "machnos_test_ratio{api=\"a\\\\b\"} +Inf\n", writer.toString());
+    }
+
+    /**
+     * Test that a histogram is written as cumulative buckets in seconds, with its sum and count.
+     */
+    @Test
+    public void testHistogram() {
+        final var histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+        final var metrics = new PrometheusWriter().histogram("machnos_test_seconds", histogram.snapshot(), "api", "orders").toString();
+        assertTrue(metrics.startsWith("machnos_test_seconds_bucket{api=\"orders\",le=\"0.000016\"} 1\n"
+                + "machnos_test_seconds_bucket{api=\"orders\",le=\"0.000032\"} 1\n"
+                + "machnos_test_seconds_bucket{api=\"orders\",le=\"0.000064\"} 1\n"
+                + "machnos_test_seconds_bucket{api=\"orders\",le=\"0.000128\"} 2\n"), metrics);
+        assertTrue(metrics.contains("machnos_test_seconds_bucket{api=\"orders\",le=\"1.048576\"} 3\n"), metrics);
+        assertTrue(metrics.endsWith("machnos_test_seconds_bucket{api=\"orders\",le=\"67.108864\"} 3\n"
+                + "machnos_test_seconds_bucket{api=\"orders\",le=\"+Inf\"} 3\n"
+                + "machnos_test_seconds_sum{api=\"orders\"} 1.00011\n"
+                + "machnos_test_seconds_count{api=\"orders\"} 3\n"), metrics);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.pipeline;
+
+import com.machnos.api.gateway.server.configuration.ApiFunction;
+import com.machnos.api.gateway.server.configuration.ExecutionMode;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import com.machnos.api.gateway.server.domain.api.functions.Function;
+import com.machnos.api.gateway.server.domain.api.functions.MathFunction;
+import com.machnos.api.gateway.server.domain.api.functions.Pipeline;
+import com.machnos.api.gateway.server.domain.api.functions.Result;
+import com.machnos.api.gateway.server.domain.api.variables.Variables;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.machnos.api.gateway.server.http.TestServers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test class for the <code>PipelineHandler</code> class.
+ */
+public class PipelineHandlerTest {
+
+    /**
+     * Test executing a function pipeline that fails validation. Each of the concurrent requests should be answered with
+     * a bad request that does not reveal the error codes, while requests that do not match an api are not handled.
+     */
+    @Test
+    public void testExecutePipelineFailure() throws IOException, InterruptedException {
+        final var apiFunction = new ApiFunction();
+        apiFunction.function = "Math";
+        apiFunction.configuration.put(MathFunction.INPUT_KEY_SOURCE_VARIABLE_NAME, "missing");
+        apiFunction.configuration.put(MathFunction.INPUT_KEY_FUNCTION, MathFunction.FUNCTION_ABSOLUTE);
+        final var api = createApi("failing", "/failing");
+        api.functions.add(apiFunction);
+        try (final var gateway = startGateway(httpInterface -> httpInterface.executionMode = ExecutionMode.VIRTUAL_THREAD,
+                createUpstream("unused", "http://127.0.0.1:" + findFreePort()), api)) {
+            final var request = HttpRequest.newBuilder(gateway.uri("/failing")).build();
+            final var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (var i = 0; i < 200; i++) {
+                responses.add(gateway.getClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (final var future : responses) {
+                final var response = future.join();
+                assertEquals(400, response.statusCode());
+                assertEquals("Bad Request", response.body());
+            }
+            // Requests that do not match an api are not handled.
+            assertEquals(404, gateway.get("/other").statusCode());
+        }
+    }
+
+    /**
+     * Test that a function pipeline that fails with a fault, rather than a validation failure, is answered with an
+     * internal server error that does not reveal the error code.
+     */
+    @Test
+    public void testExecutePipelineFault() throws IOException, InterruptedException {
+        final var faultyFunction = new Function() {
+            @Override
+            public String getId() {
+                return "faulty";
+            }
+
+            @Override
+            public String getName() {
+                return "Faulty";
+            }
+
+            @Override
+            public Result execute(Variables inputVariables, Map<String, String> functionConfiguration) {
+                return new Result().addException(new MachnosException(MachnosException.WRAPPED_EXCEPTION));
+            }
+        };
+        final var handler = new PipelineHandler(new Pipeline().add(faultyFunction, Map.of()), ExecutionMode.WORKER,
+                exchange -> exchange.getResponseSender().send("executed"));
+        try (final var server = startUndertow(findFreePort(), builder -> {}, handler)) {
+            final var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            final var response = client.send(HttpRequest.newBuilder(server.uri("/")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(500, response.statusCode());
+            assertEquals("Internal Server Error", response.body());
+        }
+    }
+
+    /**
+     * Test executing the function pipeline of an api on virtual threads. The pipeline has a step that blocks until
+     * more requests are in flight than there are worker threads, which only completes when each request is executed
+     * on a thread of its own.
+     */
+    @Test
+    public void testExecutePipelineOnVirtualThreads() throws IOException, InterruptedException {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads are not supported in Java " + Runtime.version().feature());
+        final var workerThreads = 2;
+        final var requests = workerThreads * 4;
+        final var arrived = new CountDownLatch(requests);
+        final var release = new CountDownLatch(1);
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        final var blockingFunction = new Function() {
+            @Override
+            public String getId() {
+                return "blocking";
+            }
+
+            @Override
+            public String getName() {
+                return "Blocking";
+            }
+
+            @Override
+            public Result execute(Variables inputVariables, Map<String, String> functionConfiguration) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                arrived.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return new Result();
+            }
+        };
+        final var handler = new PipelineHandler(new Pipeline().add(blockingFunction, Map.of()), ExecutionMode.VIRTUAL_THREAD,
+                exchange -> exchange.getResponseSender().send("executed"));
+        assertEquals(ExecutionMode.VIRTUAL_THREAD, handler.getExecutionMode());
+        try (final var server = startUndertow(findFreePort(), builder -> builder.setIoThreads(1).setWorkerThreads(workerThreads), handler)) {
+            final var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            final var request = HttpRequest.newBuilder(server.uri("/")).build();
+            final var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (var i = 0; i < requests; i++) {
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            final var allArrived = arrived.await(10, TimeUnit.SECONDS);
+            release.countDown();
+            assertTrue(allArrived, "Only " + (requests - arrived.getCount()) + " of " + requests + " requests were in flight at once");
+            for (final var future : responses) {
+                final var response = future.join();
+                assertEquals(200, response.statusCode());
+                assertEquals("executed", response.body());
+            }
+            assertTrue(maxInFlight.get() > workerThreads);
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import com.machnos.api.gateway.server.configuration.UpstreamCircuitBreaker;
+import io.undertow.util.StatusCodes;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.machnos.api.gateway.server.http.TestServers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>CircuitBreaker</code> class.
+ */
+public class CircuitBreakerTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final URI URI = java.net.URI.create("http://127.0.0.1:8080");
+
+    /**
+     * Test that the circuit opens after consecutive failures, and closes after successful probes.
+     */
+    @Test
+    public void testConsecutiveFailures() {
+        final var settings = new UpstreamCircuitBreaker();
+        settings.consecutiveFailures = 3;
+        settings.openDuration = 100;
+        settings.halfOpenRequests = 2;
+        final var circuitBreaker = new CircuitBreaker(URI, settings);
+        var now = 1_000_000 * MILLISECOND;
+        for (var i = 0; i < 3; i++) {
+            assertTrue(circuitBreaker.tryAcquire(now));
+            circuitBreaker.onResult(now, MILLISECOND, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire(now + 99 * MILLISECOND));
+
+        // After the open duration only the probes are let through.
+        now += 100 * MILLISECOND;
+        assertTrue(circuitBreaker.tryAcquire(now));
+        assertTrue(circuitBreaker.tryAcquire(now));
+        assertFalse(circuitBreaker.tryAcquire(now));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onResult(now, MILLISECOND, false);
+        circuitBreaker.onResult(now, MILLISECOND, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire(now));
+        assertEquals(1, circuitBreaker.getTrips());
+        assertEquals(2, circuitBreaker.getRejections());
+    }
+
+    /**
+     * Test that a failed probe opens the circuit for twice the duration.
+     */
+    @Test
+    public void testFailedProbe() {
+        final var settings = new UpstreamCircuitBreaker();
+        settings.consecutiveFailures = 1;
+        settings.openDuration = 100;
+        final var circuitBreaker = new CircuitBreaker(URI, settings);
+        var now = 1_000_000 * MILLISECOND;
+        circuitBreaker.onResult(now, MILLISECOND, true);
+        now += 100 * MILLISECOND;
+        assertTrue(circuitBreaker.tryAcquire(now));
+        circuitBreaker.onResult(now, MILLISECOND, true);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire(now + 199 * MILLISECOND));
+        assertTrue(circuitBreaker.tryAcquire(now + 200 * MILLISECOND));
+        assertEquals(2, circuitBreaker.getTrips());
+    }
+
+    /**
+     * Test that the circuit opens when the failure rate or slow call rate in the rolling window exceeds the threshold,
+     * and that expired outcomes are not counted.
+     */
+    @Test
+    public void testRollingWindow() {
+        final var settings = new UpstreamCircuitBreaker();
+        settings.consecutiveFailures = 0;
+        settings.minimumRequests = 10;
+        settings.failureRateThreshold = 50;
+        settings.window = 1_000;
+        final var failing = new CircuitBreaker(URI, settings);
+        var now = 1_000_000 * MILLISECOND;
+        // Old failures expire from the window.
+        for (var i = 0; i < 8; i++) {
+            failing.onResult(now, MILLISECOND, true);
+        }
+        now += 2_000 * MILLISECOND;
+        for (var i = 0; i < 10; i++) {
+            failing.onResult(now, MILLISECOND, false);
+        }
+        for (var i = 0; i < 9; i++) {
+            failing.onResult(now, MILLISECOND, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, failing.getState());
+        failing.onResult(now, MILLISECOND, true);
+        assertEquals(CircuitBreaker.State.OPEN, failing.getState());
+
+        settings.slowCallDuration = 100;
+        settings.slowCallRateThreshold = 75;
+        final var slow = new CircuitBreaker(URI, settings);
+        for (var i = 0; i < 10; i++) {
+            slow.onResult(now, (i < 7 ? 150 : 10) * MILLISECOND, false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, slow.getState());
+        slow.onResult(now, 150 * MILLISECOND, false);
+        slow.onResult(now, 150 * MILLISECOND, false);
+        assertEquals(CircuitBreaker.State.OPEN, slow.getState());
+    }
+
+    /**
+     * Test that a failing upstream host is ejected by its circuit breaker, so the requests are sent to the healthy
+     * host only.
+     */
+    @Test
+    public void testEjectFailingHost() throws IOException, InterruptedException {
+        final var healthyRequests = new AtomicInteger();
+        final var failingRequests = new AtomicInteger();
+        try (final var healthyServer = startUpstream(exchange -> {
+                healthyRequests.incrementAndGet();
+                exchange.getResponseSender().send("healthy");
+            });
+             final var failingServer = startUpstream(exchange -> {
+                failingRequests.incrementAndGet();
+                exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+                exchange.endExchange();
+            })) {
+            final var upstream = createUpstream("backend", healthyServer.getHost(), failingServer.getHost());
+            upstream.circuitBreaker = new UpstreamCircuitBreaker();
+            upstream.circuitBreaker.consecutiveFailures = 2;
+            upstream.circuitBreaker.openDuration = 60_000;
+            try (final var gateway = startGateway(httpInterface -> {}, upstream)) {
+                for (var i = 0; i < 20; i++) {
+                    gateway.get("/");
+                }
+                assertEquals(2, failingRequests.get());
+                assertEquals(18, healthyRequests.get());
+                final var pools = gateway.getServer().getProxyClient(upstream.name).getPools();
+                assertEquals(CircuitBreaker.State.CLOSED, pools.get(0).getCircuitBreaker().getState());
+                assertEquals(CircuitBreaker.State.OPEN, pools.get(1).getCircuitBreaker().getState());
+                assertEquals(1, pools.get(1).getCircuitBreaker().getTrips());
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.proxy;
+
+import com.machnos.api.gateway.server.configuration.LoadBalancing;
+import com.machnos.api.gateway.server.configuration.Upstream;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>LoadBalancer</code> implementations.
+ */
+public class LoadBalancerTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Test that the weighted round robin strategy interleaves the hosts in proportion to their weights.
+     */
+    @Test
+    public void testWeightedRoundRobin() {
+        final var pools = createPools(3, 1);
+        final var loadBalancer = LoadBalancer.create(LoadBalancing.WEIGHTED_ROUND_ROBIN, pools);
+        final var selected = new int[8];
+        for (var i = 0; i < selected.length; i++) {
+            selected[i] = loadBalancer.select(0);
+        }
+        assertArrayEquals(new int[] {0, 0, 1, 0, 0, 0, 1, 0}, selected);
+    }
+
+    /**
+     * Test that the least request strategy selects the host with the fewest requests in flight.
+     */
+    @Test
+    public void testLeastRequest() {
+        final var pools = createPools(1, 1, 1);
+        final var loadBalancer = LoadBalancer.create(LoadBalancing.LEAST_REQUEST, pools);
+        pools.get(0).getLoad().requestStarted();
+        pools.get(0).getLoad().requestStarted();
+        pools.get(2).getLoad().requestStarted();
+        for (var i = 0; i < 3; i++) {
+            assertEquals(1, loadBalancer.select(0));
+        }
+        pools.get(1).getLoad().requestStarted();
+        pools.get(1).getLoad().requestStarted();
+        assertEquals(2, loadBalancer.select(0));
+    }
+
+    /**
+     * Test that the power of two choices strategy steers the traffic away from a slow host, and that a slow host is
+     * tried again after its latency decayed.
+     */
+    @Test
+    public void testP2cEwma() {
+        final var pools = createPools(1, 1);
+        final var loadBalancer = LoadBalancer.create(LoadBalancing.P2C_EWMA, pools);
+        final var now = System.nanoTime();
+        pools.get(0).getLoad().latencyMeasured(now, 500 * MILLISECOND);
+        pools.get(1).getLoad().latencyMeasured(now, 5 * MILLISECOND);
+        for (var i = 0; i < 10; i++) {
+            assertEquals(1, loadBalancer.select(now));
+        }
+        // The fast host becomes the most expensive one when enough requests are in flight.
+        for (var i = 0; i < 100; i++) {
+            pools.get(1).getLoad().requestStarted();
+        }
+        assertEquals(0, loadBalancer.select(now));
+        for (var i = 0; i < 100; i++) {
+            pools.get(1).getLoad().requestCompleted();
+        }
+        assertEquals(1, loadBalancer.select(now));
+        // Without responses the latency of the slow host decays.
+        assertTrue(pools.get(0).getLoad().getLatencyEwma(now + TimeUnit.SECONDS.toNanos(60)) < 5 * MILLISECOND);
+    }
+
+    /**
+     * Test that the average latency follows peaks immediately and recovers gradually.
+     */
+    @Test
+    public void testPeakEwma() {
+        final var load = new UpstreamHostLoad(1);
+        var now = System.nanoTime();
+        load.latencyMeasured(now, 10 * MILLISECOND);
+        load.latencyMeasured(now, 100 * MILLISECOND);
+        assertEquals(100 * MILLISECOND, load.getLatencyEwma(now), 1);
+        now += TimeUnit.SECONDS.toNanos(10);
+        load.latencyMeasured(now, 10 * MILLISECOND);
+        final var average = load.getLatencyEwma(now);
+        assertTrue(average > 10 * MILLISECOND && average < 100 * MILLISECOND);
+    }
+
+    /**
+     * Creates the pools of an upstream with hosts of the given weights.
+     *
+     * @param weights The weights of the hosts.
+     * @return The pools.
+     */
+    private static List<UpstreamConnectionPool> createPools(int... weights) {
+        final var upstream = new Upstream();
+        upstream.name = "backend";
+        for (var i = 0; i < weights.length; i++) {
+            final var host = "http://10.0.0." + (i + 1) + ":8080";
+            upstream.hosts.add(host);
+            upstream.weights.put(host, weights[i]);
+        }
+        return upstream.getHostUris().stream()
+                .map(uri -> new UpstreamConnectionPool(upstream, uri, null, null))
+                .collect(Collectors.toList());
+    }
+}
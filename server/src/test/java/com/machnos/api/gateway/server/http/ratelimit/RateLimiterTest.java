@@ -0,0 +1,167 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.ratelimit;
+
+import com.machnos.api.gateway.server.configuration.ApiRateLimit;
+import com.machnos.api.gateway.server.domain.MachnosException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.machnos.api.gateway.server.http.TestServers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>RateLimiter</code> class.
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Test that a key is allowed its burst at once, and the sustained rate after that.
+     */
+    @Test
+    public void testBurstAndRate() {
+        final var rateLimiter = new RateLimiter(2, 3);
+        final var now = 1_000 * SECOND;
+        for (var i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("consumer", now));
+        }
+        assertEquals(SECOND / 2, rateLimiter.tryAcquire("consumer", now));
+        // Other keys are not affected.
+        assertEquals(0, rateLimiter.tryAcquire("other", now));
+        // One permit becomes available per half second.
+        assertEquals(0, rateLimiter.tryAcquire("consumer", now + SECOND / 2));
+        assertTrue(rateLimiter.tryAcquire("consumer", now + SECOND / 2) > 0);
+        assertEquals(5, rateLimiter.getAllowed());
+        assertEquals(2, rateLimiter.getRejected());
+    }
+
+    /**
+     * Test that only idle keys are evicted, and that an evicted key is allowed its full burst again.
+     */
+    @Test
+    public void testEvictIdle() {
+        final var rateLimiter = new RateLimiter(1, 2);
+        final var now = 1_000 * SECOND;
+        rateLimiter.tryAcquire("idle", now);
+        rateLimiter.tryAcquire("busy", now + 5 * SECOND);
+        rateLimiter.tryAcquire("busy", now + 5 * SECOND);
+        assertEquals(1, rateLimiter.evictIdle(now + 5 * SECOND));
+        assertEquals(1, rateLimiter.size());
+        assertEquals(1, rateLimiter.getEvictions());
+        // The busy key is still limited.
+        assertTrue(rateLimiter.tryAcquire("busy", now + 5 * SECOND) > 0);
+        assertEquals(1, rateLimiter.evictIdle(now + 7 * SECOND));
+        assertEquals(0, rateLimiter.size());
+        assertEquals(0, rateLimiter.tryAcquire("busy", now + 7 * SECOND));
+        assertEquals(0, rateLimiter.tryAcquire("busy", now + 7 * SECOND));
+    }
+
+    /**
+     * Test that concurrent requests for the same key are never allowed more than the burst.
+     */
+    @Test
+    public void testConcurrentAcquire() throws InterruptedException {
+        final var rateLimiter = new RateLimiter(1, 100);
+        final var now = 1_000 * SECOND;
+        final var allowed = new AtomicInteger();
+        final var start = new CountDownLatch(1);
+        final var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            final var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (var j = 0; j < 1_000; j++) {
+                    if (rateLimiter.tryAcquire("consumer", now) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                    if (j % 100 == 0) {
+                        // Evictions must not hand out extra permits, the key is not idle.
+                        rateLimiter.evictIdle(now);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, allowed.get());
+        assertEquals(100, rateLimiter.getAllowed());
+        assertEquals(7_900, rateLimiter.getRejected());
+    }
+
+    /**
+     * Test that invalid settings are rejected.
+     */
+    @Test
+    public void testInvalidSettings() {
+        assertEquals(MachnosException.INVALID_RATE_LIMIT, assertThrows(MachnosException.class, () -> new RateLimiter(0, 1)).getErrorCode());
+        assertEquals(MachnosException.INVALID_RATE_LIMIT, assertThrows(MachnosException.class, () -> new RateLimiter(1, 0)).getErrorCode());
+    }
+
+    /**
+     * Test that the consumers of an api are rate limited by api key, and that requests exceeding the rate limit are
+     * not forwarded to the upstream.
+     */
+    @Test
+    public void testRateLimitApi() throws IOException, InterruptedException {
+        final var upstreamRequests = new AtomicInteger();
+        final var api = createApi("limited", "/*");
+        api.rateLimit = new ApiRateLimit();
+        api.rateLimit.rate = 0.01;
+        api.rateLimit.burst = 2;
+        api.rateLimit.keyHeader = "X-Api-Key";
+        try (final var upstreamServer = startUpstream(exchange -> {
+                upstreamRequests.incrementAndGet();
+                exchange.getResponseSender().send("limited body");
+            });
+             final var gateway = startGateway(httpInterface -> {}, createUpstream("backend", upstreamServer.getHost()), api)) {
+            final var client = gateway.getClient();
+            final var uri = gateway.uri("/");
+            for (var i = 0; i < 2; i++) {
+                final var response = client.send(HttpRequest.newBuilder(uri).header("X-Api-Key", "first").build(), HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode());
+            }
+            final var limitedResponse = client.send(HttpRequest.newBuilder(uri).header("X-Api-Key", "first").build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(429, limitedResponse.statusCode());
+            assertTrue(Long.parseLong(limitedResponse.headers().firstValue("Retry-After").orElseThrow()) > 0);
+            // Another api key has its own limit.
+            assertEquals(200, client.send(HttpRequest.newBuilder(uri).header("X-Api-Key", "second").build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+            assertEquals(3, upstreamRequests.get());
+
+            final var rateLimiter = gateway.getServer().getRateLimiter(api.name);
+            assertEquals(3, rateLimiter.getAllowed());
+            assertEquals(1, rateLimiter.getRejected());
+            assertEquals(2, rateLimiter.size());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.routing;
+
+import com.machnos.api.gateway.server.domain.MachnosException;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.util.Methods;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>RouteTable</code> class.
+ */
+public class RouteTableTest {
+
+    /**
+     * Test matching static paths, including paths that share a prefix.
+     */
+    @Test
+    public void testMatchStaticPath() {
+        final var root = route("root", "/");
+        final var orders = route("orders", "/orders");
+        final var orderLines = route("orderLines", "/orders/lines");
+        final var organisations = route("organisations", "/organisations");
+        final var routeTable = new RouteTable().add(orderLines).add(orders).add(organisations).add(root);
+        assertEquals(4, routeTable.size());
+
+        assertSame(root, routeTable.match(null, Methods.GET, "/"));
+        assertSame(root, routeTable.match(null, Methods.GET, ""));
+        assertSame(orders, routeTable.match(null, Methods.GET, "/orders"));
+        assertSame(orders, routeTable.match(null, Methods.GET, "/orders/"));
+        assertSame(orderLines, routeTable.match(null, Methods.GET, "/orders/lines"));
+        assertSame(organisations, routeTable.match(null, Methods.GET, "/organisations"));
+        assertNull(routeTable.match(null, Methods.GET, "/order"));
+        assertNull(routeTable.match(null, Methods.GET, "/orders/line"));
+        assertNull(routeTable.match(null, Methods.GET, "/ordersX"));
+    }
+
+    /**
+     * Test matching paths with path parameters and wildcards.
+     */
+    @Test
+    public void testMatchParametersAndWildcards() {
+        final var order = route("order", "/orders/{orderId}");
+        final var orderLine = route("orderLine", "/orders/{orderId}/lines/{lineId}");
+        final var newOrder = route("newOrder", "/orders/new");
+        final var files = route("files", "/files/*");
+        final var orderFiles = route("orderFiles", "/orders/{orderId}/files/*");
+        final var routeTable = new RouteTable().add(order).add(orderLine).add(newOrder).add(files).add(orderFiles);
+
+        assertSame(order, routeTable.match(null, Methods.GET, "/orders/123"));
+        assertSame(order, routeTable.match(null, Methods.GET, "/orders/123/"));
+        assertSame(newOrder, routeTable.match(null, Methods.GET, "/orders/new"));
+        assertSame(orderLine, routeTable.match(null, Methods.GET, "/orders/123/lines/1"));
+        assertNull(routeTable.match(null, Methods.GET, "/orders/123/lines"));
+        assertNull(routeTable.match(null, Methods.GET, "/orders//lines/1"));
+        assertSame(files, routeTable.match(null, Methods.GET, "/files"));
+        assertSame(files, routeTable.match(null, Methods.GET, "/files/"));
+        assertSame(files, routeTable.match(null, Methods.GET, "/files/a/b/c.txt"));
+        assertSame(orderFiles, routeTable.match(null, Methods.GET, "/orders/new/files/a.txt"));
+        assertSame(orderFiles, routeTable.match(null, Methods.GET, "/orders/123/files"));
+
+        assertEquals("123", order.getPathParameters("/orders/123").get("orderId"));
+        final var parameters = orderLine.getPathParameters("/orders/123/lines/1");
+        assertEquals("123", parameters.get("orderId"));
+        assertEquals("1", parameters.get("lineId"));
+        assertEquals("a/b/c.txt", files.getPathParameters("/files/a/b/c.txt").get("*"));
+    }
+
+    /**
+     * Test matching routes by host and method.
+     */
+    @Test
+    public void testMatchHostAndMethod() {
+        final var anyHost = route("anyHost", "/orders");
+        final var exampleHostGet = new Route("exampleHostGet", List.of("Example.com"), List.of("get"), "/orders", ResponseCodeHandler.HANDLE_200);
+        final var exampleHostPost = new Route("exampleHostPost", List.of("example.com"), List.of("POST"), "/orders", ResponseCodeHandler.HANDLE_200);
+        final var routeTable = new RouteTable().add(anyHost).add(exampleHostGet).add(exampleHostPost);
+
+        assertSame(exampleHostGet, routeTable.match("example.com", Methods.GET, "/orders"));
+        assertSame(exampleHostGet, routeTable.match("EXAMPLE.COM", Methods.GET, "/orders"));
+        assertSame(exampleHostPost, routeTable.match("example.com", Methods.POST, "/orders"));
+        assertSame(anyHost, routeTable.match("example.com", Methods.DELETE, "/orders"));
+        assertSame(anyHost, routeTable.match("example.org", Methods.GET, "/orders"));
+        assertSame(anyHost, routeTable.match(null, Methods.POST, "/orders"));
+    }
+
+    /**
+     * Test adding duplicate and invalid routes.
+     */
+    @Test
+    public void testInvalidRoutes() {
+        final var routeTable = new RouteTable().add(route("orders", "/orders/{orderId}"));
+        var exception = assertThrows(MachnosException.class, () -> routeTable.add(route("duplicate", "/orders/{id}/")));
+        assertEquals(MachnosException.DUPLICATE_ROUTE, exception.getErrorCode());
+
+        exception = assertThrows(MachnosException.class, () -> route("noSlash", "orders"));
+        assertEquals(MachnosException.INVALID_API_PATH, exception.getErrorCode());
+        exception = assertThrows(MachnosException.class, () -> route("wildcard", "/orders/*/lines"));
+        assertEquals(MachnosException.INVALID_API_PATH, exception.getErrorCode());
+        exception = assertThrows(MachnosException.class, () -> route("parameter", "/orders/id{orderId}"));
+        assertEquals(MachnosException.INVALID_API_PATH, exception.getErrorCode());
+        exception = assertThrows(MachnosException.class, () -> route("empty", "/orders//lines"));
+        assertEquals(MachnosException.INVALID_API_PATH, exception.getErrorCode());
+    }
+
+    /**
+     * Creates a <code>Route</code> that is served on all hosts and methods.
+     *
+     * @param name The name of the route.
+     * @param pathTemplate The path template of the route.
+     * @return The <code>Route</code>.
+     */
+    private static Route route(String name, String pathTemplate) {
+        return new Route(name, Collections.emptyList(), Collections.emptyList(), pathTemplate, ResponseCodeHandler.HANDLE_200);
+    }
+}
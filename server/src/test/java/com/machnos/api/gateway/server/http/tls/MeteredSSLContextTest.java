@@ -0,0 +1,173 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class for the <code>MeteredSSLContext</code> class.
+ */
+public class MeteredSSLContextTest {
+
+    /**
+     * Test that the first handshake of a client is counted as full handshake, and the following handshakes as resumed
+     * handshakes.
+     */
+    @Test
+    public void testCountHandshakes() throws Exception {
+        final var statistics = new TlsStatistics();
+        final var serverContext = new MeteredSSLContext(createServerContext(), statistics);
+        for (final var protocol : new String[] {"TLSv1.3", "TLSv1.2"}) {
+            final var clientContext = createClientContext();
+            for (var i = 0; i < 3; i++) {
+                final var serverEngine = serverContext.createSSLEngine();
+                serverEngine.setUseClientMode(false);
+                final var clientEngine = clientContext.createSSLEngine("localhost", 8443);
+                clientEngine.setUseClientMode(true);
+                clientEngine.setEnabledProtocols(new String[] {protocol});
+                handshake(clientEngine, serverEngine);
+                assertEquals(protocol, serverEngine.getSession().getProtocol());
+            }
+        }
+        assertEquals(2, statistics.getFullHandshakes());
+        assertEquals(4, statistics.getResumedHandshakes());
+        assertEquals(0, statistics.getFailedHandshakes());
+    }
+
+    /**
+     * Performs a handshake between two in memory <code>SSLEngine</code>s.
+     *
+     * @param clientEngine The client side <code>SSLEngine</code>.
+     * @param serverEngine The server side <code>SSLEngine</code>.
+     */
+    private static void handshake(SSLEngine clientEngine, SSLEngine serverEngine) throws Exception {
+        final var clientToServer = ByteBuffer.allocate(65536);
+        final var serverToClient = ByteBuffer.allocate(65536);
+        final var applicationData = ByteBuffer.allocate(65536);
+        final var empty = ByteBuffer.allocate(0);
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+        // The session ticket is sent after the handshake, so keep exchanging records for a few rounds.
+        for (var i = 0; i < 10; i++) {
+            transfer(clientEngine, serverEngine, clientToServer, applicationData, empty);
+            transfer(serverEngine, clientEngine, serverToClient, applicationData, empty);
+        }
+    }
+
+    /**
+     * Transfers the pending records of one <code>SSLEngine</code> to the other.
+     */
+    private static void transfer(SSLEngine from, SSLEngine to, ByteBuffer network, ByteBuffer applicationData, ByteBuffer empty) throws Exception {
+        from.wrap(empty, network);
+        runDelegatedTasks(from);
+        network.flip();
+        while (network.hasRemaining()) {
+            final var result = to.unwrap(network, applicationData);
+            applicationData.clear();
+            runDelegatedTasks(to);
+            if (result.getStatus() != SSLEngineResult.Status.OK || result.bytesConsumed() == 0) {
+                break;
+            }
+        }
+        network.compact();
+    }
+
+    private static void runDelegatedTasks(SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Creates a server <code>SSLContext</code> with a self signed EC certificate.
+     *
+     * @return The <code>SSLContext</code>.
+     */
+    private static SSLContext createServerContext() throws Exception {
+        final var keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        final var keyPair = keyPairGenerator.generateKeyPair();
+        final var now = Instant.now();
+        final var certificateBuilder = new JcaX509v3CertificateBuilder(
+                new X500Name("CN=Machnos-Test,O=Machnos,C=NL"),
+                BigInteger.valueOf(now.toEpochMilli()),
+                Date.from(now),
+                Date.from(now.plus(Duration.ofDays(1))),
+                new X500Name("CN=localhost"),
+                keyPair.getPublic());
+        final var certificate = new JcaX509CertificateConverter()
+                .setProvider(new BouncyCastleProvider())
+                .getCertificate(certificateBuilder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate())));
+        final var keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", keyPair.getPrivate(), new char[0], new Certificate[] {certificate});
+        final var keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, new char[0]);
+        final var sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    /**
+     * Creates a client <code>SSLContext</code> that trusts all certificates.
+     *
+     * @return The <code>SSLContext</code>.
+     */
+    private static SSLContext createClientContext() throws Exception {
+        final var sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] {new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return sslContext;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import com.machnos.api.gateway.server.domain.keystore.FileSystemKeyStoreWrapper;
+import com.machnos.api.gateway.server.domain.keystore.KeyStoreWrapper;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the <code>ReloadingX509KeyManager</code> class.
+ */
+public class ReloadingX509KeyManagerTest {
+
+    /**
+     * The backing file for this test case.
+     */
+    private static final File keyStoreFile = new File(System.getProperty("java.io.tmpdir"), "machnos-reloading.p12");
+
+    /**
+     * A dummy password.
+     */
+    private static final char[] password = new char[]{'d', 'u', 'm', 'm', 'y'};
+
+    @AfterEach
+    @BeforeEach
+    public void setup() {
+        if (keyStoreFile.exists()) {
+            assertTrue(keyStoreFile.delete());
+        }
+    }
+
+    /**
+     * Test that a changed keystore file is picked up for new handshakes, while handshakes that already selected an
+     * alias keep using the key material they started with.
+     */
+    @Test
+    public void testReloadChangedKeyStore() throws Exception {
+        storeKeyStore("CN=first", 0);
+        final var keyManager = new ReloadingX509KeyManager(new FileSystemKeyStoreWrapper(keyStoreFile, KeyStoreWrapper.KeyStoreType.PKCS12, password), password, 0);
+        final var firstAlias = keyManager.chooseEngineServerAlias("EC", null, null);
+        assertNotNull(firstAlias);
+        assertEquals("CN=first", keyManager.getCertificateChain(firstAlias)[0].getSubjectX500Principal().getName());
+        assertFalse(keyManager.reload());
+        assertEquals(0, keyManager.getGeneration());
+
+        // Replace the certificate on the filesystem. Make sure the modification time differs from the first file.
+        storeKeyStore("CN=second", 2000);
+        assertTrue(keyManager.reload());
+        assertEquals(1, keyManager.getGeneration());
+        final var secondAlias = keyManager.chooseEngineServerAlias("EC", null, null);
+        assertEquals("CN=second", keyManager.getCertificateChain(secondAlias)[0].getSubjectX500Principal().getName());
+        assertNotNull(keyManager.getPrivateKey(secondAlias));
+
+        // A handshake that started before the reload still gets the matching certificate and private key.
+        assertEquals("CN=first", keyManager.getCertificateChain(firstAlias)[0].getSubjectX500Principal().getName());
+        assertNotNull(keyManager.getPrivateKey(firstAlias));
+
+        // Aliases that are not handed out by the key manager are unknown.
+        assertNull(keyManager.getPrivateKey("server"));
+    }
+
+    /**
+     * Test that the current key material is kept when the keystore file cannot be loaded.
+     */
+    @Test
+    public void testKeepKeyMaterialOnInvalidKeyStore() throws Exception {
+        storeKeyStore("CN=first", 0);
+        final var keyManager = new ReloadingX509KeyManager(new FileSystemKeyStoreWrapper(keyStoreFile, KeyStoreWrapper.KeyStoreType.PKCS12, password), password, 0);
+        try (var fileOutputStream = new FileOutputStream(keyStoreFile)) {
+            fileOutputStream.write(new byte[] {1, 2, 3});
+        }
+        assertTrue(keyStoreFile.setLastModified(keyStoreFile.lastModified() + 2000));
+        assertFalse(keyManager.reload());
+        final var alias = keyManager.chooseEngineServerAlias("EC", null, null);
+        assertEquals("CN=first", keyManager.getCertificateChain(alias)[0].getSubjectX500Principal().getName());
+    }
+
+    /**
+     * Stores a keystore with a single private key entry with a self signed certificate.
+     *
+     * @param subject The subject of the certificate.
+     * @param lastModifiedOffset The number of milliseconds to add to the modification time of the file.
+     */
+    private static void storeKeyStore(String subject, long lastModifiedOffset) throws Exception {
+        final var keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        final var keyPair = keyPairGenerator.generateKeyPair();
+        final var now = Instant.now();
+        final var certificateBuilder = new JcaX509v3CertificateBuilder(
+                new X500Name(subject),
+                BigInteger.valueOf(now.toEpochMilli()),
+                Date.from(now),
+                Date.from(now.plus(Duration.ofDays(1))),
+                new X500Name(subject),
+                keyPair.getPublic());
+        final var certificate = new JcaX509CertificateConverter()
+                .setProvider(new BouncyCastleProvider())
+                .getCertificate(certificateBuilder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate())));
+        final var keyStore = KeyStore.getInstance(KeyStoreWrapper.KeyStoreType.PKCS12.name());
+        keyStore.load(null, password);
+        keyStore.setKeyEntry("server", keyPair.getPrivate(), password, new Certificate[] {certificate});
+        final var previousModified = keyStoreFile.exists() ? keyStoreFile.lastModified() : 0;
+        try (var fileOutputStream = new FileOutputStream(keyStoreFile)) {
+            keyStore.store(fileOutputStream, password);
+        }
+        if (lastModifiedOffset > 0) {
+            assertTrue(keyStoreFile.setLastModified(previousModified + lastModifiedOffset));
+        }
+    }
+}
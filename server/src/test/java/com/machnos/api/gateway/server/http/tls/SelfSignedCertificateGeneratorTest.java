@@ -0,0 +1,65 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tls;
+
+import com.machnos.api.gateway.server.configuration.KeyAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the <code>SelfSignedCertificateGenerator</code> class.
+ */
+public class SelfSignedCertificateGeneratorTest {
+
+    /**
+     * Test generating a certificate with an EC key, which is the default key algorithm.
+     */
+    @Test
+    public void testGenerateEcCertificate() throws Exception {
+        final var entry = SelfSignedCertificateGenerator.generate(KeyAlgorithm.EC_P256, "localhost", List.of("localhost", "localhost", "gateway.local"), Duration.ofDays(1));
+        final var certificate = (X509Certificate) entry.getCertificate();
+        certificate.checkValidity();
+        certificate.verify(certificate.getPublicKey());
+        assertEquals("SHA256withECDSA", certificate.getSigAlgName());
+        assertEquals(2, certificate.getSubjectAlternativeNames().size());
+        assertTrue(SelfSignedCertificateGenerator.matches(KeyAlgorithm.EC_P256, certificate));
+        assertFalse(SelfSignedCertificateGenerator.matches(KeyAlgorithm.EC_P384, certificate));
+        assertFalse(SelfSignedCertificateGenerator.matches(KeyAlgorithm.RSA_2048, certificate));
+    }
+
+    /**
+     * Test generating a certificate with an RSA key.
+     */
+    @Test
+    public void testGenerateRsaCertificate() throws Exception {
+        final var entry = SelfSignedCertificateGenerator.generate(KeyAlgorithm.RSA_2048, "localhost", List.of("localhost"), Duration.ofDays(1));
+        final var certificate = (X509Certificate) entry.getCertificate();
+        certificate.verify(certificate.getPublicKey());
+        assertEquals("SHA256withRSA", certificate.getSigAlgName());
+        assertTrue(SelfSignedCertificateGenerator.matches(KeyAlgorithm.RSA_2048, certificate));
+        assertFalse(SelfSignedCertificateGenerator.matches(KeyAlgorithm.RSA_4096, certificate));
+        assertFalse(SelfSignedCertificateGenerator.matches(KeyAlgorithm.EC_P256, certificate));
+    }
+}
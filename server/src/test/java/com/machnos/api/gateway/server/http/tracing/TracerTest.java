@@ -0,0 +1,151 @@
+/*
+ * Licensed to Machnos under one or more contributor license
+ * agreements. Machnos licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.machnos.api.gateway.server.http.tracing;
+
+import com.machnos.api.gateway.server.configuration.Tracing;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static com.machnos.api.gateway.server.http.TestServers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the <code>Tracer</code> class.
+ */
+public class TracerTest {
+
+    private static final TraceContext SAMPLED_PARENT = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    private static final TraceContext UNSAMPLED_PARENT = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00");
+
+    /**
+     * Test the parent based, ratio based and rate limited sampling decisions.
+     */
+    @Test
+    public void testSampling() {
+        final var tracing = new Tracing();
+        tracing.sampleRatio = 0.25;
+        tracing.maxTracesPerSecond = 0;
+        final var tracer = new Tracer(tracing);
+        assertNotNull(tracer.startTrace(SAMPLED_PARENT, "GET", Span.Kind.SERVER));
+        assertNull(tracer.startTrace(UNSAMPLED_PARENT, "GET", Span.Kind.SERVER));
+        // The ratio decision only depends on the trace id.
+        assertTrue(tracer.sample(null, Long.MAX_VALUE / 8));
+        assertFalse(tracer.sample(null, Long.MAX_VALUE / 2));
+        assertFalse(tracer.sample(null, -1));
+        var sampled = 0;
+        for (var i = 0; i < 10_000; i++) {
+            if (tracer.startTrace(null, "GET", Span.Kind.SERVER) != null) {
+                sampled++;
+            }
+        }
+        assertTrue(sampled > 2_000 && sampled < 3_000, "Sampled " + sampled);
+
+        tracing.parentBased = false;
+        tracing.sampleRatio = 1;
+        tracing.maxTracesPerSecond = 5;
+        final var limited = new Tracer(tracing);
+        assertNotNull(limited.startTrace(UNSAMPLED_PARENT, "GET", Span.Kind.SERVER));
+        for (var i = 0; i < 10; i++) {
+            limited.startTrace(null, "GET", Span.Kind.SERVER);
+        }
+        assertTrue(limited.getSampled() <= 6);
+        assertTrue(limited.getRateLimited() >= 5);
+    }
+
+    /**
+     * Test that the spans of a trace are exported as OTLP/JSON with the ids of the trace and their parents.
+     */
+    @Test
+    public void testExport() throws IOException {
+        final var directory = Files.createTempDirectory("tracing");
+        final var tracing = new Tracing();
+        tracing.file = directory.resolve("traces.jsonl").toString();
+        tracing.serviceName = "gateway \"one\"";
+        tracing.sampleRatio = 1;
+        final var tracer = new Tracer(tracing);
+        tracer.start();
+        final var server = tracer.startTrace(SAMPLED_PARENT, "GET /orders", Span.Kind.SERVER)
+                .setAttribute("http.response.status_code", 200);
+        final var upstream = server.startChild("GET", Span.Kind.CLIENT).setAttribute("server.address", "backend");
+        final var traceparent = TraceContext.parse(upstream.toTraceparent());
+        assertEquals(SAMPLED_PARENT.getTraceIdLow(), traceparent.getTraceIdLow());
+        assertEquals(upstream.getSpanId(), traceparent.getSpanId());
+        assertTrue(traceparent.isSampled());
+        upstream.setError("Bad gateway").end();
+        upstream.end();
+        server.end();
+        tracer.stop();
+
+        final var lines = Files.readAllLines(directory.resolve("traces.jsonl"), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        final var line = lines.get(0);
+        assertTrue(line.startsWith("{\"resourceSpans\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\",\"value\":{\"stringValue\":\"gateway \\\"one\\\"\"}}]}"), line);
+        assertTrue(line.contains("{\"traceId\":\"4bf92f3577b34da6a3ce929d0e0e4736\",\"spanId\":\"" + String.format("%016x", upstream.getSpanId()) + "\",\"parentSpanId\":\"" + String.format("%016x", server.getSpanId()) + "\",\"name\":\"GET\",\"kind\":3,"), line);
+        assertTrue(line.contains("\"parentSpanId\":\"00f067aa0ba902b7\",\"name\":\"GET /orders\",\"kind\":2,"), line);
+        assertTrue(line.contains("{\"key\":\"http.response.status_code\",\"value\":{\"intValue\":\"200\"}}"), line);
+        assertTrue(line.contains("\"status\":{\"code\":2,\"message\":\"Bad gateway\"}"), line);
+        assertEquals(2, tracer.getExporter().getExported());
+        assertEquals(0, tracer.getExporter().getDropped());
+    }
+
+    /**
+     * Test that sampled requests are forwarded with the span of the upstream call as parent, that unsampled requests
+     * are forwarded with their trace context untouched, and that the spans are exported.
+     */
+    @Test
+    public void testTraceRequests() throws IOException, InterruptedException {
+        final var traces = Files.createTempDirectory("tracing").resolve("traces.jsonl");
+        try (final var upstreamServer = startUpstream(exchange -> {
+                final var traceparent = exchange.getRequestHeaders().getFirst("traceparent");
+                exchange.getResponseSender().send(traceparent == null ? "" : traceparent);
+            });
+             final var gateway = startGateway(httpInterface -> {
+                httpInterface.tracing = new Tracing();
+                httpInterface.tracing.file = traces.toString();
+                httpInterface.tracing.sampleRatio = 0;
+            }, createUpstream("backend", upstreamServer.getHost()), createApi("orders", "/orders"))) {
+            final var uri = gateway.uri("/orders");
+            final var unsampled = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00";
+            final var unsampledResponse = gateway.getClient().send(HttpRequest.newBuilder(uri).header("traceparent", unsampled).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(unsampled, unsampledResponse.body());
+
+            final var sampled = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+            final var sampledResponse = gateway.getClient().send(HttpRequest.newBuilder(uri).header("traceparent", sampled).build(), HttpResponse.BodyHandlers.ofString());
+            final var forwarded = TraceContext.parse(sampledResponse.body());
+            assertNotNull(forwarded);
+            assertEquals(0xa3ce929d0e0e4736L, forwarded.getTraceIdLow());
+            assertNotEquals(0x00f067aa0ba902b7L, forwarded.getSpanId());
+            assertTrue(forwarded.isSampled());
+
+            // The spans are exported when the server is stopped.
+            gateway.close();
+            final var tracer = gateway.getServer().getTracer();
+            assertEquals(1, tracer.getSampled());
+            final var spans = Files.readString(traces);
+            // The span of the gateway and the span of the upstream call.
+            assertEquals(2, tracer.getExporter().getExported());
+            assertTrue(spans.contains("\"parentSpanId\":\"00f067aa0ba902b7\",\"name\":\"GET /orders\",\"kind\":2"), spans);
+            assertTrue(spans.contains("\"spanId\":\"" + String.format("%016x", forwarded.getSpanId()) + "\""), spans);
+        }
+    }
+}